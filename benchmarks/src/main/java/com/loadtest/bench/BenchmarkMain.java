@@ -0,0 +1,24 @@
+package com.loadtest.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs JMH with the usual command line, adding the GC profiler unless another
+ * profiler is chosen, so every result includes gc.alloc.rate.norm (bytes per operation).
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(new CommandLineOptions(args));
+        if (!Arrays.asList(args).contains("-prof")) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
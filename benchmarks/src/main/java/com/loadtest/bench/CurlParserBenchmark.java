@@ -0,0 +1,86 @@
+package com.loadtest.bench;
+
+import com.loadtest.CurlParser;
+import com.loadtest.CurlRequest;
+import com.loadtest.ScenarioRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the single-pass CurlParser against the old per-call regex extractors,
+ * together and one extractor at a time, and of scenario parsing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CurlParserBenchmark {
+
+    @Param({"small", "large"})
+    public String input;
+
+    private String curl;
+    private String scenario;
+    private CurlParser parser;
+
+    @Setup
+    public void setup() {
+        curl = input.equals("small") ? CurlSamples.small() : CurlSamples.large(64 * 1024);
+        scenario = CurlSamples.scenario(input.equals("small") ? 5 : 200);
+        parser = new CurlParser();
+    }
+
+    @Benchmark
+    public CurlRequest curlParser() {
+        return parser.parse(curl);
+    }
+
+    @Benchmark
+    public void regexExtractors(Blackhole blackhole) {
+        blackhole.consume(RegexCurlExtractor.extractUrl(curl));
+        blackhole.consume(RegexCurlExtractor.extractMethod(curl));
+        blackhole.consume(RegexCurlExtractor.extractHeaders(curl));
+        blackhole.consume(RegexCurlExtractor.extractBody(curl));
+    }
+
+    @Benchmark
+    public String extractUrl() {
+        return RegexCurlExtractor.extractUrl(curl);
+    }
+
+    @Benchmark
+    public String extractMethod() {
+        return RegexCurlExtractor.extractMethod(curl);
+    }
+
+    @Benchmark
+    public List<String> extractHeaders() {
+        return RegexCurlExtractor.extractHeaders(curl);
+    }
+
+    @Benchmark
+    public String extractBody() {
+        return RegexCurlExtractor.extractBody(curl);
+    }
+
+    // 5 or 200 steps, depending on input
+    @Benchmark
+    public List<List<ScenarioRequest>> parseScenario() {
+        return parser.parseScenario(scenario);
+    }
+}
@@ -0,0 +1,60 @@
+package com.loadtest.bench;
+
+import com.loadtest.CurlParser;
+import com.loadtest.CurlRequest;
+import com.loadtest.ScriptService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JavaScript string escaping of header names and values and of request bodies. Most
+ * headers need no escaping, which should cost no allocation; bodies usually do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EscapeBenchmark {
+
+    @Param({"small", "large"})
+    public String input;
+
+    private List<CurlRequest.Header> headers;
+    private String body;
+
+    @Setup
+    public void setup() {
+        CurlRequest request = CurlParser.parseCommand(input.equals("small")
+                ? CurlSamples.small() : CurlSamples.large(64 * 1024));
+        headers = request.getHeaders();
+        body = request.getBody();
+    }
+
+    @Benchmark
+    public void escapeHeaders(Blackhole blackhole) {
+        for (CurlRequest.Header header : headers) {
+            blackhole.consume(ScriptService.escapeJs(header.getName()));
+            blackhole.consume(ScriptService.escapeJs(header.getValue()));
+        }
+    }
+
+    @Benchmark
+    public String escapeBody() {
+        return ScriptService.escapeJs(body);
+    }
+}
@@ -0,0 +1,97 @@
+package com.loadtest.bench;
+
+import com.loadtest.K6JsonParser;
+import com.loadtest.K6Sample;
+import com.loadtest.MetricsAggregator;
+import com.loadtest.MetricsStreamReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing a recorded k6 "--out json" stream: parsing alone, parsing into a
+ * MetricsAggregator, and the MetricsStreamReader path from a file on disk. 200,000
+ * lines is about a minute at 200 RPS, or 60 MB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@State(Scope.Thread)
+public class K6StreamBenchmark {
+
+    @Param({"200000"})
+    public int lines;
+
+    private byte[] stream;
+    private Path file;
+    private final K6JsonParser parser = new K6JsonParser();
+    private final K6Sample sample = new K6Sample();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        stream = K6StreamSamples.stream(lines, 200);
+        file = Files.createTempFile("k6-stream", ".json");
+        Files.write(file, stream);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int parse() {
+        int tracked = 0;
+        int lineStart = 0;
+        for (int i = 0; i < stream.length; i++) {
+            if (stream[i] == '\n') {
+                if (parser.parse(stream, lineStart, i, sample)) {
+                    tracked++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return tracked;
+    }
+
+    @Benchmark
+    public MetricsAggregator parseAndAggregate() {
+        MetricsAggregator aggregator = new MetricsAggregator();
+        int lineStart = 0;
+        for (int i = 0; i < stream.length; i++) {
+            if (stream[i] == '\n') {
+                if (parser.parse(stream, lineStart, i, sample)) {
+                    aggregator.record(sample);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return aggregator;
+    }
+
+    // The reader drains the file and stops, as it does after k6 has exited
+    @Benchmark
+    public long readFile() {
+        MetricsStreamReader reader = new MetricsStreamReader(file, new MetricsAggregator());
+        reader.finish();
+        reader.run();
+        return reader.getLinesRead();
+    }
+}
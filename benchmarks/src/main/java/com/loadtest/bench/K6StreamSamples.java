@@ -0,0 +1,78 @@
+package com.loadtest.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * NDJSON shaped like k6's "--out json" stream of a test with the generated script's
+ * custom metrics: metric declarations, then for every request the built-in HTTP
+ * timings with their tags, the iteration metrics and the custom Trend, Rate and Counter.
+ */
+public final class K6StreamSamples {
+    private static final String TAGS = "{\"expected_response\":\"true\",\"group\":\"\",\"method\":\"POST\","
+            + "\"name\":\"https://api.example.com/v1/orders\",\"proto\":\"HTTP/1.1\",\"scenario\":\"default\","
+            + "\"status\":\"200\",\"tls_version\":\"tls1.3\",\"url\":\"https://api.example.com/v1/orders\"}";
+    private static final String ITERATION_TAGS = "{\"group\":\"\",\"scenario\":\"default\"}";
+    private static final String[] TIMINGS = {
+            "http_req_duration", "http_req_blocked", "http_req_connecting", "http_req_tls_handshaking",
+            "http_req_sending", "http_req_waiting", "http_req_receiving"
+    };
+    private static final String[] DECLARED = {
+            "http_reqs", "http_req_duration", "http_req_blocked", "http_req_connecting", "http_req_tls_handshaking",
+            "http_req_sending", "http_req_waiting", "http_req_receiving", "http_req_failed", "data_sent",
+            "data_received", "iteration_duration", "iterations", "response_times", "request_rate", "success_rate",
+            "error_counter"
+    };
+
+    private K6StreamSamples() {
+    }
+
+    // About lines lines at requestsPerSecond, roughly 300 bytes per line
+    public static byte[] stream(int lines, int requestsPerSecond) {
+        StringBuilder text = new StringBuilder(lines * 320);
+        for (String metric : DECLARED) {
+            text.append("{\"type\":\"Metric\",\"data\":{\"name\":\"").append(metric)
+                    .append("\",\"type\":\"trend\",\"contains\":\"time\",\"thresholds\":[],\"submetrics\":null},\"metric\":\"")
+                    .append(metric).append("\"}\n");
+        }
+        Random random = new Random(42);
+        int written = DECLARED.length;
+        long request = 0;
+        while (written < lines) {
+            long second = request / requestsPerSecond;
+            long micros = (request % requestsPerSecond) * 1_000_000L / requestsPerSecond;
+            String time = String.format("2024-05-01T12:%02d:%02d.%06d+02:00", second / 60 % 60, second % 60, micros);
+            double duration = 20 + Math.exp(random.nextGaussian()) * 15;
+            boolean failed = random.nextInt(100) == 0;
+            point(text, "http_reqs", time, "1", TAGS);
+            for (String timing : TIMINGS) {
+                double value = timing.equals("http_req_duration") || timing.equals("http_req_waiting")
+                        ? duration : random.nextDouble() * 0.5;
+                point(text, timing, time, format(value), TAGS);
+            }
+            point(text, "http_req_failed", time, failed ? "1" : "0", TAGS);
+            point(text, "response_times", time, format(duration), ITERATION_TAGS);
+            point(text, "request_rate", time, "1", ITERATION_TAGS);
+            point(text, "success_rate", time, failed ? "0" : "1", ITERATION_TAGS);
+            if (failed) {
+                point(text, "error_counter", time, "1", ITERATION_TAGS);
+            }
+            point(text, "data_sent", time, "412", ITERATION_TAGS);
+            point(text, "data_received", time, "1835", ITERATION_TAGS);
+            point(text, "iteration_duration", time, format(duration + 1000), ITERATION_TAGS);
+            point(text, "iterations", time, "1", ITERATION_TAGS);
+            written += failed ? 16 : 15;
+            request++;
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void point(StringBuilder text, String metric, String time, String value, String tags) {
+        text.append("{\"metric\":\"").append(metric).append("\",\"type\":\"Point\",\"data\":{\"time\":\"").append(time)
+                .append("\",\"value\":").append(value).append(",\"tags\":").append(tags).append("}}\n");
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 1000) / 1000.0);
+    }
+}
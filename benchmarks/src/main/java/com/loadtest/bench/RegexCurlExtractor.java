@@ -0,0 +1,62 @@
+package com.loadtest.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regex-based extractors ScriptService used before CurlParser, kept verbatim as
+ * the baseline for CurlParserBenchmark.
+ */
+public class RegexCurlExtractor {
+
+    public static String extractUrl(String curlCommand) {
+        Pattern urlPattern = Pattern.compile("(?:curl|\\s+)['\"](https?://[^'\"]+)['\"]");
+        Matcher urlMatcher = urlPattern.matcher(curlCommand);
+        if (urlMatcher.find()) {
+            return urlMatcher.group(1);
+        } else {
+            urlPattern = Pattern.compile("(?:curl|\\s+)(https?://\\S+)");
+            urlMatcher = urlPattern.matcher(curlCommand);
+            if (urlMatcher.find()) {
+                String url = urlMatcher.group(1);
+                if (url.contains(" ")) {
+                    url = url.substring(0, url.indexOf(" "));
+                }
+                return url;
+            }
+        }
+        return "";
+    }
+
+    public static String extractMethod(String curlCommand) {
+        Pattern methodPattern = Pattern.compile("-X\\s+([A-Z]+)|--request\\s+([A-Z]+)");
+        Matcher methodMatcher = methodPattern.matcher(curlCommand);
+        if (methodMatcher.find()) {
+            return methodMatcher.group(1) != null ? methodMatcher.group(1) : methodMatcher.group(2);
+        }
+        return "GET"; // Default to GET if no method is specified
+    }
+
+    public static List<String> extractHeaders(String curlCommand) {
+        List<String> headers = new ArrayList<>();
+        Pattern headerPattern = Pattern.compile("-H\\s+['\"]([^'\"]+)['\"]|--header\\s+['\"]([^'\"]+)['\"]");
+        Matcher headerMatcher = headerPattern.matcher(curlCommand);
+        while (headerMatcher.find()) {
+            String header = headerMatcher.group(1) != null ? headerMatcher.group(1) : headerMatcher.group(2);
+            headers.add(header);
+        }
+        return headers;
+    }
+
+    public static String extractBody(String curlCommand) {
+        Pattern bodyPattern = Pattern.compile("-d\\s+['\"]([^'\"]+)['\"]|--data\\s+['\"]([^'\"]+)['\"]|--data-raw\\s+['\"]([^'\"]+)['\"]");
+        Matcher bodyMatcher = bodyPattern.matcher(curlCommand);
+        if (bodyMatcher.find()) {
+            return bodyMatcher.group(1) != null ? bodyMatcher.group(1) :
+                    (bodyMatcher.group(2) != null ? bodyMatcher.group(2) : bodyMatcher.group(3));
+        }
+        return null;
+    }
+}
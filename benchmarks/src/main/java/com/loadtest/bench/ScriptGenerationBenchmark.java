@@ -0,0 +1,67 @@
+package com.loadtest.bench;
+
+import com.loadtest.LoadProfile;
+import com.loadtest.ScriptOptions;
+import com.loadtest.ScriptService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end script generation: parsing, escaping and assembling the k6 script, for a
+ * single small request, a request with a 1 MB body, and a 200-step scenario.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScriptGenerationBenchmark {
+
+    @Param({"small", "large", "scenario"})
+    public String input;
+
+    @Param({"false", "true"})
+    public boolean lean;
+
+    private String curl;
+    private ScriptService scriptService;
+    private LoadProfile profile;
+    private List<String> thresholds;
+    private ScriptOptions options;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (input) {
+            case "small":
+                curl = CurlSamples.small();
+                break;
+            case "large":
+                curl = CurlSamples.large(1024 * 1024);
+                break;
+            default:
+                curl = CurlSamples.scenario(200);
+        }
+        scriptService = new ScriptService();
+        profile = LoadProfile.closedLoop("50", "1m");
+        thresholds = List.of("http_req_duration: p(95)<500", "http_req_failed: rate<0.01");
+        options = new ScriptOptions().setLean(lean);
+    }
+
+    @Benchmark
+    public String generateScript() throws Exception {
+        return scriptService.generateScript(curl, "bench", profile, thresholds, options);
+    }
+}
@@ -0,0 +1,33 @@
+#!/usr/bin/env bash
+# Builds the jlink image and a dynamic AppCDS archive of the classes loaded up to the first
+# frame, then adds bin/loadtest-cds, which starts the app with that archive.
+#
+#   scripts/build-cds-archive.sh            # after 'mvn package'
+#   SKIP_JLINK=1 scripts/build-cds-archive.sh
+#
+# The training run opens the window and closes it after the first frame, so it needs a
+# display; on a headless host run it under xvfb-run.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+IMAGE=target/loadtest-image
+ARCHIVE=lib/loadtest.jsa
+
+if [ -z "${SKIP_JLINK:-}" ]; then
+    ./mvnw -B -q javafx:jlink
+fi
+
+rm -f "$IMAGE/$ARCHIVE"
+"$IMAGE/bin/java" -XX:ArchiveClassesAtExit="$IMAGE/$ARCHIVE" -Dloadtest.exitAfterFirstFrame=true \
+    -m com.loadtest/com.loadtest.Launcher
+
+cat > "$IMAGE/bin/loadtest-cds" <<'LAUNCHER'
+#!/bin/sh
+DIR=$(dirname "$0")
+exec "$DIR/java" -XX:SharedArchiveFile="$DIR/../lib/loadtest.jsa" -Xshare:auto \
+    -m com.loadtest/com.loadtest.Launcher "$@"
+LAUNCHER
+chmod +x "$IMAGE/bin/loadtest-cds"
+
+echo "CDS archive: $IMAGE/$ARCHIVE ($(du -h "$IMAGE/$ARCHIVE" | cut -f1))"
+echo "Start with: $IMAGE/bin/loadtest-cds"
@@ -0,0 +1,51 @@
+#!/usr/bin/env bash
+# Measures time to first frame (JVM start to the first laid-out pulse, as logged by
+# LoadTestGenerator) for each way of starting the app, and prints min/median/max.
+#
+#   scripts/measure-startup.sh [runs]       # default 10 runs per variant
+#
+# Variants that are not built are skipped:
+#   jar        target/K6UILoadTest-1.0-SNAPSHOT.jar on the system java; needs JAVAFX_LIB
+#              pointing at the JavaFX SDK's lib directory
+#   image      target/loadtest-image/bin/loadtest (mvn javafx:jlink)
+#   image+cds  target/loadtest-image/bin/loadtest-cds (scripts/build-cds-archive.sh)
+#
+# Each variant gets one unmeasured run first, so all of them start with a warm file cache.
+# Needs a display; on a headless host run it under xvfb-run.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-10}
+IMAGE=target/loadtest-image
+JAR=target/K6UILoadTest-1.0-SNAPSHOT.jar
+
+measure() {
+    local name=$1
+    shift
+    "$@" >/dev/null 2>&1 || true
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        local ms
+        ms=$("$@" 2>/dev/null | sed -n 's/^Time to first frame: \([0-9]*\) ms$/\1/p')
+        if [ -z "$ms" ]; then
+            echo "$name: no 'Time to first frame' line; is a display available?" >&2
+            return
+        fi
+        times+=("$ms")
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v name="$name" '
+        { t[NR] = $1 }
+        END { printf "%-10s runs %3d  min %5d ms  median %5d ms  max %5d ms\n", name, NR, t[1], t[int((NR + 1) / 2)], t[NR] }'
+}
+
+PROBE=-Dloadtest.exitAfterFirstFrame=true
+
+if [ -f "$JAR" ] && [ -n "${JAVAFX_LIB:-}" ]; then
+    measure jar java "$PROBE" --module-path "$JAVAFX_LIB" --add-modules javafx.controls -jar "$JAR"
+fi
+if [ -x "$IMAGE/bin/loadtest" ]; then
+    JAVA_TOOL_OPTIONS="$PROBE" measure image "$IMAGE/bin/loadtest"
+fi
+if [ -x "$IMAGE/bin/loadtest-cds" ]; then
+    JAVA_TOOL_OPTIONS="$PROBE" measure image+cds "$IMAGE/bin/loadtest-cds"
+fi
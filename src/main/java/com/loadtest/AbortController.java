@@ -0,0 +1,347 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * Stops a run early once one of its thresholds has failed over a sliding window for a
+ * sustained number of seconds, so a broken target does not use up the whole test duration.
+ *
+ * Rate thresholds on http_req_failed and success_rate are checked over the error window,
+ * latency thresholds on http_req_duration and response_times over the latency window.
+ * Other thresholds only make sense for the whole run and are left to the end of it.
+ *
+ * It watches test runs only. Calibration runs are never stopped early, and capacity probes
+ * are stopped by CapacityFinder's own rule; both pass {@link Settings#off()} to ScriptService.
+ */
+public class AbortController implements Closeable {
+    private static final long CHECK_INTERVAL_MS = 500;
+
+    /**
+     * Window lengths and how long a breach must last, parsed from e.g.
+     * "errors=10s, latency=30s, sustain=5s, grace=10s, requests=20" or "off".
+     */
+    public static class Settings {
+        public static final String DEFAULT = "errors=10s, latency=30s, sustain=5s, grace=10s, requests=20";
+
+        public static final int DEFAULT_ERROR_WINDOW = 10;
+        public static final int DEFAULT_LATENCY_WINDOW = 30;
+        public static final int DEFAULT_SUSTAIN = 5;
+        public static final int DEFAULT_GRACE = 10;
+        public static final int DEFAULT_MIN_REQUESTS = 20;
+        // The aggregator keeps one second less than its ring, the newest one being incomplete
+        private static final int MAX_WINDOW = MetricsAggregator.WINDOW_SECONDS - 1;
+
+        private final boolean enabled;
+        private final int errorWindow;
+        private final int latencyWindow;
+        private final int sustain;
+        private final int grace;
+        private final int minRequests;
+
+        public Settings(boolean enabled, int errorWindow, int latencyWindow, int sustain, int grace, int minRequests) {
+            this.enabled = enabled;
+            this.errorWindow = errorWindow;
+            this.latencyWindow = latencyWindow;
+            this.sustain = sustain;
+            this.grace = grace;
+            this.minRequests = minRequests;
+        }
+
+        public static Settings defaults() {
+            return new Settings(true, DEFAULT_ERROR_WINDOW, DEFAULT_LATENCY_WINDOW, DEFAULT_SUSTAIN,
+                    DEFAULT_GRACE, DEFAULT_MIN_REQUESTS);
+        }
+
+        public static Settings off() {
+            return new Settings(false, DEFAULT_ERROR_WINDOW, DEFAULT_LATENCY_WINDOW, DEFAULT_SUSTAIN,
+                    DEFAULT_GRACE, DEFAULT_MIN_REQUESTS);
+        }
+
+        // Empty for the defaults; "off" never aborts
+        public static Settings parse(String text) throws Exception {
+            String trimmed = text == null ? "" : text.trim();
+            if (trimmed.isEmpty()) {
+                return defaults();
+            }
+            if (trimmed.equalsIgnoreCase("off") || trimmed.equalsIgnoreCase("none")) {
+                return off();
+            }
+            int errors = DEFAULT_ERROR_WINDOW;
+            int latency = DEFAULT_LATENCY_WINDOW;
+            int sustain = DEFAULT_SUSTAIN;
+            int grace = DEFAULT_GRACE;
+            int requests = DEFAULT_MIN_REQUESTS;
+            for (String part : trimmed.split("\\s*,\\s*")) {
+                String[] pair = part.split("\\s*=\\s*", 2);
+                if (pair.length != 2) {
+                    throw new Exception("Invalid early abort setting '" + part
+                            + "'. Use e.g. " + DEFAULT + ", or off");
+                }
+                switch (pair[0].toLowerCase(Locale.ROOT)) {
+                    case "errors":
+                        errors = window(pair[0], pair[1]);
+                        break;
+                    case "latency":
+                        latency = window(pair[0], pair[1]);
+                        break;
+                    case "sustain":
+                        sustain = Math.max(1, seconds(pair[0], pair[1]));
+                        break;
+                    case "grace":
+                        grace = seconds(pair[0], pair[1]);
+                        break;
+                    case "requests":
+                        requests = count(pair[0], pair[1]);
+                        break;
+                    default:
+                        throw new Exception("Unknown early abort setting '" + pair[0]
+                                + "'. Use errors, latency, sustain, grace or requests.");
+                }
+            }
+            return new Settings(true, errors, latency, sustain, grace, requests);
+        }
+
+        private static int window(String name, String value) throws Exception {
+            int seconds = seconds(name, value);
+            if (seconds < 1 || seconds > MAX_WINDOW) {
+                throw new Exception("The " + name + " window must be between 1s and " + MAX_WINDOW + "s.");
+            }
+            return seconds;
+        }
+
+        // Whole seconds, with or without an "s"
+        private static int seconds(String name, String value) throws Exception {
+            String number = value.trim().toLowerCase(Locale.ROOT);
+            return count(name, number.endsWith("s") ? number.substring(0, number.length() - 1) : number);
+        }
+
+        private static int count(String name, String value) throws Exception {
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                if (parsed < 0) {
+                    throw new Exception(name + " cannot be negative.");
+                }
+                return parsed;
+            } catch (NumberFormatException e) {
+                throw new Exception(name + " must be a whole number.");
+            }
+        }
+
+        public boolean isEnabled() { return enabled; }
+
+        // Seconds the error rate thresholds look back
+        public int getErrorWindow() { return errorWindow; }
+
+        // Seconds the latency thresholds look back
+        public int getLatencyWindow() { return latencyWindow; }
+
+        // Consecutive seconds a threshold must fail before the run is stopped
+        public int getSustain() { return sustain; }
+
+        // Seconds at the start of the run in which nothing is stopped
+        public int getGrace() { return grace; }
+
+        // Requests a window needs before its thresholds are judged
+        public int getMinRequests() { return minRequests; }
+
+        @Override
+        public String toString() {
+            if (!enabled) {
+                return "off";
+            }
+            return String.format(Locale.ROOT, "errors over %ds, latency over %ds, sustained %ds, after %ds, from %d requests",
+                    errorWindow, latencyWindow, sustain, grace, minRequests);
+        }
+    }
+
+    // One threshold checked over a window
+    private static final class Rule {
+        final K6Metric metric;
+        final String expression;
+        final String aggregation;
+        final double percentile;
+        final String operator;
+        final double limit;
+        final MetricsAggregator.Window window;
+        long breachedSeconds;
+        double actual = Double.NaN;
+
+        Rule(K6Metric metric, String expression, Matcher matcher, MetricsAggregator.Window window) {
+            this.metric = metric;
+            this.expression = expression;
+            this.aggregation = matcher.group(1);
+            this.percentile = matcher.group(2) == null ? Double.NaN : Double.parseDouble(matcher.group(2));
+            this.operator = matcher.group(3);
+            this.limit = Double.parseDouble(matcher.group(4));
+            this.window = window;
+        }
+
+        // NaN when the window has no samples for the metric
+        double measure() {
+            if (metric == K6Metric.HTTP_REQ_FAILED) {
+                return window.getFailureRate();
+            }
+            if (metric == K6Metric.SUCCESS_RATE) {
+                return window.getSuccessRate();
+            }
+            LatencyHistogram histogram = metric == K6Metric.RESPONSE_TIMES
+                    ? window.getResponseTimes() : window.getDurations();
+            if (histogram.getTotalCount() == 0) {
+                return Double.NaN;
+            }
+            switch (aggregation) {
+                case "avg":
+                    return histogram.getMean() / 1000.0;
+                case "min":
+                    return MetricsAggregator.toMillis(histogram.getMin());
+                case "max":
+                    return MetricsAggregator.toMillis(histogram.getMax());
+                case "med":
+                    return MetricsAggregator.toMillis(histogram.valueAtPercentile(50));
+                default:
+                    return MetricsAggregator.toMillis(histogram.valueAtPercentile(percentile));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return metric.getMetricName() + " " + expression + " over the last " + window.getSeconds() + "s";
+        }
+    }
+
+    // Fills the windows from the metrics of the run, e.g. ShardedRun::fillWindows
+    public interface WindowSource {
+        void fillWindows(MetricsAggregator.Window... windows);
+    }
+
+    private final WindowSource source;
+    private final Settings settings;
+    private final Consumer<String> onAbort;
+    private final MetricsAggregator.Window errorWindow;
+    private final MetricsAggregator.Window latencyWindow;
+    private final MetricsAggregator.Window[] windows;
+    private final List<Rule> rules = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private long firstSecond = Long.MIN_VALUE;
+    private long lastSecond = Long.MIN_VALUE;
+    private volatile String reason;
+
+    // Thresholds in the "metric: expression" form of ThresholdEvaluator.fromScript; onAbort
+    // is called once, on the controller's thread, with the reason the run should stop
+    public AbortController(List<String> thresholds, Settings settings, WindowSource source, Consumer<String> onAbort) {
+        this.source = source;
+        this.settings = settings;
+        this.onAbort = onAbort;
+        this.errorWindow = new MetricsAggregator.Window(settings.getErrorWindow());
+        this.latencyWindow = new MetricsAggregator.Window(settings.getLatencyWindow());
+        this.windows = new MetricsAggregator.Window[] {errorWindow, latencyWindow};
+        if (settings.isEnabled()) {
+            for (String threshold : thresholds) {
+                addRule(threshold);
+            }
+        }
+        if (rules.isEmpty()) {
+            scheduler = null;
+            return;
+        }
+        System.out.println("Early abort watching " + rules.size() + " threshold(s): " + settings);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "abort-controller");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void addRule(String threshold) {
+        int separator = threshold.indexOf(": ");
+        if (separator < 0) {
+            return;
+        }
+        K6Metric metric = K6Metric.fromName(threshold.substring(0, separator).trim());
+        String expression = threshold.substring(separator + 2).trim();
+        Matcher matcher = ThresholdEvaluator.EXPRESSION.matcher(expression);
+        if (metric == null || !matcher.matches()) {
+            return;
+        }
+        String aggregation = matcher.group(1);
+        if (metric == K6Metric.HTTP_REQ_FAILED || metric == K6Metric.SUCCESS_RATE) {
+            if (aggregation.equals("rate")) {
+                rules.add(new Rule(metric, expression, matcher, errorWindow));
+            }
+        } else if (metric == K6Metric.HTTP_REQ_DURATION || metric == K6Metric.RESPONSE_TIMES) {
+            if (!aggregation.equals("count") && !aggregation.equals("rate")) {
+                rules.add(new Rule(metric, expression, matcher, latencyWindow));
+            }
+        }
+    }
+
+    // Whether any threshold can be watched; without one the controller does nothing
+    public boolean isWatching() {
+        return scheduler != null;
+    }
+
+    // Why the run was stopped, or null if it was not
+    public String getReason() {
+        return reason;
+    }
+
+    // Once per new complete second of the stream; a repeated call for the same second does
+    // nothing, so tests can drive it alongside the scheduler
+    synchronized void check() {
+        try {
+            // Both windows in one call: a sharded run merges its shards once per check
+            source.fillWindows(windows);
+            long second = Math.max(errorWindow.getEndSecond(), latencyWindow.getEndSecond());
+            if (second == Long.MIN_VALUE || second <= lastSecond) {
+                return;
+            }
+            if (firstSecond == Long.MIN_VALUE) {
+                firstSecond = second;
+            }
+            long elapsed = lastSecond == Long.MIN_VALUE ? 1 : second - lastSecond;
+            lastSecond = second;
+            boolean inGrace = second - firstSecond + 1 <= settings.getGrace();
+            for (Rule rule : rules) {
+                rule.actual = rule.measure();
+                boolean breached = !inGrace && rule.window.getRequests() >= settings.getMinRequests()
+                        && !Double.isNaN(rule.actual) && !ThresholdEvaluator.compare(rule.actual, rule.operator, rule.limit);
+                rule.breachedSeconds = breached ? rule.breachedSeconds + elapsed : 0;
+                if (rule.breachedSeconds >= settings.getSustain()) {
+                    abort(rule);
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Early abort check failed: " + e.getMessage());
+        }
+    }
+
+    private void abort(Rule rule) {
+        reason = String.format(Locale.ROOT, "%s failed for %ds (actual %.4g)", rule, rule.breachedSeconds, rule.actual);
+        System.out.println("Aborting run early: " + reason);
+        scheduler.shutdown();
+        onAbort.accept(reason);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
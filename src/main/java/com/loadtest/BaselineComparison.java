@@ -0,0 +1,205 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares a run with its baseline, metric by metric:
+ *  - latency (http_req_duration and response_times): Mann-Whitney U over the whole
+ *    distribution for the median, and for p95/p99 a two-proportion test on the share
+ *    of requests slower than the baseline's percentile,
+ *  - throughput: Welch's t-test on the requests per second of the full seconds,
+ *  - http_req_failed, success_rate and error_counter: two-proportion z-tests.
+ *
+ * A finding is a regression only if it is significant at the tolerance's alpha and
+ * worse than the tolerance. Everything works on histograms and per-second totals, so a
+ * comparison takes milliseconds however long the runs were.
+ */
+public class BaselineComparison {
+
+    public static class Finding {
+        private final String metric;
+        private final String statistic;
+        private final double baselineValue;
+        private final double candidateValue;
+        private final String change;
+        private final double pValue;
+        private final boolean regression;
+
+        Finding(String metric, String statistic, double baselineValue, double candidateValue, String change,
+                double pValue, boolean regression) {
+            this.metric = metric;
+            this.statistic = statistic;
+            this.baselineValue = baselineValue;
+            this.candidateValue = candidateValue;
+            this.change = change;
+            this.pValue = pValue;
+            this.regression = regression;
+        }
+
+        public String getMetric() { return metric; }
+        public String getStatistic() { return statistic; }
+        public double getBaselineValue() { return baselineValue; }
+        public double getCandidateValue() { return candidateValue; }
+        public double getPValue() { return pValue; }
+        public boolean isRegression() { return regression; }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %s %s: %.4g -> %.4g (%s, p=%.2g)", regression ? "REGRESSION" : "ok",
+                    metric, statistic, baselineValue, candidateValue, change, pValue);
+        }
+    }
+
+    private final RunSummary baseline;
+    private final RunSummary candidate;
+    private final RegressionTolerance tolerance;
+    private final List<Finding> findings = new ArrayList<>();
+
+    private BaselineComparison(RunSummary baseline, RunSummary candidate, RegressionTolerance tolerance) {
+        this.baseline = baseline;
+        this.candidate = candidate;
+        this.tolerance = tolerance;
+    }
+
+    public static BaselineComparison compare(StoredRun baseline, StoredRun candidate, RegressionTolerance tolerance) {
+        BaselineComparison comparison = new BaselineComparison(baseline.getSummary(), candidate.getSummary(), tolerance);
+        comparison.compareLatency(K6Metric.HTTP_REQ_DURATION.getMetricName(), baseline.getDurations(), candidate.getDurations());
+        comparison.compareLatency(K6Metric.RESPONSE_TIMES.getMetricName(), baseline.getResponseTimes(), candidate.getResponseTimes());
+        comparison.compareThroughput(baseline, candidate);
+        comparison.compareRates(baseline, candidate);
+        return comparison;
+    }
+
+    private void compareLatency(String metric, LatencyHistogram base, LatencyHistogram current) {
+        if (base.getTotalCount() == 0 || current.getTotalCount() == 0) {
+            return;
+        }
+        double[] mannWhitney = Statistics.mannWhitneyGreater(base, current);
+        double baseMedian = MetricsAggregator.toMillis(base.valueAtPercentile(50));
+        double currentMedian = MetricsAggregator.toMillis(current.valueAtPercentile(50));
+        double medianChange = percentChange(baseMedian, currentMedian);
+        findings.add(new Finding(metric, String.format("median (P(slower)=%.2f)", mannWhitney[1]), baseMedian,
+                currentMedian, signedPercent(medianChange), mannWhitney[0],
+                significant(mannWhitney[0]) && medianChange > tolerance.getLatencyPercent()));
+
+        for (double percentile : new double[]{95, 99}) {
+            long baseValue = base.valueAtPercentile(percentile);
+            // Share of requests slower than the baseline's percentile: about 1 - percentile/100 for the baseline
+            double baseSlower = base.getTotalCount() * (1 - base.fractionAtOrBelow(baseValue));
+            double currentSlower = current.getTotalCount() * (1 - current.fractionAtOrBelow(baseValue));
+            double p = Statistics.proportionGreater(baseSlower, base.getTotalCount(), currentSlower, current.getTotalCount());
+            double baseMillis = MetricsAggregator.toMillis(baseValue);
+            double currentMillis = MetricsAggregator.toMillis(current.valueAtPercentile(percentile));
+            double change = percentChange(baseMillis, currentMillis);
+            findings.add(new Finding(metric, "p(" + (int) percentile + ")", baseMillis, currentMillis,
+                    signedPercent(change), p, significant(p) && change > tolerance.getLatencyPercent()));
+        }
+    }
+
+    private void compareThroughput(StoredRun base, StoredRun current) {
+        double[] baseRps = fullSeconds(base);
+        double[] currentRps = fullSeconds(current);
+        double p = Statistics.welchLess(baseRps, currentRps);
+        if (Double.isNaN(p)) {
+            return;
+        }
+        double baseMean = Statistics.mean(baseRps);
+        double currentMean = Statistics.mean(currentRps);
+        double change = percentChange(baseMean, currentMean);
+        findings.add(new Finding("http_reqs", "RPS", baseMean, currentMean, signedPercent(change), p,
+                significant(p) && -change > tolerance.getThroughputPercent()));
+    }
+
+    // Requests per second without the first and last second, which are usually partial
+    private static double[] fullSeconds(StoredRun run) {
+        long[] requests = run.getRequests();
+        if (requests.length <= 2) {
+            return new double[0];
+        }
+        double[] values = new double[requests.length - 2];
+        for (int i = 1; i < requests.length - 1; i++) {
+            values[i - 1] = requests[i];
+        }
+        return values;
+    }
+
+    private void compareRates(StoredRun base, StoredRun current) {
+        // http_req_failed: share of failed requests
+        compareProportion(K6Metric.HTTP_REQ_FAILED.getMetricName(), "rate",
+                base.getSummary().getFailedRequests(), base.getFailedSamples(),
+                current.getSummary().getFailedRequests(), current.getFailedSamples(), false);
+        // success_rate: compare the share of unsuccessful checks, report the success rate
+        compareProportion(K6Metric.SUCCESS_RATE.getMetricName(), "rate",
+                base.getSuccessSamples() - base.getSuccesses(), base.getSuccessSamples(),
+                current.getSuccessSamples() - current.getSuccesses(), current.getSuccessSamples(), true);
+        // error_counter: errors per request
+        compareProportion(K6Metric.ERROR_COUNTER.getMetricName(), "per request",
+                Math.min(base.getTotalErrors(), base.getSummary().getTotalRequests()), base.getSummary().getTotalRequests(),
+                Math.min(current.getTotalErrors(), current.getSummary().getTotalRequests()), current.getSummary().getTotalRequests(),
+                false);
+    }
+
+    private void compareProportion(String metric, String statistic, double baseBad, double baseTotal,
+                                   double currentBad, double currentTotal, boolean reportComplement) {
+        // Nothing to compare if neither run recorded the metric, or neither had a single failure
+        if (baseTotal <= 0 || currentTotal <= 0 || baseBad + currentBad == 0) {
+            return;
+        }
+        double p = Statistics.proportionGreater(baseBad, baseTotal, currentBad, currentTotal);
+        double baseRate = baseBad / baseTotal;
+        double currentRate = currentBad / currentTotal;
+        double points = (currentRate - baseRate) * 100;
+        boolean regression = significant(p) && points > tolerance.getErrorRatePoints();
+        if (reportComplement) {
+            findings.add(new Finding(metric, statistic, 1 - baseRate, 1 - currentRate,
+                    String.format("%+.2f pts", -points), p, regression));
+        } else {
+            findings.add(new Finding(metric, statistic, baseRate, currentRate,
+                    String.format("%+.2f pts", points), p, regression));
+        }
+    }
+
+    private boolean significant(double p) {
+        return !Double.isNaN(p) && p < tolerance.getAlpha();
+    }
+
+    private static double percentChange(double base, double current) {
+        if (base == 0) {
+            return current == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return (current - base) / base * 100;
+    }
+
+    private static String signedPercent(double change) {
+        return String.format("%+.1f%%", change);
+    }
+
+    public RunSummary getBaseline() { return baseline; }
+    public RunSummary getCandidate() { return candidate; }
+
+    public List<Finding> getFindings() {
+        return Collections.unmodifiableList(findings);
+    }
+
+    public boolean isRegression() {
+        for (Finding finding : findings) {
+            if (finding.isRegression()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append("Compared with baseline run #").append(baseline.getId())
+                .append(" (tolerance: ").append(tolerance).append("):\n");
+        for (Finding finding : findings) {
+            text.append("  ").append(finding).append("\n");
+        }
+        text.append(isRegression() ? "Result: REGRESSION against the baseline\n" : "Result: no regression\n");
+        return text.toString();
+    }
+}
@@ -0,0 +1,213 @@
+package com.loadtest;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * The calibrate action: starts a {@link CalibrationServer}, generates the normal script
+ * for one request against it with the given load profile, and runs it like any other
+ * test. When k6 is done, the result's report starts with what the server injected next
+ * to what k6 measured:
+ *  - generator overhead: k6's http_req_duration minus the server's service time, by percentile,
+ *  - the RPS ceiling: achieved against target rate, dropped iterations, and for closed loop
+ *    the rate the VUs can reach at all with their think time,
+ *  - coordinated omission: the latency an open-model client at the same rate would have
+ *    seen through the injected pauses, against what the run recorded.
+ */
+public class Calibration {
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+    // Arrivals simulated for the open-model estimate; longer runs are sampled evenly
+    private static final int MAX_SIMULATED_REQUESTS = 2_000_000;
+
+    private Calibration() {
+    }
+
+    // Queues the calibration run; the server stops when the run ends, however it ends
+    public static TestRun start(ScriptService scriptService, CalibrationTarget target, LoadProfile profile,
+                                ScriptOptions options, String testName, RunListener listener) throws Exception {
+        CalibrationServer server = CalibrationServer.start(target);
+        TestRun run;
+        try {
+            String script = scriptService.generateScript("curl " + server.getUrl(), testName, profile,
+                    List.of(), options);
+            // Never aborted early: the target's errors and stalls are what is being measured
+            run = scriptService.runTest(script, testName, ShardPlan.single(), 0, AbortController.Settings.off(),
+                    new CalibrationListener(server, profile, listener));
+        } catch (Exception e) {
+            server.close();
+            throw e;
+        }
+        if (run == null) {
+            server.close();
+            return null;
+        }
+        RunManager runManager = scriptService.getRunManager();
+        Consumer<TestRun> stopper = new Consumer<TestRun>() {
+            @Override
+            public void accept(TestRun changed) {
+                if (changed == run && changed.getState().isFinished()) {
+                    runManager.removeListener(this);
+                    server.close();
+                }
+            }
+        };
+        runManager.addListener(stopper);
+        if (run.getState().isFinished()) {
+            stopper.accept(run);
+        }
+        return run;
+    }
+
+    static String report(CalibrationServer server, LoadProfile profile, RunResult result) {
+        CalibrationTarget target = server.getTarget();
+        LatencyHistogram served = server.getServiceTimes();
+        LatencyHistogram measured = result.getDurations();
+        LiveMetrics metrics = result.getMetrics();
+        StringBuilder text = new StringBuilder();
+        text.append("Calibration against the built-in target (").append(target).append("):\n");
+        if (served.getTotalCount() == 0 || measured.getTotalCount() == 0) {
+            text.append("  No requests were measured, so there is nothing to compare.\n");
+            return text.toString();
+        }
+
+        // Generator overhead by percentile: what k6 saw beyond what the server did
+        text.append(String.format(Locale.ROOT, "  %-8s %12s %12s %12s%n", "", "server", "k6", "overhead"));
+        for (double percentile : PERCENTILES) {
+            latencyRow(text, "p(" + format(percentile) + ")", served.valueAtPercentile(percentile),
+                    measured.valueAtPercentile(percentile));
+        }
+        latencyRow(text, "mean", Math.round(served.getMean()), Math.round(measured.getMean()));
+        latencyRow(text, "max", served.getMax(), measured.getMax());
+
+        long requests = metrics.getTotalRequests();
+        text.append(String.format(Locale.ROOT,
+                "  Requests: %d served, %d measured by k6; errors injected %.2f%%, k6 counted %.2f%% failed%n",
+                server.getRequestCount(), requests, ratio(server.getErrorCount(), server.getRequestCount()) * 100,
+                ratio(metrics.getFailedRequests(), requests) * 100));
+
+        // RPS ceiling
+        double rps = metrics.getElapsedSeconds() > 0 ? (double) requests / metrics.getElapsedSeconds() : 0;
+        text.append(String.format(Locale.ROOT, "  Throughput: %.1f RPS", rps));
+        switch (profile.getExecutor()) {
+            case CONSTANT_ARRIVAL_RATE:
+                // Generated scripts use a time unit of 1s
+                double targetRps = profile.getRate();
+                text.append(String.format(Locale.ROOT, " of %.1f targeted, %d dropped iterations", targetRps,
+                        metrics.getDroppedIterations()));
+                if (metrics.getDroppedIterations() > 0 || rps < targetRps * 0.95) {
+                    text.append(" - the generator or its VU pool is the ceiling at this rate");
+                }
+                break;
+            case RAMPING_ARRIVAL_RATE:
+                text.append(String.format(Locale.ROOT, ", %d dropped iterations", metrics.getDroppedIterations()));
+                if (metrics.getDroppedIterations() > 0) {
+                    text.append(" - the generator or its VU pool fell behind the ramp");
+                }
+                break;
+            default:
+                // Each VU waits for its response and then sleeps, so the rate is capped by latency
+                double ceiling = profile.getVus() / (profile.getThinkTimeSeconds() + measured.getMean() / 1e6);
+                text.append(String.format(Locale.ROOT,
+                        "; %d VUs with %ss think time can send at most %.1f RPS at this latency",
+                        profile.getVus(), format(profile.getThinkTimeSeconds()), ceiling));
+        }
+        text.append("\n");
+
+        // Coordinated omission: replay the run's rate as an open model through the same pauses
+        LatencyHistogram openModel = simulateOpenModel(target, server.getFirstRequestMicros(),
+                server.getActiveSeconds(), rps);
+        if (openModel.getTotalCount() > 0) {
+            long expected = openModel.valueAtPercentile(99);
+            long recorded = served.valueAtPercentile(99);
+            text.append(String.format(Locale.ROOT,
+                    "  Coordinated omission: an open-model client at %.1f RPS would see p(99) %.2f ms, the run recorded %.2f ms",
+                    rps, MetricsAggregator.toMillis(expected), MetricsAggregator.toMillis(recorded)));
+            if (!profile.isOpenModel() && expected > recorded * 1.1) {
+                text.append(String.format(Locale.ROOT,
+                        " - the closed-loop model hides %.2f ms because stalled VUs stop sending",
+                        MetricsAggregator.toMillis(expected - recorded)));
+            }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    // Service times a constant-rate client would get over the same stretch of the server's pause cycle
+    static LatencyHistogram simulateOpenModel(CalibrationTarget target, long startMicros, double seconds, double rps) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long total = (long) (seconds * rps);
+        if (total <= 0) {
+            return histogram;
+        }
+        long simulated = Math.min(total, MAX_SIMULATED_REQUESTS);
+        double intervalMicros = seconds * 1e6 / simulated;
+        Random random = new Random(42);
+        for (long i = 0; i < simulated; i++) {
+            long arrival = startMicros + (long) (i * intervalMicros);
+            histogram.record(target.responseDelayMicros(arrival, target.getLatency().sampleMicros(random)));
+        }
+        return histogram;
+    }
+
+    private static void latencyRow(StringBuilder text, String label, long servedMicros, long measuredMicros) {
+        text.append(String.format(Locale.ROOT, "  %-8s %9.2f ms %9.2f ms %+9.2f ms%n", label,
+                MetricsAggregator.toMillis(servedMicros), MetricsAggregator.toMillis(measuredMicros),
+                MetricsAggregator.toMillis(measuredMicros - servedMicros)));
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    // Passes everything on, and puts the calibration summary in front of the run's report
+    private static class CalibrationListener implements RunListener {
+        private final CalibrationServer server;
+        private final LoadProfile profile;
+        private final RunListener delegate;
+
+        CalibrationListener(CalibrationServer server, LoadProfile profile, RunListener delegate) {
+            this.server = server;
+            this.profile = profile;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void status(String message) {
+            delegate.status(message);
+        }
+
+        @Override
+        public void started(String testName) {
+            server.resetStats();
+            delegate.started(testName);
+        }
+
+        @Override
+        public void outputLine(String line) {
+            delegate.outputLine(line);
+        }
+
+        @Override
+        public void liveMetrics(LiveMetrics metrics) {
+            delegate.liveMetrics(metrics);
+        }
+
+        @Override
+        public void finished(RunResult result) {
+            String calibration = report(server, profile, result);
+            System.out.print(calibration);
+            delegate.finished(result.withReportPrefix(calibration));
+        }
+
+        @Override
+        public void failed(Exception error) {
+            delegate.failed(error);
+        }
+    }
+}
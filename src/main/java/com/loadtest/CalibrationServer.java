@@ -0,0 +1,377 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/1.1 target for calibration runs, bound to the loopback interface.
+ * Serves every request according to a {@link CalibrationTarget} and records how long
+ * it actually held each one, so the latency k6 reports can be set against it.
+ *
+ * One selector thread does all socket I/O; delayed responses are released by a timer
+ * thread and written by the selector, so thousands of connections waiting on injected
+ * latency cost no threads. Keep-alive is supported; requests on one connection are
+ * answered in order, one at a time.
+ */
+public class CalibrationServer implements Closeable {
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+    private static final int MAX_REQUEST_BYTES = 1024 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final CalibrationTarget target;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final int port;
+    private final Thread selectorThread;
+    private final ScheduledExecutorService timer;
+    // Connections whose delayed response is due; drained by the selector thread
+    private final Queue<Connection> due = new ConcurrentLinkedQueue<>();
+    private final byte[] okResponse;
+    private final byte[] errorResponse;
+    // Only used on the selector thread
+    private final Random random = new Random(ThreadLocalRandom.current().nextLong());
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running = true;
+
+    // Guarded by this
+    private final LatencyHistogram serviceTimes = new LatencyHistogram();
+    private long requests;
+    private long errors;
+    private long firstRequestNanos;
+    private long lastResponseNanos;
+
+    private CalibrationServer(CalibrationTarget target) throws IOException {
+        this.target = target;
+        this.okResponse = response("200 OK", payload(target.getPayloadBytes()));
+        this.errorResponse = response("500 Internal Server Error",
+                "injected error".getBytes(StandardCharsets.US_ASCII));
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            port = serverChannel.socket().getLocalPort();
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "calibration-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::serve, "calibration-server");
+        selectorThread.setDaemon(true);
+    }
+
+    public static CalibrationServer start(CalibrationTarget target) throws IOException {
+        CalibrationServer server = new CalibrationServer(target);
+        server.selectorThread.start();
+        System.out.println("Calibration target listening on " + server.getUrl() + " (" + target + ")");
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort() + "/calibrate";
+    }
+
+    public CalibrationTarget getTarget() {
+        return target;
+    }
+
+    // Time the server held each answered request, in microseconds; a copy
+    public synchronized LatencyHistogram getServiceTimes() {
+        return serviceTimes.copy();
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    public synchronized long getErrorCount() {
+        return errors;
+    }
+
+    // When the first request arrived, in microseconds after the server started
+    public synchronized long getFirstRequestMicros() {
+        return requests == 0 ? 0 : (firstRequestNanos - startNanos) / 1000;
+    }
+
+    // From the first request to the last response, in seconds
+    public synchronized double getActiveSeconds() {
+        return requests == 0 ? 0 : (lastResponseNanos - firstRequestNanos) / 1e9;
+    }
+
+    // Drops everything recorded so far, e.g. requests made before the measured run
+    public synchronized void resetStats() {
+        serviceTimes.reset();
+        requests = 0;
+        errors = 0;
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = due.poll()) != null) {
+                    respond(connection);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection selected = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            write(selected);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(selected);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Calibration server stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (!connection.in.hasRemaining()) {
+                if (connection.in.capacity() >= MAX_REQUEST_BYTES) {
+                    connection.close();
+                    return;
+                }
+                connection.in = grow(connection.in, connection.in.capacity() * 2);
+            }
+            if (connection.channel.read(connection.in) < 0) {
+                connection.close();
+                return;
+            }
+            nextRequest(connection);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    // Takes the next complete request off the input buffer and schedules its response
+    private void nextRequest(Connection connection) {
+        if (connection.busy) {
+            return;
+        }
+        ByteBuffer in = connection.in;
+        int headerEnd = indexOf(in.array(), in.position(), HEADER_END);
+        if (headerEnd < 0) {
+            return;
+        }
+        String headers = new String(in.array(), 0, headerEnd, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        int length = headerEnd + HEADER_END.length + contentLength(headers);
+        if (length > MAX_REQUEST_BYTES) {
+            connection.close();
+            return;
+        }
+        if (in.position() < length) {
+            if (in.capacity() < length) {
+                connection.in = grow(in, length);
+            }
+            return;
+        }
+        // Drop the request from the buffer, keeping whatever follows it
+        in.flip();
+        in.position(length);
+        in.compact();
+
+        connection.busy = true;
+        connection.closeAfterResponse = headers.contains("\r\nconnection: close");
+        connection.error = random.nextDouble() < target.getErrorRate();
+        connection.arrivalNanos = System.nanoTime();
+        long delay = target.responseDelayMicros((connection.arrivalNanos - startNanos) / 1000,
+                target.getLatency().sampleMicros(random));
+        if (delay <= 0) {
+            respond(connection);
+        } else {
+            timer.schedule(() -> {
+                due.add(connection);
+                selector.wakeup();
+            }, delay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private void respond(Connection connection) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (requests == 0) {
+                firstRequestNanos = connection.arrivalNanos;
+            }
+            requests++;
+            if (connection.error) {
+                errors++;
+            }
+            lastResponseNanos = now;
+            serviceTimes.record((now - connection.arrivalNanos) / 1000);
+        }
+        connection.out = ByteBuffer.wrap(connection.error ? errorResponse : okResponse);
+        write(connection);
+    }
+
+    private void write(Connection connection) {
+        try {
+            connection.channel.write(connection.out);
+            if (connection.out.hasRemaining()) {
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.out = null;
+            connection.busy = false;
+            if (connection.closeAfterResponse) {
+                connection.close();
+                return;
+            }
+            connection.key.interestOps(SelectionKey.OP_READ);
+            nextRequest(connection);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private static int contentLength(String headers) {
+        int start = headers.indexOf("\r\ncontent-length:");
+        if (start < 0) {
+            return 0;
+        }
+        start += "\r\ncontent-length:".length();
+        int end = headers.indexOf("\r\n", start);
+        try {
+            return Math.max(0, Integer.parseInt(headers.substring(start, end < 0 ? headers.length() : end).trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int indexOf(byte[] data, int limit, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= limit - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(capacity, buffer.capacity()), MAX_REQUEST_BYTES));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static byte[] payload(int bytes) {
+        byte[] body = new byte[bytes];
+        Arrays.fill(body, (byte) 'x');
+        return body;
+    }
+
+    private static byte[] response(String status, byte[] body) {
+        byte[] head = ("HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] response = Arrays.copyOf(head, head.length + body.length);
+        System.arraycopy(body, 0, response, head.length, body.length);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        timer.shutdownNow();
+        selector.wakeup();
+        try {
+            selectorThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the calibration server: " + e.getMessage());
+        }
+        System.out.println("Calibration target on port " + port + " stopped");
+    }
+
+    private static class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        ByteBuffer out;
+        // A response is pending; later requests wait in the input buffer
+        boolean busy;
+        boolean closeAfterResponse;
+        boolean error;
+        long arrivalNanos;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+}
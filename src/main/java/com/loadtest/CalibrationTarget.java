@@ -0,0 +1,164 @@
+package com.loadtest;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the calibration server does to each request: how long it takes, how often it
+ * fails, how big the response is and when the whole server stalls. Written as
+ * "latency=lognormal:20:0.5, errors=1, payload=1024, pause=500ms/10s".
+ *
+ * A pause models a stop-the-world stall (a GC pause, a full disk): every 'every' the
+ * server stops serving for 'pause', and requests in flight finish that much later.
+ */
+public class CalibrationTarget {
+    public static final String DEFAULT = "latency=fixed:20, errors=0, payload=1024, pause=0";
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(\\.\\d+)?)(ms|s|m)?");
+    // Keeps a single response small enough to build once and serve from memory
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int payloadBytes;
+    private final long pauseMicros;
+    private final long pauseEveryMicros;
+
+    public CalibrationTarget(LatencyDistribution latency, double errorRate, int payloadBytes,
+                             long pauseMillis, long pauseEveryMillis) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.payloadBytes = payloadBytes;
+        this.pauseMicros = pauseEveryMillis > 0 ? pauseMillis * 1000 : 0;
+        this.pauseEveryMicros = pauseEveryMillis * 1000;
+    }
+
+    public static CalibrationTarget parse(String text) throws Exception {
+        String trimmed = text == null || text.isBlank() ? DEFAULT : text.trim();
+        LatencyDistribution latency = LatencyDistribution.fixed(20);
+        double errorRate = 0;
+        int payloadBytes = 1024;
+        long pauseMillis = 0;
+        long pauseEveryMillis = 0;
+        for (String part : trimmed.split("\\s*,\\s*")) {
+            String[] pair = part.split("\\s*=\\s*", 2);
+            if (pair.length != 2) {
+                throw new Exception("Invalid calibration target '" + part + "'. Use e.g. " + DEFAULT);
+            }
+            switch (pair[0].toLowerCase(Locale.ROOT)) {
+                case "latency":
+                    latency = LatencyDistribution.parse(pair[1]);
+                    break;
+                case "errors":
+                    errorRate = number("errors", pair[1]) / 100;
+                    if (errorRate > 1) {
+                        throw new Exception("errors is a percentage between 0 and 100.");
+                    }
+                    break;
+                case "payload":
+                    double bytes = number("payload", pair[1]);
+                    if (bytes > MAX_PAYLOAD_BYTES) {
+                        throw new Exception("payload can be at most " + MAX_PAYLOAD_BYTES + " bytes.");
+                    }
+                    payloadBytes = (int) bytes;
+                    break;
+                case "pause":
+                    // "500ms/10s": 500 ms every 10 seconds; "0" turns pauses off
+                    String[] pause = pair[1].split("\\s*/\\s*");
+                    if (pause.length == 1 && millis(pause[0]) == 0) {
+                        pauseMillis = pauseEveryMillis = 0;
+                        break;
+                    }
+                    if (pause.length != 2) {
+                        throw new Exception("Write pauses as length/interval, e.g. pause=500ms/10s");
+                    }
+                    pauseMillis = millis(pause[0]);
+                    pauseEveryMillis = millis(pause[1]);
+                    if (pauseEveryMillis <= pauseMillis) {
+                        throw new Exception("The pause interval must be longer than the pause.");
+                    }
+                    break;
+                default:
+                    throw new Exception("Unknown calibration setting '" + pair[0]
+                            + "'. Use latency, errors, payload or pause.");
+            }
+        }
+        return new CalibrationTarget(latency, errorRate, payloadBytes, pauseMillis, pauseEveryMillis);
+    }
+
+    private static double number(String name, String value) throws Exception {
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed < 0) {
+                throw new Exception(name + " cannot be negative.");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new Exception(name + " must be a number.");
+        }
+    }
+
+    // "500ms", "10s", "1m" or plain milliseconds
+    private static long millis(String value) throws Exception {
+        Matcher matcher = DURATION.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new Exception("Invalid duration '" + value + "'. Use values like 500ms or 10s.");
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(3) == null ? "ms" : matcher.group(3);
+        switch (unit) {
+            case "s":
+                return Math.round(amount * 1000);
+            case "m":
+                return Math.round(amount * 60_000);
+            default:
+                return Math.round(amount);
+        }
+    }
+
+    // Time from arrival to response for a request that needs serviceMicros of work,
+    // arriving arrivalMicros after the server started. Work stops during pauses.
+    public long responseDelayMicros(long arrivalMicros, long serviceMicros) {
+        if (pauseMicros == 0) {
+            return serviceMicros;
+        }
+        long time = arrivalMicros;
+        long remaining = serviceMicros;
+        while (true) {
+            long cycleStart = time - Math.floorMod(time, pauseEveryMicros);
+            long pauseStart = cycleStart + pauseEveryMicros - pauseMicros;
+            if (time >= pauseStart) {
+                // Stalled until the pause ends, which is where the next cycle starts
+                time = cycleStart + pauseEveryMicros;
+                continue;
+            }
+            if (time + remaining <= pauseStart) {
+                return time + remaining - arrivalMicros;
+            }
+            remaining -= pauseStart - time;
+            time = cycleStart + pauseEveryMicros;
+        }
+    }
+
+    public LatencyDistribution getLatency() { return latency; }
+
+    // Share of responses answered with a 500, between 0 and 1
+    public double getErrorRate() { return errorRate; }
+
+    public int getPayloadBytes() { return payloadBytes; }
+    public long getPauseMillis() { return pauseMicros / 1000; }
+    public long getPauseEveryMillis() { return pauseEveryMicros / 1000; }
+
+    public boolean hasPauses() {
+        return pauseMicros > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "latency=%s, errors=%s, payload=%d, pause=%s", latency,
+                errorRate * 100 == Math.rint(errorRate * 100) ? String.valueOf((long) (errorRate * 100))
+                        : String.valueOf(errorRate * 100),
+                payloadBytes, hasPauses() ? getPauseMillis() + "ms/" + getPauseEveryMillis() + "ms" : "0");
+    }
+}
@@ -0,0 +1,557 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches for the highest arrival rate a service sustains within its thresholds. Runs
+ * short constant-arrival-rate probes one after another: the rate doubles until a probe
+ * fails, then a binary search narrows the gap between the best passing and the lowest
+ * failing rate down to the configured precision.
+ *
+ * Each probe leaves its warm-up out of the result. A probe passes when its thresholds
+ * pass on the rest, it reaches 95% of the target rate and drops at most 1% of its
+ * iterations. Probes that are clearly failing (a latency or error threshold broken by
+ * a wide margin for a few seconds, or many dropped iterations) are stopped early.
+ * That is this class's own {@link EarlyStop}: probes run with {@link AbortController} off,
+ * so only one rule decides when a probe ends.
+ */
+public class CapacityFinder {
+    private static final double MIN_ACHIEVED_SHARE = 0.95;
+    private static final double MAX_DROPPED_SHARE = 0.01;
+    // Early stop: a live value must break its threshold by this factor on this many snapshots in a row
+    private static final double EARLY_STOP_MARGIN = 1.2;
+    private static final int EARLY_STOP_SNAPSHOTS = 4;
+    private static final double EARLY_STOP_DROPPED_SHARE = 0.05;
+    private static final Pattern LIVE_THRESHOLD = Pattern.compile(
+            "\\s*(http_req_duration|http_req_failed|success_rate)\\s*:\\s*(med|rate|p\\((50|95|99)\\))\\s*(<=|<|>=|>)\\s*(\\d+(?:\\.\\d+)?)\\s*");
+
+    // Generates the probe script for one load profile
+    public interface ProbeScript {
+        String generate(LoadProfile profile) throws Exception;
+    }
+
+    public static class Settings {
+        public static final String DEFAULT = "max=10000, probe=30s, warmup=10s, precision=5, probes=12";
+
+        private final int maxRate;
+        private final long probeSeconds;
+        private final long warmupSeconds;
+        private final double precisionPercent;
+        private final int maxProbes;
+
+        public Settings(int maxRate, long probeSeconds, long warmupSeconds, double precisionPercent, int maxProbes) {
+            this.maxRate = maxRate;
+            this.probeSeconds = probeSeconds;
+            this.warmupSeconds = warmupSeconds;
+            this.precisionPercent = precisionPercent;
+            this.maxProbes = maxProbes;
+        }
+
+        // "max=10000, probe=30s, warmup=10s, precision=5, probes=12"; missing settings keep their default
+        public static Settings parse(String text) throws Exception {
+            int maxRate = 10000;
+            long probeSeconds = 30;
+            long warmupSeconds = 10;
+            double precision = 5;
+            int maxProbes = 12;
+            String trimmed = text == null ? "" : text.trim();
+            if (!trimmed.isEmpty()) {
+                for (String part : trimmed.split("\\s*,\\s*")) {
+                    String[] pair = part.split("\\s*=\\s*", 2);
+                    if (pair.length != 2) {
+                        throw new Exception("Invalid capacity search setting '" + part + "'. Use e.g. " + DEFAULT);
+                    }
+                    switch (pair[0].toLowerCase(Locale.ROOT)) {
+                        case "max":
+                            maxRate = (int) positive("max", pair[1]);
+                            break;
+                        case "probe":
+                            probeSeconds = seconds("probe", pair[1]);
+                            break;
+                        case "warmup":
+                            warmupSeconds = pair[1].trim().equals("0") ? 0 : seconds("warmup", pair[1]);
+                            break;
+                        case "precision":
+                            precision = positive("precision", pair[1]);
+                            break;
+                        case "probes":
+                            maxProbes = (int) positive("probes", pair[1]);
+                            break;
+                        default:
+                            throw new Exception("Unknown capacity search setting '" + pair[0]
+                                    + "'. Use max, probe, warmup, precision or probes.");
+                    }
+                }
+            }
+            return new Settings(maxRate, probeSeconds, warmupSeconds, precision, maxProbes);
+        }
+
+        private static double positive(String name, String value) throws Exception {
+            try {
+                double parsed = Double.parseDouble(value.trim());
+                if (parsed <= 0) {
+                    throw new Exception(name + " must be greater than zero.");
+                }
+                return parsed;
+            } catch (NumberFormatException e) {
+                throw new Exception(name + " must be a number.");
+            }
+        }
+
+        // "30s", "2m" or plain seconds
+        private static long seconds(String name, String value) throws Exception {
+            String trimmed = value.trim().toLowerCase(Locale.ROOT);
+            long factor = 1;
+            if (trimmed.endsWith("m")) {
+                factor = 60;
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            } else if (trimmed.endsWith("s")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            return Math.round(positive(name, trimmed) * factor);
+        }
+
+        public int getMaxRate() { return maxRate; }
+
+        // Measured part of each probe, after the warm-up
+        public long getProbeSeconds() { return probeSeconds; }
+        public long getWarmupSeconds() { return warmupSeconds; }
+
+        // The search stops once the gap between passing and failing rates is this share of the passing rate
+        public double getPrecisionPercent() { return precisionPercent; }
+        public int getMaxProbes() { return maxProbes; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "max=%d, probe=%ds, warmup=%ds, precision=%s, probes=%d",
+                    maxRate, probeSeconds, warmupSeconds, precisionPercent, maxProbes);
+        }
+    }
+
+    // One point of the throughput-versus-latency curve
+    public static class Probe {
+        private final int targetRate;
+        private final double achievedRps;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double failureRate;
+        private final long droppedIterations;
+        private final boolean passed;
+        private final boolean stoppedEarly;
+        private final String note;
+        private final long storedRunId;
+
+        Probe(int targetRate, double achievedRps, double p50Millis, double p95Millis, double p99Millis,
+              double failureRate, long droppedIterations, boolean passed, boolean stoppedEarly, String note,
+              long storedRunId) {
+            this.targetRate = targetRate;
+            this.achievedRps = achievedRps;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.failureRate = failureRate;
+            this.droppedIterations = droppedIterations;
+            this.passed = passed;
+            this.stoppedEarly = stoppedEarly;
+            this.note = note;
+            this.storedRunId = storedRunId;
+        }
+
+        public int getTargetRate() { return targetRate; }
+        public double getAchievedRps() { return achievedRps; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP95Millis() { return p95Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getFailureRate() { return failureRate; }
+        public long getDroppedIterations() { return droppedIterations; }
+        public boolean isPassed() { return passed; }
+        public boolean isStoppedEarly() { return stoppedEarly; }
+
+        // Why the probe failed, otherwise empty
+        public String getNote() { return note; }
+        public long getStoredRunId() { return storedRunId; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%8d %10.1f %10.2f %10.2f %10.2f %8.2f%% %8d  %s%s", targetRate,
+                    achievedRps, p50Millis, p95Millis, p99Millis, failureRate * 100, droppedIterations,
+                    passed ? "PASS" : "FAIL", note.isEmpty() ? "" : " (" + note + ")");
+        }
+    }
+
+    public static class Result {
+        private final Settings settings;
+        private final List<Probe> probes;
+        private final int maxSustainableRate;
+        private final int lowestFailingRate;
+        private final String outcome;
+
+        Result(Settings settings, List<Probe> probes, int maxSustainableRate, int lowestFailingRate, String outcome) {
+            this.settings = settings;
+            List<Probe> sorted = new ArrayList<>(probes);
+            sorted.sort(Comparator.comparingInt(Probe::getTargetRate));
+            this.probes = Collections.unmodifiableList(sorted);
+            this.maxSustainableRate = maxSustainableRate;
+            this.lowestFailingRate = lowestFailingRate;
+            this.outcome = outcome;
+        }
+
+        // Probes ordered by target rate
+        public List<Probe> getProbes() { return probes; }
+
+        // Highest passing rate, or 0 if no probe passed
+        public int getMaxSustainableRate() { return maxSustainableRate; }
+
+        // Lowest failing rate, or -1 if every probe passed
+        public int getLowestFailingRate() { return lowestFailingRate; }
+
+        // Why the search ended
+        public String getOutcome() { return outcome; }
+
+        public String report() {
+            StringBuilder text = new StringBuilder();
+            text.append("Capacity search (").append(settings).append("):\n");
+            text.append(String.format(Locale.ROOT, "%8s %10s %10s %10s %10s %9s %8s  %s%n", "target", "RPS",
+                    "p50 ms", "p95 ms", "p99 ms", "failed", "dropped", "result"));
+            for (Probe probe : probes) {
+                text.append(probe).append("\n");
+            }
+            if (maxSustainableRate == 0) {
+                text.append("No probed rate was sustainable");
+            } else {
+                text.append("Maximum sustainable rate: ").append(maxSustainableRate).append(" RPS");
+                if (lowestFailingRate > 0) {
+                    text.append(" (").append(lowestFailingRate).append(" RPS failed)");
+                }
+            }
+            text.append(". ").append(outcome).append("\n");
+            return text.toString();
+        }
+
+        public String toJson() {
+            StringBuilder json = new StringBuilder(256 + probes.size() * 200);
+            json.append("{\n");
+            json.append("  \"maxSustainableRate\": ").append(maxSustainableRate == 0 ? "null" : maxSustainableRate).append(",\n");
+            json.append("  \"lowestFailingRate\": ").append(lowestFailingRate < 0 ? "null" : lowestFailingRate).append(",\n");
+            json.append("  \"outcome\": \"").append(outcome.replace("\"", "'")).append("\",\n");
+            json.append("  \"probes\": [");
+            for (int i = 0; i < probes.size(); i++) {
+                Probe probe = probes.get(i);
+                json.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                        "    {\"targetRate\": %d, \"requestsPerSecond\": %s, \"p50Millis\": %s, \"p95Millis\": %s, "
+                                + "\"p99Millis\": %s, \"failureRate\": %s, \"droppedIterations\": %d, \"passed\": %b, "
+                                + "\"stoppedEarly\": %b, \"runId\": %s}",
+                        probe.targetRate, number(probe.achievedRps), number(probe.p50Millis), number(probe.p95Millis),
+                        number(probe.p99Millis), number(probe.failureRate), probe.droppedIterations, probe.passed,
+                        probe.stoppedEarly, probe.storedRunId < 0 ? "null" : String.valueOf(probe.storedRunId)));
+            }
+            json.append(probes.isEmpty() ? "]\n" : "\n  ]\n");
+            json.append("}\n");
+            return json.toString();
+        }
+
+        private static String number(double value) {
+            return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+        }
+    }
+
+    private final ScriptService scriptService;
+    private final ProbeScript probeScript;
+    private final Settings settings;
+    private final int startRate;
+    private final int preAllocatedVUs;
+    private final int maxVUs;
+    private final double thinkTimeSeconds;
+    private final List<String> thresholds;
+    private final String testName;
+    private final RunListener progress;
+    private final List<Probe> probes = new ArrayList<>();
+    private volatile TestRun currentProbe;
+    private volatile boolean cancelled;
+
+    // progress receives the probes' status and live metrics; finished results are collected here
+    public CapacityFinder(ScriptService scriptService, ProbeScript probeScript, Settings settings, int startRate,
+                          int preAllocatedVUs, int maxVUs, double thinkTimeSeconds, List<String> thresholds,
+                          String testName, RunListener progress) {
+        this.scriptService = scriptService;
+        this.probeScript = probeScript;
+        this.settings = settings;
+        this.startRate = Math.min(Math.max(startRate, 1), settings.getMaxRate());
+        this.preAllocatedVUs = preAllocatedVUs;
+        this.maxVUs = maxVUs;
+        this.thinkTimeSeconds = thinkTimeSeconds;
+        this.thresholds = new ArrayList<>(thresholds);
+        this.testName = testName;
+        this.progress = progress;
+    }
+
+    // Runs the search on its own thread
+    public CompletableFuture<Result> start() {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(search());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, "capacity-finder");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    // Stops the running probe and ends the search with what it has so far
+    public void cancel() {
+        cancelled = true;
+        TestRun probe = currentProbe;
+        if (probe != null) {
+            probe.cancel();
+        }
+    }
+
+    private Result search() throws Exception {
+        int passing = 0;
+        int failing = -1;
+        int rate = startRate;
+        String outcome;
+        while (true) {
+            if (probes.size() >= settings.getMaxProbes()) {
+                outcome = "Stopped after " + probes.size() + " probes.";
+                break;
+            }
+            Probe probe = runProbe(rate);
+            if (probe == null) {
+                outcome = "Cancelled.";
+                break;
+            }
+            probes.add(probe);
+            if (probe.isPassed()) {
+                passing = Math.max(passing, rate);
+            } else {
+                failing = failing < 0 ? rate : Math.min(failing, rate);
+            }
+
+            int next;
+            if (failing < 0) {
+                if (rate >= settings.getMaxRate()) {
+                    outcome = "Reached the maximum rate of " + settings.getMaxRate() + " RPS.";
+                    break;
+                }
+                next = (int) Math.min((long) rate * 2, settings.getMaxRate());
+            } else if (passing == 0) {
+                if (rate <= 1) {
+                    outcome = "Even 1 RPS failed.";
+                    break;
+                }
+                next = rate / 2;
+            } else {
+                if (failing - passing <= passing * settings.getPrecisionPercent() / 100 || failing - passing <= 1) {
+                    outcome = "Narrowed down to " + settings.getPrecisionPercent() + "%.";
+                    break;
+                }
+                next = passing + (failing - passing) / 2;
+            }
+            rate = next;
+        }
+        return new Result(settings, probes, passing, failing, outcome);
+    }
+
+    // Runs one probe and waits for it; null if the search was cancelled
+    private Probe runProbe(int rate) throws Exception {
+        if (cancelled) {
+            return null;
+        }
+        LoadProfile profile = LoadProfile.constantArrivalRate(rate,
+                (settings.getWarmupSeconds() + settings.getProbeSeconds()) + "s",
+                preAllocatedVUs, Math.max(maxVUs, preAllocatedVUs), thinkTimeSeconds);
+        String script = probeScript.generate(profile);
+        progress.status("Capacity probe " + (probes.size() + 1) + ": " + rate + " RPS...");
+
+        CompletableFuture<RunResult> outcome = new CompletableFuture<>();
+        EarlyStop earlyStop = new EarlyStop(rate);
+        RunListener listener = new RunListener() {
+            @Override
+            public void status(String message) {
+                progress.status(message);
+            }
+
+            @Override
+            public void started(String name) {
+                progress.started(name);
+            }
+
+            @Override
+            public void outputLine(String line) {
+                progress.outputLine(line);
+            }
+
+            @Override
+            public void liveMetrics(LiveMetrics metrics) {
+                progress.liveMetrics(metrics);
+                earlyStop.check(metrics);
+            }
+
+            @Override
+            public void finished(RunResult result) {
+                outcome.complete(result);
+            }
+
+            @Override
+            public void failed(Exception error) {
+                outcome.completeExceptionally(error);
+            }
+        };
+        RunManager runManager = scriptService.getRunManager();
+        Consumer<TestRun> queueWatcher = run -> {
+            // Covers probes that end without reaching the listener, e.g. cancelled while queued
+            if (run == currentProbe && run.getState().isFinished()) {
+                outcome.completeExceptionally(new Exception("Probe ended as " + run.getState()));
+            }
+        };
+        runManager.addListener(queueWatcher);
+        RunResult result;
+        try {
+            // EarlyStop decides when a probe ends; the service's early abort stays off for probes
+            currentProbe = scriptService.runTest(script, testName, ShardPlan.single(), settings.getWarmupSeconds(),
+                    AbortController.Settings.off(), listener);
+            if (currentProbe == null) {
+                throw new Exception("No script to run.");
+            }
+            if (currentProbe.getState().isFinished() && !outcome.isDone()) {
+                outcome.completeExceptionally(new Exception("Probe ended as " + currentProbe.getState()));
+            }
+            try {
+                result = outcome.get();
+            } catch (ExecutionException e) {
+                if (cancelled || currentProbe.isCancelRequested()) {
+                    cancelled = true;
+                    return null;
+                }
+                throw new Exception("Capacity probe at " + rate + " RPS failed: " + e.getCause().getMessage());
+            }
+        } finally {
+            runManager.removeListener(queueWatcher);
+            currentProbe = null;
+        }
+        // Cancelled by the user rather than stopped early by this search
+        if (result.isCancelled() && !earlyStop.isTriggered()) {
+            cancelled = true;
+            return null;
+        }
+        return toProbe(rate, result, earlyStop);
+    }
+
+    private Probe toProbe(int rate, RunResult result, EarlyStop earlyStop) {
+        LiveMetrics metrics = result.getMetrics();
+        LatencyHistogram durations = result.getDurations();
+        long requests = metrics.getTotalRequests();
+        double achieved = metrics.getElapsedSeconds() > 0 ? (double) requests / metrics.getElapsedSeconds() : 0;
+        long dropped = metrics.getDroppedIterations();
+        List<String> problems = new ArrayList<>();
+        if (earlyStop.isTriggered()) {
+            problems.add("stopped early: " + earlyStop.getReason());
+        }
+        for (ThresholdEvaluator.Result threshold : result.getThresholds()) {
+            if (threshold.isEvaluated() && !threshold.isPassed()) {
+                problems.add(threshold.getMetric() + " " + threshold.getExpression()
+                        + String.format(Locale.ROOT, " was %.4g", threshold.getActual()));
+            }
+        }
+        if (achieved < rate * MIN_ACHIEVED_SHARE) {
+            problems.add(String.format(Locale.ROOT, "reached %.0f%% of the rate", achieved / rate * 100));
+        }
+        if (dropped > (requests + dropped) * MAX_DROPPED_SHARE) {
+            problems.add(dropped + " dropped iterations (generator or VU pool limit)");
+        }
+        if (!earlyStop.isTriggered() && result.getExitCode() != 0 && result.getExitCode() != 99) {
+            // 99 is k6's exit code for failed thresholds, which are judged above
+            problems.add("k6 exit code " + result.getExitCode());
+        }
+        Probe probe = new Probe(rate, achieved, MetricsAggregator.toMillis(durations.valueAtPercentile(50)),
+                MetricsAggregator.toMillis(durations.valueAtPercentile(95)),
+                MetricsAggregator.toMillis(durations.valueAtPercentile(99)), metrics.getFailureRate(), dropped,
+                problems.isEmpty(), earlyStop.isTriggered(), String.join("; ", problems), result.getStoredRunId());
+        System.out.println("Capacity probe " + probe);
+        return probe;
+    }
+
+    // Watches a probe's live metrics and stops it once it is clearly failing
+    private class EarlyStop {
+        private final int rate;
+        private int violations;
+        private volatile String reason;
+
+        EarlyStop(int rate) {
+            this.rate = rate;
+        }
+
+        void check(LiveMetrics metrics) {
+            // Nothing is aggregated during the warm-up
+            if (reason != null || metrics.getTotalRequests() == 0) {
+                return;
+            }
+            String violation = violation(metrics);
+            violations = violation == null ? 0 : violations + 1;
+            if (violations >= EARLY_STOP_SNAPSHOTS) {
+                reason = violation;
+                TestRun probe = currentProbe;
+                if (probe != null) {
+                    System.out.println("Stopping capacity probe at " + rate + " RPS early: " + violation);
+                    probe.cancel();
+                }
+            }
+        }
+
+        private String violation(LiveMetrics metrics) {
+            long dropped = metrics.getDroppedIterations();
+            if (dropped > (metrics.getTotalRequests() + dropped) * EARLY_STOP_DROPPED_SHARE) {
+                return dropped + " dropped iterations";
+            }
+            for (String threshold : thresholds) {
+                Matcher matcher = LIVE_THRESHOLD.matcher(threshold);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                double limit = Double.parseDouble(matcher.group(5));
+                boolean upperLimit = matcher.group(4).startsWith("<");
+                double value;
+                if (matcher.group(1).equals("http_req_duration")) {
+                    String percentile = matcher.group(3) == null ? "50" : matcher.group(3);
+                    value = percentile.equals("50") ? metrics.getP50Millis()
+                            : percentile.equals("95") ? metrics.getP95Millis() : metrics.getP99Millis();
+                } else if (!matcher.group(2).equals("rate")) {
+                    continue;
+                } else if (matcher.group(1).equals("http_req_failed")) {
+                    value = metrics.getFailureRate();
+                } else {
+                    value = metrics.getSuccessRate();
+                }
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (upperLimit ? value > limit * EARLY_STOP_MARGIN : value < limit / EARLY_STOP_MARGIN) {
+                    return String.format(Locale.ROOT, "%s at %.4g", threshold.trim(), value);
+                }
+            }
+            return null;
+        }
+
+        boolean isTriggered() {
+            return reason != null;
+        }
+
+        String getReason() {
+            return reason;
+        }
+    }
+}
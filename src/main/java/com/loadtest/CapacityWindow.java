@@ -0,0 +1,66 @@
+package com.loadtest;
+
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.util.List;
+
+/**
+ * Result of a capacity search: latency against achieved throughput for every probe,
+ * the probe table and the estimated maximum sustainable rate.
+ */
+public class CapacityWindow {
+    private final CapacityFinder.Result result;
+
+    public CapacityWindow(CapacityFinder.Result result) {
+        this.result = result;
+    }
+
+    // Must be called on the FX thread
+    public void show(String testName) {
+        NumberAxis rpsAxis = new NumberAxis();
+        rpsAxis.setLabel("Achieved RPS");
+        NumberAxis latencyAxis = new NumberAxis();
+        latencyAxis.setLabel("Latency (ms)");
+        LineChart<Number, Number> curve = new LineChart<>(rpsAxis, latencyAxis);
+        curve.setTitle("Throughput versus latency");
+        curve.setAnimated(false);
+        curve.setPrefHeight(400);
+
+        XYChart.Series<Number, Number> p50 = new XYChart.Series<>();
+        p50.setName("p50");
+        XYChart.Series<Number, Number> p95 = new XYChart.Series<>();
+        p95.setName("p95");
+        XYChart.Series<Number, Number> p99 = new XYChart.Series<>();
+        p99.setName("p99");
+        for (CapacityFinder.Probe probe : result.getProbes()) {
+            p50.getData().add(new XYChart.Data<>(probe.getAchievedRps(), probe.getP50Millis()));
+            p95.getData().add(new XYChart.Data<>(probe.getAchievedRps(), probe.getP95Millis()));
+            p99.getData().add(new XYChart.Data<>(probe.getAchievedRps(), probe.getP99Millis()));
+        }
+        curve.getData().setAll(List.of(p50, p95, p99));
+
+        Label estimate = new Label(result.getMaxSustainableRate() > 0
+                ? "Maximum sustainable rate: " + result.getMaxSustainableRate() + " RPS"
+                : "No probed rate was sustainable");
+        TextArea table = new TextArea(result.report());
+        table.setEditable(false);
+        table.setStyle("-fx-font-family: monospace;");
+        table.setPrefHeight(220);
+
+        VBox root = new VBox(10, estimate, curve, table);
+        root.setPadding(new Insets(10));
+
+        Stage stage = new Stage();
+        stage.setTitle("Capacity of " + testName);
+        stage.setScene(new Scene(root, 900, 700));
+        stage.show();
+    }
+}
@@ -0,0 +1,100 @@
+package com.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Time spent opening connections, kept apart from request latency: k6 reports TCP connect
+ * and TLS handshake time with every request, as zero when it reused a connection, and
+ * leaves both out of http_req_duration. Only the non-zero samples go into the histograms,
+ * so their percentiles describe what a new connection costs. Not thread-safe; the
+ * {@link MetricsAggregator} that owns it synchronizes.
+ */
+public class ConnectionSetup {
+    private final LatencyHistogram connectTimes = new LatencyHistogram();
+    private final LatencyHistogram tlsHandshakeTimes = new LatencyHistogram();
+    // One http_req_connecting sample per request
+    private long requests;
+
+    void record(K6Metric metric, double millis) {
+        if (metric == K6Metric.HTTP_REQ_CONNECTING) {
+            requests++;
+            if (millis > 0) {
+                connectTimes.record(MetricsAggregator.toMicros(millis));
+            }
+        } else if (metric == K6Metric.HTTP_REQ_TLS_HANDSHAKING && millis > 0) {
+            tlsHandshakeTimes.record(MetricsAggregator.toMicros(millis));
+        }
+    }
+
+    void add(ConnectionSetup other) {
+        connectTimes.add(other.connectTimes);
+        tlsHandshakeTimes.add(other.tlsHandshakeTimes);
+        requests += other.requests;
+    }
+
+    void reset() {
+        connectTimes.reset();
+        tlsHandshakeTimes.reset();
+        requests = 0;
+    }
+
+    ConnectionSetup copy() {
+        ConnectionSetup copy = new ConnectionSetup();
+        copy.add(this);
+        return copy;
+    }
+
+    public long getRequests() { return requests; }
+    public long getNewConnections() { return connectTimes.getTotalCount(); }
+    public long getTlsHandshakes() { return tlsHandshakeTimes.getTotalCount(); }
+
+    // TCP connect time of the requests that opened a connection, in microseconds
+    public LatencyHistogram getConnectTimes() { return connectTimes; }
+
+    // TLS handshake time of the requests that made one, in microseconds
+    public LatencyHistogram getTlsHandshakeTimes() { return tlsHandshakeTimes; }
+
+    // Fraction of requests that opened a new connection; NaN without samples
+    public double getNewConnectionShare() {
+        return requests == 0 ? Double.NaN : (double) getNewConnections() / requests;
+    }
+
+    // Mean connect plus handshake time of a request that opened a connection, in ms
+    public double getMeanSetupMillis() {
+        long connections = getNewConnections();
+        if (connections == 0) {
+            return 0;
+        }
+        double totalMicros = connectTimes.getMean() * connections
+                + tlsHandshakeTimes.getMean() * tlsHandshakeTimes.getTotalCount();
+        return totalMicros / connections / 1000;
+    }
+
+    // Empty when k6 reported no connection timings
+    public String report() {
+        if (requests == 0) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Connections: %d new for %d requests (%.1f%%)",
+                getNewConnections(), requests, 100 * getNewConnectionShare()));
+        if (getNewConnections() > 0) {
+            report.append(String.format(Locale.ROOT, "; connect p50 %.2f ms, p95 %.2f ms",
+                    MetricsAggregator.toMillis(connectTimes.valueAtPercentile(50)),
+                    MetricsAggregator.toMillis(connectTimes.valueAtPercentile(95))));
+        }
+        if (getTlsHandshakes() > 0) {
+            report.append(String.format(Locale.ROOT, "; %d TLS handshakes, p50 %.2f ms, p95 %.2f ms",
+                    getTlsHandshakes(),
+                    MetricsAggregator.toMillis(tlsHandshakeTimes.valueAtPercentile(50)),
+                    MetricsAggregator.toMillis(tlsHandshakeTimes.valueAtPercentile(95))));
+        }
+        report.append("\n");
+        if (getNewConnections() > 0) {
+            report.append(String.format(Locale.ROOT,
+                    "  Setup adds %.2f ms to a request on a new connection; http_req_duration leaves it out%n",
+                    getMeanSetupMillis()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,550 @@
+package com.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass lexer and parser for cURL commands as exported by browser devtools and
+ * typed by hand. It understands single, double and $'...' quoting, backslash escapes
+ * and line continuations, so the command is scanned exactly once with no regexes.
+ *
+ * Supported options: -X/--request, -H/--header, -d/--data, --data-raw, --data-binary,
+ * --data-ascii, --data-urlencode, --json, -u/--user, -b/--cookie, -A/--user-agent,
+ * -e/--referer, -G/--get, -I/--head, --url, --compressed and -k/--insecure.
+ * Other options are skipped, with their argument when they take one.
+ *
+ * {@link #parseScenario(String)} reads a whole list of commands (e.g. "Copy all as cURL")
+ * in the same pass. Commands separated by a blank line become separate steps; commands
+ * in one block are independent and are fired together. A comment directly above a
+ * command can set its weight and tags: {@code # k6 weight=3 name=cart group=checkout}.
+ *
+ * Instances hold scratch state; use one per thread.
+ */
+public class CurlParser {
+    // Options whose argument is consumed and ignored
+    private static final String[] IGNORED_WITH_ARGUMENT = {
+            "-o", "--output", "-m", "--max-time", "--connect-timeout", "--retry", "--retry-delay",
+            "--retry-max-time", "-w", "--write-out", "-x", "--proxy", "--resolve", "--cacert",
+            "--cert", "--key", "-c", "--cookie-jar", "--limit-rate", "--max-redirs", "-r", "--range",
+            "-T", "--upload-file", "-F", "--form", "--form-string", "--interface", "--local-port"
+    };
+
+    private String input;
+    private int pos;
+    private final StringBuilder token = new StringBuilder(256);
+    // Bytes of consecutive \xHH and \nnn escapes in a $'...' string, decoded together as UTF-8
+    private final ByteArrayOutputStream escapedBytes = new ByteArrayOutputStream();
+
+    // Lexer state describing the token most recently returned by nextToken()
+    private boolean tokenQuoted;
+    private boolean lineBreakBefore;
+    private boolean blankLineBefore;
+    private final List<String> comments = new ArrayList<>();
+    private String pushedBack;
+    private boolean multiCommand;
+
+    public static CurlRequest parseCommand(String command) {
+        return new CurlParser().parse(command);
+    }
+
+    public CurlRequest parse(String command) {
+        reset(command, false);
+        String first = nextToken();
+        if (first != null && !first.equals("curl")) {
+            pushedBack = first;
+        }
+        return parseOptions();
+    }
+
+    // Parses any number of commands into steps of independent requests
+    public List<List<ScenarioRequest>> parseScenario(String text) {
+        reset(text, true);
+        List<List<ScenarioRequest>> steps = new ArrayList<>();
+        List<ScenarioRequest> current = null;
+        for (String word = nextWord(); word != null; word = nextWord()) {
+            if (tokenQuoted || !word.equals("curl")) {
+                // Prompts, separators and other shell noise between commands
+                comments.clear();
+                continue;
+            }
+            boolean newStep = current == null || blankLineBefore;
+            Map<String, String> tags = new LinkedHashMap<>();
+            int weight = readDirectives(tags);
+            CurlRequest request = parseOptions();
+            if (request.getUrl().isEmpty()) {
+                continue;
+            }
+            if (newStep) {
+                current = new ArrayList<>();
+                steps.add(current);
+            }
+            if (!tags.containsKey("name")) {
+                tags.put("name", ScenarioRequest.defaultName(request));
+            }
+            HarImporter.addWeighted(current, new ScenarioRequest(request, weight, tags));
+        }
+        return steps;
+    }
+
+    private void reset(String text, boolean multi) {
+        input = text;
+        pos = 0;
+        multiCommand = multi;
+        pushedBack = null;
+        comments.clear();
+    }
+
+    // Reads "# k6 key=value ..." comments seen before the current command; returns the weight
+    private int readDirectives(Map<String, String> tags) {
+        int weight = 1;
+        for (String comment : comments) {
+            String text = comment.trim();
+            if (!text.startsWith("k6 ") && !text.equals("k6")) {
+                continue;
+            }
+            for (String pair : text.substring(2).trim().split("\\s+")) {
+                int equals = pair.indexOf('=');
+                if (equals <= 0) {
+                    continue;
+                }
+                String key = pair.substring(0, equals);
+                String value = pair.substring(equals + 1);
+                if (key.equals("weight")) {
+                    try {
+                        weight = Math.max(1, Integer.parseInt(value));
+                    } catch (NumberFormatException e) {
+                        // Keep the default weight
+                    }
+                } else {
+                    tags.put(key, value);
+                }
+            }
+        }
+        comments.clear();
+        return weight;
+    }
+
+    private String nextWord() {
+        if (pushedBack != null) {
+            String word = pushedBack;
+            pushedBack = null;
+            return word;
+        }
+        return nextToken();
+    }
+
+    private CurlRequest parseOptions() {
+        String url = null;
+        String method = null;
+        List<CurlRequest.Header> headers = new ArrayList<>();
+        StringBuilder body = null;
+        boolean compressed = false;
+        boolean insecure = false;
+        boolean getWithData = false;
+        boolean head = false;
+        List<String> warnings = new ArrayList<>();
+
+        for (String arg = nextWord(); arg != null; arg = nextWord()) {
+            if (multiCommand && !tokenQuoted) {
+                if (arg.equals(";") || arg.equals("&&")) {
+                    break;
+                }
+                if (arg.equals("curl") && lineBreakBefore) {
+                    pushedBack = arg;
+                    break;
+                }
+            }
+            if (arg.length() < 2 || arg.charAt(0) != '-') {
+                if (url == null) {
+                    url = arg;
+                }
+                continue;
+            }
+            switch (arg) {
+                case "-X":
+                case "--request":
+                    method = requireArgument(arg, warnings);
+                    continue;
+                case "-H":
+                case "--header":
+                    addHeader(headers, requireArgument(arg, warnings));
+                    continue;
+                case "-d":
+                case "--data":
+                case "--data-raw":
+                case "--data-binary":
+                case "--data-ascii":
+                    body = appendData(body, requireArgument(arg, warnings), !arg.equals("--data-raw"), warnings);
+                    continue;
+                case "--data-urlencode":
+                    body = appendData(body, urlEncodeData(requireArgument(arg, warnings)), false, warnings);
+                    continue;
+                case "--json":
+                    body = appendData(body, requireArgument(arg, warnings), true, warnings);
+                    setDefaultHeader(headers, "Content-Type", "application/json");
+                    setDefaultHeader(headers, "Accept", "application/json");
+                    continue;
+                case "-u":
+                case "--user":
+                    String credentials = requireArgument(arg, warnings);
+                    if (credentials != null) {
+                        headers.add(new CurlRequest.Header("Authorization", "Basic "
+                                + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8))));
+                    }
+                    continue;
+                case "-b":
+                case "--cookie":
+                    String cookie = requireArgument(arg, warnings);
+                    if (cookie != null) {
+                        headers.add(new CurlRequest.Header("Cookie", cookie));
+                    }
+                    continue;
+                case "-A":
+                case "--user-agent":
+                    String agent = requireArgument(arg, warnings);
+                    if (agent != null) {
+                        headers.add(new CurlRequest.Header("User-Agent", agent));
+                    }
+                    continue;
+                case "-e":
+                case "--referer":
+                    String referer = requireArgument(arg, warnings);
+                    if (referer != null) {
+                        headers.add(new CurlRequest.Header("Referer", referer));
+                    }
+                    continue;
+                case "--url":
+                    String explicitUrl = requireArgument(arg, warnings);
+                    if (url == null) {
+                        url = explicitUrl;
+                    }
+                    continue;
+                case "-G":
+                case "--get":
+                    getWithData = true;
+                    continue;
+                case "-I":
+                case "--head":
+                    head = true;
+                    continue;
+                case "--compressed":
+                    compressed = true;
+                    continue;
+                case "-k":
+                case "--insecure":
+                    insecure = true;
+                    continue;
+                default:
+                    break;
+            }
+            if (isIgnoredWithArgument(arg)) {
+                if (arg.equals("-F") || arg.equals("--form") || arg.equals("--form-string")
+                        || arg.equals("-T") || arg.equals("--upload-file")) {
+                    warnings.add("Option " + arg + " is not supported and was ignored");
+                }
+                nextToken();
+            } else if (arg.startsWith("-X") && !arg.startsWith("--")) {
+                method = arg.substring(2);
+            } else if (arg.startsWith("-H") && !arg.startsWith("--")) {
+                addHeader(headers, arg.substring(2));
+            } else if (arg.startsWith("-d") && !arg.startsWith("--")) {
+                body = appendData(body, arg.substring(2), true, warnings);
+            }
+            // Anything else is a flag without an argument (-s, -L, --http2, ...)
+        }
+
+        if (url == null) {
+            url = "";
+        }
+        if (getWithData && body != null) {
+            url = url + (url.indexOf('?') >= 0 ? "&" : "?") + body;
+            body = null;
+        }
+        if (method == null) {
+            method = head ? "HEAD" : (body != null ? "POST" : "GET");
+        }
+        if (compressed) {
+            setDefaultHeader(headers, "Accept-Encoding", "gzip, deflate, br");
+        }
+        return new CurlRequest(url, method.toUpperCase(), headers, body == null ? null : body.toString(),
+                compressed, insecure, warnings);
+    }
+
+    private String requireArgument(String option, List<String> warnings) {
+        String value = nextToken();
+        if (value == null) {
+            warnings.add("Option " + option + " is missing its argument");
+        }
+        return value;
+    }
+
+    private static void addHeader(List<CurlRequest.Header> headers, String header) {
+        if (header == null) {
+            return;
+        }
+        int colon = header.indexOf(':');
+        if (colon <= 0) {
+            return;
+        }
+        String name = header.substring(0, colon).trim();
+        String value = header.substring(colon + 1).trim();
+        // "Name:" with nothing after it removes the header in curl; nothing to send
+        if (!value.isEmpty()) {
+            headers.add(new CurlRequest.Header(name, value));
+        }
+    }
+
+    private static void setDefaultHeader(List<CurlRequest.Header> headers, String name, String value) {
+        for (CurlRequest.Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return;
+            }
+        }
+        headers.add(new CurlRequest.Header(name, value));
+    }
+
+    // Repeated data options are joined with '&', as curl does
+    private static StringBuilder appendData(StringBuilder body, String data, boolean allowFile, List<String> warnings) {
+        if (data == null) {
+            return body;
+        }
+        if (allowFile && data.startsWith("@")) {
+            warnings.add("Data is read from file " + data.substring(1) + "; the file name was used as the body");
+        }
+        if (body == null) {
+            return new StringBuilder(data);
+        }
+        return body.append('&').append(data);
+    }
+
+    private static String urlEncodeData(String data) {
+        if (data == null) {
+            return null;
+        }
+        int equals = data.indexOf('=');
+        if (equals < 0) {
+            return URLEncoder.encode(data, StandardCharsets.UTF_8);
+        }
+        if (equals == 0) {
+            return URLEncoder.encode(data.substring(1), StandardCharsets.UTF_8);
+        }
+        return data.substring(0, equals + 1) + URLEncoder.encode(data.substring(equals + 1), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isIgnoredWithArgument(String option) {
+        for (String ignored : IGNORED_WITH_ARGUMENT) {
+            if (ignored.equals(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the next shell word with quoting and escapes resolved, or null at the end
+    String nextToken() {
+        int length = input.length();
+        lineBreakBefore = false;
+        blankLineBefore = false;
+        boolean lineHasContent = true;
+        // Skip whitespace, comments and line continuations between words
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (c == '\n') {
+                if (!lineHasContent) {
+                    blankLineBefore = true;
+                }
+                lineBreakBefore = true;
+                lineHasContent = false;
+                pos++;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                pos++;
+            } else if (c == '\\' && pos + 1 < length && (input.charAt(pos + 1) == '\n' || input.charAt(pos + 1) == '\r')) {
+                pos += 2;
+                if (pos < length && input.charAt(pos - 1) == '\r' && input.charAt(pos) == '\n') {
+                    pos++;
+                }
+            } else if (c == '#') {
+                int end = input.indexOf('\n', pos);
+                if (end < 0) {
+                    end = length;
+                }
+                comments.add(input.substring(pos + 1, end));
+                pos = end;
+                lineHasContent = true;
+            } else {
+                break;
+            }
+        }
+        if (pos >= length) {
+            return null;
+        }
+
+        token.setLength(0);
+        tokenQuoted = false;
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            if (c == '\'') {
+                int close = input.indexOf('\'', pos + 1);
+                if (close < 0) {
+                    close = length;
+                }
+                token.append(input, pos + 1, close);
+                pos = Math.min(close + 1, length);
+                tokenQuoted = true;
+            } else if (c == '$' && pos + 1 < length && input.charAt(pos + 1) == '\'') {
+                pos += 2;
+                readAnsiCString();
+                tokenQuoted = true;
+            } else if (c == '"') {
+                pos++;
+                readDoubleQuoted();
+                tokenQuoted = true;
+            } else if (c == '\\' && pos + 1 < length) {
+                char escaped = input.charAt(pos + 1);
+                if (escaped == '\n') {
+                    pos += 2;
+                } else if (escaped == '\r') {
+                    pos += (pos + 2 < length && input.charAt(pos + 2) == '\n') ? 3 : 2;
+                } else {
+                    token.append(escaped);
+                    pos += 2;
+                    tokenQuoted = true;
+                }
+            } else if (c == ';' && (pos + 1 >= length || Character.isWhitespace(input.charAt(pos + 1)))) {
+                // A trailing ';' ends the command, as in "Copy all as cURL" exports
+                if (token.length() == 0 && !tokenQuoted) {
+                    token.append(c);
+                    pos++;
+                }
+                break;
+            } else {
+                token.append(c);
+                pos++;
+            }
+        }
+        return token.toString();
+    }
+
+    private void readDoubleQuoted() {
+        int length = input.length();
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (c == '"') {
+                pos++;
+                return;
+            }
+            if (c == '\\' && pos + 1 < length) {
+                char escaped = input.charAt(pos + 1);
+                if (escaped == '"' || escaped == '\\' || escaped == '$' || escaped == '`') {
+                    token.append(escaped);
+                    pos += 2;
+                    continue;
+                }
+                if (escaped == '\n') {
+                    pos += 2;
+                    continue;
+                }
+            }
+            token.append(c);
+            pos++;
+        }
+    }
+
+    // Bash ANSI-C quoting as produced by Chrome's "Copy as cURL (bash)"
+    private void readAnsiCString() {
+        int length = input.length();
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (c == '\\' && pos + 1 < length) {
+                char escaped = input.charAt(pos + 1);
+                // Byte escapes, e.g. $'\xc3\xa9' for U+00E9
+                if (escaped == 'x') {
+                    pos += 2;
+                    escapedBytes.write(readHex(2));
+                    continue;
+                }
+                if (escaped >= '0' && escaped <= '7') {
+                    pos++;
+                    escapedBytes.write(readOctal());
+                    continue;
+                }
+            }
+            flushEscapedBytes();
+            if (c == '\'') {
+                pos++;
+                return;
+            }
+            if (c != '\\' || pos + 1 >= length) {
+                token.append(c);
+                pos++;
+                continue;
+            }
+            char escaped = input.charAt(pos + 1);
+            pos += 2;
+            switch (escaped) {
+                case 'n': token.append('\n'); break;
+                case 't': token.append('\t'); break;
+                case 'r': token.append('\r'); break;
+                case 'a': token.append('\u0007'); break;
+                case 'b': token.append('\b'); break;
+                case 'e':
+                case 'E': token.append('\u001b'); break;
+                case 'f': token.append('\f'); break;
+                case 'v': token.append('\u000b'); break;
+                case 'u': token.appendCodePoint(readHex(4)); break;
+                case 'U': token.appendCodePoint(readHex(8)); break;
+                default:
+                    // \\, \', \" and unknown escapes keep the character itself
+                    token.append(escaped);
+            }
+        }
+        flushEscapedBytes();
+    }
+
+    // Invalid UTF-8 becomes U+FFFD, as a terminal would show it
+    private void flushEscapedBytes() {
+        if (escapedBytes.size() > 0) {
+            token.append(new String(escapedBytes.toByteArray(), StandardCharsets.UTF_8));
+            escapedBytes.reset();
+        }
+    }
+
+    private int readHex(int maxDigits) {
+        int value = 0;
+        int digits = 0;
+        while (digits < maxDigits && pos < input.length()) {
+            int digit = Character.digit(input.charAt(pos), 16);
+            if (digit < 0) {
+                break;
+            }
+            value = value * 16 + digit;
+            pos++;
+            digits++;
+        }
+        return Character.isValidCodePoint(value) ? value : '?';
+    }
+
+    private int readOctal() {
+        int value = 0;
+        int digits = 0;
+        while (digits < 3 && pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c < '0' || c > '7') {
+                break;
+            }
+            value = value * 8 + (c - '0');
+            pos++;
+            digits++;
+        }
+        return value & 0xFF;
+    }
+}
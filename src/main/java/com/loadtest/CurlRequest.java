@@ -0,0 +1,68 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structured form of a cURL command, produced by {@link CurlParser}.
+ */
+public class CurlRequest {
+    private final String url;
+    private final String method;
+    private final List<Header> headers;
+    private final String body;
+    private final boolean compressed;
+    private final boolean insecure;
+    private final List<String> warnings;
+
+    CurlRequest(String url, String method, List<Header> headers, String body,
+                boolean compressed, boolean insecure, List<String> warnings) {
+        this.url = url;
+        this.method = method;
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        this.body = body;
+        this.compressed = compressed;
+        this.insecure = insecure;
+        this.warnings = Collections.unmodifiableList(new ArrayList<>(warnings));
+    }
+
+    public String getUrl() { return url; }
+    public String getMethod() { return method; }
+    public List<Header> getHeaders() { return headers; }
+
+    // null when the command sends no data
+    public String getBody() { return body; }
+    public boolean isCompressed() { return compressed; }
+    public boolean isInsecure() { return insecure; }
+
+    // Options that were recognised but cannot be reproduced in a k6 script
+    public List<String> getWarnings() { return warnings; }
+
+    public boolean hasHeader(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Header {
+        private final String name;
+        private final String value;
+
+        public Header(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() { return name; }
+        public String getValue() { return value; }
+
+        @Override
+        public String toString() {
+            return name + ": " + value;
+        }
+    }
+}
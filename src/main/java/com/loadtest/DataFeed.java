@@ -0,0 +1,524 @@
+package com.loadtest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A CSV or JSON dataset that generated scripts read request values from. "{{column}}" in
+ * the URL, a header value or the body is replaced by that column of the current row.
+ *
+ * The source is converted in one streaming pass into a compact JSON array of rows (arrays
+ * of strings, without repeated keys), stored by content hash like the scripts. The script
+ * loads it into a SharedArray, so every VU of a k6 process reads the same copy instead of
+ * holding its own. Rows can be partitioned so that each VU, or each k6 process of a
+ * sharded run, works through its own part of the data.
+ */
+public class DataFeed {
+    public static final String EXAMPLE = "file=users.csv, partition=vu, order=sequential";
+
+    public enum Partition {
+        // Every iteration of the test takes the next row, across all VUs and shards
+        NONE,
+        // VU n of N works through the n-th block of rows
+        VU,
+        // Each k6 process keeps only the rows of its execution segment
+        SEGMENT
+    }
+
+    public enum Order { SEQUENTIAL, RANDOM }
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([^{}]+?)\\s*\\}\\}");
+
+    // Converted sources by file, size and modification time, so generating again costs nothing
+    private static final Map<String, Conversion> CONVERSIONS = new HashMap<>();
+
+    private final Path source;
+    private final Partition partition;
+    private final Order order;
+    private final Conversion conversion;
+
+    private DataFeed(Path source, Partition partition, Order order, Conversion conversion) {
+        this.source = source;
+        this.partition = partition;
+        this.order = order;
+        this.conversion = conversion;
+    }
+
+    /**
+     * Parses a spec such as "file=users.csv, partition=vu, order=random" and converts the
+     * file into directory. A bare path is read as file=path. Null for an empty spec.
+     */
+    public static DataFeed prepare(String text, Path directory) throws Exception {
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        String file = null;
+        Partition partition = Partition.NONE;
+        Order order = Order.SEQUENTIAL;
+        char delimiter = 0;
+        if (!trimmed.contains("=")) {
+            file = trimmed;
+        } else {
+            for (String part : trimmed.split("\\s*,\\s*")) {
+                String[] pair = part.split("\\s*=\\s*", 2);
+                if (pair.length != 2 || pair[1].isEmpty()) {
+                    throw new Exception("Invalid data feed setting '" + part + "'. Use e.g. " + EXAMPLE);
+                }
+                String value = pair[1].toLowerCase(Locale.ROOT);
+                switch (pair[0].toLowerCase(Locale.ROOT)) {
+                    case "file":
+                        file = pair[1];
+                        break;
+                    case "partition":
+                        if (value.equals("none")) {
+                            partition = Partition.NONE;
+                        } else if (value.equals("vu")) {
+                            partition = Partition.VU;
+                        } else if (value.equals("segment") || value.equals("shard")) {
+                            partition = Partition.SEGMENT;
+                        } else {
+                            throw new Exception("Unknown partition '" + pair[1] + "'. Use none, vu or segment.");
+                        }
+                        break;
+                    case "order":
+                        if (value.equals("sequential")) {
+                            order = Order.SEQUENTIAL;
+                        } else if (value.equals("random")) {
+                            order = Order.RANDOM;
+                        } else {
+                            throw new Exception("Unknown order '" + pair[1] + "'. Use sequential or random.");
+                        }
+                        break;
+                    case "delimiter":
+                        delimiter = delimiter(value);
+                        break;
+                    default:
+                        throw new Exception("Unknown data feed setting '" + pair[0]
+                                + "'. Use file, partition, order or delimiter.");
+                }
+            }
+        }
+        if (file == null) {
+            throw new Exception("The data feed needs a file, e.g. " + EXAMPLE);
+        }
+        Path source = Paths.get(file).toAbsolutePath();
+        if (!Files.isRegularFile(source)) {
+            throw new Exception("Data file not found: " + source);
+        }
+        return new DataFeed(source, partition, order, convert(source, delimiter, directory));
+    }
+
+    private static char delimiter(String value) throws Exception {
+        switch (value) {
+            case "comma": return ',';
+            case "semicolon": return ';';
+            case "tab": return '\t';
+            case "pipe": return '|';
+            default:
+                throw new Exception("Unknown delimiter '" + value + "'. Use comma, semicolon, tab or pipe.");
+        }
+    }
+
+    private static Conversion convert(Path source, char delimiter, Path directory) throws Exception {
+        String key = source + "|" + Files.size(source) + "|" + Files.getLastModifiedTime(source).toMillis()
+                + "|" + (int) delimiter;
+        synchronized (CONVERSIONS) {
+            Conversion known = CONVERSIONS.get(key);
+            if (known != null && Files.exists(known.dataFile)) {
+                return known;
+            }
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".data-", ".tmp");
+        Conversion conversion;
+        try {
+            MessageDigest digest = sha256();
+            List<String> columns;
+            long rows;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new DigestOutputStream(Files.newOutputStream(temp), digest), StandardCharsets.UTF_8), 1 << 16);
+                 BufferedReader in = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                RowWriter writer = new RowWriter(out);
+                String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                    columns = readJson(in, writer);
+                } else {
+                    char separator = delimiter != 0 ? delimiter : name.endsWith(".tsv") ? '\t' : ',';
+                    columns = readCsv(in, separator, writer);
+                }
+                rows = writer.finish();
+            }
+            if (rows == 0) {
+                throw new Exception("The data file " + source + " has no rows.");
+            }
+            Path dataFile = directory.resolve(hex(digest.digest()) + ".json");
+            if (!Files.exists(dataFile)) {
+                try {
+                    Files.move(temp, dataFile, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, dataFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            conversion = new Conversion(Collections.unmodifiableList(columns), dataFile, rows);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        synchronized (CONVERSIONS) {
+            CONVERSIONS.put(key, conversion);
+        }
+        return conversion;
+    }
+
+    // RFC 4180: the first record names the columns; quoted fields may hold delimiters, quotes and newlines
+    private static List<String> readCsv(Reader reader, char delimiter, RowWriter writer) throws Exception {
+        CharSource in = new CharSource(reader);
+        List<String> columns = null;
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStarted = false;
+        long line = 1;
+        long recordLine = 1;
+        int c = in.read();
+        // Byte order mark
+        if (c == '\uFEFF') {
+            c = in.read();
+        }
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new Exception("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && !fieldStarted) {
+                quoted = true;
+                fieldStarted = true;
+            } else if (c == delimiter) {
+                record.add(field.toString());
+                field.setLength(0);
+                fieldStarted = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int next = in.read();
+                    if (next != '\n') {
+                        c = next;
+                        line++;
+                        columns = endRecord(record, field, fieldStarted, columns, writer, recordLine);
+                        fieldStarted = false;
+                        recordLine = line;
+                        continue;
+                    }
+                }
+                columns = endRecord(record, field, fieldStarted, columns, writer, recordLine);
+                fieldStarted = false;
+                if (c == -1) {
+                    break;
+                }
+                line++;
+                recordLine = line;
+            } else {
+                field.append((char) c);
+                fieldStarted = true;
+            }
+            c = in.read();
+        }
+        if (columns == null) {
+            throw new Exception("The data file is empty.");
+        }
+        return columns;
+    }
+
+    private static List<String> endRecord(List<String> record, StringBuilder field, boolean fieldStarted,
+                                          List<String> columns, RowWriter writer, long line) throws Exception {
+        // Blank lines are skipped
+        if (record.isEmpty() && !fieldStarted && field.length() == 0) {
+            return columns;
+        }
+        record.add(field.toString());
+        field.setLength(0);
+        if (columns == null) {
+            columns = new ArrayList<>(record);
+        } else {
+            if (record.size() > columns.size()) {
+                throw new Exception("Line " + line + " of the data file has " + record.size()
+                        + " fields but the header has " + columns.size() + ".");
+            }
+            // Missing trailing fields are empty
+            while (record.size() < columns.size()) {
+                record.add("");
+            }
+            writer.write(record);
+        }
+        record.clear();
+        return columns;
+    }
+
+    // An array of objects, or one object per line; the first object names the columns
+    private static List<String> readJson(Reader in, RowWriter writer) throws Exception {
+        List<String> columns = null;
+        Map<String, Integer> indexes = new HashMap<>();
+        String[] values = null;
+        try (JsonStreamReader json = new JsonStreamReader(in)) {
+            boolean array = json.peek() == JsonStreamReader.Token.BEGIN_ARRAY;
+            if (array) {
+                json.beginArray();
+            }
+            while (array ? json.hasNext() : json.peek() != JsonStreamReader.Token.END_DOCUMENT) {
+                json.beginObject();
+                if (columns == null) {
+                    columns = new ArrayList<>();
+                    List<String> firstValues = new ArrayList<>();
+                    while (json.hasNext()) {
+                        String name = json.nextName();
+                        indexes.put(name, columns.size());
+                        columns.add(name);
+                        firstValues.add(scalar(json, name));
+                    }
+                    values = new String[columns.size()];
+                    writer.write(firstValues);
+                } else {
+                    Arrays.fill(values, "");
+                    while (json.hasNext()) {
+                        String name = json.nextName();
+                        Integer index = indexes.get(name);
+                        if (index == null) {
+                            // Only the first object's keys become columns
+                            json.skipValue();
+                        } else {
+                            values[index] = scalar(json, name);
+                        }
+                    }
+                    writer.write(Arrays.asList(values));
+                }
+                json.endObject();
+            }
+            if (array) {
+                json.endArray();
+            }
+        }
+        if (columns == null) {
+            throw new Exception("The data file has no objects.");
+        }
+        return columns;
+    }
+
+    private static String scalar(JsonStreamReader json, String name) throws Exception {
+        switch (json.peek()) {
+            case STRING:
+            case NUMBER:
+                // Numbers keep their literal form, e.g. long ids
+                return json.nextString();
+            case BOOLEAN:
+                return String.valueOf(json.nextBoolean());
+            case NULL:
+                json.nextNull();
+                return "";
+            default:
+                throw new Exception("Column '" + name + "' holds an object or array; data feed values must be "
+                        + "strings, numbers or booleans.");
+        }
+    }
+
+    /** Writes rows as one JSON array of string arrays, a row per line. */
+    private static class RowWriter {
+        private final Writer out;
+        private long rows;
+
+        RowWriter(Writer out) {
+            this.out = out;
+        }
+
+        void write(List<String> row) throws IOException {
+            out.write(rows == 0 ? "[\n[" : ",\n[");
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeString(row.get(i));
+            }
+            out.write(']');
+            rows++;
+        }
+
+        long finish() throws IOException {
+            out.write(rows == 0 ? "[]\n" : "\n]\n");
+            return rows;
+        }
+
+        private void writeString(String value) throws IOException {
+            out.write('"');
+            if (isPlain(value)) {
+                out.write(value);
+                out.write('"');
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    case '\u2028': out.write("\\u2028"); break;
+                    case '\u2029': out.write("\\u2029"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+            out.write('"');
+        }
+    }
+
+    private static boolean isPlain(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Unsynchronized single-character reads over a large buffer. */
+    private static class CharSource {
+        private final Reader reader;
+        private final char[] buffer = new char[1 << 16];
+        private int pos;
+        private int limit;
+
+        CharSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        int read() throws IOException {
+            if (pos == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++];
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    public static boolean hasPlaceholders(String text) {
+        return text != null && PLACEHOLDER.matcher(text).find();
+    }
+
+    /**
+     * Text as a JavaScript expression: a quoted literal, or a concatenation with the row's
+     * columns where the text has placeholders, e.g. 'id=' + row[0].
+     */
+    public String expression(String text, String rowVariable) throws Exception {
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        StringBuilder expression = new StringBuilder();
+        int last = 0;
+        while (matcher.find()) {
+            int column = conversion.columns.indexOf(matcher.group(1));
+            if (column < 0) {
+                throw new Exception("Unknown data column '" + matcher.group(1) + "' in {{" + matcher.group(1)
+                        + "}}. The data feed has: " + String.join(", ", conversion.columns));
+            }
+            if (matcher.start() > last) {
+                appendLiteral(expression, text.substring(last, matcher.start()));
+            }
+            if (expression.length() > 0) {
+                expression.append(" + ");
+            }
+            // Every value is a string, so columns next to each other concatenate
+            expression.append(rowVariable).append('[').append(column).append(']');
+            last = matcher.end();
+        }
+        if (last < text.length() || expression.length() == 0) {
+            appendLiteral(expression, text.substring(last));
+        }
+        return expression.toString();
+    }
+
+    private static void appendLiteral(StringBuilder expression, String literal) {
+        if (expression.length() > 0) {
+            expression.append(" + ");
+        }
+        expression.append('\'').append(ScriptService.escapeJs(literal)).append('\'');
+    }
+
+    public Path getSource() { return source; }
+    public Partition getPartition() { return partition; }
+    public Order getOrder() { return order; }
+    public List<String> getColumns() { return conversion.columns; }
+    // The converted rows, as loaded by the script's SharedArray
+    public Path getDataFile() { return conversion.dataFile; }
+    public long getRowCount() { return conversion.rows; }
+
+    private static class Conversion {
+        private final List<String> columns;
+        private final Path dataFile;
+        private final long rows;
+
+        Conversion(List<String> columns, Path dataFile, long rows) {
+            this.columns = columns;
+            this.dataFile = dataFile;
+            this.rows = rows;
+        }
+    }
+}
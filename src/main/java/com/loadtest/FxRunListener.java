@@ -0,0 +1,75 @@
+package com.loadtest;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Shows run progress in the main window: the progress bar, the status label, the live
+ * metrics panel and, when a run finishes, a results window. Every update is moved to
+ * the FX thread.
+ */
+public class FxRunListener implements RunListener {
+    private final ProgressBar progressBar;
+    private final Label statusLabel;
+    private final Consumer<LiveMetrics> liveMetricsSink;
+    // Latest pending values; at most one runLater of each kind is queued at a time
+    private final AtomicReference<LiveMetrics> latestMetrics = new AtomicReference<>();
+    private final AtomicReference<String> latestLine = new AtomicReference<>();
+
+    public FxRunListener(ProgressBar progressBar, Label statusLabel, Consumer<LiveMetrics> liveMetricsSink) {
+        this.progressBar = progressBar;
+        this.statusLabel = statusLabel;
+        this.liveMetricsSink = liveMetricsSink;
+    }
+
+    @Override
+    public void status(String message) {
+        Platform.runLater(() -> statusLabel.setText(message));
+    }
+
+    @Override
+    public void started(String testName) {
+        Platform.runLater(() -> {
+            progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS); // Show indeterminate progress
+            statusLabel.setText("Test is running...");
+            liveMetricsSink.accept(null);
+        });
+    }
+
+    @Override
+    public void outputLine(String line) {
+        if (latestLine.getAndSet(line) == null) {
+            Platform.runLater(() -> statusLabel.setText("Test is running... " + latestLine.getAndSet(null)));
+        }
+    }
+
+    @Override
+    public void liveMetrics(LiveMetrics metrics) {
+        if (latestMetrics.getAndSet(metrics) == null) {
+            Platform.runLater(() -> liveMetricsSink.accept(latestMetrics.getAndSet(null)));
+        }
+    }
+
+    @Override
+    public void finished(RunResult result) {
+        Platform.runLater(() -> {
+            progressBar.setProgress(1.0); // Set progress to 100% when done
+            statusLabel.setText(result.getStatusMessage());
+
+            // The report and the full log, read from disk only as far as it is scrolled
+            new LogViewerWindow(result).show();
+        });
+    }
+
+    @Override
+    public void failed(Exception error) {
+        Platform.runLater(() -> {
+            progressBar.setProgress(0); // Reset progress on failure
+            statusLabel.setText("Test failed: " + error.getMessage());
+        });
+    }
+}
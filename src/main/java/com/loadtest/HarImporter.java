@@ -0,0 +1,234 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a HAR capture and turns its requests into scenario steps. Requests whose
+ * timings overlap were in flight at the same time in the browser, so they end up in
+ * the same step and are replayed with http.batch().
+ *
+ * Only the request side of each entry is read; responses, including their bodies,
+ * are skipped without being loaded.
+ */
+public class HarImporter {
+    // Hop-by-hop and computed headers that k6 sets itself
+    private static final String[] DROPPED_HEADERS = {"content-length", "host", "connection", "accept-encoding"};
+
+    public List<List<ScenarioRequest>> importFile(Path harFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(harFile, StandardCharsets.UTF_8)) {
+            return importHar(reader);
+        }
+    }
+
+    public List<List<ScenarioRequest>> importHar(Reader source) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (JsonStreamReader json = new JsonStreamReader(source)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("log")) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (!json.nextName().equals("entries")) {
+                        json.skipValue();
+                        continue;
+                    }
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        Entry entry = readEntry(json, entries.size());
+                        if (entry != null) {
+                            entries.add(entry);
+                        }
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+            }
+            json.endObject();
+        }
+        return group(entries);
+    }
+
+    private Entry readEntry(JsonStreamReader json, int index) throws IOException {
+        long startedMillis = 0;
+        double durationMillis = 0;
+        CurlRequest request = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "startedDateTime":
+                    startedMillis = parseTimestamp(json.nextString());
+                    break;
+                case "time":
+                    durationMillis = json.nextDouble();
+                    break;
+                case "request":
+                    request = readRequest(json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (request == null) {
+            return null;
+        }
+        String url = request.getUrl();
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            // data:, blob:, chrome-extension:, ws: ... can't be replayed as HTTP requests
+            return null;
+        }
+        return new Entry(index, startedMillis, Math.max(0, durationMillis), request);
+    }
+
+    private CurlRequest readRequest(JsonStreamReader json) throws IOException {
+        String method = "GET";
+        String url = "";
+        String body = null;
+        List<CurlRequest.Header> headers = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "method":
+                    method = json.nextString().toUpperCase();
+                    break;
+                case "url":
+                    url = json.nextString();
+                    break;
+                case "headers":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        CurlRequest.Header header = readHeader(json);
+                        if (header != null) {
+                            headers.add(header);
+                        }
+                    }
+                    json.endArray();
+                    break;
+                case "postData":
+                    body = readPostDataText(json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new CurlRequest(url, method, headers, body, false, false, Collections.emptyList());
+    }
+
+    private CurlRequest.Header readHeader(JsonStreamReader json) throws IOException {
+        String name = null;
+        String value = "";
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "value":
+                    value = json.nextString();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        // HTTP/2 pseudo-headers such as :authority are not real headers
+        if (name == null || name.isEmpty() || name.startsWith(":")) {
+            return null;
+        }
+        for (String dropped : DROPPED_HEADERS) {
+            if (dropped.equalsIgnoreCase(name)) {
+                return null;
+            }
+        }
+        return new CurlRequest.Header(name, value);
+    }
+
+    private String readPostDataText(JsonStreamReader json) throws IOException {
+        String text = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("text")) {
+                text = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return text;
+    }
+
+    private static long parseTimestamp(String value) {
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // Starts a new step whenever a request begins after everything in the current step has finished
+    static List<List<ScenarioRequest>> group(List<Entry> entries) {
+        List<Entry> ordered = new ArrayList<>(entries);
+        ordered.sort(Comparator.comparingLong((Entry e) -> e.startedMillis).thenComparingInt(e -> e.index));
+
+        List<List<ScenarioRequest>> steps = new ArrayList<>();
+        List<ScenarioRequest> current = null;
+        double currentEnd = Double.NEGATIVE_INFINITY;
+        for (Entry entry : ordered) {
+            if (current == null || entry.startedMillis >= currentEnd) {
+                current = new ArrayList<>();
+                steps.add(current);
+                currentEnd = entry.startedMillis;
+            }
+            addWeighted(current, new ScenarioRequest(entry.request, 1, defaultTags(entry.request)));
+            currentEnd = Math.max(currentEnd, entry.startedMillis + entry.durationMillis);
+        }
+        return steps;
+    }
+
+    static void addWeighted(List<ScenarioRequest> step, ScenarioRequest request) {
+        for (int i = 0; i < step.size(); i++) {
+            ScenarioRequest existing = step.get(i);
+            if (existing.sameRequestAs(request)) {
+                step.set(i, existing.withWeight(existing.getWeight() + request.getWeight()));
+                return;
+            }
+        }
+        step.add(request);
+    }
+
+    private static Map<String, String> defaultTags(CurlRequest request) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("name", ScenarioRequest.defaultName(request));
+        return tags;
+    }
+
+    static final class Entry {
+        final int index;
+        final long startedMillis;
+        final double durationMillis;
+        final CurlRequest request;
+
+        Entry(int index, long startedMillis, double durationMillis, CurlRequest request) {
+            this.index = index;
+            this.startedMillis = startedMillis;
+            this.durationMillis = durationMillis;
+            this.request = request;
+        }
+    }
+}
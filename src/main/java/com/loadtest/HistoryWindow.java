@@ -0,0 +1,173 @@
+package com.loadtest;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.util.List;
+
+/**
+ * Run history of one test: p95 and RPS per stored run, the runs as a list, and the
+ * per-second series of the selected run. The list and trend come from the store's
+ * in-memory index; only the selected run is read from disk, off the FX thread.
+ * The selected run can be made the test's baseline or compared with it.
+ */
+public class HistoryWindow {
+    private final ResultsStore store;
+    private final ComboBox<String> testComboBox = new ComboBox<>();
+    private final ListView<RunSummary> runListView = new ListView<>();
+    private final LineChart<String, Number> trendChart = new LineChart<>(new CategoryAxis(), new NumberAxis());
+    private final LineChart<Number, Number> runChart = new LineChart<>(new NumberAxis(), new NumberAxis());
+    private final Label detailLabel = new Label("Select a run to see its per-second results.");
+    private final Label baselineLabel = new Label();
+    private final Button setBaselineButton = new Button("Set as Baseline");
+    private final Button compareButton = new Button("Compare with Baseline");
+
+    private final RegressionTolerance tolerance;
+
+    public HistoryWindow(ResultsStore store, RegressionTolerance tolerance) {
+        this.store = store;
+        this.tolerance = tolerance;
+    }
+
+    // Must be called on the FX thread
+    public void show(String testName) {
+        testComboBox.getItems().setAll(store.getTestNames());
+        testComboBox.setValue(testComboBox.getItems().contains(testName) ? testName
+                : testComboBox.getItems().isEmpty() ? null : testComboBox.getItems().get(0));
+        testComboBox.setOnAction(e -> showTest(testComboBox.getValue()));
+
+        trendChart.setTitle("p95 (ms) and RPS per run");
+        trendChart.setAnimated(false);
+        trendChart.setPrefHeight(250);
+        runChart.setTitle("Selected run, per second");
+        runChart.setAnimated(false);
+        runChart.setCreateSymbols(false);
+        runChart.setPrefHeight(250);
+        runListView.setPrefHeight(150);
+        runListView.getSelectionModel().selectedItemProperty().addListener((obs, old, run) -> showRun(run));
+        setBaselineButton.setOnAction(e -> setBaseline(runListView.getSelectionModel().getSelectedItem()));
+        compareButton.setOnAction(e -> compareWithBaseline(runListView.getSelectionModel().getSelectedItem()));
+
+        VBox root = new VBox(10,
+                new HBox(10, new Label("Test:"), testComboBox, baselineLabel),
+                trendChart,
+                runListView,
+                new HBox(10, setBaselineButton, compareButton),
+                detailLabel,
+                runChart);
+        root.setPadding(new Insets(10));
+
+        Stage stage = new Stage();
+        stage.setTitle("Run History");
+        stage.setScene(new Scene(root, 900, 750));
+        stage.show();
+        showTest(testComboBox.getValue());
+    }
+
+    private void showTest(String testName) {
+        List<RunSummary> runs = testName == null ? List.of() : store.find(testName);
+        runListView.getItems().setAll(runs);
+
+        XYChart.Series<String, Number> p95 = new XYChart.Series<>();
+        p95.setName("p95 (ms)");
+        XYChart.Series<String, Number> rps = new XYChart.Series<>();
+        rps.setName("RPS");
+        for (RunSummary run : runs) {
+            String label = "#" + run.getId();
+            p95.getData().add(new XYChart.Data<>(label, run.getP95Millis()));
+            rps.getData().add(new XYChart.Data<>(label, run.getRequestsPerSecond()));
+        }
+        trendChart.getData().setAll(List.of(p95, rps));
+        runChart.getData().clear();
+        showBaseline(testName);
+    }
+
+    private void showBaseline(String testName) {
+        RunSummary baseline = testName == null ? null : store.getBaseline(testName);
+        baselineLabel.setText(baseline == null ? "No baseline" : "Baseline: run #" + baseline.getId());
+    }
+
+    private void setBaseline(RunSummary summary) {
+        if (summary == null) {
+            detailLabel.setText("Select a run to use as the baseline.");
+            return;
+        }
+        try {
+            store.setBaseline(summary);
+            showBaseline(summary.getTestName());
+            detailLabel.setText("Run #" + summary.getId() + " is now the baseline of " + summary.getTestName() + ".");
+        } catch (Exception e) {
+            detailLabel.setText("Could not set the baseline: " + e.getMessage());
+        }
+    }
+
+    private void compareWithBaseline(RunSummary summary) {
+        RunSummary baseline = summary == null ? null : store.getBaseline(summary.getTestName());
+        if (baseline == null) {
+            detailLabel.setText("Select a run of a test that has a baseline.");
+            return;
+        }
+        RegressionTolerance tolerance = this.tolerance;
+        detailLabel.setText("Comparing run #" + summary.getId() + " with baseline #" + baseline.getId() + "...");
+        Thread comparer = new Thread(() -> {
+            try {
+                BaselineComparison comparison = BaselineComparison.compare(store.load(baseline), store.load(summary), tolerance);
+                Platform.runLater(() -> detailLabel.setText("Run #" + summary.getId() + ". " + comparison.report()));
+            } catch (Exception e) {
+                Platform.runLater(() -> detailLabel.setText("Could not compare run #" + summary.getId() + ": " + e.getMessage()));
+            }
+        }, "history-loader");
+        comparer.setDaemon(true);
+        comparer.start();
+    }
+
+    private void showRun(RunSummary summary) {
+        runChart.getData().clear();
+        if (summary == null) {
+            return;
+        }
+        detailLabel.setText("Loading run #" + summary.getId() + "...");
+        Thread loader = new Thread(() -> {
+            try {
+                StoredRun run = store.load(summary);
+                Platform.runLater(() -> showSeries(run));
+            } catch (Exception e) {
+                Platform.runLater(() -> detailLabel.setText("Could not load run #" + summary.getId() + ": " + e.getMessage()));
+            }
+        }, "history-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void showSeries(StoredRun run) {
+        XYChart.Series<Number, Number> p95 = new XYChart.Series<>();
+        p95.setName("p95 (ms)");
+        XYChart.Series<Number, Number> rps = new XYChart.Series<>();
+        rps.setName("RPS");
+        long[] seconds = run.getSeconds();
+        for (int i = 0; i < seconds.length; i++) {
+            long offset = seconds[i] - seconds[0];
+            p95.getData().add(new XYChart.Data<>(offset, run.getP95Millis()[i]));
+            rps.getData().add(new XYChart.Data<>(offset, run.getRequests()[i]));
+        }
+        runChart.getData().setAll(List.of(p95, rps));
+
+        StringBuilder text = new StringBuilder(run.getSummary().toString());
+        for (ThresholdEvaluator.Result result : run.getThresholds()) {
+            text.append("\n  ").append(result);
+        }
+        detailLabel.setText(text.toString());
+    }
+}
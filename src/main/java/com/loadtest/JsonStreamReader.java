@@ -0,0 +1,361 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal pull parser for JSON documents that may be far larger than the heap, such as
+ * HAR captures. Values the caller does not ask for are skipped character by character
+ * without being materialised, so a 100 MB response body costs no memory.
+ */
+public class JsonStreamReader implements Closeable {
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private final StringBuilder scratch = new StringBuilder();
+
+    // Container stack: true for objects, false for arrays
+    private boolean[] stack = new boolean[32];
+    private int depth;
+    private boolean expectName;
+    private boolean needComma;
+    private Token peeked;
+
+    public JsonStreamReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c = nextNonWhitespace();
+        if (depth > 0 && (c == '}' || c == ']')) {
+            peeked = c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+            pos--;
+            return peeked;
+        }
+        if (needComma) {
+            if (c != ',') {
+                throw syntaxError("Expected ',' but found " + describe(c));
+            }
+            c = nextNonWhitespace();
+        }
+        pos--;
+        switch (c) {
+            case -1: peeked = Token.END_DOCUMENT; break;
+            case '{': peeked = Token.BEGIN_OBJECT; break;
+            case '[': peeked = Token.BEGIN_ARRAY; break;
+            case '"': peeked = expectName ? Token.NAME : Token.STRING; break;
+            case 't':
+            case 'f': peeked = Token.BOOLEAN; break;
+            case 'n': peeked = Token.NULL; break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peeked = Token.NUMBER;
+                } else {
+                    throw syntaxError("Unexpected character " + describe(c));
+                }
+        }
+        if (expectName && peeked != Token.NAME) {
+            throw syntaxError("Expected a property name");
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        pos++;
+        push(true);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        pos++;
+        pop();
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        pos++;
+        push(false);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        pos++;
+        pop();
+    }
+
+    public String nextName() throws IOException {
+        consume(Token.NAME);
+        pos++;
+        String name = readString();
+        if (nextNonWhitespace() != ':') {
+            throw syntaxError("Expected ':' after property name");
+        }
+        expectName = false;
+        needComma = false;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.NUMBER) {
+            peeked = null;
+            String number = readLiteral();
+            afterValue();
+            return number;
+        }
+        consume(Token.STRING);
+        pos++;
+        String value = readString();
+        afterValue();
+        return value;
+    }
+
+    public double nextDouble() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            String text = nextString();
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected a number but found \"" + text + "\"");
+            }
+        }
+        consume(Token.NUMBER);
+        String literal = readLiteral();
+        afterValue();
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number " + literal);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        consume(Token.BOOLEAN);
+        String literal = readLiteral();
+        afterValue();
+        if (literal.equals("true")) {
+            return true;
+        }
+        if (literal.equals("false")) {
+            return false;
+        }
+        throw syntaxError("Malformed literal " + literal);
+    }
+
+    public void nextNull() throws IOException {
+        consume(Token.NULL);
+        String literal = readLiteral();
+        afterValue();
+        if (!literal.equals("null")) {
+            throw syntaxError("Malformed literal " + literal);
+        }
+    }
+
+    // Skips the next value, including nested containers, without building strings
+    public void skipValue() throws IOException {
+        Token token = peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                peeked = null;
+                pos++;
+                int nesting = 1;
+                while (nesting > 0) {
+                    int c = read();
+                    if (c == -1) {
+                        throw syntaxError("Unterminated container");
+                    } else if (c == '"') {
+                        skipString();
+                    } else if (c == '{' || c == '[') {
+                        nesting++;
+                    } else if (c == '}' || c == ']') {
+                        nesting--;
+                    }
+                }
+                afterValue();
+                break;
+            case STRING:
+                peeked = null;
+                pos++;
+                skipString();
+                afterValue();
+                break;
+            case NAME:
+                nextName();
+                skipValue();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                peeked = null;
+                readLiteral();
+                afterValue();
+                break;
+            default:
+                throw syntaxError("Nothing to skip at " + token);
+        }
+    }
+
+    private void consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but found " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(boolean isObject) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = isObject;
+        expectName = isObject;
+        needComma = false;
+    }
+
+    private void pop() {
+        depth--;
+        afterValue();
+    }
+
+    private void afterValue() {
+        needComma = depth > 0;
+        expectName = depth > 0 && stack[depth - 1];
+    }
+
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\\') {
+                scratch.append(readEscape());
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case 'r': return '\r';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            case -1:
+                throw syntaxError("Unterminated escape");
+            default:
+                return (char) c;
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            if (pos >= limit && !fill()) {
+                break;
+            }
+            char c = buffer[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == ':') {
+                break;
+            }
+            scratch.append(c);
+            pos++;
+        }
+        return scratch.toString();
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            // Keep pos-- after EOF harmless
+            pos = limit + 1;
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        if (pos > limit) {
+            return false;
+        }
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            pos = limit;
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Invalid JSON: " + message);
+    }
+
+    private static String describe(int c) {
+        return c == -1 ? "end of input" : "'" + (char) c + "'";
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,338 @@
+package com.loadtest;
+
+/**
+ * Allocation-free parser for single lines of k6 "--out json" output, e.g.
+ *
+ *   {"metric":"http_req_duration","type":"Point","data":{"time":"2024-05-01T10:00:00.12+02:00","value":12.5,"tags":{...}}}
+ *
+ * Only "Point" lines for metrics listed in {@link K6Metric} are reported; the rest
+ * (metric declarations, untracked metrics, malformed lines) are skipped. Key order
+ * does not matter and tag values are skipped without being decoded.
+ *
+ * Instances are not thread-safe; use one per reader thread.
+ */
+public class K6JsonParser {
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    // Parses buf[start, end) into out; returns true if it was a tracked data point
+    public boolean parse(byte[] buf, int start, int end, K6Sample out) {
+        this.buf = buf;
+        this.pos = start;
+        this.end = end;
+        out.reset();
+        try {
+            return parseLine(out);
+        } catch (MalformedLineException e) {
+            return false;
+        }
+    }
+
+    private boolean parseLine(K6Sample out) {
+        skipWhitespace();
+        expect('{');
+        boolean isPoint = false;
+        skipWhitespace();
+        if (peek() == '}') {
+            return false;
+        }
+        while (true) {
+            skipWhitespace();
+            int keyStart = pos + 1;
+            int keyEnd = skipString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, "type")) {
+                int valueStart = pos + 1;
+                int valueEnd = skipString();
+                isPoint = keyEquals(valueStart, valueEnd, "Point");
+                if (!isPoint) {
+                    return false;
+                }
+            } else if (keyEquals(keyStart, keyEnd, "metric")) {
+                int valueStart = pos + 1;
+                int valueEnd = skipString();
+                out.metric = K6Metric.match(buf, valueStart, valueEnd);
+                if (out.metric == null) {
+                    // Untracked metric: no need to look at the rest of the line
+                    return false;
+                }
+            } else if (keyEquals(keyStart, keyEnd, "data")) {
+                parseData(out);
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+            byte next = next();
+            if (next == '}') {
+                break;
+            }
+            if (next != ',') {
+                throw MalformedLineException.INSTANCE;
+            }
+        }
+        return isPoint && out.metric != null && out.hasValue && out.hasTime;
+    }
+
+    private void parseData(K6Sample out) {
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            int keyStart = pos + 1;
+            int keyEnd = skipString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (keyEquals(keyStart, keyEnd, "value")) {
+                out.value = parseNumber();
+                out.hasValue = true;
+            } else if (keyEquals(keyStart, keyEnd, "time")) {
+                int valueStart = pos + 1;
+                int valueEnd = skipString();
+                out.epochSecond = parseEpochSecond(valueStart, valueEnd);
+                out.hasTime = true;
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+            byte next = next();
+            if (next == '}') {
+                return;
+            }
+            if (next != ',') {
+                throw MalformedLineException.INSTANCE;
+            }
+        }
+    }
+
+    // RFC 3339 timestamp, e.g. 2024-05-01T10:00:00.123456789+02:00 or ...Z
+    private long parseEpochSecond(int start, int stop) {
+        if (stop - start < 20) {
+            throw MalformedLineException.INSTANCE;
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int second = digits(start + 17, 2);
+
+        int i = start + 19;
+        if (i < stop && buf[i] == '.') {
+            i++;
+            while (i < stop && buf[i] >= '0' && buf[i] <= '9') {
+                i++;
+            }
+        }
+        int offsetSeconds = 0;
+        if (i < stop && (buf[i] == '+' || buf[i] == '-')) {
+            if (stop - i < 6) {
+                throw MalformedLineException.INSTANCE;
+            }
+            int sign = buf[i] == '-' ? -1 : 1;
+            offsetSeconds = sign * (digits(i + 1, 2) * 3600 + digits(i + 4, 2) * 60);
+        }
+        return daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's algorithm)
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw MalformedLineException.INSTANCE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private double parseNumber() {
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (buf[pos] - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponent++;
+            }
+            anyDigits = true;
+            pos++;
+        }
+        if (pos < end && buf[pos] == '.') {
+            pos++;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (buf[pos] - '0');
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                    exponent--;
+                }
+                anyDigits = true;
+                pos++;
+            }
+        }
+        if (!anyDigits) {
+            throw MalformedLineException.INSTANCE;
+        }
+        if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            int exponentSign = 1;
+            if (pos < end && (buf[pos] == '+' || buf[pos] == '-')) {
+                exponentSign = buf[pos] == '-' ? -1 : 1;
+                pos++;
+            }
+            int explicitExponent = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                explicitExponent = Math.min(explicitExponent * 10 + (buf[pos] - '0'), 1000);
+                pos++;
+            }
+            exponent += exponentSign * explicitExponent;
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < POW10.length ? value / POW10[-exponent] : value * Math.pow(10, exponent);
+        } else if (exponent > 0) {
+            value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    // Skips a JSON string starting at pos and returns the index of its closing quote
+    private int skipString() {
+        expect('"');
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == '"') {
+                pos++;
+                return pos - 1;
+            } else {
+                pos++;
+            }
+        }
+        throw MalformedLineException.INSTANCE;
+    }
+
+    private void skipValue() {
+        byte c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < end) {
+                c = buf[pos];
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        pos++;
+                        return;
+                    }
+                }
+                pos++;
+            }
+            throw MalformedLineException.INSTANCE;
+        } else {
+            // number, true, false, null
+            while (pos < end) {
+                c = buf[pos];
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                    return;
+                }
+                pos++;
+            }
+        }
+    }
+
+    private boolean keyEquals(int start, int stop, String expected) {
+        int length = expected.length();
+        if (stop - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[start + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte c = buf[pos];
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw MalformedLineException.INSTANCE;
+        }
+        return buf[pos];
+    }
+
+    private byte next() {
+        byte c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw MalformedLineException.INSTANCE;
+        }
+    }
+
+    // Preallocated and stackless: malformed lines are expected and must stay cheap
+    private static final class MalformedLineException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final MalformedLineException INSTANCE = new MalformedLineException();
+
+        private MalformedLineException() {
+            super("Malformed k6 JSON line", null, false, false);
+        }
+    }
+}
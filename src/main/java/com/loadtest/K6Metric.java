@@ -0,0 +1,63 @@
+package com.loadtest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Metrics from the k6 JSON output that the live aggregator understands.
+ * The names are kept as bytes so the parser can match them without building Strings.
+ */
+public enum K6Metric {
+    HTTP_REQ_DURATION("http_req_duration"),
+    HTTP_REQS("http_reqs"),
+    HTTP_REQ_FAILED("http_req_failed"),
+    RESPONSE_TIMES("response_times"),
+    SUCCESS_RATE("success_rate"),
+    ERROR_COUNTER("error_counter"),
+    // Emitted by arrival-rate executors when no VU was free to start a scheduled iteration
+    DROPPED_ITERATIONS("dropped_iterations"),
+    // Connection setup of each request, zero when a connection was reused
+    HTTP_REQ_CONNECTING("http_req_connecting"),
+    HTTP_REQ_TLS_HANDSHAKING("http_req_tls_handshaking");
+
+    private static final K6Metric[] VALUES = values();
+
+    private final String metricName;
+    private final byte[] nameBytes;
+
+    K6Metric(String metricName) {
+        this.metricName = metricName;
+        this.nameBytes = metricName.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+
+    // Returns the metric whose name equals buf[start, end), or null if it is not tracked
+    public static K6Metric match(byte[] buf, int start, int end) {
+        int length = end - start;
+        for (K6Metric metric : VALUES) {
+            byte[] name = metric.nameBytes;
+            if (name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && buf[start + i] == name[i]) {
+                i++;
+            }
+            if (i == length) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    public static K6Metric fromName(String name) {
+        for (K6Metric metric : VALUES) {
+            if (metric.metricName.equals(name)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.loadtest;
+
+/**
+ * Mutable holder for one parsed k6 data point; reused across lines to avoid allocation.
+ */
+public class K6Sample {
+    K6Metric metric;
+    double value;
+    long epochSecond;
+    boolean hasValue;
+    boolean hasTime;
+
+    void reset() {
+        metric = null;
+        value = 0;
+        epochSecond = 0;
+        hasValue = false;
+        hasTime = false;
+    }
+
+    public K6Metric getMetric() {
+        return metric;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+}
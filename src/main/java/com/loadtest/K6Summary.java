@@ -0,0 +1,166 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * k6's end-of-test summary as written by "--summary-export": every metric's statistics
+ * (avg, p(95), count, rate, ...) and the pass/fail counts of every check. It covers
+ * metrics the stream aggregator does not track, such as iterations, data sent and VUs.
+ */
+public class K6Summary {
+    private final Map<String, Map<String, Double>> metrics;
+    private final List<Check> checks;
+
+    private K6Summary(Map<String, Map<String, Double>> metrics, List<Check> checks) {
+        this.metrics = metrics;
+        this.checks = checks;
+    }
+
+    public static K6Summary read(Path file) throws IOException {
+        Map<String, Map<String, Double>> metrics = new TreeMap<>();
+        List<Check> checks = new ArrayList<>();
+        try (Reader source = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonStreamReader json = new JsonStreamReader(source)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "metrics":
+                        readMetrics(json, metrics);
+                        break;
+                    case "root_group":
+                        readGroup(json, "", checks);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        return new K6Summary(Collections.unmodifiableMap(metrics), Collections.unmodifiableList(checks));
+    }
+
+    private static void readMetrics(JsonStreamReader json, Map<String, Map<String, Double>> metrics) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String metric = json.nextName();
+            Map<String, Double> values = new LinkedHashMap<>();
+            json.beginObject();
+            while (json.hasNext()) {
+                String statistic = json.nextName();
+                if (json.peek() == JsonStreamReader.Token.NUMBER) {
+                    values.put(statistic, json.nextDouble());
+                } else {
+                    // "thresholds" and anything else that is not a plain number
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            metrics.put(metric, Collections.unmodifiableMap(values));
+        }
+        json.endObject();
+    }
+
+    // Groups nest; check names are prefixed with their group path
+    private static void readGroup(JsonStreamReader json, String prefix, List<Check> checks) throws IOException {
+        String name = "";
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "checks":
+                    String groupPrefix = prefix + (name.isEmpty() ? "" : name + " / ");
+                    if (json.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            checks.add(readCheck(json, groupPrefix, null));
+                        }
+                        json.endArray();
+                    } else {
+                        // Older k6 versions write checks as an object keyed by name
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            String checkName = json.nextName();
+                            checks.add(readCheck(json, groupPrefix, checkName));
+                        }
+                        json.endObject();
+                    }
+                    break;
+                case "groups":
+                    String nestedPrefix = prefix + (name.isEmpty() ? "" : name + " / ");
+                    if (json.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            readGroup(json, nestedPrefix, checks);
+                        }
+                        json.endArray();
+                    } else {
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            json.nextName();
+                            readGroup(json, nestedPrefix, checks);
+                        }
+                        json.endObject();
+                    }
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private static Check readCheck(JsonStreamReader json, String prefix, String name) throws IOException {
+        long passes = 0;
+        long fails = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "passes":
+                    passes = (long) json.nextDouble();
+                    break;
+                case "fails":
+                    fails = (long) json.nextDouble();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new Check(prefix + (name == null ? "" : name), passes, fails);
+    }
+
+    // Metric name to its statistics in k6's order, e.g. "http_reqs" -> {count, rate}
+    public Map<String, Map<String, Double>> getMetrics() { return metrics; }
+    public List<Check> getChecks() { return checks; }
+
+    public static class Check {
+        private final String name;
+        private final long passes;
+        private final long fails;
+
+        Check(String name, long passes, long fails) {
+            this.name = name;
+            this.passes = passes;
+            this.fails = fails;
+        }
+
+        public String getName() { return name; }
+        public long getPasses() { return passes; }
+        public long getFails() { return fails; }
+    }
+}
@@ -0,0 +1,121 @@
+package com.loadtest;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Service time distribution of the calibration target, in milliseconds:
+ *  - fixed:20          every response takes 20 ms
+ *  - uniform:10-50     evenly spread between 10 and 50 ms
+ *  - exp:20            exponential with a mean of 20 ms
+ *  - lognormal:20:0.5  log-normal with a median of 20 ms and sigma 0.5 (long right tail)
+ */
+public class LatencyDistribution {
+    public enum Kind { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+
+    private final Kind kind;
+    private final double first;
+    private final double second;
+
+    private LatencyDistribution(Kind kind, double first, double second) {
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+    }
+
+    public static LatencyDistribution fixed(double millis) {
+        return new LatencyDistribution(Kind.FIXED, millis, 0);
+    }
+
+    public static LatencyDistribution parse(String text) throws Exception {
+        String trimmed = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        String[] parts = trimmed.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    if (parts.length == 2) {
+                        return new LatencyDistribution(Kind.FIXED, millis(parts[1]), 0);
+                    }
+                    break;
+                case "uniform":
+                    String[] range = parts.length == 2 ? parts[1].split("-") : new String[0];
+                    if (range.length == 2) {
+                        double min = millis(range[0]);
+                        double max = millis(range[1]);
+                        if (max < min) {
+                            throw new Exception("The uniform latency range must be written low-high, e.g. uniform:10-50");
+                        }
+                        return new LatencyDistribution(Kind.UNIFORM, min, max);
+                    }
+                    break;
+                case "exp":
+                case "exponential":
+                    if (parts.length == 2) {
+                        return new LatencyDistribution(Kind.EXPONENTIAL, millis(parts[1]), 0);
+                    }
+                    break;
+                case "lognormal":
+                    if (parts.length == 3) {
+                        return new LatencyDistribution(Kind.LOGNORMAL, millis(parts[1]), millis(parts[2]));
+                    }
+                    break;
+                default:
+                    // A bare number is a fixed latency
+                    if (parts.length == 1 && parts[0].matches("\\d+(\\.\\d+)?")) {
+                        return new LatencyDistribution(Kind.FIXED, millis(parts[0]), 0);
+                    }
+            }
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid latency '" + text + "': the values must be numbers.");
+        }
+        throw new Exception("Invalid latency '" + text
+                + "'. Use fixed:20, uniform:10-50, exp:20 or lognormal:20:0.5 (milliseconds).");
+    }
+
+    private static double millis(String value) throws Exception {
+        double parsed = Double.parseDouble(value.trim());
+        if (parsed < 0 || Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+            throw new Exception("Latency values cannot be negative.");
+        }
+        return parsed;
+    }
+
+    // One service time in microseconds
+    public long sampleMicros(Random random) {
+        double millis;
+        switch (kind) {
+            case UNIFORM:
+                millis = first + random.nextDouble() * (second - first);
+                break;
+            case EXPONENTIAL:
+                millis = -first * Math.log(1 - random.nextDouble());
+                break;
+            case LOGNORMAL:
+                millis = first * Math.exp(second * random.nextGaussian());
+                break;
+            default:
+                millis = first;
+        }
+        return Math.min(Math.round(millis * 1000), LatencyHistogram.DEFAULT_HIGHEST_VALUE);
+    }
+
+    public Kind getKind() { return kind; }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case UNIFORM:
+                return String.format(Locale.ROOT, "uniform:%s-%s", format(first), format(second));
+            case EXPONENTIAL:
+                return "exp:" + format(first);
+            case LOGNORMAL:
+                return String.format(Locale.ROOT, "lognormal:%s:%s", format(first), format(second));
+            default:
+                return "fixed:" + format(first);
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
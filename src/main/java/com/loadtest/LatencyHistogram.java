@@ -0,0 +1,198 @@
+package com.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * HDR-style log-linear histogram of non-negative long values (microseconds in practice).
+ *
+ * Values below 256 are counted exactly; above that every power-of-two range is split
+ * into 128 linear sub-buckets, so any recorded value is within 1% of its bucket.
+ * Counts live in a single flat array, which makes recording allocation-free and
+ * merging a plain element-wise add.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_BITS;       // 128
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT << 1;      // 256
+
+    // One hour in microseconds; larger values are clamped into the top bucket
+    public static final long DEFAULT_HIGHEST_VALUE = 3_600_000_000L;
+
+    private final long highestTrackableValue;
+    private final long[] counts;
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+    private double sum;
+
+    public LatencyHistogram() {
+        this(DEFAULT_HIGHEST_VALUE);
+    }
+
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("highestTrackableValue must be at least " + SUB_BUCKET_COUNT);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new long[indexFor(highestTrackableValue) + 1];
+    }
+
+    static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    // Lowest value that maps to the given bucket
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return subBucket << shift;
+    }
+
+    static long bucketWidthAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return 1;
+        }
+        return 1L << ((index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1);
+    }
+
+    // Representative value of a bucket: its midpoint
+    public static long valueAt(int index) {
+        return lowestValueAt(index) + (bucketWidthAt(index) - 1) / 2;
+    }
+
+    public void record(long value) {
+        recordCount(value, 1);
+    }
+
+    public void recordCount(long value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        long clamped = Math.min(value, highestTrackableValue);
+        counts[indexFor(clamped)] += count;
+        totalCount += count;
+        sum += (double) value * count;
+        if (value < minValue) {
+            minValue = value;
+        }
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    // Adds raw bucket counts, e.g. when decoding a stored histogram
+    public void recordAtIndex(int index, long count) {
+        if (count <= 0) {
+            return;
+        }
+        counts[index] += count;
+        totalCount += count;
+        long value = valueAt(index);
+        sum += (double) value * count;
+        minValue = Math.min(minValue, lowestValueAt(index));
+        maxValue = Math.max(maxValue, Math.min(highestTrackableValue, lowestValueAt(index) + bucketWidthAt(index) - 1));
+    }
+
+    public void add(LatencyHistogram other) {
+        if (other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histograms have different ranges");
+        }
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        if (totalCount == 0) {
+            return;
+        }
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+        sum = 0;
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(highestTrackableValue);
+        copy.add(this);
+        return copy;
+    }
+
+    // percentile in [0, 100]; returns 0 for an empty histogram
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double clamped = Math.min(Math.max(percentile, 0.0), 100.0);
+        long target = Math.max(1, (long) Math.ceil(clamped / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(Math.max(valueAt(i), minValue), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    // Fraction of recorded values that are <= value
+    public double fractionAtOrBelow(long value) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        int limit = indexFor(Math.min(Math.max(value, 0), highestTrackableValue));
+        long seen = 0;
+        for (int i = 0; i <= limit; i++) {
+            seen += counts[i];
+        }
+        return (double) seen / totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long getMax() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    public long getCountAtIndex(int index) {
+        return counts[index];
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+}
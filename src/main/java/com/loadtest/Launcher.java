@@ -0,0 +1,16 @@
+package com.loadtest;
+
+/**
+ * Main class of the jar. Starts the headless CLI when a command is given and the
+ * JavaFX application otherwise, so CLI runs never load the JavaFX toolkit.
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            LoadTestCli.main(args);
+        } else {
+            LoadTestGenerator.main(args);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size buffer holding the most recent lines of process output.
+ * Memory use is bounded by capacity * maxLineLength no matter how much is written.
+ */
+public class LineRingBuffer {
+    private final String[] lines;
+    private final int maxLineLength;
+    private int next;
+    private int size;
+    private long totalLines;
+
+    public LineRingBuffer(int capacity, int maxLineLength) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.lines = new String[capacity];
+        this.maxLineLength = maxLineLength;
+    }
+
+    public synchronized void add(String line) {
+        if (line.length() > maxLineLength) {
+            line = line.substring(0, maxLineLength) + "...";
+        }
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        if (size < lines.length) {
+            size++;
+        }
+        totalLines++;
+    }
+
+    // Returns the retained lines, oldest first
+    public synchronized List<String> snapshot() {
+        List<String> result = new ArrayList<>(size);
+        int start = (next - size + lines.length) % lines.length;
+        for (int i = 0; i < size; i++) {
+            result.add(lines[(start + i) % lines.length]);
+        }
+        return result;
+    }
+
+    public synchronized String last() {
+        return size == 0 ? null : lines[(next - 1 + lines.length) % lines.length];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getTotalLines() {
+        return totalLines;
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+}
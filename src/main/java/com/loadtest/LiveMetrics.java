@@ -0,0 +1,52 @@
+package com.loadtest;
+
+/**
+ * Immutable snapshot of a running test, produced by {@link MetricsAggregator#snapshot()}.
+ * Latencies are in milliseconds; the rolling values cover the last few complete seconds.
+ */
+public class LiveMetrics {
+    private final long elapsedSeconds;
+    private final double requestsPerSecond;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final long totalRequests;
+    private final long failedRequests;
+    private final long errorCount;
+    private final double successRate;
+    private final long droppedIterations;
+
+    public LiveMetrics(long elapsedSeconds, double requestsPerSecond, double p50Millis, double p95Millis,
+                       double p99Millis, long totalRequests, long failedRequests, long errorCount, double successRate,
+                       long droppedIterations) {
+        this.elapsedSeconds = elapsedSeconds;
+        this.requestsPerSecond = requestsPerSecond;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.totalRequests = totalRequests;
+        this.failedRequests = failedRequests;
+        this.errorCount = errorCount;
+        this.successRate = successRate;
+        this.droppedIterations = droppedIterations;
+    }
+
+    public long getElapsedSeconds() { return elapsedSeconds; }
+    public double getRequestsPerSecond() { return requestsPerSecond; }
+    public double getP50Millis() { return p50Millis; }
+    public double getP95Millis() { return p95Millis; }
+    public double getP99Millis() { return p99Millis; }
+    public long getTotalRequests() { return totalRequests; }
+    public long getFailedRequests() { return failedRequests; }
+    public long getErrorCount() { return errorCount; }
+
+    // NaN until the script has reported any success_rate samples
+    public double getSuccessRate() { return successRate; }
+
+    // Iterations an arrival-rate executor could not start because all VUs were busy
+    public long getDroppedIterations() { return droppedIterations; }
+
+    public double getFailureRate() {
+        return totalRequests == 0 ? 0 : (double) failedRequests / totalRequests;
+    }
+}
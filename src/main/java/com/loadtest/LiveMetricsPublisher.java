@@ -0,0 +1,54 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pushes metrics snapshots to a sink at a fixed, low rate. However many samples
+ * k6 produces, the sink (and with it the FX thread) sees at most one update per interval.
+ */
+public class LiveMetricsPublisher implements Closeable {
+    private final Supplier<LiveMetrics> snapshots;
+    private final Consumer<LiveMetrics> sink;
+    private final ScheduledExecutorService scheduler;
+
+    public LiveMetricsPublisher(MetricsAggregator aggregator, Consumer<LiveMetrics> sink, long intervalMillis) {
+        this(aggregator::snapshot, sink, intervalMillis);
+    }
+
+    // For sources other than a single aggregator, e.g. the merged shards of a run
+    public LiveMetricsPublisher(Supplier<LiveMetrics> snapshots, Consumer<LiveMetrics> sink, long intervalMillis) {
+        this.snapshots = snapshots;
+        this.sink = sink;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "live-metrics-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish() {
+        try {
+            sink.accept(snapshots.get());
+        } catch (RuntimeException e) {
+            System.err.println("Live metrics sink failed: " + e.getMessage());
+        }
+    }
+
+    // Stops the schedule and publishes one final snapshot
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        publish();
+    }
+}
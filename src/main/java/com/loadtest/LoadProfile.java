@@ -0,0 +1,232 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Shape of the load a generated script applies.
+ *
+ * The closed-loop model (a fixed number of VUs, each waiting for its response and then
+ * sleeping) caps throughput at what the target lets through and hides latency through
+ * coordinated omission. The arrival-rate models start iterations on a fixed schedule
+ * instead, whatever the response times are.
+ */
+public class LoadProfile {
+    public enum Executor {
+        CLOSED_LOOP("Virtual users (closed loop)"),
+        CONSTANT_ARRIVAL_RATE("Constant arrival rate"),
+        RAMPING_ARRIVAL_RATE("Ramping arrival rate");
+
+        private final String label;
+
+        Executor(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Executor fromLabel(String label) {
+            for (Executor executor : values()) {
+                if (executor.label.equals(label)) {
+                    return executor;
+                }
+            }
+            return CLOSED_LOOP;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static class Stage {
+        private final String duration;
+        private final int target;
+
+        public Stage(String duration, int target) {
+            this.duration = duration;
+            this.target = target;
+        }
+
+        public String getDuration() { return duration; }
+        public int getTarget() { return target; }
+    }
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(\\.\\d+)?(ms|s|m|h))+");
+
+    // The generated script used to sleep 1s after every iteration; closed loop keeps that default
+    public static final double DEFAULT_CLOSED_LOOP_THINK_TIME = 1.0;
+
+    private final Executor executor;
+    private final int vus;
+    private final String duration;
+    private final int rate;
+    private final String timeUnit;
+    private final int preAllocatedVUs;
+    private final int maxVUs;
+    private final int startRate;
+    private final List<Stage> stages;
+    private final double thinkTimeSeconds;
+
+    private LoadProfile(Executor executor, int vus, String duration, int rate, String timeUnit, int preAllocatedVUs,
+                        int maxVUs, int startRate, List<Stage> stages, double thinkTimeSeconds) {
+        this.executor = executor;
+        this.vus = vus;
+        this.duration = duration;
+        this.rate = rate;
+        this.timeUnit = timeUnit;
+        this.preAllocatedVUs = preAllocatedVUs;
+        this.maxVUs = maxVUs;
+        this.startRate = startRate;
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        this.thinkTimeSeconds = thinkTimeSeconds;
+    }
+
+    public static LoadProfile closedLoop(String vus, String duration) throws Exception {
+        return closedLoop(vus, duration, DEFAULT_CLOSED_LOOP_THINK_TIME);
+    }
+
+    public static LoadProfile closedLoop(String vus, String duration, double thinkTimeSeconds) throws Exception {
+        return new LoadProfile(Executor.CLOSED_LOOP, positive("Virtual Users", vus), checkDuration(duration),
+                0, "1s", 0, 0, 0, Collections.emptyList(), checkThinkTime(thinkTimeSeconds));
+    }
+
+    // rate iterations per second for the whole duration
+    public static LoadProfile constantArrivalRate(int rate, String duration, int preAllocatedVUs, int maxVUs,
+                                                  double thinkTimeSeconds) throws Exception {
+        if (rate <= 0) {
+            throw new Exception("Target RPS must be a positive number.");
+        }
+        checkVuPool(preAllocatedVUs, maxVUs);
+        return new LoadProfile(Executor.CONSTANT_ARRIVAL_RATE, 0, checkDuration(duration), rate, "1s",
+                preAllocatedVUs, maxVUs, 0, Collections.emptyList(), checkThinkTime(thinkTimeSeconds));
+    }
+
+    public static LoadProfile rampingArrivalRate(int startRate, List<Stage> stages, int preAllocatedVUs, int maxVUs,
+                                                 double thinkTimeSeconds) throws Exception {
+        if (startRate < 0) {
+            throw new Exception("Start rate cannot be negative.");
+        }
+        if (stages.isEmpty()) {
+            throw new Exception("Ramping arrival rate needs at least one stage, e.g. 30s:100, 1m:500");
+        }
+        checkVuPool(preAllocatedVUs, maxVUs);
+        return new LoadProfile(Executor.RAMPING_ARRIVAL_RATE, 0, "", 0, "1s",
+                preAllocatedVUs, maxVUs, startRate, stages, checkThinkTime(thinkTimeSeconds));
+    }
+
+    // Parses "30s:100, 1m:500, 30s:0" into stages
+    public static List<Stage> parseStages(String text) throws Exception {
+        List<Stage> stages = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return stages;
+        }
+        for (String part : text.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] pieces = trimmed.split(":");
+            if (pieces.length != 2) {
+                throw new Exception("Invalid stage '" + trimmed + "'. Use duration:target, e.g. 1m:500");
+            }
+            int target = nonNegative("Stage target", pieces[1].trim());
+            stages.add(new Stage(checkDuration(pieces[0].trim()), target));
+        }
+        return stages;
+    }
+
+    // Reads the UI fields; only the ones that apply to the chosen executor are validated
+    public static LoadProfile fromInputs(Executor executor, String vus, String duration, String rate,
+                                         String preAllocatedVUs, String maxVUs, String stages,
+                                         String thinkTime) throws Exception {
+        double thinkTimeSeconds = thinkTime == null || thinkTime.isBlank()
+                ? (executor == Executor.CLOSED_LOOP ? DEFAULT_CLOSED_LOOP_THINK_TIME : 0)
+                : parseThinkTime(thinkTime);
+        switch (executor) {
+            case CONSTANT_ARRIVAL_RATE:
+                return constantArrivalRate(positive("Target RPS", rate), duration,
+                        positive("Pre-allocated VUs", preAllocatedVUs), positive("Max VUs", maxVUs), thinkTimeSeconds);
+            case RAMPING_ARRIVAL_RATE:
+                return rampingArrivalRate(rate == null || rate.isBlank() ? 0 : nonNegative("Start rate", rate),
+                        parseStages(stages), positive("Pre-allocated VUs", preAllocatedVUs),
+                        positive("Max VUs", maxVUs), thinkTimeSeconds);
+            default:
+                return closedLoop(vus, duration, thinkTimeSeconds);
+        }
+    }
+
+    private static int positive(String field, String value) throws Exception {
+        int parsed = nonNegative(field, value);
+        if (parsed == 0) {
+            throw new Exception(field + " must be greater than zero.");
+        }
+        return parsed;
+    }
+
+    private static int nonNegative(String field, String value) throws Exception {
+        try {
+            int parsed = Integer.parseInt(value == null ? "" : value.trim());
+            if (parsed < 0) {
+                throw new Exception(field + " cannot be negative.");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new Exception(field + " must be a whole number.");
+        }
+    }
+
+    private static String checkDuration(String duration) throws Exception {
+        String trimmed = duration == null ? "" : duration.trim();
+        if (!DURATION.matcher(trimmed).matches()) {
+            throw new Exception("Invalid duration '" + trimmed + "'. Use values like 30s, 5m or 1h30m.");
+        }
+        return trimmed;
+    }
+
+    private static void checkVuPool(int preAllocatedVUs, int maxVUs) throws Exception {
+        if (preAllocatedVUs <= 0) {
+            throw new Exception("Pre-allocated VUs must be greater than zero.");
+        }
+        if (maxVUs < preAllocatedVUs) {
+            throw new Exception("Max VUs cannot be lower than pre-allocated VUs.");
+        }
+    }
+
+    private static double parseThinkTime(String value) throws Exception {
+        try {
+            return checkThinkTime(Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new Exception("Think time must be a number of seconds.");
+        }
+    }
+
+    private static double checkThinkTime(double seconds) throws Exception {
+        if (seconds < 0 || Double.isNaN(seconds) || Double.isInfinite(seconds)) {
+            throw new Exception("Think time cannot be negative.");
+        }
+        return seconds;
+    }
+
+    public Executor getExecutor() { return executor; }
+    public int getVus() { return vus; }
+    public String getDuration() { return duration; }
+    public int getRate() { return rate; }
+    public String getTimeUnit() { return timeUnit; }
+    public int getPreAllocatedVUs() { return preAllocatedVUs; }
+    public int getMaxVUs() { return maxVUs; }
+    public int getStartRate() { return startRate; }
+    public List<Stage> getStages() { return stages; }
+
+    // 0 means iterations run back to back
+    public double getThinkTimeSeconds() { return thinkTimeSeconds; }
+
+    public boolean isOpenModel() {
+        return executor != Executor.CLOSED_LOOP;
+    }
+}
@@ -0,0 +1,445 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless entry point for CI agents and load generator hosts: converts cURL or HAR
+ * input into a k6 script and optionally runs it, without starting JavaFX. Progress goes
+ * to stderr; the script or the JSON result goes to stdout or a file, and the exit code
+ * tells whether the test passed.
+ */
+public class LoadTestCli {
+    public static final int EXIT_PASSED = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_ERROR = 2;
+    public static final int EXIT_CANCELLED = 3;
+
+    // Seconds between progress lines while a test runs
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar K6UILoadTest.jar <generate|run|calibrate|capacity> [options]",
+            "",
+            "Commands:",
+            "  generate                 Write the k6 script for the given requests",
+            "  run                      Generate (or load) a script and run it with k6",
+            "  calibrate                Run the load profile against the built-in target server and",
+            "                           report generator overhead, RPS ceiling and coordinated omission",
+            "  capacity                 Search for the highest arrival rate that meets the thresholds,",
+            "                           starting at --rate with the --pre-allocated-vus/--max-vus pool",
+            "",
+            "Input (one of):",
+            "  --curl FILE              cURL commands or scenario directives; repeatable, - reads stdin",
+            "  --har FILE               HAR capture",
+            "  --script FILE            Existing k6 script (run only)",
+            "",
+            "Test parameters:",
+            "  --name NAME              Test name (default: api-load-test)",
+            "  --executor TYPE          vus, constant-arrival-rate or ramping-arrival-rate (default: vus)",
+            "  --vus N                  Virtual users (default: 50)",
+            "  --duration D             Duration, e.g. 30s or 1m (default: 1m)",
+            "  --rate N                 Target or start RPS for arrival-rate executors (default: 100)",
+            "  --pre-allocated-vus N    Arrival-rate executors (default: 50)",
+            "  --max-vus N              Arrival-rate executors (default: 200)",
+            "  --stages S               Ramping stages, e.g. \"30s:100, 1m:500, 30s:0\"",
+            "  --think-time S           Seconds, or min-max (default: 1 for vus, 0 for arrival rate)",
+            "  --threshold T            e.g. \"http_req_duration: p(95)<500\"; repeatable",
+            "  --lean                   Lean mode for high RPS",
+            "  --data D                 Data feed for {{column}} placeholders, e.g. \"file=users.csv,",
+            "                           partition=vu, order=random\"; partition none, vu or segment",
+            "  --transport P            default, browser, no-reuse, per-iteration, http2, dns-cache,",
+            "                           no-dns-cache or tls-resumption (default: default)",
+            "",
+            "Run options:",
+            "  --shards N|W,W,...       Split the run over several k6 processes",
+            "  --tolerance T            Regression tolerance against the baseline, e.g. 10",
+            "  --abort A                Stop early on failing thresholds, e.g. \"errors=10s, latency=30s,",
+            "                           sustain=5s, grace=10s\", or off (run; default: those values)",
+            "  --out FILE               Where to write the script (generate; default: stdout)",
+            "  --json FILE              Where to write the result as JSON (run; default: stdout)",
+            "  --target T               Calibration target, e.g. \"latency=lognormal:20:0.5, errors=1,",
+            "                           payload=1024, pause=500ms/10s\" (calibrate)",
+            "  --search S               Capacity search, e.g. \"max=10000, probe=30s, warmup=10s,",
+            "                           precision=5, probes=12\" (capacity)",
+            "",
+            "Exit codes: 0 passed, 1 failed (k6, thresholds or regression), 2 usage or setup error,",
+            "3 cancelled. Ctrl+C stops k6, writes the partial result and exits with 130.");
+
+    private static final List<String> VALUE_OPTIONS = List.of("curl", "har", "script", "name", "executor", "vus",
+            "duration", "rate", "pre-allocated-vus", "max-vus", "stages", "think-time", "threshold", "shards",
+            "tolerance", "abort", "out", "json", "target", "search", "data", "transport");
+
+    private final Map<String, List<String>> options = new HashMap<>();
+    private final List<String> flags = new ArrayList<>();
+    private final PrintStream stdout;
+    // Inputs are read once, since capacity searches generate a script per probe and stdin can only be read once
+    private String curlCommands;
+    private List<List<ScenarioRequest>> harSteps;
+
+    private LoadTestCli(PrintStream stdout) {
+        this.stdout = stdout;
+    }
+
+    public static void main(String[] args) {
+        System.exit(execute(args));
+    }
+
+    // Runs one command and returns its exit code
+    public static int execute(String[] args) {
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("--help") || args[0].equals("-h")) {
+            System.out.println(USAGE);
+            return args.length == 0 ? EXIT_ERROR : EXIT_PASSED;
+        }
+        // The service logs to System.out; keep stdout for the script or the result
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        LoadTestCli cli = new LoadTestCli(stdout);
+        try {
+            cli.parse(args);
+            switch (args[0]) {
+                case "generate":
+                    return cli.generate();
+                case "run":
+                    return cli.run();
+                case "calibrate":
+                    return cli.calibrate();
+                case "capacity":
+                    return cli.capacity();
+                default:
+                    throw new Exception("Unknown command '" + args[0] + "'. Use generate, run, calibrate or capacity.");
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            stdout.flush();
+            System.setOut(stdout);
+        }
+    }
+
+    private void parse(String[] args) throws Exception {
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new Exception("Unexpected argument '" + arg + "'. See --help.");
+            }
+            String name = arg.substring(2);
+            String value = null;
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                value = name.substring(equals + 1);
+                name = name.substring(0, equals);
+            }
+            if (name.equals("lean")) {
+                flags.add(name);
+                continue;
+            }
+            if (!VALUE_OPTIONS.contains(name)) {
+                throw new Exception("Unknown option --" + name + ". See --help.");
+            }
+            if (value == null) {
+                if (i + 1 >= args.length) {
+                    throw new Exception("Missing value for --" + name + ".");
+                }
+                value = args[++i];
+            }
+            options.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        List<String> values = options.get(name);
+        return values == null ? defaultValue : values.get(values.size() - 1);
+    }
+
+    private List<String> optionList(String name) {
+        return options.getOrDefault(name, List.of());
+    }
+
+    private int generate() throws Exception {
+        String script = buildScript(new ScriptService());
+        String out = option("out", null);
+        if (out == null) {
+            stdout.print(script);
+        } else {
+            Files.writeString(Paths.get(out), script, StandardCharsets.UTF_8);
+            System.err.println("Script written to " + out);
+        }
+        return EXIT_PASSED;
+    }
+
+    private int run() throws Exception {
+        ScriptService scriptService = new ScriptService();
+        String script = option("script", null) != null
+                ? Files.readString(Paths.get(option("script", null)), StandardCharsets.UTF_8)
+                : buildScript(scriptService);
+        String testName = option("name", "api-load-test");
+        ShardPlan shardPlan = ShardPlan.parse(option("shards", "1"));
+        scriptService.setRegressionTolerance(RegressionTolerance.parse(option("tolerance", "")));
+        scriptService.setAbortSettings(AbortController.Settings.parse(option("abort", "")));
+        return runAndReport(scriptService, listener -> scriptService.runTest(script, testName, shardPlan, listener));
+    }
+
+    private int calibrate() throws Exception {
+        if (options.containsKey("abort")) {
+            throw new Exception("--abort applies to run only; calibration runs are never stopped early.");
+        }
+        ScriptService scriptService = new ScriptService();
+        CalibrationTarget target = CalibrationTarget.parse(option("target", ""));
+        LoadProfile profile = buildProfile();
+        ScriptOptions scriptOptions = scriptOptions(scriptService);
+        String testName = option("name", "api-load-test") + "-calibration";
+        return runAndReport(scriptService, listener -> Calibration.start(scriptService, target, profile,
+                scriptOptions, testName, listener));
+    }
+
+    private int capacity() throws Exception {
+        if (options.containsKey("abort")) {
+            throw new Exception("--abort applies to run only; the capacity search stops failing probes itself.");
+        }
+        ScriptService scriptService = new ScriptService();
+        CapacityFinder.Settings settings = CapacityFinder.Settings.parse(option("search", ""));
+        List<String> thresholds = optionList("threshold");
+        if (thresholds.isEmpty()) {
+            throw new Exception("Give at least one --threshold; the search looks for the highest rate that meets them.");
+        }
+        String testName = option("name", "api-load-test");
+        LoadProfile start = LoadProfile.fromInputs(LoadProfile.Executor.CONSTANT_ARRIVAL_RATE, "1",
+                settings.getProbeSeconds() + "s", option("rate", "100"), option("pre-allocated-vus", "50"),
+                option("max-vus", "200"), "", option("think-time", ""));
+        CapacityFinder finder = new CapacityFinder(scriptService,
+                profile -> buildScript(scriptService, profile), settings, start.getRate(),
+                start.getPreAllocatedVUs(), start.getMaxVUs(), start.getThinkTimeSeconds(), thresholds,
+                testName + "-capacity", new ConsoleRunListener(new CompletableFuture<>()));
+
+        // Ctrl+C ends the search with the probes done so far
+        CountDownLatch reported = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() -> {
+            finder.cancel();
+            try {
+                reported.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "cli-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try {
+            CapacityFinder.Result result;
+            try {
+                result = finder.start().get();
+            } catch (ExecutionException e) {
+                throw new Exception(e.getCause().getMessage());
+            }
+            System.err.print(result.report());
+            String json = option("json", null);
+            if (json == null) {
+                stdout.print(result.toJson());
+            } else {
+                Files.writeString(Paths.get(json), result.toJson(), StandardCharsets.UTF_8);
+                System.err.println("Result written to " + json);
+            }
+            return result.getMaxSustainableRate() > 0 ? EXIT_PASSED : EXIT_FAILED;
+        } finally {
+            reported.countDown();
+            scriptService.getRunManager().close();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+    }
+
+    // Starts one run and returns its exit code once the result is written
+    private int runAndReport(ScriptService scriptService, RunStarter starter) throws Exception {
+        CompletableFuture<RunResult> outcome = new CompletableFuture<>();
+        RunManager runManager = scriptService.getRunManager();
+        // Covers runs that end without reaching the listener, e.g. cancelled while queued
+        runManager.addListener(run -> {
+            if (run.getState().isFinished()) {
+                outcome.completeExceptionally(new Exception("Run ended as " + run.getState()));
+            }
+        });
+        // Ctrl+C stops k6 gracefully and still writes the partial result
+        CountDownLatch reported = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() -> {
+            runManager.cancelAll();
+            try {
+                reported.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "cli-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        try {
+            starter.start(new ConsoleRunListener(outcome));
+            RunResult result;
+            try {
+                result = outcome.get();
+            } catch (ExecutionException e) {
+                throw new Exception("Test failed: " + e.getCause().getMessage());
+            }
+            System.err.print(result.getReport());
+            System.err.println(result.getStatusMessage());
+
+            String json = option("json", null);
+            if (json == null) {
+                stdout.print(result.toJson());
+            } else {
+                Files.writeString(Paths.get(json), result.toJson(), StandardCharsets.UTF_8);
+                System.err.println("Result written to " + json);
+            }
+            return result.isCancelled() ? EXIT_CANCELLED : result.isPassed() ? EXIT_PASSED : EXIT_FAILED;
+        } finally {
+            reported.countDown();
+            runManager.close();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+    }
+
+    private String buildScript(ScriptService scriptService) throws Exception {
+        return buildScript(scriptService, buildProfile());
+    }
+
+    private String buildScript(ScriptService scriptService, LoadProfile profile) throws Exception {
+        String testName = option("name", "api-load-test");
+        List<String> thresholds = optionList("threshold");
+        ScriptOptions scriptOptions = scriptOptions(scriptService);
+
+        String har = option("har", null);
+        if (har != null) {
+            if (harSteps == null) {
+                harSteps = new HarImporter().importFile(Paths.get(har));
+            }
+            return scriptService.generateScenarioScript(harSteps, testName, profile, thresholds, scriptOptions);
+        }
+        List<String> curlFiles = optionList("curl");
+        if (curlFiles.isEmpty()) {
+            throw new Exception("Give the requests with --curl FILE or --har FILE" +
+                    (options.containsKey("script") ? "." : ", or a script with --script FILE (run only)."));
+        }
+        if (curlCommands == null) {
+            StringBuilder commands = new StringBuilder();
+            for (String file : curlFiles) {
+                commands.append(readInput(file)).append('\n');
+            }
+            curlCommands = commands.toString();
+        }
+        return scriptService.generateScript(curlCommands, testName, profile, thresholds, scriptOptions);
+    }
+
+    private ScriptOptions scriptOptions(ScriptService scriptService) throws Exception {
+        DataFeed dataFeed;
+        try {
+            dataFeed = scriptService.prepareDataFeed(option("data", "")).get();
+        } catch (ExecutionException e) {
+            throw new Exception(e.getCause().getMessage());
+        }
+        if (dataFeed != null) {
+            System.err.printf(Locale.ROOT, "Data feed: %,d rows of %s%n", dataFeed.getRowCount(), dataFeed.getSource());
+        }
+        return new ScriptOptions()
+                .setLean(flags.contains("lean"))
+                .setTransport(TransportProfile.fromName(option("transport", "default")))
+                .setDataFeed(dataFeed);
+    }
+
+    private LoadProfile buildProfile() throws Exception {
+        return LoadProfile.fromInputs(
+                executor(option("executor", "vus")),
+                option("vus", "50"),
+                option("duration", "1m"),
+                option("rate", "100"),
+                option("pre-allocated-vus", "50"),
+                option("max-vus", "200"),
+                option("stages", "30s:100, 1m:500, 30s:0"),
+                option("think-time", "")
+        );
+    }
+
+    private static String readInput(String file) throws IOException {
+        if (file.equals("-")) {
+            return new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return Files.readString(Paths.get(file), StandardCharsets.UTF_8);
+    }
+
+    private static LoadProfile.Executor executor(String name) throws Exception {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "vus":
+            case "closed":
+                return LoadProfile.Executor.CLOSED_LOOP;
+            case "constant-arrival-rate":
+                return LoadProfile.Executor.CONSTANT_ARRIVAL_RATE;
+            case "ramping-arrival-rate":
+                return LoadProfile.Executor.RAMPING_ARRIVAL_RATE;
+            default:
+                throw new Exception("Unknown executor '" + name + "'. Use vus, constant-arrival-rate or ramping-arrival-rate.");
+        }
+    }
+
+    private interface RunStarter {
+        TestRun start(RunListener listener) throws Exception;
+    }
+
+    // Prints progress to stderr, so stdout only carries the result
+    private static class ConsoleRunListener implements RunListener {
+        private final CompletableFuture<RunResult> outcome;
+        private long lastProgressSecond = -1;
+
+        ConsoleRunListener(CompletableFuture<RunResult> outcome) {
+            this.outcome = outcome;
+        }
+
+        @Override
+        public void status(String message) {
+            System.err.println(message);
+        }
+
+        @Override
+        public void started(String testName) {
+            lastProgressSecond = -1;
+            System.err.println("Running " + testName + "...");
+        }
+
+        @Override
+        public void liveMetrics(LiveMetrics metrics) {
+            long second = metrics.getElapsedSeconds();
+            if (second - lastProgressSecond < PROGRESS_INTERVAL_SECONDS) {
+                return;
+            }
+            lastProgressSecond = second;
+            System.err.printf(Locale.ROOT, "[%4ds] %d requests, %.1f RPS, p95 %.1f ms, %.2f%% failed%n", second,
+                    metrics.getTotalRequests(), metrics.getRequestsPerSecond(), metrics.getP95Millis(),
+                    metrics.getFailureRate() * 100);
+        }
+
+        @Override
+        public void finished(RunResult result) {
+            outcome.complete(result);
+        }
+
+        @Override
+        public void failed(Exception error) {
+            outcome.completeExceptionally(error);
+        }
+    }
+}
@@ -1,25 +1,46 @@
 package com.loadtest;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LoadTestGenerator extends Application {
+    // Exits once the first frame is laid out; for startup measurements and CDS training runs
+    private static final boolean EXIT_AFTER_FIRST_FRAME = Boolean.getBoolean("loadtest.exitAfterFirstFrame");
+
     private UIBuilder uiBuilder;
     private ScriptService scriptService;
+    private Stage primaryStage;
+    private CapacityFinder capacityFinder;
 
     @Override
     public void start(Stage primaryStage) {
+        this.primaryStage = primaryStage;
         uiBuilder = new UIBuilder();
         scriptService = new ScriptService();
 
         // Setup UI
         BorderPane root = uiBuilder.createMainLayout();
         Scene scene = new Scene(root, 1200, 700);
+        reportFirstFrame(scene);
         primaryStage.setScene(scene);
         primaryStage.setTitle("Dynamic Load Test Generator");
         primaryStage.show();
@@ -28,41 +49,329 @@ public class LoadTestGenerator extends Application {
         setupEventHandlers();
     }
 
+    // Logs the time from JVM start to the first laid-out pulse, which is rendered right after
+    private void reportFirstFrame(Scene scene) {
+        AtomicBoolean reported = new AtomicBoolean();
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                if (reported.getAndSet(true)) {
+                    return;
+                }
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                long millis = ProcessHandle.current().info().startInstant()
+                        .map(start -> Duration.between(start, Instant.now()).toMillis())
+                        .orElse(-1L);
+                System.out.println("Time to first frame: " + millis + " ms");
+                if (EXIT_AFTER_FIRST_FRAME) {
+                    Platform.exit();
+                }
+            }
+        };
+        scene.addPostLayoutPulseListener(listener);
+    }
+
     private void setupEventHandlers() {
         // Generate Script Button
         uiBuilder.getGenerateButton().setOnAction(e -> {
             String curl = uiBuilder.getCurlCommandArea().getText();
             String testName = uiBuilder.getTestNameField().getText();
-            String duration = uiBuilder.getDurationField().getText();
-            String vus = uiBuilder.getVirtualUsersField().getText();
-            List<String> thresholds = uiBuilder.getThresholdListView().getItems();
+            List<String> thresholds = new ArrayList<>(uiBuilder.getThresholdListView().getItems());
 
+            LoadProfile profile;
             try {
-                String script = scriptService.generateScript(curl, testName, duration, vus, thresholds);
-                uiBuilder.getGeneratedScriptArea().setText(script);
+                profile = readLoadProfile();
             } catch (Exception ex) {
                 showAlert("Error", ex.getMessage());
+                return;
             }
+            withScriptOptions("Error", options -> uiBuilder.getGeneratedScriptArea().setText(
+                    scriptService.generateScript(curl, testName, profile, thresholds, options)));
         });
 
+        // Import Button
+        uiBuilder.getImportButton().setOnAction(e -> importScenario());
+
         // Save Script Button
         uiBuilder.getSaveButton().setOnAction(e -> {
             String script = uiBuilder.getGeneratedScriptArea().getText();
             String testName = uiBuilder.getTestNameField().getText();
-            scriptService.saveScript(script, testName, uiBuilder.getStatusLabel());
+            scriptService.saveScript(script, testName).whenComplete((path, error) -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                Platform.runLater(() -> uiBuilder.getStatusLabel().setText(cause == null
+                        ? "Script saved as " + path : "Failed to save script: " + cause.getMessage()));
+            });
         });
 
+        // Run History Button
+        uiBuilder.getHistoryButton().setOnAction(e -> showHistory());
+
+        // Calibrate Button
+        uiBuilder.getCalibrateButton().setOnAction(e -> calibrate());
+
         // Run Test Button
         uiBuilder.getRunButton().setOnAction(e -> {
             String script = uiBuilder.getGeneratedScriptArea().getText();
             String testName = uiBuilder.getTestNameField().getText();
-            scriptService.runTest(
-                    script,
-                    testName,
-                    uiBuilder.getProgressBar(),
-                    uiBuilder.getStatusLabel()
-            );
+            ShardPlan shardPlan;
+            try {
+                shardPlan = ShardPlan.parse(uiBuilder.getShardsField().getText());
+                scriptService.setRegressionTolerance(RegressionTolerance.parse(uiBuilder.getToleranceField().getText()));
+                scriptService.setAbortSettings(AbortController.Settings.parse(uiBuilder.getAbortField().getText()));
+            } catch (Exception ex) {
+                showAlert("Error", ex.getMessage());
+                return;
+            }
+            scriptService.runTest(script, testName, shardPlan, createRunListener());
         });
+
+        // Cancel Button: stops running tests, empties the queue and drops schedules
+        uiBuilder.getCancelButton().setOnAction(e -> {
+            if (capacityFinder != null) {
+                capacityFinder.cancel();
+            }
+            RunManager runManager = scriptService.getRunManager();
+            int schedules = runManager.cancelSchedules();
+            int runs = runManager.cancelAll();
+            uiBuilder.getStatusLabel().setText("Cancelled " + runs + " run(s) and " + schedules + " schedule(s).");
+        });
+
+        // Find Capacity Button
+        uiBuilder.getCapacityButton().setOnAction(e -> findCapacity());
+
+        // Schedule Button
+        uiBuilder.getScheduleButton().setOnAction(e -> scheduleTest());
+    }
+
+    private void showHistory() {
+        String testName = uiBuilder.getTestNameField().getText();
+        RegressionTolerance tolerance;
+        try {
+            tolerance = RegressionTolerance.parse(uiBuilder.getToleranceField().getText());
+        } catch (Exception ex) {
+            showAlert("Error", ex.getMessage());
+            return;
+        }
+        // Opening the store reads its index, so do it off the FX thread
+        Thread opener = new Thread(() -> {
+            try {
+                ResultsStore store = scriptService.getResultsStore();
+                Platform.runLater(() -> new HistoryWindow(store, tolerance).show(testName));
+            } catch (Exception ex) {
+                Platform.runLater(() -> showAlert("History Error", ex.getMessage()));
+            }
+        }, "history-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    // Runs the current load profile against the built-in target server
+    private void calibrate() {
+        String testName = uiBuilder.getTestNameField().getText() + "-calibration";
+        CalibrationTarget target;
+        LoadProfile profile;
+        try {
+            target = CalibrationTarget.parse(uiBuilder.getCalibrationTargetField().getText());
+            profile = readLoadProfile();
+        } catch (Exception ex) {
+            showAlert("Calibration Error", ex.getMessage());
+            return;
+        }
+        withScriptOptions("Calibration Error", options -> {
+            TestRun run = Calibration.start(scriptService, target, profile, options, testName, createRunListener());
+            if (run != null) {
+                uiBuilder.getStatusLabel().setText("Calibrating against " + target + "...");
+            }
+        });
+    }
+
+    // Probes the request at rising arrival rates until the thresholds fail
+    private void findCapacity() {
+        if (capacityFinder != null) {
+            showAlert("Capacity Search", "A capacity search is already running.");
+            return;
+        }
+        String curl = uiBuilder.getCurlCommandArea().getText();
+        String testName = uiBuilder.getTestNameField().getText();
+        List<String> thresholds = new ArrayList<>(uiBuilder.getThresholdListView().getItems());
+        withScriptOptions("Capacity Search Error", options -> startCapacitySearch(curl, testName, thresholds, options));
+    }
+
+    private void startCapacitySearch(String curl, String testName, List<String> thresholds, ScriptOptions options) {
+        // Another click may have started a search while the data feed was being prepared
+        if (capacityFinder != null) {
+            showAlert("Capacity Search", "A capacity search is already running.");
+            return;
+        }
+        CapacityFinder finder;
+        try {
+            CapacityFinder.Settings settings = CapacityFinder.Settings.parse(uiBuilder.getCapacitySearchField().getText());
+            // Validates the rate and VU pool fields the probes are built from
+            LoadProfile start = LoadProfile.fromInputs(LoadProfile.Executor.CONSTANT_ARRIVAL_RATE,
+                    uiBuilder.getVirtualUsersField().getText(), settings.getProbeSeconds() + "s",
+                    uiBuilder.getRateField().getText(), uiBuilder.getPreAllocatedVusField().getText(),
+                    uiBuilder.getMaxVusField().getText(), "", uiBuilder.getThinkTimeField().getText());
+            if (thresholds.isEmpty()) {
+                throw new Exception("Add at least one threshold; the search looks for the highest rate that meets them.");
+            }
+            finder = new CapacityFinder(scriptService,
+                    profile -> scriptService.generateScript(curl, testName, profile, thresholds, options),
+                    settings, start.getRate(), start.getPreAllocatedVUs(), start.getMaxVUs(),
+                    start.getThinkTimeSeconds(), thresholds, testName + "-capacity", createRunListener());
+        } catch (Exception ex) {
+            showAlert("Capacity Search Error", ex.getMessage());
+            return;
+        }
+        capacityFinder = finder;
+        finder.start().whenComplete((result, error) -> Platform.runLater(() -> {
+            capacityFinder = null;
+            uiBuilder.getProgressBar().setProgress(error == null ? 1.0 : 0);
+            if (error != null) {
+                uiBuilder.getStatusLabel().setText("Capacity search failed");
+                showAlert("Capacity Search Error", error.getMessage());
+                return;
+            }
+            uiBuilder.getStatusLabel().setText(result.getMaxSustainableRate() > 0
+                    ? "Maximum sustainable rate: " + result.getMaxSustainableRate() + " RPS"
+                    : "No probed rate was sustainable");
+            new CapacityWindow(result).show(testName);
+        }));
+    }
+
+    private void scheduleTest() {
+        try {
+            LocalTime time;
+            try {
+                time = LocalTime.parse(uiBuilder.getScheduleTimeField().getText().trim());
+            } catch (DateTimeParseException ex) {
+                throw new Exception("Enter the start time as HH:mm, e.g. 02:30");
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime next = now.with(time);
+            if (!next.isAfter(now)) {
+                next = next.plusDays(1);
+            }
+            boolean daily = uiBuilder.getRepeatDailyCheckBox().isSelected();
+            scriptService.setRegressionTolerance(RegressionTolerance.parse(uiBuilder.getToleranceField().getText()));
+            scriptService.setAbortSettings(AbortController.Settings.parse(uiBuilder.getAbortField().getText()));
+            scriptService.scheduleTest(
+                    uiBuilder.getGeneratedScriptArea().getText(),
+                    uiBuilder.getTestNameField().getText(),
+                    ShardPlan.parse(uiBuilder.getShardsField().getText()),
+                    Duration.between(now, next),
+                    daily ? Duration.ofDays(1) : null,
+                    createRunListener()
+            );
+            uiBuilder.getStatusLabel().setText("Scheduled for " + next.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+                    + (daily ? ", then daily" : ""));
+        } catch (Exception ex) {
+            showAlert("Error", ex.getMessage());
+        }
+    }
+
+    private RunListener createRunListener() {
+        return new FxRunListener(uiBuilder.getProgressBar(), uiBuilder.getStatusLabel(), uiBuilder::showLiveMetrics);
+    }
+
+    private LoadProfile readLoadProfile() throws Exception {
+        return LoadProfile.fromInputs(
+                uiBuilder.getExecutorComboBox().getValue(),
+                uiBuilder.getVirtualUsersField().getText(),
+                uiBuilder.getDurationField().getText(),
+                uiBuilder.getRateField().getText(),
+                uiBuilder.getPreAllocatedVusField().getText(),
+                uiBuilder.getMaxVusField().getText(),
+                uiBuilder.getStagesField().getText(),
+                uiBuilder.getThinkTimeField().getText()
+        );
+    }
+
+    // Work that needs the script options; runs on the FX thread
+    private interface OptionsTask {
+        void accept(ScriptOptions options) throws Exception;
+    }
+
+    // Converts the data feed's file off the FX thread the first time (later calls reuse the
+    // conversion), then hands the options to task on the FX thread; errors show as alerts
+    private void withScriptOptions(String errorTitle, OptionsTask task) {
+        ScriptOptions options = new ScriptOptions()
+                .setLean(uiBuilder.getLeanModeCheckBox().isSelected())
+                .setTransport(uiBuilder.getTransportComboBox().getValue());
+        String dataFeedSpec = uiBuilder.getDataFeedField().getText();
+        if (!dataFeedSpec.isBlank()) {
+            uiBuilder.getStatusLabel().setText("Preparing data feed...");
+        }
+        scriptService.prepareDataFeed(dataFeedSpec).whenComplete((dataFeed, error) -> Platform.runLater(() -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause != null) {
+                uiBuilder.getStatusLabel().setText("Failed to prepare data feed");
+                showAlert(errorTitle, cause.getMessage());
+                return;
+            }
+            try {
+                if (dataFeed != null) {
+                    uiBuilder.getStatusLabel().setText(String.format("Data feed: %,d rows of %s",
+                            dataFeed.getRowCount(), dataFeed.getSource().getFileName()));
+                }
+                task.accept(options.setDataFeed(dataFeed));
+            } catch (Exception ex) {
+                showAlert(errorTitle, ex.getMessage());
+            }
+        }));
+    }
+
+    private void importScenario() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import HAR or cURL List");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("HAR and cURL files", "*.har", "*.txt", "*.sh", "*.curl"),
+                new FileChooser.ExtensionFilter("All files", "*.*")
+        );
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+
+        String testName = uiBuilder.getTestNameField().getText();
+        List<String> thresholds = new ArrayList<>(uiBuilder.getThresholdListView().getItems());
+        LoadProfile profile;
+        try {
+            profile = readLoadProfile();
+        } catch (Exception ex) {
+            showAlert("Error", ex.getMessage());
+            return;
+        }
+        withScriptOptions("Error", options -> importScenario(file, testName, profile, thresholds, options));
+    }
+
+    private void importScenario(File file, String testName, LoadProfile profile, List<String> thresholds,
+                                ScriptOptions options) {
+        uiBuilder.getStatusLabel().setText("Importing " + file.getName() + "...");
+
+        // HAR captures can be hundreds of MB; parse off the FX thread
+        Thread importThread = new Thread(() -> {
+            try {
+                String script;
+                if (file.getName().toLowerCase().endsWith(".har")) {
+                    List<List<ScenarioRequest>> steps = new HarImporter().importFile(file.toPath());
+                    script = scriptService.generateScenarioScript(steps, testName, profile, thresholds, options);
+                } else {
+                    String commands = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+                    script = scriptService.generateScript(commands, testName, profile, thresholds, options);
+                }
+                Platform.runLater(() -> {
+                    uiBuilder.getGeneratedScriptArea().setText(script);
+                    uiBuilder.getStatusLabel().setText("Imported " + file.getName());
+                });
+            } catch (Exception ex) {
+                Platform.runLater(() -> {
+                    uiBuilder.getStatusLabel().setText("Import failed");
+                    showAlert("Import Error", ex.getMessage());
+                });
+            }
+        }, "scenario-import");
+        importThread.setDaemon(true);
+        importThread.start();
     }
 
     private void showAlert(String title, String message) {
@@ -73,6 +382,12 @@ public class LoadTestGenerator extends Application {
         alert.showAndWait();
     }
 
+    @Override
+    public void stop() {
+        // Do not leave k6 processes running after the window is closed
+        scriptService.getRunManager().close();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,33 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs each shard as a k6 process on this machine.
+ */
+public class LocalShardLauncher implements ShardLauncher {
+    private final String k6Path;
+
+    public LocalShardLauncher(String k6Path) {
+        this.k6Path = k6Path;
+    }
+
+    @Override
+    public Process launch(Shard shard) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(k6Path);
+        command.addAll(shard.k6Arguments(shard.getMetricsFile().toString(), shard.getSummaryFile().toString()));
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true); // Combine stdout and stderr
+        if (shard.getWorkingDirectory() != null) {
+            Files.createDirectories(shard.getWorkingDirectory());
+            pb.directory(shard.getWorkingDirectory().toFile());
+        }
+        System.out.println("Executing command: " + String.join(" ", pb.command()));
+        return pb.start();
+    }
+}
@@ -0,0 +1,82 @@
+package com.loadtest;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * The lines of a {@link MappedLogFile} as a list a ListView can show: every line, or only
+ * the line numbers a filter found. Items are read from the mapped file when a cell asks
+ * for them, so only the visible lines ever exist as strings.
+ *
+ * Both sources only grow while the index or the filter scan runs; {@link #refresh} picks
+ * up the new lines and must be called on the FX thread, like every other method.
+ */
+public class LogLines extends ObservableListBase<String> {
+    private final MappedLogFile log;
+    private final LineNumbers matches;
+    private final MappedLogFile.Cursor cursor;
+    private int size;
+
+    // matches is null to show every line
+    public LogLines(MappedLogFile log, LineNumbers matches) {
+        this.log = log;
+        this.matches = matches;
+        this.cursor = log.cursor();
+        refresh();
+    }
+
+    @Override
+    public String get(int index) {
+        return cursor.getLine(lineNumber(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Line in the log shown at index; also safe off the FX thread for indexes already shown
+    public long lineNumber(int index) {
+        return matches == null ? index : matches.get(index);
+    }
+
+    public boolean isFiltered() {
+        return matches != null;
+    }
+
+    public void refresh() {
+        long available = matches == null ? log.getLineCount() : matches.size();
+        int newSize = (int) Math.min(available, Integer.MAX_VALUE);
+        if (newSize > size) {
+            beginChange();
+            nextAdd(size, newSize);
+            size = newSize;
+            endChange();
+        }
+    }
+
+    /** Growable list of line numbers with a single writer and any number of readers. */
+    public static class LineNumbers {
+        private volatile long[] numbers = new long[256];
+        private volatile int size;
+
+        // Writer thread only
+        void add(long line) {
+            long[] current = numbers;
+            if (size == current.length) {
+                long[] larger = new long[current.length * 2];
+                System.arraycopy(current, 0, larger, 0, current.length);
+                numbers = current = larger;
+            }
+            current[size] = line;
+            size = size + 1;
+        }
+
+        public long get(int index) {
+            return numbers[index];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.loadtest;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Results window of a finished run: the report on top and the full k6 log below it.
+ * The log is memory-mapped and shown through a virtualized list, so only the visible
+ * lines are read and opening a log of any size takes no time. Indexing, filtering by
+ * level or metric, and searching run on background threads; the list fills in as they go.
+ * Without a log file on disk, the tail of the output kept in memory is shown instead.
+ */
+public class LogViewerWindow {
+    private static final long REFRESH_INTERVAL_MS = 200;
+    private static final String ALL_LEVELS = "All levels";
+    private static final String ALL_METRICS = "All metrics";
+    // k6 writes "level=warning" with logfmt output and "WARN[0001]" on a terminal
+    private static final List<String> LEVELS = List.of("error", "warning", "info", "debug");
+
+    private final RunResult result;
+    private final ListView<String> lineView = new ListView<>();
+    private final TextField searchField = new TextField();
+    private final ComboBox<String> levelBox = new ComboBox<>();
+    private final ComboBox<String> metricBox = new ComboBox<>();
+    private final Label statusLabel = new Label();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "log-viewer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "log-viewer-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    // Newer filters and searches make older ones stop
+    private final AtomicInteger filterGeneration = new AtomicInteger();
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile boolean filtering;
+    private volatile boolean searching;
+    private volatile String searchMessage;
+    private MappedLogFile log;
+    private LogLines allLines;
+    private LogLines shownLines;
+
+    public LogViewerWindow(RunResult result) {
+        this.result = result;
+    }
+
+    // Must be called on the FX thread
+    public void show() {
+        TextArea reportArea = new TextArea(result.getReport());
+        reportArea.setEditable(false);
+        reportArea.setWrapText(true);
+
+        lineView.setFixedCellSize(18);
+        lineView.setStyle("-fx-font-family: monospace;");
+
+        searchField.setPromptText("Search (Enter for the next match)");
+        searchField.textProperty().addListener((obs, old, text) -> search(0));
+        searchField.setOnAction(e -> search(lineView.getSelectionModel().getSelectedIndex() + 1));
+        Button nextButton = new Button("Next");
+        nextButton.setOnAction(e -> search(lineView.getSelectionModel().getSelectedIndex() + 1));
+
+        levelBox.getItems().add(ALL_LEVELS);
+        levelBox.getItems().addAll(LEVELS);
+        levelBox.setValue(ALL_LEVELS);
+        levelBox.setOnAction(e -> applyFilter());
+        metricBox.getItems().add(ALL_METRICS);
+        for (K6Metric metric : K6Metric.values()) {
+            metricBox.getItems().add(metric.getMetricName());
+        }
+        metricBox.setValue(ALL_METRICS);
+        metricBox.setOnAction(e -> applyFilter());
+
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        HBox toolbar = new HBox(8, searchField, nextButton, levelBox, metricBox);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        VBox logPane = new VBox(6, toolbar, lineView, statusLabel);
+        VBox.setVgrow(lineView, Priority.ALWAYS);
+        logPane.setPadding(new Insets(6));
+
+        SplitPane split = new SplitPane(reportArea, logPane);
+        split.setOrientation(Orientation.VERTICAL);
+        split.setDividerPositions(0.3);
+
+        Stage stage = new Stage();
+        stage.setTitle("Test Results - " + result.getTestName());
+        stage.setScene(new Scene(new BorderPane(split), 1000, 750));
+        stage.setOnHidden(e -> close());
+        stage.show();
+
+        openLog();
+    }
+
+    private void openLog() {
+        List<Path> segments = new ArrayList<>();
+        for (Path segment : result.getLogSegments()) {
+            if (Files.exists(segment)) {
+                segments.add(segment);
+            }
+        }
+        if (!segments.isEmpty()) {
+            try {
+                log = MappedLogFile.open(segments);
+            } catch (IOException e) {
+                System.err.println("Failed to open the run log: " + e.getMessage());
+            }
+        }
+        if (log == null) {
+            // Nothing on disk: fall back to the output kept in memory, without filters
+            lineView.setItems(FXCollections.observableArrayList(
+                    Arrays.asList(result.getRecentOutput().split("\n"))));
+            searchField.setDisable(true);
+            levelBox.setDisable(true);
+            metricBox.setDisable(true);
+            statusLabel.setText("The run log is not on disk; showing the end of the output");
+            return;
+        }
+        allLines = new LogLines(log, null);
+        show(allLines);
+        workers.execute(() -> log.buildIndex(() -> closed));
+        refresher.scheduleWithFixedDelay(() -> Platform.runLater(this::refresh),
+                REFRESH_INTERVAL_MS, REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void show(LogLines lines) {
+        shownLines = lines;
+        lineView.setItems(lines);
+    }
+
+    // Picks up lines indexed or matched since the last call; on the FX thread
+    private void refresh() {
+        if (closed) {
+            return;
+        }
+        allLines.refresh();
+        if (shownLines != allLines) {
+            shownLines.refresh();
+        }
+        StringBuilder status = new StringBuilder();
+        status.append(String.format(Locale.ROOT, "%,d lines, %.1f MB", log.getLineCount(),
+                log.getTotalBytes() / 1048576.0));
+        if (!log.isIndexed()) {
+            status.append(" (indexing...)");
+        }
+        if (shownLines.isFiltered()) {
+            status.append(String.format(Locale.ROOT, "; %,d match the filter%s", shownLines.size(),
+                    filtering ? " (filtering...)" : ""));
+        }
+        if (searching) {
+            status.append("; searching...");
+        } else if (searchMessage != null) {
+            status.append("; ").append(searchMessage);
+        }
+        statusLabel.setText(status.toString());
+    }
+
+    private void applyFilter() {
+        int generation = filterGeneration.incrementAndGet();
+        Predicate<String> filter = buildFilter(levelBox.getValue(), metricBox.getValue());
+        if (filter == null) {
+            filtering = false;
+            show(allLines);
+            return;
+        }
+        LogLines.LineNumbers matches = new LogLines.LineNumbers();
+        show(new LogLines(log, matches));
+        filtering = true;
+        workers.execute(() -> {
+            MappedLogFile.Cursor cursor = log.cursor();
+            long line = 0;
+            // Follows the indexer if it is still running
+            while (!closed && filterGeneration.get() == generation) {
+                long available = log.getLineCount();
+                if (line >= available) {
+                    if (log.isIndexed()) {
+                        break;
+                    }
+                    sleep(REFRESH_INTERVAL_MS / 4);
+                    continue;
+                }
+                if (filter.test(cursor.getLine(line))) {
+                    matches.add(line);
+                }
+                line++;
+            }
+            if (filterGeneration.get() == generation) {
+                filtering = false;
+            }
+        });
+    }
+
+    // Null when neither a level nor a metric is chosen
+    static Predicate<String> buildFilter(String level, String metric) {
+        Predicate<String> filter = null;
+        if (level != null && !level.equals(ALL_LEVELS)) {
+            String logfmt = "level=" + level;
+            String console = level.substring(0, 4).toUpperCase(Locale.ROOT) + "[";
+            filter = line -> line.contains(logfmt) || line.contains(console);
+        }
+        if (metric != null && !metric.equals(ALL_METRICS)) {
+            Predicate<String> byMetric = line -> line.contains(metric);
+            filter = filter == null ? byMetric : filter.and(byMetric);
+        }
+        return filter;
+    }
+
+    // Selects the first shown line at or after from that contains the search text, wrapping around
+    private void search(int from) {
+        int generation = searchGeneration.incrementAndGet();
+        String text = searchField.getText();
+        searchMessage = null;
+        if (log == null || text == null || text.isEmpty()) {
+            searching = false;
+            return;
+        }
+        String needle = text.toLowerCase(Locale.ROOT);
+        LogLines lines = shownLines;
+        int size = lines.size();
+        if (size == 0) {
+            return;
+        }
+        int start = Math.max(0, Math.min(from, size - 1));
+        searching = true;
+        workers.execute(() -> {
+            MappedLogFile.Cursor cursor = log.cursor();
+            int found = -1;
+            for (int i = 0; i < size && !closed && searchGeneration.get() == generation; i++) {
+                int index = (start + i) % size;
+                if (cursor.getLine(lines.lineNumber(index)).toLowerCase(Locale.ROOT).contains(needle)) {
+                    found = index;
+                    break;
+                }
+            }
+            if (searchGeneration.get() != generation) {
+                return;
+            }
+            searching = false;
+            int match = found;
+            Platform.runLater(() -> {
+                if (closed || shownLines != lines || searchGeneration.get() != generation) {
+                    return;
+                }
+                if (match < 0) {
+                    searchMessage = "no line contains \"" + text + "\"";
+                } else {
+                    lineView.getSelectionModel().clearAndSelect(match);
+                    lineView.scrollTo(match);
+                }
+            });
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close() {
+        closed = true;
+        refresher.shutdownNow();
+        workers.shutdown();
+    }
+}
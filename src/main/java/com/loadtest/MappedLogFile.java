@@ -0,0 +1,226 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Read-only view of a run log, possibly rolled into several segments, as one sequence
+ * of lines. The segments are memory-mapped rather than read, and only every
+ * {@value #CHECKPOINT_STRIDE}th line start is kept in memory: a line is found by jumping
+ * to the checkpoint before it and scanning forward. Memory stays at a few bytes per
+ * thousand lines however large the log is.
+ *
+ * The index is built by {@link #buildIndex} on a background thread; lines that are
+ * already indexed can be read while it runs. Reads go through a {@link Cursor}, one per
+ * thread, which remembers its position so consecutive lines cost a single scan. The
+ * mappings are released once the file object is no longer referenced.
+ */
+public class MappedLogFile {
+    static final int CHECKPOINT_STRIDE = 1024;
+    // Longer lines are cut, as in the live output
+    private static final int MAX_LINE_BYTES = 4096;
+    // Chunks overlap by one maximum line, so a line that starts in a chunk can be read from it
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final long totalBytes;
+    // Start offsets of lines 0, STRIDE, 2 * STRIDE, ...; written by the indexer only
+    private volatile long[] checkpoints = new long[64];
+    private volatile long lineCount;
+    private volatile boolean indexed;
+
+    private MappedLogFile(List<Path> files) throws IOException {
+        long base = 0;
+        try {
+            for (Path file : files) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    int chunkCount = (int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+                    MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+                    for (int i = 0; i < chunkCount; i++) {
+                        long start = i * CHUNK_BYTES;
+                        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                Math.min(size - start, CHUNK_BYTES + MAX_LINE_BYTES));
+                    }
+                    segments.add(new Segment(base, size, chunks));
+                    base += size;
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Cannot open log " + files + ": " + e.getMessage(), e);
+        }
+        this.totalBytes = base;
+    }
+
+    // Segments in order, oldest first
+    public static MappedLogFile open(List<Path> files) throws IOException {
+        return new MappedLogFile(files);
+    }
+
+    // Finds every line start; stops early when cancelled. Call once, off the FX thread.
+    public void buildIndex(BooleanSupplier cancelled) {
+        long lines = 0;
+        long[] starts = checkpoints;
+        for (Segment segment : segments) {
+            long lineStart = 0;
+            for (int c = 0; c < segment.chunks.length; c++) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                MappedByteBuffer chunk = segment.chunks[c];
+                long chunkStart = c * CHUNK_BYTES;
+                int end = (int) Math.min(segment.size - chunkStart, CHUNK_BYTES);
+                for (int i = 0; i < end; i++) {
+                    if (chunk.get(i) != '\n') {
+                        continue;
+                    }
+                    if (lines % CHECKPOINT_STRIDE == 0) {
+                        starts = addCheckpoint(starts, lines, segment.base + lineStart);
+                    }
+                    lines++;
+                    lineStart = chunkStart + i + 1;
+                    // Publish now and then so the first screens show while the rest is indexed
+                    if ((lines & 0xFFFF) == 0) {
+                        lineCount = lines;
+                    }
+                }
+            }
+            // A segment that does not end with a newline still ends its last line
+            if (lineStart < segment.size) {
+                if (lines % CHECKPOINT_STRIDE == 0) {
+                    starts = addCheckpoint(starts, lines, segment.base + lineStart);
+                }
+                lines++;
+            }
+            lineCount = lines;
+        }
+        lineCount = lines;
+        indexed = true;
+    }
+
+    private long[] addCheckpoint(long[] starts, long line, long offset) {
+        int slot = (int) (line / CHECKPOINT_STRIDE);
+        if (slot == starts.length) {
+            long[] larger = new long[starts.length * 2];
+            System.arraycopy(starts, 0, larger, 0, starts.length);
+            starts = larger;
+            checkpoints = larger;
+        }
+        starts[slot] = offset;
+        return starts;
+    }
+
+    // Lines indexed so far; all of them once isIndexed is true
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private Segment segmentAt(long offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).base <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    /** Reads lines by number; not thread-safe, so every thread gets its own. */
+    public class Cursor {
+        private final byte[] buffer = new byte[MAX_LINE_BYTES];
+        private long cachedLine = -1;
+        // Start of the line after cachedLine
+        private long nextOffset;
+
+        // The line without its newline; lines past the indexed count throw
+        public String getLine(long line) {
+            if (line < 0 || line >= lineCount) {
+                throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount);
+            }
+            long offset;
+            long current;
+            if (cachedLine >= 0 && line > cachedLine && line - cachedLine <= CHECKPOINT_STRIDE) {
+                offset = nextOffset;
+                current = cachedLine + 1;
+            } else {
+                current = line - line % CHECKPOINT_STRIDE;
+                offset = checkpoints[(int) (current / CHECKPOINT_STRIDE)];
+            }
+            while (current < line) {
+                offset = skipLine(offset);
+                current++;
+            }
+            String text = readLine(offset);
+            cachedLine = line;
+            return text;
+        }
+
+        private long skipLine(long offset) {
+            Segment segment = segmentAt(offset);
+            long local = offset - segment.base;
+            while (local < segment.size) {
+                if (segment.byteAt(local++) == '\n') {
+                    break;
+                }
+            }
+            return segment.base + local;
+        }
+
+        private String readLine(long offset) {
+            Segment segment = segmentAt(offset);
+            long local = offset - segment.base;
+            MappedByteBuffer chunk = segment.chunks[(int) (local / CHUNK_BYTES)];
+            int position = (int) (local % CHUNK_BYTES);
+            int available = (int) Math.min(MAX_LINE_BYTES, segment.size - local);
+            int length = 0;
+            while (length < available && chunk.get(position + length) != '\n') {
+                buffer[length] = chunk.get(position + length);
+                length++;
+            }
+            boolean cut = length == MAX_LINE_BYTES;
+            nextOffset = cut ? skipLine(offset + length) : segment.base + local + length + 1;
+            int end = length > 0 && buffer[length - 1] == '\r' ? length - 1 : length;
+            String text = new String(buffer, 0, end, StandardCharsets.UTF_8);
+            return cut ? text + "..." : text;
+        }
+    }
+
+    private static final class Segment {
+        final long base;
+        final long size;
+        final MappedByteBuffer[] chunks;
+
+        Segment(long base, long size, MappedByteBuffer[] chunks) {
+            this.base = base;
+            this.size = size;
+            this.chunks = chunks;
+        }
+
+        byte byteAt(long local) {
+            return chunks[(int) (local / CHUNK_BYTES)].get((int) (local % CHUNK_BYTES));
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.loadtest;
+
+/**
+ * Folds k6 data points into per-second buckets and whole-run totals.
+ *
+ * The last {@value #WINDOW_SECONDS} seconds are kept in a ring of reusable buckets, so
+ * steady-state recording does not allocate. Samples older than the ring still count
+ * towards the totals. All methods are thread-safe, and aggregators fed by separate
+ * k6 processes can be merged into one with {@link #merge(MetricsAggregator)}.
+ */
+public class MetricsAggregator {
+    static final int WINDOW_SECONDS = 64;
+    private static final int ROLLING_SECONDS = 10;
+
+    private final SecondBucket[] ring = new SecondBucket[WINDOW_SECONDS];
+    private final SecondBucket totals = new SecondBucket();
+    private final ConnectionSetup connectionSetup = new ConnectionSetup();
+    private final LatencyHistogram scratch = new LatencyHistogram();
+    private long firstSecond = Long.MIN_VALUE;
+    private long latestSecond = Long.MIN_VALUE;
+    private long lateSamples;
+    private SecondListener secondListener;
+    // Samples from the first warmupSeconds of the stream are counted but not aggregated
+    private long warmupSeconds;
+    private long warmupStart = Long.MIN_VALUE;
+    private long warmupSamples;
+
+    // Receives every per-second bucket once it has left the rolling window, in order
+    interface SecondListener {
+        void secondCompleted(SecondBucket bucket);
+    }
+
+    public MetricsAggregator() {
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new SecondBucket();
+        }
+    }
+
+    public synchronized void record(K6Sample sample) {
+        record(sample.metric, sample.value, sample.epochSecond);
+    }
+
+    public synchronized void record(K6Metric metric, double value, long epochSecond) {
+        if (warmupSeconds > 0) {
+            if (warmupStart == Long.MIN_VALUE) {
+                warmupStart = epochSecond;
+            }
+            if (epochSecond < warmupStart + warmupSeconds) {
+                warmupSamples++;
+                return;
+            }
+        }
+        if (firstSecond == Long.MIN_VALUE || epochSecond < firstSecond) {
+            firstSecond = epochSecond;
+        }
+        if (epochSecond > latestSecond) {
+            if (secondListener != null && latestSecond != Long.MIN_VALUE) {
+                completeSeconds(latestSecond - WINDOW_SECONDS + 1, epochSecond - WINDOW_SECONDS);
+            }
+            latestSecond = epochSecond;
+        }
+        // Connection setup is only kept for the whole run
+        if (metric == K6Metric.HTTP_REQ_CONNECTING || metric == K6Metric.HTTP_REQ_TLS_HANDSHAKING) {
+            connectionSetup.record(metric, value);
+            return;
+        }
+        totals.record(metric, value);
+
+        if (epochSecond <= latestSecond - WINDOW_SECONDS) {
+            lateSamples++;
+            return;
+        }
+        SecondBucket bucket = ring[(int) Math.floorMod(epochSecond, (long) WINDOW_SECONDS)];
+        if (bucket.second != epochSecond) {
+            if (bucket.second > epochSecond) {
+                lateSamples++;
+                return;
+            }
+            bucket.reset(epochSecond);
+        }
+        bucket.record(metric, value);
+    }
+
+    public synchronized LiveMetrics snapshot() {
+        if (latestSecond == Long.MIN_VALUE) {
+            return new LiveMetrics(0, 0, 0, 0, 0, 0, 0, 0, Double.NaN, 0);
+        }
+        // The newest second is usually still filling up, so the rolling window ends before it
+        long windowEnd = latestSecond - 1;
+        long windowStart = Math.max(firstSecond, windowEnd - ROLLING_SECONDS + 1);
+        double requests = 0;
+        scratch.reset();
+        for (long second = windowStart; second <= windowEnd; second++) {
+            SecondBucket bucket = ring[(int) Math.floorMod(second, (long) WINDOW_SECONDS)];
+            if (bucket.second == second) {
+                requests += bucket.requests;
+                scratch.add(bucket.duration);
+            }
+        }
+        long seconds = windowEnd - windowStart + 1;
+        double rps = seconds > 0 ? requests / seconds : 0;
+        // Fall back to the whole run while it is shorter than the window
+        LatencyHistogram latencies = scratch.getTotalCount() > 0 ? scratch : totals.duration;
+
+        return new LiveMetrics(
+                latestSecond - firstSecond + 1,
+                rps,
+                toMillis(latencies.valueAtPercentile(50)),
+                toMillis(latencies.valueAtPercentile(95)),
+                toMillis(latencies.valueAtPercentile(99)),
+                (long) totals.requests,
+                (long) totals.failed,
+                (long) totals.errors,
+                totals.successSamples == 0 ? Double.NaN : totals.successes / totals.successSamples,
+                (long) totals.droppedIterations
+        );
+    }
+
+    // Adds another aggregator's buckets and totals; histograms are merged bucket by bucket.
+    // Locks this aggregator first, so never merge two aggregators into each other concurrently.
+    public void merge(MetricsAggregator other) {
+        synchronized (this) {
+            synchronized (other) {
+                if (other.latestSecond == Long.MIN_VALUE) {
+                    return;
+                }
+                if (firstSecond == Long.MIN_VALUE || other.firstSecond < firstSecond) {
+                    firstSecond = other.firstSecond;
+                }
+                if (other.latestSecond > latestSecond) {
+                    latestSecond = other.latestSecond;
+                }
+                totals.add(other.totals);
+                connectionSetup.add(other.connectionSetup);
+                lateSamples += other.lateSamples;
+
+                for (SecondBucket source : other.ring) {
+                    if (source.second == Long.MIN_VALUE || source.second <= latestSecond - WINDOW_SECONDS) {
+                        continue;
+                    }
+                    SecondBucket bucket = ring[(int) Math.floorMod(source.second, (long) WINDOW_SECONDS)];
+                    if (bucket.second != source.second) {
+                        if (bucket.second > source.second) {
+                            continue;
+                        }
+                        bucket.reset(source.second);
+                    }
+                    bucket.add(source);
+                }
+            }
+        }
+    }
+
+    synchronized void setSecondListener(SecondListener listener) {
+        this.secondListener = listener;
+    }
+
+    // Hands the buckets still in the window to the listener; call once the stream has ended
+    public synchronized void flushSeconds() {
+        if (secondListener != null && latestSecond != Long.MIN_VALUE) {
+            completeSeconds(latestSecond - WINDOW_SECONDS + 1, latestSecond);
+        }
+    }
+
+    // Emits and clears the buckets for seconds [from, to]; later samples for them count as late
+    private void completeSeconds(long from, long to) {
+        for (long second = Math.max(from, to - WINDOW_SECONDS + 1); second <= to; second++) {
+            SecondBucket bucket = ring[(int) Math.floorMod(second, (long) WINDOW_SECONDS)];
+            if (bucket.second == second) {
+                secondListener.secondCompleted(bucket);
+                bucket.reset(Long.MIN_VALUE);
+            }
+        }
+    }
+
+    // Sums the last window.getSeconds() complete seconds into each window; the newest second is
+    // left out while it fills up. A window longer than the ring only covers what the ring holds.
+    public synchronized void fillWindows(Window... windows) {
+        for (Window window : windows) {
+            fillWindow(window);
+        }
+    }
+
+    private void fillWindow(Window window) {
+        window.sum.reset(Long.MIN_VALUE);
+        window.end = Long.MIN_VALUE;
+        window.coveredSeconds = 0;
+        if (latestSecond == Long.MIN_VALUE || latestSecond - 1 < firstSecond) {
+            return;
+        }
+        long end = latestSecond - 1;
+        long start = Math.max(firstSecond, end - Math.min(window.seconds, WINDOW_SECONDS - 1) + 1);
+        for (long second = start; second <= end; second++) {
+            SecondBucket bucket = ring[(int) Math.floorMod(second, (long) WINDOW_SECONDS)];
+            if (bucket.second == second) {
+                window.sum.add(bucket);
+            }
+        }
+        window.end = end;
+        window.coveredSeconds = end - start + 1;
+    }
+
+    /**
+     * Totals of a sliding window over the last complete seconds of the stream, for rules that
+     * should react to what the target does now rather than to the whole run. Filled by
+     * {@link #fillWindows(Window...)} and reused between calls, so watching a run does not allocate;
+     * what a fill costs is the walk over the window's seconds, plus one merge for a sharded run.
+     */
+    public static final class Window {
+        private final int seconds;
+        private final SecondBucket sum = new SecondBucket();
+        private long end = Long.MIN_VALUE;
+        private long coveredSeconds;
+
+        public Window(int seconds) {
+            if (seconds < 1) {
+                throw new IllegalArgumentException("A window covers at least one second");
+            }
+            this.seconds = seconds;
+        }
+
+        public int getSeconds() { return seconds; }
+
+        // Last second the window covers, as epoch seconds; Long.MIN_VALUE before any complete second
+        public long getEndSecond() { return end; }
+
+        // Fewer than getSeconds() at the start of a run
+        public long getCoveredSeconds() { return coveredSeconds; }
+
+        // Requests that reported http_req_failed, so also the samples behind getFailureRate()
+        public long getRequests() { return sum.failedSamples; }
+
+        // http_req_duration and response_times of the window, in microseconds; do not modify
+        public LatencyHistogram getDurations() { return sum.duration; }
+        public LatencyHistogram getResponseTimes() { return sum.responseTimes; }
+
+        public double getFailureRate() {
+            return sum.failedSamples == 0 ? Double.NaN : sum.failed / sum.failedSamples;
+        }
+
+        public double getSuccessRate() {
+            return sum.successSamples == 0 ? Double.NaN : sum.successes / sum.successSamples;
+        }
+    }
+
+    // Copy of the whole-run totals
+    synchronized SecondBucket copyTotals() {
+        SecondBucket copy = new SecondBucket();
+        copy.add(totals);
+        return copy;
+    }
+
+    // Discards the first seconds of the stream, e.g. while connections and JIT warm up; call before recording
+    public synchronized void setWarmupSeconds(long warmupSeconds) {
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public synchronized long getWarmupSamples() {
+        return warmupSamples;
+    }
+
+    public synchronized void reset() {
+        for (SecondBucket bucket : ring) {
+            bucket.reset(Long.MIN_VALUE);
+        }
+        totals.reset(Long.MIN_VALUE);
+        connectionSetup.reset();
+        firstSecond = Long.MIN_VALUE;
+        latestSecond = Long.MIN_VALUE;
+        lateSamples = 0;
+        warmupStart = Long.MIN_VALUE;
+        warmupSamples = 0;
+    }
+
+    // Copy of the http_req_duration histogram for the whole run
+    public synchronized LatencyHistogram getTotalDurations() {
+        return totals.duration.copy();
+    }
+
+    // Copy of the connect and TLS handshake times of the whole run
+    public synchronized ConnectionSetup getConnectionSetup() {
+        return connectionSetup.copy();
+    }
+
+    // Copy of a Trend metric's histogram for the whole run, or null if the metric is not a Trend
+    public synchronized LatencyHistogram getTotalHistogram(K6Metric metric) {
+        switch (metric) {
+            case HTTP_REQ_DURATION:
+                return totals.duration.copy();
+            case RESPONSE_TIMES:
+                return totals.responseTimes.copy();
+            default:
+                return null;
+        }
+    }
+
+    // Fraction of non-zero samples of a Rate metric; NaN without samples or for other metrics
+    public synchronized double getTotalRate(K6Metric metric) {
+        switch (metric) {
+            case HTTP_REQ_FAILED:
+                return totals.failedSamples == 0 ? Double.NaN : totals.failed / totals.failedSamples;
+            case SUCCESS_RATE:
+                return totals.successSamples == 0 ? Double.NaN : totals.successes / totals.successSamples;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    // Sum of a Counter metric; NaN for other metrics
+    public synchronized double getTotalCount(K6Metric metric) {
+        switch (metric) {
+            case HTTP_REQS:
+                return totals.requests;
+            case ERROR_COUNTER:
+                return totals.errors;
+            case DROPPED_ITERATIONS:
+                return totals.droppedIterations;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    public synchronized long getElapsedSeconds() {
+        return latestSecond == Long.MIN_VALUE ? 0 : latestSecond - firstSecond + 1;
+    }
+
+    public synchronized long getLateSamples() {
+        return lateSamples;
+    }
+
+    static long toMicros(double millis) {
+        return Math.round(millis * 1000.0);
+    }
+
+    static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    static final class SecondBucket {
+        long second = Long.MIN_VALUE;
+        final LatencyHistogram duration = new LatencyHistogram();
+        final LatencyHistogram responseTimes = new LatencyHistogram();
+        double requests;
+        double failed;
+        long failedSamples;
+        double successes;
+        long successSamples;
+        double errors;
+        double droppedIterations;
+
+        void reset(long newSecond) {
+            second = newSecond;
+            duration.reset();
+            responseTimes.reset();
+            requests = 0;
+            failed = 0;
+            failedSamples = 0;
+            successes = 0;
+            successSamples = 0;
+            errors = 0;
+            droppedIterations = 0;
+        }
+
+        void add(SecondBucket other) {
+            duration.add(other.duration);
+            responseTimes.add(other.responseTimes);
+            requests += other.requests;
+            failed += other.failed;
+            failedSamples += other.failedSamples;
+            successes += other.successes;
+            successSamples += other.successSamples;
+            errors += other.errors;
+            droppedIterations += other.droppedIterations;
+        }
+
+        void record(K6Metric metric, double value) {
+            switch (metric) {
+                case HTTP_REQ_DURATION:
+                    duration.record(toMicros(value));
+                    break;
+                case RESPONSE_TIMES:
+                    responseTimes.record(toMicros(value));
+                    break;
+                case HTTP_REQS:
+                    requests += value;
+                    break;
+                case HTTP_REQ_FAILED:
+                    failed += value;
+                    failedSamples++;
+                    break;
+                case SUCCESS_RATE:
+                    successes += value;
+                    successSamples++;
+                    break;
+                case ERROR_COUNTER:
+                    errors += value;
+                    break;
+                case DROPPED_ITERATIONS:
+                    droppedIterations += value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the NDJSON file k6 writes with "--out json=..." and feeds every complete
+ * line to a {@link MetricsAggregator}. Lines are parsed straight from the read buffer,
+ * so no String is created per sample.
+ */
+public class MetricsStreamReader implements Runnable {
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final Path file;
+    private final MetricsAggregator aggregator;
+    private final K6JsonParser parser = new K6JsonParser();
+    private final K6Sample sample = new K6Sample();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean finishing;
+    private volatile IOException error;
+    private long linesRead;
+
+    public MetricsStreamReader(Path file, MetricsAggregator aggregator) {
+        this.file = file;
+        this.aggregator = aggregator;
+    }
+
+    public Thread start(String threadName) {
+        Thread thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Files.exists(file)) {
+                if (finishing) {
+                    return;
+                }
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                tail(channel);
+            }
+        } catch (IOException e) {
+            error = e;
+            System.err.println("Failed to read k6 metrics stream: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void tail(FileChannel channel) throws IOException, InterruptedException {
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        int filled = 0;
+        while (true) {
+            // Read the flag before reading, so a finish() racing with EOF still gets one more pass
+            boolean lastPass = finishing;
+            view.limit(buffer.length).position(filled);
+            int read = channel.read(view);
+            if (read > 0) {
+                filled += read;
+                int consumed = processLines(buffer, filled);
+                if (consumed > 0) {
+                    System.arraycopy(buffer, consumed, buffer, 0, filled - consumed);
+                    filled -= consumed;
+                } else if (filled == buffer.length) {
+                    // A single line larger than the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    view = ByteBuffer.wrap(buffer);
+                }
+                continue;
+            }
+            if (lastPass) {
+                if (filled > 0) {
+                    parseLine(buffer, 0, filled);
+                }
+                return;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    // Parses complete lines and returns the number of bytes consumed
+    private int processLines(byte[] buffer, int length) {
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '\n') {
+                parseLine(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    private void parseLine(byte[] buffer, int start, int end) {
+        linesRead++;
+        if (parser.parse(buffer, start, end, sample)) {
+            aggregator.record(sample);
+        }
+    }
+
+    // Signals that k6 has exited; the reader drains what is left and stops
+    public void finish() {
+        finishing = true;
+    }
+
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public IOException getError() {
+        return error;
+    }
+}
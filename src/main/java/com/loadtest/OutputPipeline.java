@@ -0,0 +1,128 @@
+package com.loadtest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streams process output through three bounded stages:
+ *  - a ring buffer with the most recent lines (for the results window),
+ *  - a rolling log on disk with everything,
+ *  - batched, rate-limited delivery to a UI sink.
+ *
+ * Lines that arrive faster than the UI sink drains them are dropped from the UI
+ * hand-off only, oldest first, so the sink always gets the newest line; they are
+ * still in the ring buffer and the log file.
+ */
+public class OutputPipeline implements Closeable {
+    private final LineRingBuffer recentLines;
+    private final RollingLogWriter logWriter;
+    private final Consumer<List<String>> uiSink;
+    private final int maxLinesPerBatch;
+    private final ArrayBlockingQueue<String> pending;
+    private final ScheduledExecutorService dispatcher;
+    private final AtomicLong droppedLines = new AtomicLong();
+    private volatile IOException logError;
+
+    public OutputPipeline(LineRingBuffer recentLines, RollingLogWriter logWriter,
+                          Consumer<List<String>> uiSink, long batchIntervalMillis, int maxLinesPerBatch) {
+        this.recentLines = recentLines;
+        this.logWriter = logWriter;
+        this.uiSink = uiSink;
+        this.maxLinesPerBatch = maxLinesPerBatch;
+        this.pending = new ArrayBlockingQueue<>(maxLinesPerBatch);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "output-pipeline-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatchBatch, batchIntervalMillis, batchIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Reads the stream line by line until EOF; blocks the calling thread
+    public void consume(InputStream in) throws IOException {
+        consume(in, "");
+    }
+
+    // Same, with a prefix on every line; several streams may be consumed concurrently
+    public void consume(InputStream in, String prefix) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                accept(prefix.isEmpty() ? line : prefix + line);
+            }
+        }
+    }
+
+    public synchronized void accept(String line) {
+        recentLines.add(line);
+        if (logError == null) {
+            try {
+                logWriter.writeLine(line);
+            } catch (IOException e) {
+                // Keep the run going; the ring buffer still has the tail
+                logError = e;
+                System.err.println("Failed to write run log: " + e.getMessage());
+            }
+        }
+        // Make room by dropping the oldest pending line; the dispatcher may drain the queue meanwhile
+        while (!pending.offer(line)) {
+            if (pending.poll() != null) {
+                droppedLines.incrementAndGet();
+            }
+        }
+    }
+
+    private void dispatchBatch() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(Math.min(pending.size(), maxLinesPerBatch));
+        pending.drainTo(batch, maxLinesPerBatch);
+        try {
+            uiSink.accept(batch);
+        } catch (RuntimeException e) {
+            System.err.println("Output sink failed: " + e.getMessage());
+        }
+    }
+
+    public LineRingBuffer getRecentLines() {
+        return recentLines;
+    }
+
+    public List<Path> getLogSegments() {
+        return logWriter.getSegments();
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    public IOException getLogError() {
+        return logError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatchBatch();
+        logWriter.close();
+    }
+}
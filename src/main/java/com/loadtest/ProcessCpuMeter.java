@@ -0,0 +1,47 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the CPU time a child process has used. The OS only reports it while the
+ * process is alive, so the value is polled and the last reading is kept.
+ */
+public class ProcessCpuMeter implements Closeable {
+    private final ProcessHandle process;
+    private final ScheduledExecutorService scheduler;
+    private volatile long cpuNanos = -1;
+
+    public ProcessCpuMeter(ProcessHandle process, long intervalMillis) {
+        this.process = process;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "process-cpu-meter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample() {
+        Optional<Duration> cpu = process.info().totalCpuDuration();
+        cpu.ifPresent(duration -> cpuNanos = duration.toNanos());
+    }
+
+    // -1 if the platform never reported a value
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public double getCpuMicrosPerRequest(long requests) {
+        return cpuNanos < 0 || requests <= 0 ? Double.NaN : cpuNanos / 1000.0 / requests;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
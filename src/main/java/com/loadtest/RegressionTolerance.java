@@ -0,0 +1,105 @@
+package com.loadtest;
+
+import java.util.Locale;
+
+/**
+ * How much worse than its baseline a run may be before it fails. A change only counts
+ * as a regression when it is both statistically significant (p below alpha) and larger
+ * than the tolerance, so long runs do not fail on differences too small to matter.
+ */
+public class RegressionTolerance {
+    public static final double DEFAULT_LATENCY_PERCENT = 10;
+    public static final double DEFAULT_THROUGHPUT_PERCENT = 5;
+    public static final double DEFAULT_ERROR_RATE_POINTS = 1;
+    public static final double DEFAULT_ALPHA = 0.01;
+
+    private final double latencyPercent;
+    private final double throughputPercent;
+    private final double errorRatePoints;
+    private final double alpha;
+
+    public RegressionTolerance(double latencyPercent, double throughputPercent, double errorRatePoints, double alpha) {
+        this.latencyPercent = latencyPercent;
+        this.throughputPercent = throughputPercent;
+        this.errorRatePoints = errorRatePoints;
+        this.alpha = alpha;
+    }
+
+    public static RegressionTolerance defaults() {
+        return new RegressionTolerance(DEFAULT_LATENCY_PERCENT, DEFAULT_THROUGHPUT_PERCENT,
+                DEFAULT_ERROR_RATE_POINTS, DEFAULT_ALPHA);
+    }
+
+    // "10" sets the latency and throughput tolerance in percent;
+    // "latency=10, throughput=5, errors=1, alpha=0.01" sets them one by one
+    public static RegressionTolerance parse(String text) throws Exception {
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()) {
+            return defaults();
+        }
+        double latency = DEFAULT_LATENCY_PERCENT;
+        double throughput = DEFAULT_THROUGHPUT_PERCENT;
+        double errors = DEFAULT_ERROR_RATE_POINTS;
+        double alpha = DEFAULT_ALPHA;
+        if (!trimmed.contains("=")) {
+            latency = throughput = number("Tolerance", trimmed);
+        } else {
+            for (String part : trimmed.split("\\s*,\\s*")) {
+                String[] pair = part.split("\\s*=\\s*", 2);
+                if (pair.length != 2) {
+                    throw new Exception("Invalid tolerance '" + part + "'. Use e.g. latency=10, throughput=5, errors=1");
+                }
+                double value = number(pair[0], pair[1]);
+                switch (pair[0].toLowerCase(Locale.ROOT)) {
+                    case "latency":
+                        latency = value;
+                        break;
+                    case "throughput":
+                        throughput = value;
+                        break;
+                    case "errors":
+                        errors = value;
+                        break;
+                    case "alpha":
+                        if (value <= 0 || value >= 1) {
+                            throw new Exception("alpha must be between 0 and 1.");
+                        }
+                        alpha = value;
+                        break;
+                    default:
+                        throw new Exception("Unknown tolerance '" + pair[0] + "'. Use latency, throughput, errors or alpha.");
+                }
+            }
+        }
+        return new RegressionTolerance(latency, throughput, errors, alpha);
+    }
+
+    private static double number(String name, String value) throws Exception {
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed < 0) {
+                throw new Exception(name + " tolerance cannot be negative.");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new Exception(name + " tolerance must be a number.");
+        }
+    }
+
+    // Allowed increase of p50, p95 and p99 latency, in percent
+    public double getLatencyPercent() { return latencyPercent; }
+
+    // Allowed drop in requests per second, in percent
+    public double getThroughputPercent() { return throughputPercent; }
+
+    // Allowed increase of the failure rate, in percentage points
+    public double getErrorRatePoints() { return errorRatePoints; }
+
+    public double getAlpha() { return alpha; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "latency +%.1f%%, throughput -%.1f%%, errors +%.1f pts, alpha %.3g",
+                latencyPercent, throughputPercent, errorRatePoints, alpha);
+    }
+}
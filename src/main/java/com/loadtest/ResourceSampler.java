@@ -0,0 +1,489 @@
+package com.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Samples the load generator while a run executes: CPU, memory, threads and open file
+ * descriptors of the k6 processes and everything they started, plus host CPU, memory,
+ * network throughput and TCP sockets. Reads a handful of small /proc files once per
+ * second, on the second boundary, so every sample lines up with the per-second latency
+ * rows of the run (both are keyed by epoch second).
+ *
+ * A second is saturated when k6 keeps nearly every core busy, the host CPU is pegged or
+ * host memory is almost gone; latency measured in such seconds may be the generator's
+ * rather than the target's. Without /proc (not Linux) the sampler does nothing.
+ */
+public class ResourceSampler implements Closeable {
+    private static final Path PROC = Paths.get("/proc");
+    // The kernel reports process CPU time in USER_HZ ticks, which is 100 on every Linux ABI
+    private static final double TICKS_PER_SECOND = 100;
+    private static final double CPU_SATURATED_SHARE = 0.9;
+    private static final double HOST_CPU_SATURATED_SHARE = 0.95;
+    private static final double MEMORY_SATURATED_AVAILABLE_SHARE = 0.1;
+    // A single busy second, e.g. k6 compiling the script at startup, does not flag a run
+    private static final int MIN_SATURATED_SECONDS = 2;
+
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private final List<ProcessHandle> roots = new CopyOnWriteArrayList<>();
+    private final List<Sample> samples = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<Sample> saturationListener;
+    // Only used on the sampler thread
+    private final Map<Long, Long> processTicks = new HashMap<>();
+    private long[] previousHostCpu;
+    private long[] previousNet;
+    private long previousNanos;
+    private int saturatedStreak;
+    private boolean saturationReported;
+
+    // saturationListener hears about the first saturated stretch of the run, on the sampler thread
+    public ResourceSampler(Consumer<Sample> saturationListener) {
+        this.saturationListener = saturationListener;
+        if (!isSupported()) {
+            scheduler = null;
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "resource-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        long now = System.currentTimeMillis();
+        scheduler.scheduleAtFixedRate(this::sampleSafely, 1000 - now % 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    public static boolean isSupported() {
+        return Files.isReadable(PROC.resolve("stat")) && Files.isReadable(PROC.resolve("meminfo"));
+    }
+
+    // Adds a k6 process; its descendants are found on every sample
+    public void watch(ProcessHandle process) {
+        roots.add(process);
+    }
+
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (IOException | RuntimeException e) {
+            // A process can exit between listing and reading it; the next sample will do
+        }
+    }
+
+    private void sample() throws IOException {
+        long nanos = System.nanoTime();
+        long second = Math.floorDiv(System.currentTimeMillis() + 500, 1000) - 1;
+
+        // k6 process trees; CPU is counted per pid so exited children keep what they used
+        long rssBytes = 0;
+        int threads = 0;
+        int descriptors = 0;
+        long ticksUsed = 0;
+        List<ProcessHandle> tree = new ArrayList<>();
+        for (ProcessHandle root : roots) {
+            tree.add(root);
+            root.descendants().forEach(tree::add);
+        }
+        for (ProcessHandle process : tree) {
+            long pid = process.pid();
+            long ticks = processTicks(pid);
+            if (ticks < 0) {
+                continue;
+            }
+            Long previous = processTicks.put(pid, ticks);
+            ticksUsed += ticks - (previous == null ? 0 : previous);
+            Map<String, Long> status = keyValues(PROC.resolve(pid + "/status"));
+            rssBytes += status.getOrDefault("VmRSS", 0L) * 1024;
+            threads += status.getOrDefault("Threads", 0L).intValue();
+            descriptors += countEntries(PROC.resolve(pid + "/fd"));
+        }
+
+        long[] hostCpu = hostCpu();
+        Map<String, Long> memory = keyValues(PROC.resolve("meminfo"));
+        long[] net = networkBytes();
+        int tcpSockets = tcpSockets();
+
+        double elapsed = previousNanos == 0 ? 1 : (nanos - previousNanos) / 1e9;
+        Sample sample = new Sample(second,
+                previousNanos == 0 ? 0 : ticksUsed / TICKS_PER_SECOND / elapsed,
+                rssBytes, threads, descriptors,
+                previousHostCpu == null ? 0 : busyShare(previousHostCpu, hostCpu),
+                memory.getOrDefault("MemTotal", 0L) * 1024, memory.getOrDefault("MemAvailable", 0L) * 1024,
+                previousNet == null ? 0 : (net[0] - previousNet[0]) / elapsed,
+                previousNet == null ? 0 : (net[1] - previousNet[1]) / elapsed,
+                tcpSockets, cores);
+        previousNanos = nanos;
+        previousHostCpu = hostCpu;
+        previousNet = net;
+        synchronized (samples) {
+            samples.add(sample);
+        }
+
+        saturatedStreak = sample.isSaturated() ? saturatedStreak + 1 : 0;
+        if (saturatedStreak >= MIN_SATURATED_SECONDS && !saturationReported && saturationListener != null) {
+            saturationReported = true;
+            saturationListener.accept(sample);
+        }
+    }
+
+    // utime + stime of one process, or -1 if it is gone
+    private static long processTicks(long pid) {
+        String stat;
+        try {
+            stat = Files.readString(PROC.resolve(pid + "/stat"), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return -1;
+        }
+        // The command name is in parentheses and may contain spaces; fields count from after it
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    }
+
+    // Total and idle (idle + iowait) jiffies of all CPUs
+    private static long[] hostCpu() throws IOException {
+        String line = firstLine(PROC.resolve("stat"));
+        String[] fields = line.trim().split("\\s+");
+        long total = 0;
+        for (int i = 1; i < fields.length && i <= 8; i++) {
+            total += Long.parseLong(fields[i]);
+        }
+        return new long[]{total, Long.parseLong(fields[4]) + Long.parseLong(fields[5])};
+    }
+
+    private static double busyShare(long[] previous, long[] current) {
+        long total = current[0] - previous[0];
+        return total <= 0 ? 0 : 1 - (double) (current[1] - previous[1]) / total;
+    }
+
+    // Received and sent bytes over every interface except loopback
+    private static long[] networkBytes() throws IOException {
+        long[] bytes = new long[2];
+        for (String line : Files.readAllLines(PROC.resolve("net/dev"), StandardCharsets.US_ASCII)) {
+            int colon = line.indexOf(':');
+            if (colon < 0 || line.substring(0, colon).trim().equals("lo")) {
+                continue;
+            }
+            String[] fields = line.substring(colon + 1).trim().split("\\s+");
+            bytes[0] += Long.parseLong(fields[0]);
+            bytes[1] += Long.parseLong(fields[8]);
+        }
+        return bytes;
+    }
+
+    // TCP sockets in use plus those in TIME_WAIT, host-wide
+    private static int tcpSockets() throws IOException {
+        for (String line : Files.readAllLines(PROC.resolve("net/sockstat"), StandardCharsets.US_ASCII)) {
+            if (line.startsWith("TCP:")) {
+                String[] fields = line.substring(4).trim().split("\\s+");
+                int sockets = 0;
+                for (int i = 0; i + 1 < fields.length; i += 2) {
+                    if (fields[i].equals("inuse") || fields[i].equals("tw")) {
+                        sockets += Integer.parseInt(fields[i + 1]);
+                    }
+                }
+                return sockets;
+            }
+        }
+        return 0;
+    }
+
+    // "Name:   1234 kB" lines, numbers only
+    private static Map<String, Long> keyValues(Path file) throws IOException {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String[] value = line.substring(colon + 1).trim().split("\\s+");
+            try {
+                values.put(line.substring(0, colon), Long.parseLong(value[0]));
+            } catch (NumberFormatException e) {
+                // Not a number, e.g. the process name
+            }
+        }
+        return values;
+    }
+
+    private static int countEntries(Path directory) {
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path ignored : entries) {
+                count++;
+            }
+        } catch (IOException e) {
+            // Not our process to look into, or already gone
+        }
+        return count;
+    }
+
+    private static String firstLine(Path file) throws IOException {
+        String text = Files.readString(file, StandardCharsets.US_ASCII);
+        int end = text.indexOf('\n');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    // Sums the run's resource use up against its per-second latency; null without samples
+    public Usage summarize(StoredRun run, Path timeline) {
+        List<Sample> taken = getSamples();
+        return taken.isEmpty() ? null : new Usage(taken, run, timeline);
+    }
+
+    // One row per second: the run's requests and latency next to the resources of that second
+    public void writeTimeline(Path file, StoredRun run) throws IOException {
+        Map<Long, Integer> rows = rowsBySecond(run);
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("epoch_second,requests,p50_ms,p95_ms,p99_ms,k6_cpu_cores,k6_rss_mb,k6_threads,k6_open_fds,"
+                    + "host_cpu_pct,host_mem_used_pct,net_rx_mb_s,net_tx_mb_s,tcp_sockets,saturated\n");
+            for (Sample sample : getSamples()) {
+                Integer row = rows.get(sample.second);
+                out.write(String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%.2f,%.1f,%d,%d,%.1f,%.1f,%.3f,%.3f,%d,%s%n",
+                        sample.second,
+                        row == null ? "" : String.valueOf(run.getRequests()[row]),
+                        row == null ? "" : format(run.getP50Millis()[row]),
+                        row == null ? "" : format(run.getP95Millis()[row]),
+                        row == null ? "" : format(run.getP99Millis()[row]),
+                        sample.generatorCpuCores, sample.generatorRssBytes / 1048576.0, sample.generatorThreads,
+                        sample.generatorDescriptors, sample.hostCpuShare * 100, sample.getHostMemoryUsedShare() * 100,
+                        sample.netRxBytesPerSecond / 1048576, sample.netTxBytesPerSecond / 1048576, sample.tcpSockets,
+                        sample.isSaturated() ? sample.getSaturation() : ""));
+            }
+        }
+    }
+
+    private static Map<Long, Integer> rowsBySecond(StoredRun run) {
+        Map<Long, Integer> rows = new HashMap<>();
+        if (run != null) {
+            long[] seconds = run.getSeconds();
+            for (int i = 0; i < seconds.length; i++) {
+                rows.put(seconds[i], i);
+            }
+        }
+        return rows;
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** Resources of one second; rates cover the second before it was taken. */
+    public static class Sample {
+        private final long second;
+        private final double generatorCpuCores;
+        private final long generatorRssBytes;
+        private final int generatorThreads;
+        private final int generatorDescriptors;
+        private final double hostCpuShare;
+        private final long hostMemoryBytes;
+        private final long hostAvailableBytes;
+        private final double netRxBytesPerSecond;
+        private final double netTxBytesPerSecond;
+        private final int tcpSockets;
+        private final int cores;
+
+        Sample(long second, double generatorCpuCores, long generatorRssBytes, int generatorThreads,
+               int generatorDescriptors, double hostCpuShare, long hostMemoryBytes, long hostAvailableBytes,
+               double netRxBytesPerSecond, double netTxBytesPerSecond, int tcpSockets, int cores) {
+            this.second = second;
+            this.generatorCpuCores = generatorCpuCores;
+            this.generatorRssBytes = generatorRssBytes;
+            this.generatorThreads = generatorThreads;
+            this.generatorDescriptors = generatorDescriptors;
+            this.hostCpuShare = hostCpuShare;
+            this.hostMemoryBytes = hostMemoryBytes;
+            this.hostAvailableBytes = hostAvailableBytes;
+            this.netRxBytesPerSecond = netRxBytesPerSecond;
+            this.netTxBytesPerSecond = netTxBytesPerSecond;
+            this.tcpSockets = tcpSockets;
+            this.cores = cores;
+        }
+
+        public long getSecond() { return second; }
+
+        // CPU of all k6 processes, in cores (2.0 = two cores fully busy)
+        public double getGeneratorCpuCores() { return generatorCpuCores; }
+        public long getGeneratorRssBytes() { return generatorRssBytes; }
+        public int getGeneratorThreads() { return generatorThreads; }
+        public int getGeneratorDescriptors() { return generatorDescriptors; }
+        public double getHostCpuShare() { return hostCpuShare; }
+
+        public double getHostMemoryUsedShare() {
+            return hostMemoryBytes == 0 ? 0 : 1 - (double) hostAvailableBytes / hostMemoryBytes;
+        }
+
+        public double getNetRxBytesPerSecond() { return netRxBytesPerSecond; }
+        public double getNetTxBytesPerSecond() { return netTxBytesPerSecond; }
+        public int getTcpSockets() { return tcpSockets; }
+
+        public boolean isCpuSaturated() {
+            return generatorCpuCores >= cores * CPU_SATURATED_SHARE || hostCpuShare >= HOST_CPU_SATURATED_SHARE;
+        }
+
+        public boolean isMemorySaturated() {
+            return hostMemoryBytes > 0 && hostAvailableBytes < hostMemoryBytes * MEMORY_SATURATED_AVAILABLE_SHARE;
+        }
+
+        public boolean isSaturated() {
+            return isCpuSaturated() || isMemorySaturated();
+        }
+
+        // "cpu", "memory" or "cpu+memory"
+        public String getSaturation() {
+            return isCpuSaturated() && isMemorySaturated() ? "cpu+memory" : isCpuSaturated() ? "cpu" : "memory";
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "k6 CPU %.1f of %d cores, host CPU %.0f%%, host memory %.0f%% used",
+                    generatorCpuCores, cores, hostCpuShare * 100, getHostMemoryUsedShare() * 100);
+        }
+    }
+
+    /** Peak resource use of a run and the seconds in which the generator was saturated. */
+    public static class Usage {
+        private final int seconds;
+        private final int cpuSaturatedSeconds;
+        private final int memorySaturatedSeconds;
+        private final int saturatedSeconds;
+        private final int longestSaturatedStreak;
+        private final double peakCpuCores;
+        private final long peakRssBytes;
+        private final double peakHostCpuShare;
+        private final double peakHostMemoryShare;
+        private final double peakNetBytesPerSecond;
+        private final int peakTcpSockets;
+        private final int cores;
+        private final double saturatedP99Millis;
+        private final double otherP99Millis;
+        private final Path timeline;
+
+        Usage(List<Sample> samples, StoredRun run, Path timeline) {
+            this.timeline = timeline;
+            Map<Long, Integer> rows = rowsBySecond(run);
+            int cpu = 0;
+            int memory = 0;
+            int saturated = 0;
+            int streak = 0;
+            int longestStreak = 0;
+            double cpuCores = 0;
+            long rss = 0;
+            double hostCpu = 0;
+            double hostMemory = 0;
+            double net = 0;
+            int sockets = 0;
+            double saturatedP99 = 0;
+            int saturatedRows = 0;
+            double otherP99 = 0;
+            int otherRows = 0;
+            for (Sample sample : samples) {
+                cpu += sample.isCpuSaturated() ? 1 : 0;
+                memory += sample.isMemorySaturated() ? 1 : 0;
+                saturated += sample.isSaturated() ? 1 : 0;
+                // Consecutive samples, as the live warning counts them
+                streak = sample.isSaturated() ? streak + 1 : 0;
+                longestStreak = Math.max(longestStreak, streak);
+                cpuCores = Math.max(cpuCores, sample.generatorCpuCores);
+                rss = Math.max(rss, sample.generatorRssBytes);
+                hostCpu = Math.max(hostCpu, sample.hostCpuShare);
+                hostMemory = Math.max(hostMemory, sample.getHostMemoryUsedShare());
+                net = Math.max(net, sample.netRxBytesPerSecond + sample.netTxBytesPerSecond);
+                sockets = Math.max(sockets, sample.tcpSockets);
+                // Mean of the per-second p99s, split by whether the generator was saturated
+                Integer row = rows.get(sample.second);
+                if (row != null && run.getRequests()[row] > 0 && !Double.isNaN(run.getP99Millis()[row])) {
+                    if (sample.isSaturated()) {
+                        saturatedP99 += run.getP99Millis()[row];
+                        saturatedRows++;
+                    } else {
+                        otherP99 += run.getP99Millis()[row];
+                        otherRows++;
+                    }
+                }
+            }
+            this.seconds = samples.size();
+            this.cpuSaturatedSeconds = cpu;
+            this.memorySaturatedSeconds = memory;
+            this.saturatedSeconds = saturated;
+            this.longestSaturatedStreak = longestStreak;
+            this.peakCpuCores = cpuCores;
+            this.peakRssBytes = rss;
+            this.peakHostCpuShare = hostCpu;
+            this.peakHostMemoryShare = hostMemory;
+            this.peakNetBytesPerSecond = net;
+            this.peakTcpSockets = sockets;
+            this.cores = samples.get(0).cores;
+            this.saturatedP99Millis = saturatedRows == 0 ? Double.NaN : saturatedP99 / saturatedRows;
+            this.otherP99Millis = otherRows == 0 ? Double.NaN : otherP99 / otherRows;
+        }
+
+        // The generator ran out of CPU or memory for long enough to distort latency, judged on
+        // consecutive seconds like the live warning, so separate one-second spikes do not count
+        public boolean isSaturated() { return longestSaturatedStreak >= MIN_SATURATED_SECONDS; }
+        public int getSaturatedSeconds() { return saturatedSeconds; }
+        public int getLongestSaturatedStreak() { return longestSaturatedStreak; }
+        public int getCpuSaturatedSeconds() { return cpuSaturatedSeconds; }
+        public int getMemorySaturatedSeconds() { return memorySaturatedSeconds; }
+        public int getSampledSeconds() { return seconds; }
+        public double getPeakCpuCores() { return peakCpuCores; }
+        public long getPeakRssBytes() { return peakRssBytes; }
+        public double getPeakHostCpuShare() { return peakHostCpuShare; }
+        public double getPeakHostMemoryShare() { return peakHostMemoryShare; }
+        public int getPeakTcpSockets() { return peakTcpSockets; }
+
+        // Per-second CSV written next to the log, or null if it could not be written
+        public Path getTimeline() { return timeline; }
+
+        public String report() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT,
+                    "Load generator: k6 peaked at %.1f of %d cores and %.0f MB; host CPU %.0f%%, memory %.0f%% used, "
+                            + "network %.1f MB/s, %d TCP sockets%n",
+                    peakCpuCores, cores, peakRssBytes / 1048576.0, peakHostCpuShare * 100, peakHostMemoryShare * 100,
+                    peakNetBytesPerSecond / 1048576, peakTcpSockets));
+            if (isSaturated()) {
+                text.append(String.format(Locale.ROOT,
+                        "  Generator saturated for %d of %d s, at most %d s in a row (CPU %d s, memory %d s)",
+                        saturatedSeconds, seconds, longestSaturatedStreak, cpuSaturatedSeconds, memorySaturatedSeconds));
+                if (!Double.isNaN(saturatedP99Millis) && !Double.isNaN(otherP99Millis)) {
+                    text.append(String.format(Locale.ROOT, "; p(99) averaged %.2f ms in those seconds and %.2f ms in the rest",
+                            saturatedP99Millis, otherP99Millis));
+                }
+                text.append(" - latency in those seconds may be the generator's, not the target's\n");
+            }
+            if (timeline != null) {
+                text.append("  Resource timeline: ").append(timeline).append("\n");
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.loadtest;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding used by the {@link ResultsStore}: unsigned LEB128 varints,
+ * zig-zag for signed values, and histograms as (index delta, count) pairs of their
+ * non-empty buckets, which keeps a typical per-second histogram to a few hundred bytes.
+ */
+final class ResultsCodec {
+
+    private ResultsCodec() {
+    }
+
+    // Growable output buffer
+    static final class Output {
+        private byte[] bytes;
+        private int length;
+
+        Output(int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[length++] = (byte) (bits >>> (56 - 8 * i));
+            }
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            writeBytes(utf8, 0, utf8.length);
+        }
+
+        void writeBytes(byte[] source, int offset, int count) {
+            ensure(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        void writeHistogram(LatencyHistogram histogram) {
+            int nonEmpty = 0;
+            int buckets = histogram.getBucketCount();
+            for (int i = 0; i < buckets; i++) {
+                if (histogram.getCountAtIndex(i) != 0) {
+                    nonEmpty++;
+                }
+            }
+            writeVarLong(nonEmpty);
+            int previous = 0;
+            for (int i = 0; i < buckets; i++) {
+                long count = histogram.getCountAtIndex(i);
+                if (count != 0) {
+                    writeVarLong(i - previous);
+                    writeVarLong(count);
+                    previous = i;
+                }
+            }
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void clear() {
+            length = 0;
+        }
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static long readSignedVarLong(ByteBuffer in) {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    static double readDouble(ByteBuffer in) {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (in.get() & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Adds the encoded counts to the histogram
+    static void readHistogram(ByteBuffer in, LatencyHistogram into) {
+        int nonEmpty = readVarInt(in);
+        int index = 0;
+        for (int i = 0; i < nonEmpty; i++) {
+            index += readVarInt(in);
+            long count = readVarLong(in);
+            if (index < into.getBucketCount()) {
+                into.recordAtIndex(index, count);
+            }
+        }
+    }
+
+    static void skipHistogram(ByteBuffer in) {
+        int nonEmpty = readVarInt(in);
+        for (int i = 0; i < nonEmpty * 2; i++) {
+            readVarLong(in);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only history of finished runs in two files:
+ *  - runs.dat holds one checksummed binary record per run (metadata, thresholds,
+ *    whole-run totals and per-second rows with sparse histograms),
+ *  - runs.idx holds a small summary of each record and where it lives in runs.dat.
+ * The baseline chosen for each test is kept next to them in baselines.properties.
+ *
+ * The index is read into memory on open, so listing and charting hundreds of runs never
+ * touches the data file; a single run is decoded from a memory-mapped slice of it. Records
+ * are written before their index entry, and a data file that is ahead of its index (after
+ * a crash, or with the index deleted) is re-indexed on open.
+ *
+ * Several processes may share a store, e.g. the application and a CLI run. Records are only
+ * written while holding a file lock on runs.dat, and each writer first reads what the others
+ * appended since it last looked, so run ids stay unique.
+ */
+public class ResultsStore implements Closeable {
+    private static final int RECORD_MAGIC = 0x4B365253; // "K6RS"
+    private static final int RECORD_HEADER_BYTES = 12;   // magic, payload length, CRC32
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_EVALUATED = 1;
+    private static final int FLAG_PASSED = 2;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final Path baselinesFile;
+    private final Properties baselines = new Properties();
+    private final List<RunSummary> runs = new ArrayList<>();
+    private final Map<String, List<RunSummary>> runsByTest = new HashMap<>();
+    private final LatencyHistogram scratch = new LatencyHistogram();
+    private long nextId = 1;
+    // How far this instance has read runs.idx, and where its last known record in runs.dat ends
+    private long indexEnd;
+    private long dataEnd;
+
+    public ResultsStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        data = FileChannel.open(directory.resolve("runs.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(directory.resolve("runs.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baselinesFile = directory.resolve("baselines.properties");
+        try {
+            FileLock lock = data.lock();
+            try {
+                catchUp();
+            } finally {
+                lock.release();
+            }
+            loadBaselines();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Reads what was stored since this instance last looked, by it or another process; call with the lock held
+    private void catchUp() throws IOException {
+        readIndexEntries();
+        recoverUnindexedRecords();
+    }
+
+    // Reads the index entries past indexEnd
+    private void readIndexEntries() throws IOException {
+        long size = index.size();
+        if (size <= indexEnd) {
+            return;
+        }
+        MappedByteBuffer in = index.map(FileChannel.MapMode.READ_ONLY, indexEnd, size - indexEnd);
+        long validEnd = 0;
+        while (in.remaining() >= 4) {
+            int entryLength = in.getInt();
+            if (entryLength <= 0 || entryLength > in.remaining()) {
+                break;
+            }
+            ByteBuffer entry = in.slice();
+            entry.limit(entryLength);
+            in.position(in.position() + entryLength);
+            try {
+                long offset = ResultsCodec.readVarLong(entry);
+                int length = ResultsCodec.readVarInt(entry);
+                addSummary(decodeSummary(entry, offset, length));
+            } catch (BufferUnderflowException | IllegalStateException | IllegalArgumentException e) {
+                break;
+            }
+            validEnd = in.position();
+        }
+        indexEnd += validEnd;
+        if (indexEnd < size) {
+            // A partially written entry from an interrupted append
+            System.err.println("Results index: dropping " + (size - indexEnd) + " trailing bytes");
+            index.truncate(indexEnd);
+        }
+    }
+
+    // Indexes records that made it into runs.dat but not into runs.idx
+    private void recoverUnindexedRecords() throws IOException {
+        long position = dataEnd;
+        long size = data.size();
+        while (position + RECORD_HEADER_BYTES <= size) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            data.read(header, position);
+            header.flip();
+            int magic = header.getInt();
+            int payloadLength = header.getInt();
+            int length = RECORD_HEADER_BYTES + payloadLength;
+            if (magic != RECORD_MAGIC || payloadLength <= 0 || position + length > size) {
+                break;
+            }
+            ByteBuffer payload;
+            try {
+                payload = readRecord(position, length);
+            } catch (IOException e) {
+                break;
+            }
+            ByteBuffer summaryBlock = payload.duplicate();
+            RunSummary summary = decodeSummary(payload, position, length);
+            summaryBlock.limit(payload.position());
+            writeIndexEntry(summary, summaryBlock);
+            addSummary(summary);
+            System.out.println("Results store: re-indexed run #" + summary.getId());
+            position += length;
+        }
+        if (position < size) {
+            System.err.println("Results store: dropping " + (size - position) + " bytes of an incomplete record");
+            data.truncate(position);
+        }
+    }
+
+    private void addSummary(RunSummary summary) {
+        runs.add(summary);
+        List<RunSummary> testRuns = runsByTest.computeIfAbsent(summary.getTestName(), name -> new ArrayList<>());
+        int insertAt = testRuns.size();
+        while (insertAt > 0 && testRuns.get(insertAt - 1).getStartedAt().isAfter(summary.getStartedAt())) {
+            insertAt--;
+        }
+        testRuns.add(insertAt, summary);
+        nextId = Math.max(nextId, summary.getId() + 1);
+        dataEnd = Math.max(dataEnd, summary.offset + summary.length);
+    }
+
+    // Persists a finished run; metrics should be the merged aggregator of all shards
+    public synchronized RunSummary append(RunRecorder recorder, MetricsAggregator metrics,
+                                          List<ThresholdEvaluator.Result> thresholds, TestRun.State state,
+                                          int exitCode, int shards) throws IOException {
+        RunSummary summary;
+        FileLock lock = data.lock();
+        try {
+            // The id is only taken once runs appended by other processes are known
+            catchUp();
+            ResultsCodec.Output payload = encode(nextId, recorder, metrics, thresholds, state, exitCode, shards);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload.bytes(), 0, payload.length());
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            header.putInt(RECORD_MAGIC).putInt(payload.length()).putInt((int) crc.getValue()).flip();
+
+            long offset = data.size();
+            writeFully(data, new ByteBuffer[]{header, ByteBuffer.wrap(payload.bytes(), 0, payload.length())}, offset);
+            data.force(false);
+
+            ByteBuffer summaryBlock = ByteBuffer.wrap(payload.bytes(), 0, payload.length());
+            summary = decodeSummary(summaryBlock, offset, RECORD_HEADER_BYTES + payload.length());
+            summaryBlock.flip();
+            writeIndexEntry(summary, summaryBlock);
+        } finally {
+            lock.release();
+        }
+        addSummary(summary);
+        return summary;
+    }
+
+    // Decodes a finished run without storing it, e.g. to compare it with its baseline first
+    public synchronized StoredRun preview(RunRecorder recorder, MetricsAggregator metrics,
+                                          List<ThresholdEvaluator.Result> thresholds, TestRun.State state,
+                                          int exitCode, int shards) throws IOException {
+        ResultsCodec.Output payload = encode(nextId, recorder, metrics, thresholds, state, exitCode, shards);
+        return decodeRun(ByteBuffer.wrap(payload.bytes(), 0, payload.length()), -1, 0);
+    }
+
+    private ResultsCodec.Output encode(long id, RunRecorder recorder, MetricsAggregator metrics,
+                                       List<ThresholdEvaluator.Result> thresholds, TestRun.State state,
+                                       int exitCode, int shards) {
+        MetricsAggregator.SecondBucket totals = metrics.copyTotals();
+        long elapsedSeconds = metrics.getElapsedSeconds();
+        long requests = Math.round(totals.requests);
+        LatencyHistogram durations = totals.duration;
+
+        ResultsCodec.Output payload = new ResultsCodec.Output(16 * 1024 + recorder.getRowCount() * 256);
+        // Summary block: also the body of the index entry
+        payload.writeByte(FORMAT_VERSION);
+        payload.writeVarLong(id);
+        payload.writeString(recorder.getTestName());
+        payload.writeSignedVarLong(recorder.getStartedAt().toEpochMilli());
+        payload.writeSignedVarLong(System.currentTimeMillis());
+        payload.writeString(state.name());
+        payload.writeSignedVarLong(exitCode);
+        payload.writeVarLong(shards);
+        payload.writeVarLong(requests);
+        payload.writeVarLong(Math.round(totals.failed));
+        payload.writeDouble(elapsedSeconds > 0 ? (double) requests / elapsedSeconds : 0);
+        payload.writeDouble(MetricsAggregator.toMillis(durations.valueAtPercentile(50)));
+        payload.writeDouble(MetricsAggregator.toMillis(durations.valueAtPercentile(95)));
+        payload.writeDouble(MetricsAggregator.toMillis(durations.valueAtPercentile(99)));
+
+        // Whole-run totals
+        payload.writeVarLong(elapsedSeconds);
+        payload.writeVarLong(totals.failedSamples);
+        payload.writeVarLong(Math.round(totals.successes));
+        payload.writeVarLong(totals.successSamples);
+        payload.writeVarLong(Math.round(totals.errors));
+        payload.writeVarLong(Math.round(totals.droppedIterations));
+        payload.writeHistogram(durations);
+        payload.writeHistogram(totals.responseTimes);
+
+        payload.writeVarLong(thresholds.size());
+        for (ThresholdEvaluator.Result result : thresholds) {
+            payload.writeString(result.getMetric());
+            payload.writeString(result.getExpression());
+            payload.writeByte((result.isEvaluated() ? FLAG_EVALUATED : 0) | (result.isPassed() ? FLAG_PASSED : 0));
+            payload.writeDouble(result.getActual());
+            payload.writeString(result.getNote() == null ? "" : result.getNote());
+        }
+
+        recorder.writeRows(payload);
+
+        return payload;
+    }
+
+    // The entry body is the record's location followed by the summary block of its payload
+    private void writeIndexEntry(RunSummary summary, ByteBuffer summaryBlock) throws IOException {
+        byte[] block = new byte[summaryBlock.remaining()];
+        summaryBlock.duplicate().get(block);
+        ResultsCodec.Output entry = new ResultsCodec.Output(block.length + 24);
+        entry.writeVarLong(summary.offset);
+        entry.writeVarLong(summary.length);
+        entry.writeBytes(block, 0, block.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + entry.length());
+        buffer.putInt(entry.length()).put(entry.bytes(), 0, entry.length()).flip();
+        long position = index.size();
+        writeFully(index, new ByteBuffer[]{buffer}, position);
+        index.force(false);
+        indexEnd = position + 4 + entry.length();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    private static RunSummary decodeSummary(ByteBuffer in, long offset, int length) {
+        int version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported results format version " + version);
+        }
+        long id = ResultsCodec.readVarLong(in);
+        String testName = ResultsCodec.readString(in);
+        Instant startedAt = Instant.ofEpochMilli(ResultsCodec.readSignedVarLong(in));
+        Instant finishedAt = Instant.ofEpochMilli(ResultsCodec.readSignedVarLong(in));
+        TestRun.State state = TestRun.State.valueOf(ResultsCodec.readString(in));
+        int exitCode = (int) ResultsCodec.readSignedVarLong(in);
+        int shards = ResultsCodec.readVarInt(in);
+        long requests = ResultsCodec.readVarLong(in);
+        long failed = ResultsCodec.readVarLong(in);
+        double rps = ResultsCodec.readDouble(in);
+        double p50 = ResultsCodec.readDouble(in);
+        double p95 = ResultsCodec.readDouble(in);
+        double p99 = ResultsCodec.readDouble(in);
+        return new RunSummary(id, testName, startedAt, finishedAt, state, exitCode, shards, requests, failed, rps,
+                p50, p95, p99, offset, length);
+    }
+
+    // Maps a record and checks it; returns the payload
+    private ByteBuffer readRecord(long offset, int length) throws IOException {
+        MappedByteBuffer record = data.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        int magic = record.getInt();
+        int payloadLength = record.getInt();
+        int expectedCrc = record.getInt();
+        if (magic != RECORD_MAGIC || payloadLength != length - RECORD_HEADER_BYTES) {
+            throw new IOException("Corrupt results record at offset " + offset);
+        }
+        ByteBuffer payload = record.slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch in results record at offset " + offset);
+        }
+        return payload;
+    }
+
+    public synchronized StoredRun load(RunSummary summary) throws IOException {
+        return decodeRun(readRecord(summary.offset, summary.length), summary.offset, summary.length);
+    }
+
+    private StoredRun decodeRun(ByteBuffer in, long offset, int length) throws IOException {
+        RunSummary summary = null;
+        try {
+            summary = decodeSummary(in, offset, length);
+
+            long elapsedSeconds = ResultsCodec.readVarLong(in);
+            long failedSamples = ResultsCodec.readVarLong(in);
+            long successes = ResultsCodec.readVarLong(in);
+            long successSamples = ResultsCodec.readVarLong(in);
+            long errors = ResultsCodec.readVarLong(in);
+            ResultsCodec.readVarLong(in); // dropped iterations, also in the per-second rows
+            LatencyHistogram durations = new LatencyHistogram();
+            ResultsCodec.readHistogram(in, durations);
+            LatencyHistogram responseTimes = new LatencyHistogram();
+            ResultsCodec.readHistogram(in, responseTimes);
+
+            int thresholdCount = ResultsCodec.readVarInt(in);
+            List<ThresholdEvaluator.Result> thresholds = new ArrayList<>(thresholdCount);
+            for (int i = 0; i < thresholdCount; i++) {
+                String metric = ResultsCodec.readString(in);
+                String expression = ResultsCodec.readString(in);
+                int flags = in.get();
+                double actual = ResultsCodec.readDouble(in);
+                String note = ResultsCodec.readString(in);
+                thresholds.add(new ThresholdEvaluator.Result(metric, expression, actual,
+                        (flags & FLAG_EVALUATED) != 0, (flags & FLAG_PASSED) != 0, note.isEmpty() ? null : note));
+            }
+
+            return decodeSeries(summary, Collections.unmodifiableList(thresholds), durations, responseTimes,
+                    elapsedSeconds, failedSamples, successes, successSamples, errors, in);
+        } catch (BufferUnderflowException | IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Corrupt results record" + (summary != null ? " for run #" + summary.getId() : ""), e);
+        }
+    }
+
+    private StoredRun decodeSeries(RunSummary summary, List<ThresholdEvaluator.Result> thresholds,
+                                   LatencyHistogram durations, LatencyHistogram responseTimes, long elapsedSeconds,
+                                   long failedSamples, long successes, long successSamples, long errors,
+                                   ByteBuffer in) {
+        int rowCount = ResultsCodec.readVarInt(in);
+        long[] rowSecond = new long[rowCount];
+        long[][] rowCounters = new long[rowCount][];
+        int[] rowHistogram = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rowSecond[row] = ResultsCodec.readSignedVarLong(in);
+            // requests, failed, errors, dropped, successes, success samples
+            long[] counters = new long[6];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = ResultsCodec.readVarLong(in);
+            }
+            rowCounters[row] = counters;
+            rowHistogram[row] = in.position();
+            ResultsCodec.skipHistogram(in);
+        }
+
+        // Shards write one row per second each; rows for the same second are added up
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(row -> rowSecond[row]));
+        TreeSet<Long> distinct = new TreeSet<>();
+        for (long second : rowSecond) {
+            distinct.add(second);
+        }
+
+        int count = distinct.size();
+        long[] seconds = new long[count];
+        long[] requests = new long[count];
+        long[] failed = new long[count];
+        long[] errorCounts = new long[count];
+        long[] dropped = new long[count];
+        double[] p50 = new double[count];
+        double[] p95 = new double[count];
+        double[] p99 = new double[count];
+        int slot = -1;
+        for (int i = 0; i < rowCount; i++) {
+            int row = order[i];
+            if (slot < 0 || seconds[slot] != rowSecond[row]) {
+                if (slot >= 0) {
+                    finishSecond(slot, p50, p95, p99);
+                }
+                slot++;
+                seconds[slot] = rowSecond[row];
+                scratch.reset();
+            }
+            long[] counters = rowCounters[row];
+            requests[slot] += counters[0];
+            failed[slot] += counters[1];
+            errorCounts[slot] += counters[2];
+            dropped[slot] += counters[3];
+            in.position(rowHistogram[row]);
+            ResultsCodec.readHistogram(in, scratch);
+        }
+        if (slot >= 0) {
+            finishSecond(slot, p50, p95, p99);
+        }
+        return new StoredRun(summary, thresholds, durations, responseTimes, elapsedSeconds, failedSamples, successes,
+                successSamples, errors, seconds, requests, failed, errorCounts, dropped, p50, p95, p99);
+    }
+
+    private void finishSecond(int slot, double[] p50, double[] p95, double[] p99) {
+        p50[slot] = MetricsAggregator.toMillis(scratch.valueAtPercentile(50));
+        p95[slot] = MetricsAggregator.toMillis(scratch.valueAtPercentile(95));
+        p99[slot] = MetricsAggregator.toMillis(scratch.valueAtPercentile(99));
+    }
+
+    // Baseline run a test is compared against, or null if none was chosen
+    public synchronized RunSummary getBaseline(String testName) {
+        String id = baselines.getProperty(testName);
+        if (id == null) {
+            return null;
+        }
+        for (RunSummary run : find(testName)) {
+            if (Long.toString(run.getId()).equals(id)) {
+                return run;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void setBaseline(RunSummary run) throws IOException {
+        loadBaselines();
+        baselines.setProperty(run.getTestName(), Long.toString(run.getId()));
+        saveBaselines();
+    }
+
+    public synchronized void clearBaseline(String testName) throws IOException {
+        loadBaselines();
+        if (baselines.remove(testName) != null) {
+            saveBaselines();
+        }
+    }
+
+    // Re-read before each change, so baselines another process set are kept
+    private void loadBaselines() throws IOException {
+        baselines.clear();
+        if (Files.exists(baselinesFile)) {
+            try (Reader reader = Files.newBufferedReader(baselinesFile, StandardCharsets.UTF_8)) {
+                baselines.load(reader);
+            }
+        }
+    }
+
+    // Written to a temporary file first, so a crash never leaves half a file behind
+    private void saveBaselines() throws IOException {
+        Path temp = baselinesFile.resolveSibling(baselinesFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            baselines.store(writer, "Baseline run id per test name");
+        }
+        Files.move(temp, baselinesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // All runs in the order they were stored
+    public synchronized List<RunSummary> list() {
+        return new ArrayList<>(runs);
+    }
+
+    public synchronized List<String> getTestNames() {
+        List<String> names = new ArrayList<>(runsByTest.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    // Runs of one test, oldest first
+    public synchronized List<RunSummary> find(String testName) {
+        List<RunSummary> testRuns = runsByTest.get(testName);
+        return testRuns == null ? new ArrayList<>() : new ArrayList<>(testRuns);
+    }
+
+    // Runs of one test that started in [from, to), oldest first
+    public synchronized List<RunSummary> find(String testName, Instant from, Instant to) {
+        List<RunSummary> result = new ArrayList<>();
+        List<RunSummary> testRuns = runsByTest.get(testName);
+        if (testRuns == null) {
+            return result;
+        }
+        int low = 0;
+        int high = testRuns.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (testRuns.get(mid).getStartedAt().isBefore(from)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < testRuns.size() && testRuns.get(i).getStartedAt().isBefore(to); i++) {
+            result.add(testRuns.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the full run log to disk, rolling to a new segment once the active file
+ * reaches maxBytesPerFile. Only the newest maxFiles segments are kept.
+ *
+ * Segments are named base.log (active), base.log.1 (previous), base.log.2, ...
+ */
+public class RollingLogWriter implements Closeable {
+    private final Path activeFile;
+    private final long maxBytesPerFile;
+    private final int maxFiles;
+    private BufferedWriter writer;
+    private long bytesWritten;
+    private long totalBytes;
+
+    public RollingLogWriter(Path activeFile, long maxBytesPerFile, int maxFiles) throws IOException {
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("maxFiles must be at least 1: " + maxFiles);
+        }
+        this.activeFile = activeFile;
+        this.maxBytesPerFile = maxBytesPerFile;
+        this.maxFiles = maxFiles;
+        Path parent = activeFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(activeFile, StandardCharsets.UTF_8);
+    }
+
+    public synchronized void writeLine(String line) throws IOException {
+        if (writer == null) {
+            throw new IOException("Log writer is closed: " + activeFile);
+        }
+        // Close enough for rolling purposes; exact byte counts would need an encode per line
+        long lineBytes = line.length() + 1L;
+        if (bytesWritten > 0 && bytesWritten + lineBytes > maxBytesPerFile) {
+            roll();
+        }
+        writer.write(line);
+        writer.write('\n');
+        bytesWritten += lineBytes;
+        totalBytes += lineBytes;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        Files.deleteIfExists(segment(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            Path source = segment(i);
+            if (Files.exists(source)) {
+                Files.move(source, segment(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        writer = Files.newBufferedWriter(activeFile, StandardCharsets.UTF_8);
+        bytesWritten = 0;
+    }
+
+    private Path segment(int index) {
+        return index == 0 ? activeFile : activeFile.resolveSibling(activeFile.getFileName() + "." + index);
+    }
+
+    // Returns the segments that currently exist, oldest first
+    public synchronized List<Path> getSegments() {
+        List<Path> segments = new ArrayList<>();
+        for (int i = maxFiles - 1; i >= 0; i--) {
+            Path segment = segment(i);
+            if (Files.exists(segment)) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    public Path getActiveFile() {
+        return activeFile;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
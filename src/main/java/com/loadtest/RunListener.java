@@ -0,0 +1,29 @@
+package com.loadtest;
+
+/**
+ * Receives the progress of test runs started through {@link ScriptService}. Keeps the
+ * service free of UI types, so the same runs can drive the JavaFX window or the
+ * headless CLI. Methods are called on run threads; a UI must hand off to its own thread.
+ */
+public interface RunListener {
+
+    // Short progress messages, e.g. that a run is queued or has started
+    void status(String message);
+
+    // A run left the queue and k6 is starting
+    default void started(String testName) {
+    }
+
+    // Newest line of k6 output, at most a few times per second
+    default void outputLine(String line) {
+    }
+
+    // Live totals, a few times per second while a run is active
+    default void liveMetrics(LiveMetrics metrics) {
+    }
+
+    void finished(RunResult result);
+
+    // The run could not be started or broke down; no result was produced
+    void failed(Exception error);
+}
@@ -0,0 +1,192 @@
+package com.loadtest;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs tests on a fixed pool of run threads. Runs beyond the concurrency limit wait
+ * in a FIFO queue, so two load generators never compete for the same CPU unless
+ * that is explicitly allowed. Runs can also be scheduled once or on a fixed period
+ * (e.g. a nightly baseline); nothing here blocks the caller.
+ */
+public class RunManager implements Closeable {
+
+    // The work of one run; returns whether the test passed
+    public interface RunTask {
+        boolean run(TestRun run) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final List<TestRun> activeRuns = new CopyOnWriteArrayList<>();
+    private final List<ScheduledFuture<?>> schedules = new CopyOnWriteArrayList<>();
+    private final List<Consumer<TestRun>> listeners = new CopyOnWriteArrayList<>();
+
+    public RunManager(int maxConcurrentRuns) {
+        if (maxConcurrentRuns <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRuns must be positive: " + maxConcurrentRuns);
+        }
+        AtomicLong threadCount = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(maxConcurrentRuns, maxConcurrentRuns, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "k6-run-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "k6-run-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public TestRun submit(String name, RunTask task) {
+        TestRun run = new TestRun(nextId.getAndIncrement(), name, this);
+        activeRuns.add(run);
+        fireStateChanged(run);
+        run.setFuture(executor.submit(() -> execute(run, task)));
+        return run;
+    }
+
+    private void execute(TestRun run, RunTask task) {
+        if (!run.start()) {
+            return;
+        }
+        try {
+            boolean passed = task.run(run);
+            run.finish(passed ? TestRun.State.SUCCEEDED : TestRun.State.FAILED, null);
+        } catch (Exception e) {
+            System.err.println("Run " + run + " failed: " + e.getMessage());
+            run.finish(TestRun.State.FAILED, e);
+        } catch (Error e) {
+            run.finish(TestRun.State.FAILED, e);
+            throw e;
+        }
+    }
+
+    // Queues the run once after the delay
+    public ScheduledFuture<?> schedule(String name, RunTask task, Duration delay) {
+        ScheduledFuture<?> schedule = scheduler.schedule(() -> {
+            submit(name, task);
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+        schedules.add(schedule);
+        return schedule;
+    }
+
+    // Queues the run every period; an occurrence is skipped while the previous one is still queued or running
+    public ScheduledFuture<?> scheduleRecurring(String name, RunTask task, Duration initialDelay, Duration period) {
+        TestRun[] previous = new TestRun[1];
+        ScheduledFuture<?> schedule = scheduler.scheduleAtFixedRate(() -> {
+            if (previous[0] != null && !previous[0].getState().isFinished()) {
+                System.out.println("Skipping scheduled run " + name + ": the previous one has not finished");
+                return;
+            }
+            previous[0] = submit(name, task);
+        }, initialDelay.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+        schedules.add(schedule);
+        return schedule;
+    }
+
+    // Changing the limit never interrupts runs in progress
+    public void setMaxConcurrentRuns(int maxConcurrentRuns) {
+        if (maxConcurrentRuns <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRuns must be positive: " + maxConcurrentRuns);
+        }
+        if (maxConcurrentRuns > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxConcurrentRuns);
+            executor.setCorePoolSize(maxConcurrentRuns);
+        } else {
+            executor.setCorePoolSize(maxConcurrentRuns);
+            executor.setMaximumPoolSize(maxConcurrentRuns);
+        }
+    }
+
+    public int getMaxConcurrentRuns() {
+        return executor.getMaximumPoolSize();
+    }
+
+    // Queued and running runs, oldest first
+    public List<TestRun> getActiveRuns() {
+        return new ArrayList<>(activeRuns);
+    }
+
+    public int getQueuedCount() {
+        int queued = 0;
+        for (TestRun run : activeRuns) {
+            if (run.getState() == TestRun.State.QUEUED) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    public int getRunningCount() {
+        return activeRuns.size() - getQueuedCount();
+    }
+
+    // Listeners are called on the thread that changed the state, never the FX thread
+    public void addListener(Consumer<TestRun> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<TestRun> listener) {
+        listeners.remove(listener);
+    }
+
+    void fireStateChanged(TestRun run) {
+        if (run.getState().isFinished()) {
+            activeRuns.remove(run);
+            executor.purge();
+        }
+        for (Consumer<TestRun> listener : listeners) {
+            try {
+                listener.accept(run);
+            } catch (RuntimeException e) {
+                System.err.println("Run listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Stops scheduled runs from firing again; returns how many schedules were cancelled
+    public int cancelSchedules() {
+        int cancelled = 0;
+        for (ScheduledFuture<?> schedule : schedules) {
+            if (schedule.cancel(false)) {
+                cancelled++;
+            }
+        }
+        schedules.clear();
+        return cancelled;
+    }
+
+    // Cancels every queued and running run; returns how many were cancelled
+    public int cancelAll() {
+        int cancelled = 0;
+        for (TestRun run : getActiveRuns()) {
+            if (run.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    @Override
+    public void close() {
+        cancelSchedules();
+        scheduler.shutdownNow();
+        cancelAll();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package com.loadtest;
+
+import java.time.Instant;
+
+/**
+ * Collects the per-second rows of one run while it executes, already in the store's
+ * binary format. Attach it to every aggregator of the run; with several shards a
+ * second appears once per shard and readers add the rows up.
+ */
+public class RunRecorder implements MetricsAggregator.SecondListener {
+    private final String testName;
+    private final Instant startedAt = Instant.now();
+    private final ResultsCodec.Output rows = new ResultsCodec.Output(64 * 1024);
+    private int rowCount;
+
+    public RunRecorder(String testName) {
+        this.testName = testName;
+    }
+
+    public void attach(MetricsAggregator aggregator) {
+        aggregator.setSecondListener(this);
+    }
+
+    @Override
+    public synchronized void secondCompleted(MetricsAggregator.SecondBucket bucket) {
+        rows.writeSignedVarLong(bucket.second);
+        rows.writeVarLong(Math.round(bucket.requests));
+        rows.writeVarLong(Math.round(bucket.failed));
+        rows.writeVarLong(Math.round(bucket.errors));
+        rows.writeVarLong(Math.round(bucket.droppedIterations));
+        rows.writeVarLong(Math.round(bucket.successes));
+        rows.writeVarLong(bucket.successSamples);
+        rows.writeHistogram(bucket.duration);
+        rowCount++;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    synchronized void writeRows(ResultsCodec.Output out) {
+        out.writeVarLong(rowCount);
+        out.writeBytes(rows.bytes(), 0, rows.length());
+    }
+}
@@ -0,0 +1,504 @@
+package com.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTML and JSON reports of a finished run, written by the application instead of a k6
+ * handleSummary that downloads a reporter at startup. Everything comes from the full
+ * run: the per-second series and whole-run histogram of the results store, the
+ * thresholds, and k6's own end-of-test summary for metrics the stream does not cover.
+ *
+ * The HTML is self-contained (inline CSS and SVG, no scripts or remote assets) and both
+ * files are streamed to disk and renamed into place, so a report is either complete or
+ * absent. Long runs are drawn with at most {@value #MAX_CHART_POINTS} points per series.
+ */
+public class RunReport {
+    private static final int MAX_CHART_POINTS = 1200;
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9};
+    private static final int CHART_WIDTH = 960;
+    private static final int CHART_HEIGHT = 260;
+    private static final int MARGIN_LEFT = 60;
+    private static final int MARGIN_BOTTOM = 30;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final StoredRun run;
+    private final TestRun.State state;
+    private final int exitCode;
+    private final List<K6Summary> summaries;
+    private final String notes;
+
+    // notes is the run's text report (thresholds, generator, baseline), shown as is
+    public RunReport(StoredRun run, TestRun.State state, int exitCode, List<K6Summary> summaries, String notes) {
+        this.run = run;
+        this.state = state;
+        this.exitCode = exitCode;
+        this.summaries = summaries;
+        this.notes = notes;
+    }
+
+    public void writeHtml(Path file) throws IOException {
+        writeAtomically(file, this::html);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        writeAtomically(file, this::json);
+    }
+
+    private interface Body {
+        void write(Writer out) throws IOException;
+    }
+
+    private static void writeAtomically(Path file, Body body) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        // Not createTempFile, whose owner-only permissions would stay with the report
+        Path temp = directory.resolve("." + file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                body.write(out);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void html(Writer out) throws IOException {
+        RunSummary summary = run.getSummary();
+        LatencyHistogram durations = run.getDurations();
+        out.write("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>");
+        out.write(escape(summary.getTestName()));
+        out.write(" - k6 report</title>\n<style>\n"
+                + "body{font-family:sans-serif;margin:24px;color:#222}h1{margin-bottom:4px}"
+                + "h2{margin-top:32px;border-bottom:1px solid #ddd}"
+                + ".cards{display:flex;flex-wrap:wrap;gap:12px}"
+                + ".card{border:1px solid #ddd;border-radius:6px;padding:10px 14px;min-width:120px}"
+                + ".card b{display:block;font-size:20px}"
+                + "table{border-collapse:collapse}td,th{border:1px solid #ddd;padding:4px 10px;text-align:right}"
+                + "td:first-child,th:first-child{text-align:left}.pass{color:#2e7d32}.fail{color:#c62828}"
+                + "pre{background:#f6f6f6;padding:10px;white-space:pre-wrap}svg text{font-size:11px}\n"
+                + "</style>\n</head>\n<body>\n");
+
+        out.write("<h1>" + escape(summary.getTestName()) + "</h1>\n<p>");
+        out.write(escape(TIME.format(summary.getStartedAt())) + " to " + escape(TIME.format(summary.getFinishedAt())));
+        out.write(" &middot; <span class=\"" + (state == TestRun.State.SUCCEEDED ? "pass" : "fail") + "\">"
+                + state + "</span> &middot; k6 exit code " + exitCode);
+        if (summary.getShards() > 1) {
+            out.write(" &middot; " + summary.getShards() + " shards");
+        }
+        out.write("</p>\n");
+
+        out.write("<div class=\"cards\">\n");
+        card(out, "Requests", String.valueOf(summary.getTotalRequests()));
+        card(out, "Requests/s", format(summary.getRequestsPerSecond()));
+        card(out, "Failed", format(percent(summary.getFailedRequests(), summary.getTotalRequests())) + "%");
+        card(out, "p50", millis(durations.valueAtPercentile(50)));
+        card(out, "p95", millis(durations.valueAtPercentile(95)));
+        card(out, "p99", millis(durations.valueAtPercentile(99)));
+        card(out, "Max", millis(durations.getMax()));
+        card(out, "Dropped iterations", String.valueOf(sum(run.getDroppedIterations())));
+        out.write("</div>\n");
+
+        List<ThresholdEvaluator.Result> thresholds = run.getThresholds();
+        if (!thresholds.isEmpty()) {
+            out.write("<h2>Thresholds</h2>\n<table>\n<tr><th>Metric</th><th>Threshold</th><th>Actual</th><th>Result</th></tr>\n");
+            for (ThresholdEvaluator.Result result : thresholds) {
+                String outcome = !result.isEvaluated() ? "not evaluated" : result.isPassed() ? "passed" : "failed";
+                out.write("<tr><td>" + escape(result.getMetric()) + "</td><td>" + escape(result.getExpression())
+                        + "</td><td>" + (result.isEvaluated() ? format(result.getActual()) : "") + "</td><td class=\""
+                        + (result.isPassed() ? "pass" : "fail") + "\">" + outcome + "</td></tr>\n");
+            }
+            out.write("</table>\n");
+        }
+
+        long[] seconds = run.getSeconds();
+        out.write("<h2>Throughput</h2>\n");
+        chart(out, seconds, "requests/s", new String[]{"requests", "failed", "dropped"},
+                new String[]{"#1565c0", "#c62828", "#ef6c00"},
+                toDouble(run.getRequests()), toDouble(run.getFailed()), toDouble(run.getDroppedIterations()));
+        out.write("<h2>Latency over time</h2>\n");
+        chart(out, seconds, "ms (http_req_duration)", new String[]{"p50", "p95", "p99"},
+                new String[]{"#2e7d32", "#ef6c00", "#c62828"},
+                run.getP50Millis(), run.getP95Millis(), run.getP99Millis());
+
+        out.write("<h2>Latency distribution</h2>\n");
+        histogram(out, durations);
+        out.write("<table>\n<tr><th>Percentile</th><th>http_req_duration</th></tr>\n");
+        for (double percentile : PERCENTILES) {
+            out.write("<tr><td>p(" + format(percentile) + ")</td><td>" + millis(durations.valueAtPercentile(percentile))
+                    + "</td></tr>\n");
+        }
+        out.write("<tr><td>mean</td><td>" + format(durations.getMean() / 1000) + " ms</td></tr>\n</table>\n");
+
+        for (int i = 0; i < summaries.size(); i++) {
+            K6Summary k6 = summaries.get(i);
+            String shard = summaries.size() > 1 ? " (shard " + (i + 1) + ")" : "";
+            out.write("<h2>k6 end-of-test metrics" + shard + "</h2>\n<table>\n<tr><th>Metric</th><th>Values</th></tr>\n");
+            for (Map.Entry<String, Map<String, Double>> metric : k6.getMetrics().entrySet()) {
+                StringBuilder values = new StringBuilder();
+                for (Map.Entry<String, Double> value : metric.getValue().entrySet()) {
+                    values.append(values.length() == 0 ? "" : " &nbsp; ").append(escape(value.getKey())).append('=')
+                            .append(format(value.getValue()));
+                }
+                out.write("<tr><td>" + escape(metric.getKey()) + "</td><td>" + values + "</td></tr>\n");
+            }
+            out.write("</table>\n");
+            if (!k6.getChecks().isEmpty()) {
+                out.write("<h2>Checks" + shard + "</h2>\n<table>\n<tr><th>Check</th><th>Passed</th><th>Failed</th></tr>\n");
+                for (K6Summary.Check check : k6.getChecks()) {
+                    out.write("<tr><td>" + escape(check.getName()) + "</td><td>" + check.getPasses() + "</td><td"
+                            + (check.getFails() > 0 ? " class=\"fail\"" : "") + ">" + check.getFails() + "</td></tr>\n");
+                }
+                out.write("</table>\n");
+            }
+        }
+
+        if (notes != null && !notes.isEmpty()) {
+            out.write("<h2>Notes</h2>\n<pre>" + escape(notes) + "</pre>\n");
+        }
+        out.write("</body>\n</html>\n");
+    }
+
+    private static void card(Writer out, String label, String value) throws IOException {
+        out.write("<div class=\"card\">" + escape(label) + "<b>" + escape(value) + "</b></div>\n");
+    }
+
+    // Line chart over the run's seconds; series share the y axis
+    private static void chart(Writer out, long[] seconds, String unit, String[] names, String[] colors,
+                              double[]... series) throws IOException {
+        if (seconds.length == 0) {
+            out.write("<p>No data.</p>\n");
+            return;
+        }
+        long first = seconds[0];
+        double span = Math.max(1, seconds[seconds.length - 1] - first);
+        // Downsampled points keep the highest value of their group, so spikes stay visible
+        int step = (seconds.length + MAX_CHART_POINTS - 1) / MAX_CHART_POINTS;
+        double max = 0;
+        for (double[] values : series) {
+            for (double value : values) {
+                if (!Double.isNaN(value)) {
+                    max = Math.max(max, value);
+                }
+            }
+        }
+        max = niceCeiling(max);
+        int plotWidth = CHART_WIDTH - MARGIN_LEFT - 10;
+        int plotHeight = CHART_HEIGHT - MARGIN_BOTTOM - 10;
+
+        out.write("<svg width=\"" + CHART_WIDTH + "\" height=\"" + CHART_HEIGHT + "\" xmlns=\"http://www.w3.org/2000/svg\">\n");
+        axes(out, max, unit, span, plotWidth, plotHeight);
+        for (int s = 0; s < series.length; s++) {
+            double[] values = series[s];
+            out.write("<polyline fill=\"none\" stroke-width=\"1.5\" stroke=\"" + colors[s] + "\" points=\"");
+            for (int start = 0; start < values.length; start += step) {
+                double value = Double.NaN;
+                for (int i = start; i < Math.min(values.length, start + step); i++) {
+                    if (!Double.isNaN(values[i]) && (Double.isNaN(value) || values[i] > value)) {
+                        value = values[i];
+                    }
+                }
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                double x = MARGIN_LEFT + (seconds[start] - first) / span * plotWidth;
+                double y = 10 + plotHeight - (max == 0 ? 0 : value / max * plotHeight);
+                out.write(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+            }
+            out.write("\"/>\n");
+            out.write("<text x=\"" + (MARGIN_LEFT + 10 + s * 90) + "\" y=\"22\" fill=\"" + colors[s] + "\">"
+                    + escape(names[s]) + "</text>\n");
+        }
+        out.write("</svg>\n");
+    }
+
+    private static void axes(Writer out, double max, String unit, double spanSeconds, int plotWidth, int plotHeight)
+            throws IOException {
+        for (int i = 0; i <= 4; i++) {
+            double y = 10 + plotHeight - plotHeight * i / 4.0;
+            out.write(String.format(Locale.ROOT,
+                    "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#eee\"/>"
+                            + "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%s</text>\n",
+                    MARGIN_LEFT, y, MARGIN_LEFT + plotWidth, y, MARGIN_LEFT - 4, y + 4, format(max * i / 4)));
+        }
+        for (int i = 0; i <= 5; i++) {
+            double x = MARGIN_LEFT + plotWidth * i / 5.0;
+            out.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%ss</text>\n",
+                    x, CHART_HEIGHT - 10, format(Math.round(spanSeconds * i / 5))));
+        }
+        out.write("<text x=\"4\" y=\"12\">" + escape(unit) + "</text>\n");
+    }
+
+    // Bars over 1-2-5 millisecond bins up to the run's maximum
+    private static void histogram(Writer out, LatencyHistogram durations) throws IOException {
+        if (durations.getTotalCount() == 0) {
+            out.write("<p>No requests were measured.</p>\n");
+            return;
+        }
+        double[] edges = binEdgesMillis(durations.getMax() / 1000.0);
+        long[] counts = binCounts(durations, edges);
+        long highest = 1;
+        for (long count : counts) {
+            highest = Math.max(highest, count);
+        }
+        int barWidth = Math.max(8, (CHART_WIDTH - MARGIN_LEFT - 10) / counts.length - 4);
+        int plotHeight = CHART_HEIGHT - MARGIN_BOTTOM - 10;
+        out.write("<svg width=\"" + CHART_WIDTH + "\" height=\"" + CHART_HEIGHT + "\" xmlns=\"http://www.w3.org/2000/svg\">\n");
+        for (int i = 0; i < counts.length; i++) {
+            double height = (double) counts[i] / highest * plotHeight;
+            int x = MARGIN_LEFT + i * (barWidth + 4);
+            out.write(String.format(Locale.ROOT,
+                    "<rect x=\"%d\" y=\"%.1f\" width=\"%d\" height=\"%.1f\" fill=\"#1565c0\"><title>%s-%s ms: %d</title></rect>"
+                            + "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">&lt;%s</text>\n",
+                    x, 10 + plotHeight - height, barWidth, height, format(edges[i]), format(edges[i + 1]), counts[i],
+                    x + barWidth / 2, CHART_HEIGHT - 10, format(edges[i + 1])));
+        }
+        out.write("<text x=\"4\" y=\"12\">requests per latency bin (ms)</text>\n</svg>\n");
+    }
+
+    private static double[] binEdgesMillis(double maxMillis) {
+        double[] edges = new double[64];
+        int count = 0;
+        edges[count++] = 0;
+        double[] steps = {1, 2, 5};
+        for (double decade = 1; count < edges.length; decade *= 10) {
+            for (double step : steps) {
+                if (count < edges.length) {
+                    edges[count++] = step * decade;
+                }
+                if (step * decade > maxMillis) {
+                    return java.util.Arrays.copyOf(edges, count);
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static long[] binCounts(LatencyHistogram durations, double[] edges) {
+        long[] counts = new long[edges.length - 1];
+        long total = durations.getTotalCount();
+        long below = 0;
+        for (int i = 1; i < edges.length; i++) {
+            long atOrBelow = Math.round(durations.fractionAtOrBelow((long) (edges[i] * 1000)) * total);
+            counts[i - 1] = atOrBelow - below;
+            below = atOrBelow;
+        }
+        return counts;
+    }
+
+    private void json(Writer out) throws IOException {
+        RunSummary summary = run.getSummary();
+        LatencyHistogram durations = run.getDurations();
+        out.write("{\n");
+        out.write("  \"testName\": " + string(summary.getTestName()) + ",\n");
+        out.write("  \"startedAt\": " + string(summary.getStartedAt().toString()) + ",\n");
+        out.write("  \"finishedAt\": " + string(summary.getFinishedAt().toString()) + ",\n");
+        out.write("  \"state\": " + string(state.name()) + ",\n");
+        out.write("  \"exitCode\": " + exitCode + ",\n");
+        out.write("  \"shards\": " + summary.getShards() + ",\n");
+        out.write("  \"totals\": {\"requests\": " + summary.getTotalRequests()
+                + ", \"failedRequests\": " + summary.getFailedRequests()
+                + ", \"requestsPerSecond\": " + number(summary.getRequestsPerSecond())
+                + ", \"errors\": " + run.getTotalErrors()
+                + ", \"droppedIterations\": " + sum(run.getDroppedIterations())
+                + ", \"elapsedSeconds\": " + run.getElapsedSeconds() + "},\n");
+
+        out.write("  \"latencyMillis\": {");
+        for (double percentile : PERCENTILES) {
+            out.write("\"p(" + format(percentile) + ")\": " + number(durations.valueAtPercentile(percentile) / 1000.0)
+                    + ", ");
+        }
+        out.write("\"min\": " + number(durations.getTotalCount() == 0 ? 0 : durations.getMin() / 1000.0)
+                + ", \"mean\": " + number(durations.getMean() / 1000)
+                + ", \"max\": " + number(durations.getMax() / 1000.0) + "},\n");
+
+        out.write("  \"histogram\": [");
+        if (durations.getTotalCount() > 0) {
+            double[] edges = binEdgesMillis(durations.getMax() / 1000.0);
+            long[] counts = binCounts(durations, edges);
+            for (int i = 0; i < counts.length; i++) {
+                out.write((i == 0 ? "" : ", ") + "{\"fromMillis\": " + number(edges[i]) + ", \"toMillis\": "
+                        + number(edges[i + 1]) + ", \"count\": " + counts[i] + "}");
+            }
+        }
+        out.write("],\n");
+
+        out.write("  \"thresholds\": [");
+        List<ThresholdEvaluator.Result> thresholds = run.getThresholds();
+        for (int i = 0; i < thresholds.size(); i++) {
+            ThresholdEvaluator.Result result = thresholds.get(i);
+            out.write((i == 0 ? "\n" : ",\n") + "    {\"metric\": " + string(result.getMetric())
+                    + ", \"expression\": " + string(result.getExpression())
+                    + ", \"actual\": " + (result.isEvaluated() ? number(result.getActual()) : "null")
+                    + ", \"passed\": " + (result.isEvaluated() ? String.valueOf(result.isPassed()) : "null") + "}");
+        }
+        out.write(thresholds.isEmpty() ? "],\n" : "\n  ],\n");
+
+        // One entry per second, written as parallel arrays
+        out.write("  \"series\": {\n");
+        seriesArray(out, "epochSeconds", run.getSeconds(), false);
+        seriesArray(out, "requests", run.getRequests(), false);
+        seriesArray(out, "failed", run.getFailed(), false);
+        seriesArray(out, "errors", run.getErrors(), false);
+        seriesArray(out, "droppedIterations", run.getDroppedIterations(), false);
+        seriesArray(out, "p50Millis", run.getP50Millis(), false);
+        seriesArray(out, "p95Millis", run.getP95Millis(), false);
+        seriesArray(out, "p99Millis", run.getP99Millis(), true);
+        out.write("  },\n");
+
+        out.write("  \"k6Summaries\": [");
+        for (int i = 0; i < summaries.size(); i++) {
+            K6Summary k6 = summaries.get(i);
+            out.write((i == 0 ? "\n" : ",\n") + "    {\"metrics\": {");
+            boolean firstMetric = true;
+            for (Map.Entry<String, Map<String, Double>> metric : k6.getMetrics().entrySet()) {
+                out.write((firstMetric ? "" : ", ") + string(metric.getKey()) + ": {");
+                firstMetric = false;
+                boolean firstValue = true;
+                for (Map.Entry<String, Double> value : metric.getValue().entrySet()) {
+                    out.write((firstValue ? "" : ", ") + string(value.getKey()) + ": " + number(value.getValue()));
+                    firstValue = false;
+                }
+                out.write("}");
+            }
+            out.write("}, \"checks\": [");
+            List<K6Summary.Check> checks = k6.getChecks();
+            for (int c = 0; c < checks.size(); c++) {
+                K6Summary.Check check = checks.get(c);
+                out.write((c == 0 ? "" : ", ") + "{\"name\": " + string(check.getName()) + ", \"passes\": "
+                        + check.getPasses() + ", \"fails\": " + check.getFails() + "}");
+            }
+            out.write("]}");
+        }
+        out.write(summaries.isEmpty() ? "]\n" : "\n  ]\n");
+        out.write("}\n");
+    }
+
+    private static void seriesArray(Writer out, String name, long[] values, boolean last) throws IOException {
+        out.write("    " + string(name) + ": [");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(Long.toString(values[i]));
+        }
+        out.write(last ? "]\n" : "],\n");
+    }
+
+    private static void seriesArray(Writer out, String name, double[] values, boolean last) throws IOException {
+        out.write("    " + string(name) + ": [");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(number(Math.round(values[i] * 1000) / 1000.0));
+        }
+        out.write(last ? "]\n" : "],\n");
+    }
+
+    private static double[] toDouble(long[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    // Rounds up to 1, 2 or 5 times a power of ten, for axis labels
+    private static double niceCeiling(double value) {
+        if (value <= 0) {
+            return 1;
+        }
+        double magnitude = Math.pow(10, Math.floor(Math.log10(value)));
+        for (double step : new double[]{1, 2, 5, 10}) {
+            if (value <= step * magnitude) {
+                return step * magnitude;
+            }
+        }
+        return 10 * magnitude;
+    }
+
+    private static String millis(long micros) {
+        return format(micros / 1000.0) + " ms";
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "n/a";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, Math.abs(value) >= 100 ? "%.1f" : "%.2f", value)
+                .replaceAll("(\\.\\d*?)0+$", "$1").replaceAll("\\.$", "");
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String string(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
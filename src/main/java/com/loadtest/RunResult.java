@@ -0,0 +1,266 @@
+package com.loadtest;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of one finished test run, handed to {@link RunListener#finished(RunResult)}.
+ * Holds what the results window shows and what the headless CLI writes as JSON.
+ */
+public class RunResult {
+    private final String testName;
+    private final TestRun.State state;
+    private final int exitCode;
+    private final boolean thresholdsPassed;
+    private final List<ThresholdEvaluator.Result> thresholds;
+    private final BaselineComparison comparison;
+    private final long storedRunId;
+    private final LiveMetrics metrics;
+    private final LatencyHistogram durations;
+    private final long cpuNanos;
+    private final ResourceSampler.Usage resources;
+    private final ConnectionSetup connectionSetup;
+    private final String abortReason;
+    private final String report;
+    private final String recentOutput;
+    private final List<Path> logSegments;
+
+    RunResult(String testName, TestRun.State state, int exitCode, boolean thresholdsPassed,
+              List<ThresholdEvaluator.Result> thresholds, BaselineComparison comparison, long storedRunId,
+              LiveMetrics metrics, LatencyHistogram durations, long cpuNanos, ResourceSampler.Usage resources,
+              ConnectionSetup connectionSetup, String abortReason, String report, String recentOutput,
+              List<Path> logSegments) {
+        this.testName = testName;
+        this.state = state;
+        this.exitCode = exitCode;
+        this.thresholdsPassed = thresholdsPassed;
+        this.thresholds = thresholds;
+        this.comparison = comparison;
+        this.storedRunId = storedRunId;
+        this.metrics = metrics;
+        this.durations = durations;
+        this.cpuNanos = cpuNanos;
+        this.resources = resources;
+        this.connectionSetup = connectionSetup;
+        this.abortReason = abortReason;
+        this.report = report;
+        this.recentOutput = recentOutput;
+        this.logSegments = logSegments;
+    }
+
+    public String getTestName() { return testName; }
+
+    // SUCCEEDED, FAILED or CANCELLED
+    public TestRun.State getState() { return state; }
+    public int getExitCode() { return exitCode; }
+    public boolean isPassed() { return state == TestRun.State.SUCCEEDED; }
+    public boolean isCancelled() { return state == TestRun.State.CANCELLED; }
+    public boolean isThresholdsPassed() { return thresholdsPassed; }
+    public List<ThresholdEvaluator.Result> getThresholds() { return thresholds; }
+
+    // Null if the test has no baseline or the run was cancelled
+    public BaselineComparison getComparison() { return comparison; }
+
+    public boolean isRegression() {
+        return comparison != null && comparison.isRegression();
+    }
+
+    // Id in the results store, or -1 if the run could not be saved
+    public long getStoredRunId() { return storedRunId; }
+
+    // Whole-run totals; the rolling values cover the last seconds of the run
+    public LiveMetrics getMetrics() { return metrics; }
+
+    // http_req_duration of the whole run, in microseconds
+    public LatencyHistogram getDurations() { return durations; }
+
+    // CPU time of the k6 processes, or -1 if not available
+    public long getCpuNanos() { return cpuNanos; }
+
+    // Load generator CPU, memory and network use, or null without /proc
+    public ResourceSampler.Usage getResources() { return resources; }
+
+    // The load generator ran out of CPU or memory, so latency may not be the target's alone
+    public boolean isGeneratorSaturated() {
+        return resources != null && resources.isSaturated();
+    }
+
+    // Connect and TLS handshake times of new connections, kept out of the durations
+    public ConnectionSetup getConnectionSetup() { return connectionSetup; }
+
+    // The threshold that stopped the run early, or null if it ran its course
+    public String getAbortReason() { return abortReason; }
+    public boolean isAborted() { return abortReason != null; }
+
+    // Thresholds, generator cost, baseline comparison and where the run was saved
+    public String getReport() { return report; }
+
+    // Tail of the k6 output
+    public String getRecentOutput() { return recentOutput; }
+
+    // Newest segment of the run log, or null if it could not be written
+    public Path getLogFile() {
+        return logSegments.isEmpty() ? null : logSegments.get(logSegments.size() - 1);
+    }
+
+    // Every segment of the run log, oldest first
+    public List<Path> getLogSegments() { return logSegments; }
+
+    // Same result with more text in front of the report, e.g. a calibration summary
+    RunResult withReportPrefix(String prefix) {
+        return new RunResult(testName, state, exitCode, thresholdsPassed, thresholds, comparison, storedRunId,
+                metrics, durations, cpuNanos, resources, connectionSetup, abortReason, prefix + report, recentOutput,
+                logSegments);
+    }
+
+    public String getStatusMessage() {
+        if (isCancelled()) {
+            return "Test cancelled. Partial results saved to downloads.";
+        } else if (isAborted()) {
+            return "Test aborted early: " + abortReason + ". Partial results saved to downloads.";
+        } else if (isPassed()) {
+            return "Test completed successfully. Reports saved to downloads.";
+        } else if (isRegression()) {
+            return "Test completed, but regressed against its baseline. Reports saved to downloads.";
+        } else if (exitCode == 0) {
+            return "Test completed, but thresholds failed. Reports saved to downloads.";
+        }
+        return "Test completed with issues (exit code: " + exitCode + "). Reports saved to downloads.";
+    }
+
+    // One JSON object, for CI systems and scripts
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        field(json, "testName", string(testName));
+        field(json, "state", string(state.name()));
+        field(json, "passed", String.valueOf(isPassed()));
+        field(json, "exitCode", String.valueOf(exitCode));
+        field(json, "thresholdsPassed", String.valueOf(thresholdsPassed));
+        field(json, "regression", String.valueOf(isRegression()));
+        field(json, "abortReason", abortReason == null ? "null" : string(abortReason));
+        field(json, "runId", storedRunId < 0 ? "null" : String.valueOf(storedRunId));
+        field(json, "logFile", getLogFile() == null ? "null" : string(getLogFile().toString()));
+        json.append("  \"metrics\": {\n");
+        field(json, "    ", "elapsedSeconds", String.valueOf(metrics.getElapsedSeconds()));
+        field(json, "    ", "totalRequests", String.valueOf(metrics.getTotalRequests()));
+        field(json, "    ", "failedRequests", String.valueOf(metrics.getFailedRequests()));
+        field(json, "    ", "requestsPerSecond", number(metrics.getElapsedSeconds() > 0
+                ? (double) metrics.getTotalRequests() / metrics.getElapsedSeconds() : Double.NaN));
+        field(json, "    ", "p50Millis", number(metrics.getP50Millis()));
+        field(json, "    ", "p95Millis", number(metrics.getP95Millis()));
+        field(json, "    ", "p99Millis", number(metrics.getP99Millis()));
+        field(json, "    ", "errors", String.valueOf(metrics.getErrorCount()));
+        field(json, "    ", "successRate", number(metrics.getSuccessRate()));
+        field(json, "    ", "droppedIterations", String.valueOf(metrics.getDroppedIterations()));
+        field(json, "    ", "generatorCpuSeconds", cpuNanos < 0 ? "null" : number(cpuNanos / 1e9));
+        closeObject(json, "  ");
+        if (resources == null) {
+            field(json, "generator", "null");
+        } else {
+            json.append("  \"generator\": {\n");
+            field(json, "    ", "saturated", String.valueOf(resources.isSaturated()));
+            field(json, "    ", "saturatedSeconds", String.valueOf(resources.getSaturatedSeconds()));
+            field(json, "    ", "longestSaturatedStreak", String.valueOf(resources.getLongestSaturatedStreak()));
+            field(json, "    ", "cpuSaturatedSeconds", String.valueOf(resources.getCpuSaturatedSeconds()));
+            field(json, "    ", "memorySaturatedSeconds", String.valueOf(resources.getMemorySaturatedSeconds()));
+            field(json, "    ", "peakCpuCores", number(resources.getPeakCpuCores()));
+            field(json, "    ", "peakRssBytes", String.valueOf(resources.getPeakRssBytes()));
+            field(json, "    ", "peakHostCpuShare", number(resources.getPeakHostCpuShare()));
+            field(json, "    ", "peakHostMemoryShare", number(resources.getPeakHostMemoryShare()));
+            field(json, "    ", "peakTcpSockets", String.valueOf(resources.getPeakTcpSockets()));
+            field(json, "    ", "timeline", resources.getTimeline() == null
+                    ? "null" : string(resources.getTimeline().toString()));
+            closeObject(json, "  ");
+        }
+        if (connectionSetup == null || connectionSetup.getRequests() == 0) {
+            field(json, "connections", "null");
+        } else {
+            json.append("  \"connections\": {\n");
+            field(json, "    ", "newConnections", String.valueOf(connectionSetup.getNewConnections()));
+            field(json, "    ", "newConnectionShare", number(connectionSetup.getNewConnectionShare()));
+            field(json, "    ", "connectP50Millis",
+                    number(MetricsAggregator.toMillis(connectionSetup.getConnectTimes().valueAtPercentile(50))));
+            field(json, "    ", "connectP95Millis",
+                    number(MetricsAggregator.toMillis(connectionSetup.getConnectTimes().valueAtPercentile(95))));
+            field(json, "    ", "tlsHandshakes", String.valueOf(connectionSetup.getTlsHandshakes()));
+            field(json, "    ", "tlsHandshakeP50Millis",
+                    number(MetricsAggregator.toMillis(connectionSetup.getTlsHandshakeTimes().valueAtPercentile(50))));
+            field(json, "    ", "tlsHandshakeP95Millis",
+                    number(MetricsAggregator.toMillis(connectionSetup.getTlsHandshakeTimes().valueAtPercentile(95))));
+            field(json, "    ", "meanSetupMillis", number(connectionSetup.getMeanSetupMillis()));
+            closeObject(json, "  ");
+        }
+        json.append("  \"thresholds\": [");
+        for (int i = 0; i < thresholds.size(); i++) {
+            ThresholdEvaluator.Result result = thresholds.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"metric\": ").append(string(result.getMetric()))
+                    .append(", \"expression\": ").append(string(result.getExpression()))
+                    .append(", \"actual\": ").append(result.isEvaluated() ? number(result.getActual()) : "null")
+                    .append(", \"passed\": ").append(result.isEvaluated() ? String.valueOf(result.isPassed()) : "null")
+                    .append("}");
+        }
+        json.append(thresholds.isEmpty() ? "],\n" : "\n  ],\n");
+        if (comparison == null) {
+            json.append("  \"baseline\": null\n");
+        } else {
+            json.append("  \"baseline\": {\n");
+            field(json, "    ", "runId", String.valueOf(comparison.getBaseline().getId()));
+            json.append("    \"findings\": [");
+            List<BaselineComparison.Finding> findings = comparison.getFindings();
+            for (int i = 0; i < findings.size(); i++) {
+                BaselineComparison.Finding finding = findings.get(i);
+                json.append(i == 0 ? "\n" : ",\n").append("      {\"metric\": ").append(string(finding.getMetric()))
+                        .append(", \"statistic\": ").append(string(finding.getStatistic()))
+                        .append(", \"baseline\": ").append(number(finding.getBaselineValue()))
+                        .append(", \"current\": ").append(number(finding.getCandidateValue()))
+                        .append(", \"pValue\": ").append(number(finding.getPValue()))
+                        .append(", \"regression\": ").append(finding.isRegression())
+                        .append("}");
+            }
+            json.append(findings.isEmpty() ? "]\n" : "\n    ]\n");
+            json.append("  }\n");
+        }
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        field(json, "  ", name, value);
+    }
+
+    private static void field(StringBuilder json, String indent, String name, String value) {
+        json.append(indent).append('"').append(name).append("\": ").append(value).append(",\n");
+    }
+
+    // Drops the comma after the last field of an object and closes it
+    private static void closeObject(StringBuilder json, String indent) {
+        json.setLength(json.length() - 2);
+        json.append('\n').append(indent).append("},\n");
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+
+    private static String string(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.loadtest;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Index entry of a stored run: enough to list and chart runs without reading their data.
+ * Latencies are http_req_duration percentiles in milliseconds.
+ */
+public class RunSummary {
+    private static final DateTimeFormatter DISPLAY_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final long id;
+    private final String testName;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final TestRun.State state;
+    private final int exitCode;
+    private final int shards;
+    private final long totalRequests;
+    private final long failedRequests;
+    private final double requestsPerSecond;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    final long offset;
+    final int length;
+
+    RunSummary(long id, String testName, Instant startedAt, Instant finishedAt, TestRun.State state, int exitCode,
+               int shards, long totalRequests, long failedRequests, double requestsPerSecond, double p50Millis,
+               double p95Millis, double p99Millis, long offset, int length) {
+        this.id = id;
+        this.testName = testName;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.state = state;
+        this.exitCode = exitCode;
+        this.shards = shards;
+        this.totalRequests = totalRequests;
+        this.failedRequests = failedRequests;
+        this.requestsPerSecond = requestsPerSecond;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public long getId() { return id; }
+    public String getTestName() { return testName; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public TestRun.State getState() { return state; }
+    public int getExitCode() { return exitCode; }
+    public int getShards() { return shards; }
+    public long getTotalRequests() { return totalRequests; }
+    public long getFailedRequests() { return failedRequests; }
+    public double getRequestsPerSecond() { return requestsPerSecond; }
+    public double getP50Millis() { return p50Millis; }
+    public double getP95Millis() { return p95Millis; }
+    public double getP99Millis() { return p99Millis; }
+
+    public boolean isPassed() {
+        return state == TestRun.State.SUCCEEDED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d  %s  %-9s  %.1f RPS  p95 %.1f ms  %d requests", id, DISPLAY_FORMAT.format(startedAt),
+                state.name().toLowerCase(), requestsPerSecond, p95Millis, totalRequests);
+    }
+}
@@ -0,0 +1,59 @@
+package com.loadtest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One request of an imported scenario. The weight is how many copies of it one
+ * iteration fires in its batch; tags are passed to k6 as request tags.
+ */
+public class ScenarioRequest {
+    private final CurlRequest request;
+    private final int weight;
+    private final Map<String, String> tags;
+
+    public ScenarioRequest(CurlRequest request, int weight, Map<String, String> tags) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1: " + weight);
+        }
+        this.request = request;
+        this.weight = weight;
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+    }
+
+    public CurlRequest getRequest() { return request; }
+    public int getWeight() { return weight; }
+    public Map<String, String> getTags() { return tags; }
+
+    public ScenarioRequest withWeight(int newWeight) {
+        return new ScenarioRequest(request, newWeight, tags);
+    }
+
+    // Default k6 "name" tag: method plus URL without the query, so ids in query strings don't explode metrics
+    public static String defaultName(CurlRequest request) {
+        String url = request.getUrl();
+        int query = url.indexOf('?');
+        return request.getMethod() + " " + (query >= 0 ? url.substring(0, query) : url);
+    }
+
+    // Requests that are identical on the wire collapse into one entry with a higher weight
+    boolean sameRequestAs(ScenarioRequest other) {
+        CurlRequest a = request;
+        CurlRequest b = other.request;
+        if (!a.getMethod().equals(b.getMethod()) || !a.getUrl().equals(b.getUrl())
+                || !Objects.equals(a.getBody(), b.getBody()) || !tags.equals(other.tags)
+                || a.getHeaders().size() != b.getHeaders().size()) {
+            return false;
+        }
+        for (int i = 0; i < a.getHeaders().size(); i++) {
+            CurlRequest.Header ha = a.getHeaders().get(i);
+            CurlRequest.Header hb = b.getHeaders().get(i);
+            if (!ha.getName().equals(hb.getName()) || !ha.getValue().equals(hb.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
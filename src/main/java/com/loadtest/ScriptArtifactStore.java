@@ -0,0 +1,142 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Content-addressed store of the scripts k6 runs. A script is written once, as
+ * &lt;sha-256&gt;.js, and never changed afterwards, so concurrent runs of the same test
+ * cannot overwrite each other's script and an unchanged script is not written again.
+ *
+ * Writes go to a temporary file that is renamed into place, on a single I/O thread off
+ * the callers' threads. Recently stored scripts are remembered by content, so running
+ * the same script again costs neither hashing nor any file access.
+ */
+public class ScriptArtifactStore {
+    private static final int REMEMBERED_SCRIPTS = 32;
+
+    private final Path directory;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "script-io");
+        t.setDaemon(true);
+        return t;
+    });
+    // Script content to its artifact, most recently used last
+    private final Map<String, Path> recent = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Path> eldest) {
+            return size() > REMEMBERED_SCRIPTS;
+        }
+    };
+
+    public ScriptArtifactStore(Path directory) {
+        this.directory = directory;
+    }
+
+    // Completes with the artifact's path once it is on disk
+    public CompletableFuture<Path> store(String scriptContent) {
+        synchronized (recent) {
+            Path known = recent.get(scriptContent);
+            if (known != null) {
+                return CompletableFuture.completedFuture(known);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path artifact = write(scriptContent);
+                synchronized (recent) {
+                    recent.put(scriptContent, artifact);
+                }
+                return artifact;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }, io);
+    }
+
+    // Writes a writable copy of the script to target, atomically replacing an older one;
+    // e.g. an export under the test's name
+    public CompletableFuture<Path> export(String scriptContent, Path target) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path parent = target.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Path temp = Files.createTempFile(parent, ".export-", ".tmp");
+                try {
+                    Files.write(temp, scriptContent.getBytes(StandardCharsets.UTF_8));
+                    moveIntoPlace(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                return target;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }, io);
+    }
+
+    private Path write(String scriptContent) throws IOException {
+        byte[] bytes = scriptContent.getBytes(StandardCharsets.UTF_8);
+        Path artifact = directory.resolve(sha256(bytes) + ".js");
+        if (isComplete(artifact, bytes.length)) {
+            return artifact;
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".script-", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            temp.toFile().setReadOnly();
+            moveIntoPlace(temp, artifact);
+        } catch (IOException e) {
+            // Another process may have stored the same content first
+            if (!isComplete(artifact, bytes.length)) {
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return artifact;
+    }
+
+    private static boolean isComplete(Path artifact, long length) throws IOException {
+        return Files.exists(artifact) && Files.size(artifact) == length;
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Same directory, so this only happens on unusual file systems
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,47 @@
+package com.loadtest;
+
+/**
+ * Generation switches that change what the script does per iteration, as opposed to
+ * the load shape ({@link LoadProfile}).
+ */
+public class ScriptOptions {
+    private boolean lean;
+    private DataFeed dataFeed;
+    private TransportProfile transport = TransportProfile.DEFAULT;
+
+    public ScriptOptions() {
+    }
+
+    /**
+     * Lean mode keeps the per-iteration work of k6 to a minimum for high request rates:
+     * response bodies are discarded, the duplicated request_rate/response_times metrics are
+     * dropped, the three checks become one, and error logging is sampled.
+     */
+    public boolean isLean() {
+        return lean;
+    }
+
+    public ScriptOptions setLean(boolean lean) {
+        this.lean = lean;
+        return this;
+    }
+
+    // Rows the script's "{{column}}" placeholders are filled from; null for none
+    public DataFeed getDataFeed() {
+        return dataFeed;
+    }
+
+    public ScriptOptions setDataFeed(DataFeed dataFeed) {
+        this.dataFeed = dataFeed;
+        return this;
+    }
+
+    public TransportProfile getTransport() {
+        return transport;
+    }
+
+    public ScriptOptions setTransport(TransportProfile transport) {
+        this.transport = transport;
+        return this;
+    }
+}
@@ -1,30 +1,112 @@
 package com.loadtest;
 
-import javafx.scene.Scene;
-import javafx.scene.control.Label;
-import javafx.scene.control.ProgressBar;
-import javafx.scene.control.TextArea;
-import javafx.scene.layout.BorderPane;
-import javafx.stage.Stage;
-
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Generates k6 scripts and runs them. Has no UI dependencies: run progress goes to a
+ * {@link RunListener}, so the JavaFX window and the headless CLI share this class.
+ */
 public class ScriptService {
     private final String DOWNLOADS_PATH = System.getProperty("user.home") + File.separator + "Downloads";
     private final String K6_PATH = "k6";
+    private final String LOGS_PATH = DOWNLOADS_PATH + File.separator + "k6-logs";
+    private final String RESULTS_PATH = DOWNLOADS_PATH + File.separator + "k6-results";
+    private final ScriptArtifactStore scriptStore = new ScriptArtifactStore(
+            Paths.get(DOWNLOADS_PATH, "k6-scripts"));
+    // Data feeds can have millions of rows; they are converted one at a time, off the callers' threads
+    private final ExecutorService dataFeedConverter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "data-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    private ShardLauncher shardLauncher = new LocalShardLauncher(K6_PATH);
+    private final RunManager runManager = new RunManager(MAX_CONCURRENT_RUNS);
+    private ResultsStore resultsStore;
+    private volatile RegressionTolerance regressionTolerance = RegressionTolerance.defaults();
+    private volatile AbortController.Settings abortSettings = AbortController.Settings.defaults();
+
+    // Output pipeline limits: memory stays flat however long the run is
+    private static final int RECENT_LINES = 2000;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final long LOG_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int LOG_FILES = 8;
+    private static final long UI_BATCH_INTERVAL_MS = 250;
+    private static final int UI_MAX_LINES_PER_BATCH = 200;
+    private static final long LIVE_METRICS_INTERVAL_MS = 500;
+    private static final long CPU_SAMPLE_INTERVAL_MS = 250;
+
+    // Runs beyond this limit wait in the queue, so load generators do not compete for CPU
+    private static final int MAX_CONCURRENT_RUNS = Integer.getInteger("loadtest.maxConcurrentRuns", 1);
+    // Time k6 gets to stop after a cancel before its process tree is killed
+    private static final long CANCEL_GRACE_MS = 10_000;
+
+    // Lean scripts log the first few failures of each VU, then only a sample
+    private static final int LEAN_ERROR_LOG_BURST = 5;
+    private static final double LEAN_ERROR_LOG_SAMPLE_RATE = 0.01;
+
+    // The raw JSON stream can reach GBs on long runs; keep it only when asked to
+    private static final boolean KEEP_METRICS_STREAM = Boolean.getBoolean("loadtest.keepMetricsStream");
+
+    // Replaces the local launcher, e.g. to run shards on remote agents
+    public void setShardLauncher(ShardLauncher shardLauncher) {
+        this.shardLauncher = shardLauncher;
+    }
+
+    // Converts a data feed spec's file once, on the converter thread; repeated calls with an
+    // unchanged file are free. Completes with null for an empty spec.
+    public CompletableFuture<DataFeed> prepareDataFeed(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return DataFeed.prepare(spec, Paths.get(DOWNLOADS_PATH, "k6-data"));
+            } catch (Exception e) {
+                throw new CompletionException(e.getMessage(), e);
+            }
+        }, dataFeedConverter);
+    }
 
     public String generateScript(String curlCommand, String testName, String duration, String vus, List<String> thresholds) throws Exception {
+        return generateScript(curlCommand, testName, LoadProfile.closedLoop(vus, duration), thresholds);
+    }
+
+    public String generateScript(String curlCommand, String testName, LoadProfile profile, List<String> thresholds) throws Exception {
+        return generateScript(curlCommand, testName, profile, thresholds, new ScriptOptions());
+    }
+
+    public String generateScript(String curlCommand, String testName, LoadProfile profile, List<String> thresholds,
+                                 ScriptOptions options) throws Exception {
+        // Several commands (or directives) make a multi-request scenario
+        List<List<ScenarioRequest>> steps = new CurlParser().parseScenario(curlCommand);
+        if (steps.size() > 1 || (steps.size() == 1 && !isPlainRequest(steps.get(0)))) {
+            return generateScenarioScript(steps, testName, profile, thresholds, options);
+        }
+
         // Parse cURL command
-        String url = extractUrl(curlCommand);
-        String method = extractMethod(curlCommand);
-        List<String> headers = extractHeaders(curlCommand);
-        String body = extractBody(curlCommand);
+        CurlRequest request = steps.isEmpty()
+                ? CurlParser.parseCommand(curlCommand)
+                : steps.get(0).get(0).getRequest();
+        String url = request.getUrl();
+        String method = request.getMethod();
+        List<CurlRequest.Header> headers = request.getHeaders();
+        String body = request.getBody();
 
         if (url.isEmpty()) {
             throw new Exception("Failed to extract URL from cURL command.");
@@ -32,17 +114,188 @@ public class ScriptService {
 
         // Build script
         StringBuilder script = new StringBuilder();
+        appendPreamble(script, profile, thresholds, options);
+
+        // Lean scripts build the request once at init time instead of on every iteration,
+        // unless it is filled from a data feed row
+        boolean initTime = options.isLean() && options.getDataFeed() == null;
+        String indent = initTime ? "" : "  ";
+        String declare = initTime ? "const " : "let ";
+        if (!initTime) {
+            // Add default function
+            script.append("export default function () {\n");
+            appendNextRow(script, options);
+        }
+        script.append(indent).append(declare).append("url = ").append(jsText(url, options)).append(";\n");
+
+        // Add body if it exists
+        boolean hasBody = body != null && !body.isEmpty();
+        if (hasBody) {
+            script.append(indent).append(declare).append("body = ").append(jsText(body, options)).append(";\n");
+        }
+
+        script.append(indent).append(declare).append("params = {\n");
+
+        // Add headers
+        if (!headers.isEmpty()) {
+            script.append(indent).append("  headers: {\n");
+            appendHeaders(script, headers, indent + "    ", options);
+            script.append(indent).append("  },\n");
+        }
+        // One name for every row's URL, or each would be its own high-cardinality time series
+        if (options.getDataFeed() != null && DataFeed.hasPlaceholders(url)) {
+            script.append(indent).append("  tags: { name: '").append(escapeJs(url)).append("' },\n");
+        }
+
+        script.append(indent).append("};\n\n");
+        if (initTime) {
+            script.append("export default function () {\n");
+        }
+
+        // Add request based on method
+        script.append("  let response = ").append(requestCall(method, hasBody ? "body" : null)).append(";\n\n");
+
+        // Add tracking and checks
+        appendResponseTracking(script, "  ", options);
+
+        appendThinkTime(script, profile);
+        script.append("}\n\n");
+
+        return script.toString();
+    }
+
+    // Generates one scenario from imported requests; each step with more than one request becomes an http.batch()
+    public String generateScenarioScript(List<List<ScenarioRequest>> steps, String testName, String duration,
+                                         String vus, List<String> thresholds) throws Exception {
+        return generateScenarioScript(steps, testName, LoadProfile.closedLoop(vus, duration), thresholds);
+    }
+
+    public String generateScenarioScript(List<List<ScenarioRequest>> steps, String testName, LoadProfile profile,
+                                         List<String> thresholds) throws Exception {
+        return generateScenarioScript(steps, testName, profile, thresholds, new ScriptOptions());
+    }
+
+    public String generateScenarioScript(List<List<ScenarioRequest>> steps, String testName, LoadProfile profile,
+                                         List<String> thresholds, ScriptOptions options) throws Exception {
+        if (steps.isEmpty()) {
+            throw new Exception("No requests to generate a scenario from.");
+        }
+
+        StringBuilder script = new StringBuilder();
+        appendPreamble(script, profile, thresholds, options);
+
+        // Request definitions are built once at init time and shared by every iteration
+        script.append("// Expands [weight, request] pairs into the request list of one batch\n");
+        script.append("function weighted(entries) {\n");
+        script.append("  const batch = [];\n");
+        script.append("  for (const [weight, request] of entries) {\n");
+        script.append("    for (let i = 0; i < weight; i++) {\n");
+        script.append("      batch.push(request);\n");
+        script.append("    }\n");
+        script.append("  }\n");
+        script.append("  return batch;\n");
+        script.append("}\n\n");
+
+        // With a data feed, each step is a function of the iteration's row
+        boolean fromRow = options.getDataFeed() != null;
+        for (int i = 0; i < steps.size(); i++) {
+            List<ScenarioRequest> step = steps.get(i);
+            String name = "step" + (i + 1);
+            if (step.size() == 1 && step.get(0).getWeight() == 1) {
+                script.append("// Step ").append(i + 1).append(": single request\n");
+                script.append("const ").append(name).append(fromRow ? " = (row) => (" : " = ");
+                appendBatchRequest(script, step.get(0), "", options);
+                script.append(fromRow ? ");\n\n" : ";\n\n");
+                continue;
+            }
+            int total = 0;
+            for (ScenarioRequest request : step) {
+                total += request.getWeight();
+            }
+            script.append("// Step ").append(i + 1).append(": ").append(total).append(" requests fired in parallel\n");
+            script.append("const ").append(name).append(fromRow ? " = (row) => weighted([\n" : " = weighted([\n");
+            for (ScenarioRequest request : step) {
+                script.append("  [").append(request.getWeight()).append(", ");
+                appendBatchRequest(script, request, "  ", options);
+                script.append("],\n");
+            }
+            script.append("]);\n\n");
+        }
+
+        script.append("function track(response) {\n");
+        appendResponseTracking(script, "  ", options);
+        script.setLength(script.length() - 1);
+        script.append("}\n\n");
+
+        script.append("export default function () {\n");
+        appendNextRow(script, options);
+        for (int i = 0; i < steps.size(); i++) {
+            List<ScenarioRequest> step = steps.get(i);
+            String name = "step" + (i + 1);
+            if (step.size() == 1 && step.get(0).getWeight() == 1) {
+                if (fromRow) {
+                    script.append("  const request").append(i + 1).append(" = ").append(name).append("(row);\n");
+                    name = "request" + (i + 1);
+                }
+                script.append("  track(http.request(").append(name).append(".method, ").append(name).append(".url, ")
+                        .append(name).append(".body, ").append(name).append(".params));\n");
+            } else {
+                script.append("  for (const response of http.batch(").append(name).append(fromRow ? "(row)" : "")
+                        .append(")) {\n");
+                script.append("    track(response);\n");
+                script.append("  }\n");
+            }
+        }
+        script.append("\n");
+        appendThinkTime(script, profile);
+        script.append("}\n\n");
+
+        return script.toString();
+    }
+
+    // A lone request without directives uses the classic single-request template
+    private static boolean isPlainRequest(List<ScenarioRequest> step) {
+        if (step.size() != 1) {
+            return false;
+        }
+        ScenarioRequest request = step.get(0);
+        return request.getWeight() == 1 && request.getTags().size() == 1
+                && ScenarioRequest.defaultName(request.getRequest()).equals(request.getTags().get("name"));
+    }
+
+    private void appendPreamble(StringBuilder script, LoadProfile profile, List<String> thresholds, ScriptOptions options) {
         script.append("import http from 'k6/http';\n");
         script.append("import { check, sleep } from 'k6';\n");
-        script.append("import { Trend, Rate, Counter } from 'k6/metrics';\n");
-        script.append("import { htmlReport } from 'https://raw.githubusercontent.com/benc-uk/k6-reporter/main/dist/bundle.js';\n\n");
+        if (options.isLean()) {
+            script.append("import { Rate, Counter } from 'k6/metrics';\n");
+        } else {
+            script.append("import { Trend, Rate, Counter } from 'k6/metrics';\n");
+        }
+        if (options.getDataFeed() != null) {
+            script.append("import { SharedArray } from 'k6/data';\n");
+            script.append("import exec from 'k6/execution';\n");
+        }
+        script.append("\n");
 
         // Add custom metrics
-        script.append("// Custom metrics for detailed analysis\n");
-        script.append("const responseTimes = new Trend('response_times');\n");
-        script.append("const requestRate = new Rate('request_rate');\n");
-        script.append("const successRate = new Rate('success_rate');\n");
-        script.append("const errorCounter = new Counter('error_counter');\n\n");
+        if (options.isLean()) {
+            // http_reqs and http_req_duration already cover request rate and response times
+            script.append("// Custom metrics (lean mode: only what k6 does not record itself)\n");
+            script.append("const successRate = new Rate('success_rate');\n");
+            script.append("const errorCounter = new Counter('error_counter');\n");
+            script.append("const STATUS_CLASS = ['error', '1xx', '2xx', '3xx', '4xx', '5xx'];\n");
+            script.append("let loggedErrors = 0; // per VU\n\n");
+        } else {
+            script.append("// Custom metrics for detailed analysis\n");
+            script.append("const responseTimes = new Trend('response_times');\n");
+            script.append("const requestRate = new Rate('request_rate');\n");
+            script.append("const successRate = new Rate('success_rate');\n");
+            script.append("const errorCounter = new Counter('error_counter');\n\n");
+        }
+
+        if (options.getDataFeed() != null) {
+            appendDataFeed(script, options.getDataFeed(), profile);
+        }
 
         // Add thresholds
         script.append("// Thresholds for pass/fail criteria\n");
@@ -62,256 +315,696 @@ public class ScriptService {
 
         // Add options
         script.append("export let options = {\n");
-        script.append("  vus: ").append(vus).append(",\n");
-        script.append("  duration: '").append(duration).append("',\n");
+        appendExecutorOptions(script, profile);
+        appendTransportOptions(script, options.getTransport());
+        if (options.isLean()) {
+            // Bodies are never read in lean mode, and the url tag is the most expensive high-cardinality tag
+            script.append("  discardResponseBodies: true,\n");
+            script.append("  systemTags: ['status', 'method', 'name', 'group', 'check', 'error', 'error_code', 'scenario', 'expected_response'],\n");
+        }
         script.append("  thresholds,\n");
         script.append("  summaryTrendStats: ['min', 'med', 'avg', 'p(90)', 'p(95)', 'p(99)', 'max', 'count'],\n");
         script.append("};\n\n");
+    }
 
-        // Add default function
-        script.append("export default function () {\n");
-        script.append("  let url = '").append(url).append("';\n");
-        script.append("  let params = {\n");
-
-        // Add headers
-        if (!headers.isEmpty()) {
-            script.append("    headers: {\n");
-            for (String header : headers) {
-                String[] headerParts = header.split(": ", 2);
-                if (headerParts.length == 2) {
-                    script.append("      '").append(headerParts[0]).append("': '")
-                            .append(headerParts[1].replace("'", "\\'")).append("',\n");
+    private void appendExecutorOptions(StringBuilder script, LoadProfile profile) {
+        switch (profile.getExecutor()) {
+            case CONSTANT_ARRIVAL_RATE:
+                // Iterations start on schedule whatever the response times, so slow responses can't lower the load
+                script.append("  scenarios: {\n");
+                script.append("    main: {\n");
+                script.append("      executor: 'constant-arrival-rate',\n");
+                script.append("      rate: ").append(profile.getRate()).append(",\n");
+                script.append("      timeUnit: '").append(profile.getTimeUnit()).append("',\n");
+                script.append("      duration: '").append(profile.getDuration()).append("',\n");
+                script.append("      preAllocatedVUs: ").append(profile.getPreAllocatedVUs()).append(",\n");
+                script.append("      maxVUs: ").append(profile.getMaxVUs()).append(",\n");
+                script.append("    },\n");
+                script.append("  },\n");
+                break;
+            case RAMPING_ARRIVAL_RATE:
+                script.append("  scenarios: {\n");
+                script.append("    main: {\n");
+                script.append("      executor: 'ramping-arrival-rate',\n");
+                script.append("      startRate: ").append(profile.getStartRate()).append(",\n");
+                script.append("      timeUnit: '").append(profile.getTimeUnit()).append("',\n");
+                script.append("      preAllocatedVUs: ").append(profile.getPreAllocatedVUs()).append(",\n");
+                script.append("      maxVUs: ").append(profile.getMaxVUs()).append(",\n");
+                script.append("      stages: [\n");
+                for (LoadProfile.Stage stage : profile.getStages()) {
+                    script.append("        { duration: '").append(stage.getDuration()).append("', target: ")
+                            .append(stage.getTarget()).append(" },\n");
                 }
+                script.append("      ],\n");
+                script.append("    },\n");
+                script.append("  },\n");
+                break;
+            default:
+                script.append("  vus: ").append(profile.getVus()).append(",\n");
+                script.append("  duration: '").append(profile.getDuration()).append("',\n");
+        }
+    }
+
+    private void appendTransportOptions(StringBuilder script, TransportProfile transport) {
+        switch (transport) {
+            case BROWSER:
+                // Browsers keep connections alive and open at most 6 per host
+                script.append("  // Transport: ").append(transport.getLabel()).append("\n");
+                script.append("  batchPerHost: 6,\n");
+                script.append("  dns: { ttl: '1m', select: 'first', policy: 'preferIPv4' },\n");
+                script.append("  tlsVersion: { min: 'tls1.2', max: 'tls1.3' },\n");
+                break;
+            case NO_REUSE:
+                script.append("  // Transport: ").append(transport.getLabel()).append("; every request pays for connect and TLS\n");
+                script.append("  noConnectionReuse: true,\n");
+                break;
+            case NEW_CLIENT_PER_ITERATION:
+                script.append("  // Transport: ").append(transport.getLabel()).append("; requests of one iteration share connections\n");
+                script.append("  noVUConnectionReuse: true,\n");
+                break;
+            case HTTP2:
+                // k6 negotiates HTTP/2 through ALPN, so only https:// targets use it
+                script.append("  // Transport: ").append(transport.getLabel()).append(" (https only); a batch shares the host's connection\n");
+                script.append("  batch: 100,\n");
+                script.append("  batchPerHost: 100,\n");
+                script.append("  tlsVersion: { min: 'tls1.2', max: 'tls1.3' },\n");
+                break;
+            case DNS_CACHE:
+                script.append("  // Transport: ").append(transport.getLabel()).append("\n");
+                script.append("  dns: { ttl: '5m', select: 'roundRobin', policy: 'preferIPv4' },\n");
+                break;
+            case NO_DNS_CACHE:
+                script.append("  // Transport: ").append(transport.getLabel()).append("; shows up in http_req_blocked\n");
+                script.append("  dns: { ttl: '0', select: 'random', policy: 'any' },\n");
+                break;
+            case TLS_RESUMPTION:
+                script.append("  // Transport: ").append(transport.getLabel()).append("; reconnects every iteration\n");
+                script.append("  noVUConnectionReuse: true,\n");
+                script.append("  tlsVersion: { min: 'tls1.2', max: 'tls1.3' },\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void appendThinkTime(StringBuilder script, LoadProfile profile) {
+        double thinkTime = profile.getThinkTimeSeconds();
+        if (thinkTime <= 0) {
+            // No sleep: drop the blank line that would have separated it
+            if (script.length() > 1 && script.charAt(script.length() - 2) == '\n') {
+                script.setLength(script.length() - 1);
             }
-            script.append("    },\n");
+            return;
         }
+        String seconds = thinkTime == Math.rint(thinkTime) ? String.valueOf((long) thinkTime) : String.valueOf(thinkTime);
+        script.append("  sleep(").append(seconds).append(");\n");
+    }
 
-        // Add body if it exists
-        if (body != null && !body.isEmpty()) {
-            script.append("    body: '").append(body.replace("'", "\\'")).append("',\n");
+    private void appendHeaders(StringBuilder script, List<CurlRequest.Header> headers, String indent,
+                               ScriptOptions options) throws Exception {
+        for (CurlRequest.Header header : headers) {
+            script.append(indent).append("'").append(escapeJs(header.getName())).append("': ")
+                    .append(jsText(header.getValue(), options)).append(",\n");
         }
+    }
 
-        script.append("  };\n\n");
+    // A quoted string, or with a data feed an expression that fills in "{{column}}" from the row
+    private static String jsText(String text, ScriptOptions options) throws Exception {
+        DataFeed feed = options.getDataFeed();
+        return feed == null ? "'" + escapeJs(text) + "'" : feed.expression(text, "row");
+    }
 
-        // Add request based on method
-        script.append("  let response = http.").append(method.toLowerCase()).append("(url, params);\n\n");
+    // Loads the converted rows once per k6 process; nextRow() picks the row of an iteration
+    private void appendDataFeed(StringBuilder script, DataFeed feed, LoadProfile profile) {
+        String file = escapeJs(feed.getDataFile().toString());
+        script.append("// Data feed: ").append(feed.getRowCount()).append(" rows of ")
+                .append(feed.getSource().getFileName()).append(" (").append(String.join(", ", feed.getColumns()))
+                .append("), shared by every VU\n");
+        if (feed.getPartition() == DataFeed.Partition.SEGMENT) {
+            // Each process keeps only the rows of its execution segment, e.g. "1/4:1/2"
+            script.append("function segmentBound(bound) {\n");
+            script.append("  const [numerator, denominator] = bound.split('/');\n");
+            script.append("  return denominator ? numerator / denominator : parseFloat(bound);\n");
+            script.append("}\n\n");
+            script.append("const data = new SharedArray('data', function () {\n");
+            script.append("  const rows = JSON.parse(open('").append(file).append("'));\n");
+            script.append("  const [from, to] = (__ENV.EXECUTION_SEGMENT || '0:1').split(':').map(segmentBound);\n");
+            script.append("  const part = rows.slice(Math.floor(rows.length * from), Math.floor(rows.length * to));\n");
+            script.append("  return part.length > 0 ? part : rows;\n");
+            script.append("});\n\n");
+        } else {
+            script.append("const data = new SharedArray('data', function () {\n");
+            script.append("  return JSON.parse(open('").append(file).append("'));\n");
+            script.append("});\n\n");
+        }
 
-        // Add tracking and checks
-        script.append("  // Track request count\n");
-        script.append("  requestRate.add(1);\n\n");
-
-        script.append("  // Track response times\n");
-        script.append("  const duration = response.timings.duration;\n");
-        script.append("  responseTimes.add(duration);\n\n");
-
-        script.append("  // Check if request was successful\n");
-        script.append("  const isSuccess = response.status >= 200 && response.status < 300;\n");
-        script.append("  successRate.add(isSuccess);\n\n");
-
-        script.append("  if (!isSuccess) {\n");
-        script.append("    errorCounter.add(1);\n");
-        script.append("    console.log(`Error: ${response.status} - ${response.body.substring(0, 100)}...`);\n");
-        script.append("  }\n\n");
-
-        script.append("  // Run checks\n");
-        script.append("  check(response, {\n");
-        script.append("    'is status 200': (r) => r.status === 200,\n");
-        script.append("    'response time < 500ms': (r) => r.timings.duration < 500,\n");
-        script.append("    'response time < 1000ms': (r) => r.timings.duration < 1000,\n");
-        script.append("  });\n\n");
-
-        script.append("  sleep(1);\n");
-        script.append("}\n\n");
+        boolean random = feed.getOrder() == DataFeed.Order.RANDOM;
+        switch (feed.getPartition()) {
+            case VU:
+                // Block n of the rows for VU n, across every shard; VUs beyond the rows share them
+                int vus = profile.getExecutor() == LoadProfile.Executor.CLOSED_LOOP
+                        ? profile.getVus() : profile.getMaxVUs();
+                script.append("const FEED_VUS = ").append(vus).append(";\n\n");
+                script.append("function nextRow() {\n");
+                script.append("  const vu = (exec.vu.idInTest - 1) % FEED_VUS;\n");
+                script.append("  const start = Math.floor(data.length * vu / FEED_VUS);\n");
+                script.append("  const size = Math.max(1, Math.floor(data.length * (vu + 1) / FEED_VUS) - start);\n");
+                script.append("  return data[(start + ").append(random ? "Math.floor(Math.random() * size)"
+                        : "exec.vu.iterationInScenario % size").append(") % data.length];\n");
+                script.append("}\n\n");
+                break;
+            case SEGMENT:
+                script.append("function nextRow() {\n");
+                script.append("  return data[").append(random ? "Math.floor(Math.random() * data.length)"
+                        : "exec.scenario.iterationInInstance % data.length").append("];\n");
+                script.append("}\n\n");
+                break;
+            default:
+                // iterationInTest is unique across shards, so every row is used once before any repeats
+                script.append("function nextRow() {\n");
+                script.append("  return data[").append(random ? "Math.floor(Math.random() * data.length)"
+                        : "exec.scenario.iterationInTest % data.length").append("];\n");
+                script.append("}\n\n");
+        }
+    }
 
-        // Add handleSummary function to generate HTML report in the project directory
-        script.append("export function handleSummary(data) {\n");
-        script.append("  console.log('Generating HTML report...');\n"); // Debug log
-        script.append("  if (!data) {\n");
-        script.append("    console.error('No data received for summary.');\n"); // Debug log
-        script.append("    return {};\n");
-        script.append("  }\n");
-        script.append("  return {\n");
-        script.append("    './").append(testName).append("_report.html': htmlReport(data),\n"); // Save in project directory
-        script.append("  };\n");
-        script.append("}\n");
+    private static void appendNextRow(StringBuilder script, ScriptOptions options) {
+        if (options.getDataFeed() != null) {
+            script.append("  const row = nextRow();\n");
+        }
+    }
 
-        return script.toString();
-    }    private String extractUrl(String curlCommand) {
-        Pattern urlPattern = Pattern.compile("(?:curl|\\s+)['\"](https?://[^'\"]+)['\"]");
-        Matcher urlMatcher = urlPattern.matcher(curlCommand);
-        if (urlMatcher.find()) {
-            return urlMatcher.group(1);
+    // One request object in the form http.batch() accepts
+    private void appendBatchRequest(StringBuilder script, ScenarioRequest scenarioRequest, String indent,
+                                    ScriptOptions options) throws Exception {
+        CurlRequest request = scenarioRequest.getRequest();
+        String body = request.getBody();
+        script.append("{\n");
+        script.append(indent).append("  method: '").append(escapeJs(request.getMethod())).append("',\n");
+        script.append(indent).append("  url: ").append(jsText(request.getUrl(), options)).append(",\n");
+        script.append(indent).append("  body: ");
+        if (body != null && !body.isEmpty()) {
+            script.append(jsText(body, options));
         } else {
-            urlPattern = Pattern.compile("(?:curl|\\s+)(https?://\\S+)");
-            urlMatcher = urlPattern.matcher(curlCommand);
-            if (urlMatcher.find()) {
-                String url = urlMatcher.group(1);
-                if (url.contains(" ")) {
-                    url = url.substring(0, url.indexOf(" "));
-                }
-                return url;
+            script.append("null");
+        }
+        script.append(",\n");
+        script.append(indent).append("  params: {\n");
+        if (!request.getHeaders().isEmpty()) {
+            script.append(indent).append("    headers: {\n");
+            appendHeaders(script, request.getHeaders(), indent + "      ", options);
+            script.append(indent).append("    },\n");
+        }
+        if (!scenarioRequest.getTags().isEmpty()) {
+            script.append(indent).append("    tags: {\n");
+            for (Map.Entry<String, String> tag : scenarioRequest.getTags().entrySet()) {
+                script.append(indent).append("      '").append(escapeJs(tag.getKey())).append("': '")
+                        .append(escapeJs(tag.getValue())).append("',\n");
             }
+            script.append(indent).append("    },\n");
         }
-        return "";
+        script.append(indent).append("  },\n");
+        script.append(indent).append("}");
     }
 
-    private String extractMethod(String curlCommand) {
-        Pattern methodPattern = Pattern.compile("-X\\s+([A-Z]+)|--request\\s+([A-Z]+)");
-        Matcher methodMatcher = methodPattern.matcher(curlCommand);
-        if (methodMatcher.find()) {
-            return methodMatcher.group(1) != null ? methodMatcher.group(1) : methodMatcher.group(2);
+    // Per-response metrics and checks; expects the response in a variable named "response"
+    private void appendResponseTracking(StringBuilder script, String indent, ScriptOptions options) {
+        if (options.isLean()) {
+            appendLeanResponseTracking(script, indent);
+            return;
         }
-        return "GET"; // Default to GET if no method is specified
+
+        script.append(indent).append("// Track request count\n");
+        script.append(indent).append("requestRate.add(1);\n\n");
+
+        script.append(indent).append("// Track response times\n");
+        script.append(indent).append("const duration = response.timings.duration;\n");
+        script.append(indent).append("responseTimes.add(duration);\n\n");
+
+        script.append(indent).append("// Check if request was successful\n");
+        script.append(indent).append("const isSuccess = response.status >= 200 && response.status < 300;\n");
+        script.append(indent).append("successRate.add(isSuccess);\n\n");
+
+        script.append(indent).append("if (!isSuccess) {\n");
+        script.append(indent).append("  errorCounter.add(1);\n");
+        script.append(indent).append("  console.log(`Error: ${response.status} - ${response.body.substring(0, 100)}...`);\n");
+        script.append(indent).append("}\n\n");
+
+        script.append(indent).append("// Run checks\n");
+        script.append(indent).append("check(response, {\n");
+        script.append(indent).append("  'is status 200': (r) => r.status === 200,\n");
+        script.append(indent).append("  'response time < 500ms': (r) => r.timings.duration < 500,\n");
+        script.append(indent).append("  'response time < 1000ms': (r) => r.timings.duration < 1000,\n");
+        script.append(indent).append("});\n\n");
     }
 
-    private List<String> extractHeaders(String curlCommand) {
-        List<String> headers = new ArrayList<>();
-        Pattern headerPattern = Pattern.compile("-H\\s+['\"]([^'\"]+)['\"]|--header\\s+['\"]([^'\"]+)['\"]");
-        Matcher headerMatcher = headerPattern.matcher(curlCommand);
-        while (headerMatcher.find()) {
-            String header = headerMatcher.group(1) != null ? headerMatcher.group(1) : headerMatcher.group(2);
-            headers.add(header);
-        }
-        return headers;
+    private void appendLeanResponseTracking(StringBuilder script, String indent) {
+        script.append(indent).append("// Check if request was successful\n");
+        script.append(indent).append("const isSuccess = response.status >= 200 && response.status < 300;\n");
+        script.append(indent).append("successRate.add(isSuccess);\n");
+        script.append(indent).append("check(response, { 'status is 2xx': () => isSuccess }, { status_class: STATUS_CLASS[Math.floor(response.status / 100)] || 'other' });\n\n");
+
+        script.append(indent).append("// Log a sample of failures; bodies are discarded in lean mode\n");
+        script.append(indent).append("if (!isSuccess) {\n");
+        script.append(indent).append("  errorCounter.add(1);\n");
+        script.append(indent).append("  if (loggedErrors < ").append(LEAN_ERROR_LOG_BURST).append(" || Math.random() < ")
+                .append(LEAN_ERROR_LOG_SAMPLE_RATE).append(") {\n");
+        script.append(indent).append("    loggedErrors++;\n");
+        script.append(indent).append("    console.log(`Error: ${response.status} ${response.request.method} ${response.url}`);\n");
+        script.append(indent).append("  }\n");
+        script.append(indent).append("}\n\n");
     }
 
-    private String extractBody(String curlCommand) {
-        Pattern bodyPattern = Pattern.compile("-d\\s+['\"]([^'\"]+)['\"]|--data\\s+['\"]([^'\"]+)['\"]|--data-raw\\s+['\"]([^'\"]+)['\"]");
-        Matcher bodyMatcher = bodyPattern.matcher(curlCommand);
-        if (bodyMatcher.find()) {
-            return bodyMatcher.group(1) != null ? bodyMatcher.group(1) :
-                    (bodyMatcher.group(2) != null ? bodyMatcher.group(2) : bodyMatcher.group(3));
+    // k6 call for a method; only GET and HEAD take no body argument, and DELETE is http.del
+    static String requestCall(String method, String bodyExpression) {
+        String bodyArgument = bodyExpression != null ? bodyExpression : "null";
+        switch (method) {
+            case "GET":
+                return "http.get(url, params)";
+            case "HEAD":
+                return "http.head(url, params)";
+            case "POST":
+            case "PUT":
+            case "PATCH":
+            case "OPTIONS":
+                return "http." + method.toLowerCase() + "(url, " + bodyArgument + ", params)";
+            case "DELETE":
+                return "http.del(url, " + bodyArgument + ", params)";
+            default:
+                return "http.request('" + escapeJs(method) + "', url, " + bodyArgument + ", params)";
         }
-        return null;
     }
 
-    public void saveScript(String scriptContent, String testName, Label statusLabel) {
-        try {
-            if (scriptContent.isEmpty()) {
-                throw new IOException("No script to save.");
+    // Escapes a value for use inside a single-quoted JavaScript string literal
+    public static String escapeJs(String value) {
+        StringBuilder escaped = null;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\': replacement = "\\\\"; break;
+                case '\'': replacement = "\\'"; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                case '\t': replacement = "\\t"; break;
+                case '\u2028': replacement = "\\u2028"; break;
+                case '\u2029': replacement = "\\u2029"; break;
+                default:
+                    replacement = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
             }
-
-            File downloadsDir = new File(DOWNLOADS_PATH);
-            if (!downloadsDir.exists()) {
-                downloadsDir.mkdirs();
+            if (replacement == null) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            // Only copy once something actually needs escaping
+            if (escaped == null) {
+                escaped = new StringBuilder(length + 16);
+                escaped.append(value, 0, i);
             }
+            escaped.append(replacement);
+        }
+        return escaped == null ? value : escaped.toString();
+    }
 
-            String filename = testName.replaceAll("[^a-zA-Z0-9-_]", "_") + ".js";
-            String fullPath = DOWNLOADS_PATH + File.separator + filename;
+    // Writes the script to the downloads folder as <test name>.js, off the calling thread;
+    // completes with where it was saved
+    public CompletableFuture<Path> saveScript(String scriptContent, String testName) {
+        if (scriptContent.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("No script to save."));
+        }
+        String filename = testName.replaceAll("[^a-zA-Z0-9-_]", "_") + ".js";
+        return scriptStore.export(scriptContent, Paths.get(DOWNLOADS_PATH, filename));
+    }
+
+    public TestRun runTest(String scriptContent, String testName, RunListener listener) {
+        return runTest(scriptContent, testName, ShardPlan.single(), listener);
+    }
 
-            FileWriter writer = new FileWriter(fullPath);
-            writer.write(scriptContent);
-            writer.close();
+    // Queues the run on the run manager; returns null if there is nothing to run
+    public TestRun runTest(String scriptContent, String testName, ShardPlan shardPlan, RunListener listener) {
+        return runTest(scriptContent, testName, shardPlan, 0, listener);
+    }
 
-            statusLabel.setText("Script saved as " + fullPath);
-        } catch (IOException e) {
-            statusLabel.setText("Failed to save script: " + e.getMessage());
+    // As above, but the first warmupSeconds of the run are left out of its result and thresholds
+    public TestRun runTest(String scriptContent, String testName, ShardPlan shardPlan, long warmupSeconds,
+                           RunListener listener) {
+        return runTest(scriptContent, testName, shardPlan, warmupSeconds, abortSettings, listener);
+    }
+
+    // As above, with early abort settings of its own instead of those set on the service;
+    // calibration and capacity probes pass AbortController.Settings.off()
+    public TestRun runTest(String scriptContent, String testName, ShardPlan shardPlan, long warmupSeconds,
+                           AbortController.Settings abort, RunListener listener) {
+        if (scriptContent.isEmpty()) {
+            listener.status("Failed to run test: No script to run.");
+            return null;
+        }
+        int running = runManager.getRunningCount();
+        RegressionTolerance tolerance = regressionTolerance;
+        TestRun run = runManager.submit(testName, handle -> executeRun(handle, scriptContent, testName, shardPlan,
+                warmupSeconds, tolerance, abort, listener));
+        if (run.getState() == TestRun.State.QUEUED && running >= runManager.getMaxConcurrentRuns()) {
+            listener.status("Queued behind " + running + " running test(s)...");
+        }
+        return run;
+    }
+
+    // Runs the script after the delay and then, if period is not null, on every period.
+    // The script content is captured now, so later edits do not change scheduled runs.
+    public ScheduledFuture<?> scheduleTest(String scriptContent, String testName, ShardPlan shardPlan,
+                                           Duration initialDelay, Duration period, RunListener listener) throws Exception {
+        if (scriptContent.isEmpty()) {
+            throw new Exception("No script to schedule.");
+        }
+        RegressionTolerance tolerance = regressionTolerance;
+        AbortController.Settings abort = abortSettings;
+        RunManager.RunTask task = handle -> executeRun(handle, scriptContent, testName, shardPlan,
+                0, tolerance, abort, listener);
+        ScheduledFuture<?> schedule = period == null
+                ? runManager.schedule(testName, task, initialDelay)
+                : runManager.scheduleRecurring(testName, task, initialDelay, period);
+        System.out.println("Scheduled " + testName + " in " + initialDelay.toMinutes() + " min"
+                + (period == null ? "" : ", then every " + period.toMinutes() + " min"));
+        return schedule;
+    }
+
+    // Used by runs submitted from now on, when their test has a baseline
+    public void setRegressionTolerance(RegressionTolerance regressionTolerance) {
+        this.regressionTolerance = regressionTolerance;
+    }
+
+    // Used by runs submitted from now on; AbortController.Settings.off() lets every run finish
+    public void setAbortSettings(AbortController.Settings abortSettings) {
+        this.abortSettings = abortSettings;
+    }
+
+    public RunManager getRunManager() {
+        return runManager;
+    }
+
+    // Opened on first use; reading the index is I/O, so call it off the FX thread
+    public synchronized ResultsStore getResultsStore() throws IOException {
+        if (resultsStore == null) {
+            resultsStore = new ResultsStore(Paths.get(RESULTS_PATH));
         }
+        return resultsStore;
     }
 
-    public void runTest(String scriptContent, String testName, ProgressBar progressBar, Label statusLabel) {
+    // Body of one run, on a run manager thread; returns whether the test passed
+    private boolean executeRun(TestRun handle, String scriptContent, String testName, ShardPlan shardPlan,
+                               long warmupSeconds, RegressionTolerance tolerance, AbortController.Settings abort,
+                               RunListener listener) throws Exception {
         try {
-            if (scriptContent.isEmpty()) {
-                throw new IOException("No script to run.");
+            // k6 runs an immutable copy keyed by content, so runs of the same test cannot overwrite
+            // each other's script; an unchanged script is neither hashed nor written again
+            String filename = testName.replaceAll("[^a-zA-Z0-9-_]", "_") + ".js";
+            Path scriptFile = storeScript(scriptContent);
+            System.out.println("Running script " + scriptFile);
+
+            // Sharded and warmed-up k6 processes run with --no-thresholds, so the script's thresholds are checked here
+            List<String> thresholds = ThresholdEvaluator.fromScript(scriptContent);
+
+            listener.started(testName);
+
+            // Log that the test is starting
+            System.out.println("Starting k6 test" + (shardPlan.isSharded()
+                    ? " on " + shardPlan.getShardCount() + " shards..." : "..."));
+
+            // Each k6 process streams every data point as NDJSON into its own file while the test runs
+            String runName = filename.replace(".js", "") + "-" + timestamp();
+            ShardedRun run = new ShardedRun(shardPlan, shardLauncher, scriptFile,
+                    Paths.get(LOGS_PATH), runName, CPU_SAMPLE_INTERVAL_MS);
+            run.setWarmupSeconds(warmupSeconds);
+            run.checkThresholds(thresholds);
+            handle.onCancel(() -> run.stop(CANCEL_GRACE_MS));
+            RunRecorder recorder = new RunRecorder(testName);
+            run.attachRecorder(recorder);
+
+            // Aggregate the metrics streams as they are written and publish a few snapshots per second
+            LiveMetricsPublisher publisher = new LiveMetricsPublisher(
+                    run::snapshot, listener::liveMetrics, LIVE_METRICS_INTERVAL_MS);
+
+            // Stream the output through the bounded pipeline instead of buffering it all
+            OutputPipeline pipeline = createOutputPipeline(filename, listener);
+            ResourceSampler resourceSampler = null;
+            AbortController abortController = null;
+            int exitCode;
+            try {
+                resourceSampler = new ResourceSampler(sample -> listener.status(
+                        "Load generator saturated (" + sample + "); latency may be inflated by the generator"));
+                run.attachResourceSampler(resourceSampler);
+                run.start(pipeline);
+
+                // Stop k6 once a threshold keeps failing over its sliding window, instead of running out the duration
+                abortController = new AbortController(thresholds, abort, run::fillWindows, reason -> {
+                    listener.status("Aborting early: " + reason);
+                    run.stop(CANCEL_GRACE_MS);
+                });
+
+                // Wait for every process to complete
+                exitCode = run.waitFor();
+            } finally {
+                if (abortController != null) {
+                    abortController.close();
+                }
+                pipeline.close();
+                publisher.close();
+                if (!KEEP_METRICS_STREAM) {
+                    for (Path metricsFile : run.getMetricsFiles()) {
+                        Files.deleteIfExists(metricsFile);
+                    }
+                }
             }
 
-            // Create downloads directory if it doesn't exist
-            File downloadsDir = new File(DOWNLOADS_PATH);
-            if (!downloadsDir.exists()) {
-                downloadsDir.mkdirs();
+            MetricsAggregator results = run.getMergedMetrics();
+            StringBuilder summary = new StringBuilder();
+            String abortReason = abortController.getReason();
+            if (abortReason != null) {
+                summary.append("Aborted early: ").append(abortReason).append("\n");
+            }
+            List<ThresholdEvaluator.Result> thresholdResults = new ThresholdEvaluator().evaluate(thresholds, results);
+            boolean thresholdsPassed = true;
+            if (run.isThresholdsOnResult()) {
+                thresholdsPassed = ThresholdEvaluator.allPassed(thresholdResults);
+                summary.append("Thresholds on the ").append(shardPlan.isSharded()
+                        ? "merged result of " + run.getShardCount() + " shards" : "result")
+                        .append(warmupSeconds > 0 ? " after a " + warmupSeconds + "s warm-up" : "").append(":\n");
+                for (ThresholdEvaluator.Result result : thresholdResults) {
+                    summary.append("  ").append(result).append("\n");
+                    System.out.println("Threshold " + result);
+                }
             }
 
-            // Save the script to a file
-            String filename = testName.replaceAll("[^a-zA-Z0-9-_]", "_") + ".js";
-            String fullPath = DOWNLOADS_PATH + File.separator + filename;
+            // Generator cost per request, to compare script variants such as lean mode
+            String generatorCost = formatGeneratorCost(run.getCpuNanos(), results.snapshot().getTotalRequests());
+            System.out.println(generatorCost);
+            summary.append(generatorCost).append("\n");
+
+            // Connection setup apart from request latency, to tell handshake cost from steady-state throughput
+            ConnectionSetup connectionSetup = results.getConnectionSetup();
+            System.out.print(connectionSetup.report());
+            summary.append(connectionSetup.report());
+
+            // Per-second view of the run, shared by the resource timeline and the report
+            StoredRun preview = null;
+            try {
+                preview = getResultsStore().preview(recorder, results, thresholdResults, TestRun.State.SUCCEEDED,
+                        exitCode, run.getShardCount());
+            } catch (IOException e) {
+                System.err.println("Failed to line the run up by second: " + e.getMessage());
+            }
 
-            FileWriter writer = new FileWriter(fullPath);
-            writer.write(scriptContent);
-            writer.close();
+            // Load generator resources next to the latency of the same seconds
+            ResourceSampler.Usage resources = summarizeResources(resourceSampler, preview,
+                    Paths.get(LOGS_PATH, runName + ".resources.csv"));
+            if (resources != null) {
+                System.out.print(resources.report());
+                summary.append(resources.report());
+            }
 
-            // Log that the script has been saved
-            System.out.println("Script saved to: " + fullPath);
+            boolean cancelled = handle.isCancelRequested();
+            BaselineComparison comparison = null;
+            // An aborted run is partial, like a cancelled one, so it is not compared with the baseline
+            if (!cancelled && abortReason == null) {
+                comparison = compareWithBaseline(testName, recorder, results, thresholdResults,
+                        exitCode, run.getShardCount(), tolerance);
+                if (comparison != null) {
+                    summary.append(comparison.report());
+                }
+            }
+            boolean passed = abortReason == null && exitCode == 0 && thresholdsPassed
+                    && (comparison == null || !comparison.isRegression());
+
+            // Keep the run in the history even if the results window is closed
+            TestRun.State outcome = cancelled ? TestRun.State.CANCELLED
+                    : passed ? TestRun.State.SUCCEEDED : TestRun.State.FAILED;
+            long storedRunId = -1;
+            try {
+                RunSummary stored = getResultsStore().append(recorder, results, thresholdResults, outcome,
+                        exitCode, run.getShardCount());
+                storedRunId = stored.getId();
+                summary.append("Saved to run history as #").append(stored.getId()).append("\n");
+            } catch (IOException e) {
+                System.err.println("Failed to save run history: " + e.getMessage());
+                summary.append("Could not save run history: ").append(e.getMessage()).append("\n");
+            }
 
-            // Update the UI to indicate the test is starting
-            javafx.application.Platform.runLater(() -> {
-                progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS); // Show indeterminate progress
-                statusLabel.setText("Test is running...");
-            });
+            // HTML and JSON reports from the whole run, written here instead of by the k6 script
+            if (preview != null) {
+                Path reportFile = writeReport(testName, preview, outcome, exitCode, run.getSummaryFiles(),
+                        summary.toString());
+                if (reportFile != null) {
+                    summary.append("Report: ").append(reportFile).append("\n");
+                }
+            }
 
-            // Run k6 in a separate thread
-            new Thread(() -> {
-                try {
-                    // Log that the test is starting
-                    System.out.println("Starting k6 test...");
-
-                    // Build the process to run k6
-                    ProcessBuilder pb = new ProcessBuilder(K6_PATH, "run", fullPath);
-                    pb.redirectErrorStream(true); // Combine stdout and stderr
-                    Process process = pb.start();
-
-                    // Log the command being executed
-                    System.out.println("Executing command: " + String.join(" ", pb.command()));
-
-                    // Read the output of the process
-                    StringBuilder output = new StringBuilder();
-                    try (java.util.Scanner scanner = new java.util.Scanner(process.getInputStream())) {
-                        while (scanner.hasNextLine()) {
-                            String line = scanner.nextLine();
-                            output.append(line).append("\n");
-                            System.out.println(line); // Print each line to the console
-                        }
-                    }
+            List<Path> logSegments = pipeline.getLogSegments();
+            listener.finished(new RunResult(testName, outcome, exitCode, thresholdsPassed, thresholdResults, comparison,
+                    storedRunId, results.snapshot(), results.getTotalDurations(), run.getCpuNanos(), resources,
+                    connectionSetup, abortReason,
+                    summary.toString(),
+                    formatResults(pipeline), logSegments));
+            return passed;
+        } catch (Exception e) {
+            // Log any errors that occur during the test execution
+            System.err.println("Error running k6 test: " + e.getMessage());
+            e.printStackTrace();
 
-                    // Wait for the process to complete
-                    int exitCode = process.waitFor();
-                    System.out.println("k6 process exited with code: " + exitCode);
-
-                    // Update the UI on the JavaFX thread
-                    javafx.application.Platform.runLater(() -> {
-                        progressBar.setProgress(1.0); // Set progress to 100% when done
-                        if (exitCode == 0) {
-                            statusLabel.setText("Test completed successfully. Reports saved to downloads.");
-                        } else {
-                            statusLabel.setText("Test completed with issues (exit code: " + exitCode + "). Reports saved to downloads.");
-                        }
-
-                        // Show test results in a new window
-                        TextArea resultArea = new TextArea(output.toString());
-                        resultArea.setEditable(false);
-                        resultArea.setWrapText(true);
-                        resultArea.setPrefWidth(800);
-                        resultArea.setPrefHeight(600);
-
-                        Stage resultStage = new Stage();
-                        resultStage.setTitle("Test Results");
-                        resultStage.setScene(new Scene(new BorderPane(resultArea), 800, 600));
-                        resultStage.show();
-                    });
-                } catch (Exception e) {
-                    // Log any errors that occur during the test execution
-                    System.err.println("Error running k6 test: " + e.getMessage());
-                    e.printStackTrace();
-
-                    // Update the UI on the JavaFX thread
-                    javafx.application.Platform.runLater(() -> {
-                        progressBar.setProgress(0); // Reset progress on failure
-                        statusLabel.setText("Test failed: " + e.getMessage());
-                    });
-                }
-            }).start();
+            listener.failed(e);
+            throw e;
+        }
+    }
+
+    private Path storeScript(String scriptContent) throws IOException, InterruptedException {
+        try {
+            return scriptStore.store(scriptContent).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to store the script: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private OutputPipeline createOutputPipeline(String filename, RunListener listener) throws IOException {
+        Path logFile = Paths.get(LOGS_PATH, filename.replace(".js", "") + "-" + timestamp() + ".log");
+        RollingLogWriter logWriter = new RollingLogWriter(logFile, LOG_FILE_BYTES, LOG_FILES);
+        System.out.println("Writing k6 output to: " + logFile);
+
+        // Only the newest line of each batch is shown while the test runs
+        return new OutputPipeline(
+                new LineRingBuffer(RECENT_LINES, MAX_LINE_LENGTH),
+                logWriter,
+                batch -> listener.outputLine(batch.get(batch.size() - 1)),
+                UI_BATCH_INTERVAL_MS,
+                UI_MAX_LINES_PER_BATCH
+        );
+    }
+
+    private String timestamp() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    }
+
+    // Compares a finished run with its test's baseline, if one is set; null otherwise.
+    // Works on the histograms and per-second rows, so it takes milliseconds.
+    private BaselineComparison compareWithBaseline(String testName, RunRecorder recorder, MetricsAggregator results,
+                                                   List<ThresholdEvaluator.Result> thresholdResults, int exitCode,
+                                                   int shards, RegressionTolerance tolerance) {
+        try {
+            ResultsStore store = getResultsStore();
+            RunSummary baseline = store.getBaseline(testName);
+            if (baseline == null) {
+                return null;
+            }
+            long started = System.nanoTime();
+            StoredRun current = store.preview(recorder, results, thresholdResults, TestRun.State.SUCCEEDED,
+                    exitCode, shards);
+            BaselineComparison comparison = BaselineComparison.compare(store.load(baseline), current, tolerance);
+            System.out.printf("Baseline comparison with run #%d took %.1f ms%n", baseline.getId(),
+                    (System.nanoTime() - started) / 1e6);
+            System.out.print(comparison.report());
+            return comparison;
         } catch (IOException e) {
-            // Log any errors that occur while saving the script
-            System.err.println("Error saving script: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Failed to compare with baseline: " + e.getMessage());
+            return null;
+        }
+    }
 
-            // Update the UI on the JavaFX thread
-            javafx.application.Platform.runLater(() -> {
-                progressBar.setProgress(0); // Reset progress on failure
-                statusLabel.setText("Failed to run test: " + e.getMessage());
-            });
+    // Null if the platform has no /proc or nothing was sampled
+    private ResourceSampler.Usage summarizeResources(ResourceSampler sampler, StoredRun current, Path timelineFile) {
+        if (sampler == null || sampler.getSamples().isEmpty()) {
+            return null;
+        }
+        try {
+            sampler.writeTimeline(timelineFile, current);
+        } catch (IOException e) {
+            System.err.println("Failed to write the resource timeline: " + e.getMessage());
+            timelineFile = null;
         }
+        return sampler.summarize(current, timelineFile);
     }
 
+    // Path of the HTML report, or null if it could not be written
+    private Path writeReport(String testName, StoredRun run, TestRun.State outcome, int exitCode,
+                             List<Path> summaryFiles, String notes) {
+        List<K6Summary> summaries = new ArrayList<>();
+        for (Path summaryFile : summaryFiles) {
+            // k6 writes no summary when it is stopped hard
+            if (Files.exists(summaryFile)) {
+                try {
+                    summaries.add(K6Summary.read(summaryFile));
+                } catch (IOException e) {
+                    System.err.println("Failed to read the k6 summary " + summaryFile + ": " + e.getMessage());
+                }
+            }
+        }
+        RunReport report = new RunReport(run, outcome, exitCode, summaries, notes);
+        String baseName = testName.replaceAll("[^a-zA-Z0-9-_]", "_") + "_report";
+        Path htmlFile = Paths.get(DOWNLOADS_PATH, baseName + ".html");
+        try {
+            long started = System.nanoTime();
+            report.writeHtml(htmlFile);
+            report.writeJson(Paths.get(DOWNLOADS_PATH, baseName + ".json"));
+            System.out.printf("Wrote report %s in %.1f ms%n", htmlFile, (System.nanoTime() - started) / 1e6);
+            return htmlFile;
+        } catch (IOException e) {
+            System.err.println("Failed to write the report: " + e.getMessage());
+            return null;
+        }
+    }
 
+    private String formatGeneratorCost(long cpuNanos, long totalRequests) {
+        if (cpuNanos < 0) {
+            return "k6 CPU time: not available on this platform";
+        }
+        double perRequest = totalRequests > 0 ? cpuNanos / 1000.0 / totalRequests : Double.NaN;
+        return String.format("k6 CPU time: %.1f s for %d requests (%s per request)", cpuNanos / 1e9, totalRequests,
+                Double.isNaN(perRequest) ? "n/a" : String.format("%.1f us", perRequest));
+    }
 
-}
\ No newline at end of file
+    private String formatResults(OutputPipeline pipeline) {
+        LineRingBuffer recentLines = pipeline.getRecentLines();
+        StringBuilder text = new StringBuilder();
+        if (recentLines.getTotalLines() > recentLines.size()) {
+            text.append("Showing the last ").append(recentLines.size()).append(" of ")
+                    .append(recentLines.getTotalLines()).append(" lines.\n");
+        }
+        List<Path> segments = pipeline.getLogSegments();
+        if (segments.size() == 1) {
+            text.append("Full log: ").append(segments.get(0)).append("\n");
+        } else if (!segments.isEmpty()) {
+            // The log rolls over into numbered segments; the oldest may have been deleted
+            text.append("Log segments, oldest first:\n");
+            for (Path segment : segments) {
+                text.append("  ").append(segment).append("\n");
+            }
+        }
+        if (text.length() > 0) {
+            text.append("\n");
+        }
+        for (String line : recentLines.snapshot()) {
+            text.append(line).append("\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the k6 process for one shard of a run. {@link LocalShardLauncher} runs it on
+ * this machine; a launcher for remote agents (ssh, a job API, ...) only has to return
+ * a Process whose output is the k6 console output and make the NDJSON metrics stream
+ * appear at {@link Shard#getMetricsFile()}, for example by running k6 with
+ * "--out json=/dev/stdout" and copying that stream to the file. The end-of-test summary
+ * at {@link Shard#getSummaryFile()} is optional; the report is complete without it.
+ */
+public interface ShardLauncher {
+
+    Process launch(Shard shard) throws IOException;
+
+    class Shard {
+        private final int index;
+        private final ShardPlan plan;
+        private final Path script;
+        private final Path metricsFile;
+        private final Path summaryFile;
+        private final Path workingDirectory;
+        private boolean thresholdsOnResult;
+
+        Shard(int index, ShardPlan plan, Path script, Path metricsFile, Path summaryFile, Path workingDirectory) {
+            this.index = index;
+            this.plan = plan;
+            this.script = script;
+            this.metricsFile = metricsFile;
+            this.summaryFile = summaryFile;
+            this.workingDirectory = workingDirectory;
+        }
+
+        public int getIndex() { return index; }
+        public int getShardCount() { return plan.getShardCount(); }
+        public String getSegment() { return plan.getSegment(index); }
+        public String getSequence() { return plan.getSequence(); }
+        public Path getScript() { return script; }
+        public Path getMetricsFile() { return metricsFile; }
+
+        // k6's end-of-test summary as JSON (--summary-export), read for the report
+        public Path getSummaryFile() { return summaryFile; }
+
+        // null to use the launcher's own working directory
+        public Path getWorkingDirectory() { return workingDirectory; }
+
+        // Thresholds are checked on the run's result rather than by k6, e.g. to leave out a warm-up
+        void checkThresholdsOnResult() {
+            thresholdsOnResult = true;
+        }
+
+        // Arguments after the k6 executable, e.g. "run --execution-segment 0:1/2 ..."
+        public List<String> k6Arguments(String metricsOutput, String summaryOutput) {
+            List<String> args = new ArrayList<>();
+            args.add("run");
+            if (plan.isSharded()) {
+                args.add("--execution-segment");
+                args.add(getSegment());
+                args.add("--execution-segment-sequence");
+                args.add(getSequence());
+                // The segment is not readable in the init context, where data feeds are split
+                args.add("--env");
+                args.add("EXECUTION_SEGMENT=" + getSegment());
+            }
+            // A shard only sees its slice, so thresholds are evaluated on the merged result
+            if (plan.isSharded() || thresholdsOnResult) {
+                args.add("--no-thresholds");
+            }
+            args.add("--summary-export");
+            args.add(summaryOutput);
+            args.add("--out");
+            args.add("json=" + metricsOutput);
+            args.add(script.toString());
+            return args;
+        }
+    }
+}
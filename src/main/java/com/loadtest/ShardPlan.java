@@ -0,0 +1,113 @@
+package com.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Splits one test into k6 execution segments, one per shard. Each shard runs the whole
+ * script with "--execution-segment", so VUs and arrival rates are divided between the
+ * processes by k6 itself. Weights allow bigger machines to take a larger slice.
+ */
+public class ShardPlan {
+    private final int[] weights;
+    private final int totalWeight;
+
+    private ShardPlan(int[] weights) {
+        this.weights = weights;
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        this.totalWeight = total;
+    }
+
+    public static ShardPlan single() {
+        return new ShardPlan(new int[]{1});
+    }
+
+    public static ShardPlan evenly(int shards) throws Exception {
+        if (shards <= 0) {
+            throw new Exception("Shards must be greater than zero.");
+        }
+        int[] weights = new int[shards];
+        Arrays.fill(weights, 1);
+        return new ShardPlan(weights);
+    }
+
+    public static ShardPlan weighted(int... weights) throws Exception {
+        if (weights.length == 0) {
+            throw new Exception("Shards must be greater than zero.");
+        }
+        for (int weight : weights) {
+            if (weight <= 0) {
+                throw new Exception("Shard weights must be greater than zero.");
+            }
+        }
+        return new ShardPlan(weights.clone());
+    }
+
+    // "4" runs four equal shards; "2,1,1" runs three shards with half the load on the first
+    public static ShardPlan parse(String text) throws Exception {
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()) {
+            return single();
+        }
+        String[] parts = trimmed.split("\\s*,\\s*");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                values[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new Exception("Shards must be a whole number or a list of weights, e.g. 4 or 2,1,1");
+            }
+        }
+        return parts.length == 1 ? evenly(values[0]) : weighted(values);
+    }
+
+    public int getShardCount() {
+        return weights.length;
+    }
+
+    public boolean isSharded() {
+        return weights.length > 1;
+    }
+
+    // Segment of one shard, e.g. "1/4:1/2"
+    public String getSegment(int shard) {
+        int start = 0;
+        for (int i = 0; i < shard; i++) {
+            start += weights[i];
+        }
+        return fraction(start) + ":" + fraction(start + weights[shard]);
+    }
+
+    // All boundaries, e.g. "0,1/4,1/2,3/4,1"; every shard passes the same sequence
+    public String getSequence() {
+        StringBuilder sequence = new StringBuilder("0");
+        int boundary = 0;
+        for (int weight : weights) {
+            boundary += weight;
+            sequence.append(',').append(fraction(boundary));
+        }
+        return sequence.toString();
+    }
+
+    private String fraction(int numerator) {
+        if (numerator == 0) {
+            return "0";
+        }
+        if (numerator == totalWeight) {
+            return "1";
+        }
+        int divisor = gcd(numerator, totalWeight);
+        return (numerator / divisor) + "/" + (totalWeight / divisor);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
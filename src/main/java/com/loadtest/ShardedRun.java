@@ -0,0 +1,268 @@
+package com.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One test run spread over the shards of a {@link ShardPlan}. Every shard gets its own
+ * k6 process, metrics stream, aggregator and CPU meter; the aggregators are merged
+ * bucket by bucket into one result, so percentiles come from the combined histogram
+ * rather than from averaging per-shard percentiles. A plan with one shard is a plain
+ * single-process run. An attached {@link ResourceSampler} watches all shards together.
+ */
+public class ShardedRun {
+    private final ShardLauncher launcher;
+    private final List<ShardLauncher.Shard> shards = new ArrayList<>();
+    private final List<MetricsAggregator> aggregators = new ArrayList<>();
+    private final List<MetricsStreamReader> readers = new ArrayList<>();
+    private final List<ProcessCpuMeter> cpuMeters = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    private final List<Thread> outputThreads = new ArrayList<>();
+    private final MetricsAggregator merged = new MetricsAggregator();
+    private final long cpuSampleIntervalMillis;
+    private ResourceSampler resourceSampler;
+    private boolean stopRequested;
+    private boolean thresholdsOnResult;
+
+    // Shard files are named "<baseName>[-shard-N].metrics.json" and ".summary.json" inside runDirectory
+    public ShardedRun(ShardPlan plan, ShardLauncher launcher, Path script, Path runDirectory, String baseName,
+                      long cpuSampleIntervalMillis) {
+        this.launcher = launcher;
+        this.cpuSampleIntervalMillis = cpuSampleIntervalMillis;
+        Path absoluteScript = script.toAbsolutePath();
+        for (int i = 0; i < plan.getShardCount(); i++) {
+            String shardName = plan.isSharded() ? baseName + "-shard-" + (i + 1) : baseName;
+            // Separate working directories keep files the shards' scripts write apart
+            Path workingDirectory = plan.isSharded() ? runDirectory.resolve(shardName) : null;
+            shards.add(new ShardLauncher.Shard(i, plan, absoluteScript,
+                    runDirectory.resolve(shardName + ".metrics.json"),
+                    runDirectory.resolve(shardName + ".summary.json"), workingDirectory));
+            aggregators.add(new MetricsAggregator());
+        }
+        thresholdsOnResult = plan.isSharded();
+    }
+
+    // Leaves the first seconds of every shard out of the result; k6 then skips its own
+    // threshold checks, which would include them. Call before start.
+    public void setWarmupSeconds(long warmupSeconds) {
+        for (MetricsAggregator aggregator : aggregators) {
+            aggregator.setWarmupSeconds(warmupSeconds);
+        }
+        if (warmupSeconds > 0) {
+            thresholdsOnResult = true;
+            for (ShardLauncher.Shard shard : shards) {
+                shard.checkThresholdsOnResult();
+            }
+        }
+    }
+
+    // Whether k6 skips its own thresholds, leaving them to ThresholdEvaluator on the merged result
+    public boolean isThresholdsOnResult() {
+        return thresholdsOnResult;
+    }
+
+    // Refuses thresholds the merged result cannot be checked against when k6 does not check
+    // them either, so they cannot pass unnoticed. Call after setWarmupSeconds, before start.
+    public void checkThresholds(List<String> thresholds) throws Exception {
+        if (!thresholdsOnResult) {
+            return;
+        }
+        for (String threshold : thresholds) {
+            String reason = ThresholdEvaluator.unsupportedReason(threshold);
+            if (reason != null) {
+                throw new Exception("Threshold '" + threshold + "' cannot be checked on a "
+                        + (shards.size() > 1 ? "sharded" : "warmed-up") + " run (" + reason
+                        + "). Remove it, or run it on one shard without warm-up so that k6 checks it.");
+            }
+        }
+    }
+
+    // Hands every completed second of every shard to the recorder; call before start
+    public void attachRecorder(RunRecorder recorder) {
+        for (MetricsAggregator aggregator : aggregators) {
+            recorder.attach(aggregator);
+        }
+    }
+
+    // Samples the k6 processes and the host once per second while the shards run; call before start
+    public void attachResourceSampler(ResourceSampler sampler) {
+        this.resourceSampler = sampler;
+    }
+
+    // Starts every shard and streams their console output into the pipeline
+    public void start(OutputPipeline pipeline) throws IOException {
+        try {
+            for (ShardLauncher.Shard shard : shards) {
+                Files.createDirectories(shard.getMetricsFile().getParent());
+                Files.deleteIfExists(shard.getMetricsFile());
+                Files.deleteIfExists(shard.getSummaryFile());
+
+                Process process = launcher.launch(shard);
+                synchronized (processes) {
+                    processes.add(process);
+                    if (stopRequested) {
+                        process.destroy();
+                    }
+                }
+
+                String suffix = shards.size() > 1 ? "-" + (shard.getIndex() + 1) : "";
+                MetricsStreamReader reader = new MetricsStreamReader(shard.getMetricsFile(), aggregators.get(shard.getIndex()));
+                reader.start("k6-metrics-reader" + suffix);
+                readers.add(reader);
+                cpuMeters.add(new ProcessCpuMeter(process.toHandle(), cpuSampleIntervalMillis));
+                if (resourceSampler != null) {
+                    resourceSampler.watch(process.toHandle());
+                }
+
+                String prefix = shards.size() > 1 ? "[shard " + (shard.getIndex() + 1) + "] " : "";
+                Thread output = new Thread(() -> {
+                    try {
+                        pipeline.consume(process.getInputStream(), prefix);
+                    } catch (IOException e) {
+                        System.err.println("Failed to read k6 output: " + e.getMessage());
+                    }
+                }, "k6-output" + suffix);
+                output.setDaemon(true);
+                output.start();
+                outputThreads.add(output);
+            }
+        } catch (IOException e) {
+            // Do not leave half a run behind
+            destroy();
+            readers.forEach(MetricsStreamReader::finish);
+            cpuMeters.forEach(ProcessCpuMeter::close);
+            if (resourceSampler != null) {
+                resourceSampler.close();
+            }
+            throw e;
+        }
+    }
+
+    // Waits for every shard and drains the metrics streams; returns the first non-zero exit code
+    public int waitFor() throws InterruptedException {
+        int exitCode = 0;
+        try {
+            for (int i = 0; i < processes.size(); i++) {
+                int shardExit = processes.get(i).waitFor();
+                System.out.println("k6 process" + (shards.size() > 1 ? " for shard " + (i + 1) : "")
+                        + " exited with code: " + shardExit);
+                if (exitCode == 0) {
+                    exitCode = shardExit;
+                }
+            }
+            for (Thread output : outputThreads) {
+                output.join();
+            }
+        } finally {
+            finish();
+        }
+        return exitCode;
+    }
+
+    private void finish() throws InterruptedException {
+        for (MetricsStreamReader reader : readers) {
+            reader.finish();
+        }
+        for (MetricsStreamReader reader : readers) {
+            reader.awaitCompletion(10, TimeUnit.SECONDS);
+        }
+        for (MetricsAggregator aggregator : aggregators) {
+            aggregator.flushSeconds();
+        }
+        for (ProcessCpuMeter cpuMeter : cpuMeters) {
+            cpuMeter.close();
+        }
+        if (resourceSampler != null) {
+            resourceSampler.close();
+        }
+    }
+
+    // Kills every shard, including any processes k6 started
+    public void destroy() {
+        for (Process process : processes) {
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.destroy();
+        }
+    }
+
+    // Asks every process tree to stop (SIGTERM, so k6 can end the test and write its summary)
+    // and kills whatever is still alive after the grace period. Does not block.
+    public void stop(long graceMillis) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        synchronized (processes) {
+            stopRequested = true;
+            for (Process process : processes) {
+                // Collect descendants first: they are re-parented once their parent exits
+                process.descendants().forEach(tree::add);
+                tree.add(process.toHandle());
+            }
+        }
+        tree.forEach(ProcessHandle::destroy);
+        CompletableFuture.runAsync(() -> {
+            for (ProcessHandle handle : tree) {
+                if (handle.isAlive()) {
+                    System.out.println("Killing process " + handle.pid() + " after " + graceMillis + " ms");
+                    handle.destroyForcibly();
+                }
+            }
+        }, CompletableFuture.delayedExecutor(graceMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // Merged view of all shards, rebuilt on each call
+    public synchronized MetricsAggregator getMergedMetrics() {
+        if (aggregators.size() == 1) {
+            return aggregators.get(0);
+        }
+        merged.reset();
+        for (MetricsAggregator aggregator : aggregators) {
+            merged.merge(aggregator);
+        }
+        return merged;
+    }
+
+    public synchronized LiveMetrics snapshot() {
+        return getMergedMetrics().snapshot();
+    }
+
+    // Merges the shards once for all windows, as merging is what a check costs
+    public synchronized void fillWindows(MetricsAggregator.Window... windows) {
+        getMergedMetrics().fillWindows(windows);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public List<Path> getSummaryFiles() {
+        List<Path> files = new ArrayList<>();
+        for (ShardLauncher.Shard shard : shards) {
+            files.add(shard.getSummaryFile());
+        }
+        return files;
+    }
+
+    public List<Path> getMetricsFiles() {
+        List<Path> files = new ArrayList<>();
+        for (ShardLauncher.Shard shard : shards) {
+            files.add(shard.getMetricsFile());
+        }
+        return files;
+    }
+
+    // Sum over all shards, or -1 if no shard reported CPU time
+    public long getCpuNanos() {
+        long total = -1;
+        for (ProcessCpuMeter cpuMeter : cpuMeters) {
+            long cpuNanos = cpuMeter.getCpuNanos();
+            if (cpuNanos >= 0) {
+                total = Math.max(total, 0) + cpuNanos;
+            }
+        }
+        return total;
+    }
+}
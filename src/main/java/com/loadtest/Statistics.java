@@ -0,0 +1,186 @@
+package com.loadtest;
+
+/**
+ * Significance tests used to compare runs. All p-values are one-sided: the probability
+ * of a difference at least this large in the tested direction if there were none.
+ */
+final class Statistics {
+
+    private Statistics() {
+    }
+
+    // Standard normal CDF, accurate to about 1e-7
+    static double normalCdf(double z) {
+        return 0.5 * erfc(-z / Math.sqrt(2));
+    }
+
+    // Complementary error function (Numerical Recipes, Chebyshev fit)
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+
+    // Student's t CDF with df degrees of freedom
+    static double studentTCdf(double t, double df) {
+        if (Double.isInfinite(df) || df > 1e7) {
+            return normalCdf(t);
+        }
+        double tail = 0.5 * regularizedIncompleteBeta(df / (df + t * t), df / 2, 0.5);
+        return t > 0 ? 1 - tail : tail;
+    }
+
+    private static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    // Lentz's method for the incomplete beta continued fraction
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double numerator = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + numerator * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            h *= d * c;
+
+            numerator = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + numerator * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-12) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    // Lanczos approximation
+    private static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /**
+     * Mann-Whitney U test on two histograms with the same bucket layout, with the
+     * normal approximation and tie correction (each bucket is one tie group).
+     * Returns {p-value that the candidate is stochastically larger, P(candidate > baseline)}.
+     * Runs in time proportional to the number of buckets, not of samples.
+     */
+    static double[] mannWhitneyGreater(LatencyHistogram baseline, LatencyHistogram candidate) {
+        double n1 = baseline.getTotalCount();
+        double n2 = candidate.getTotalCount();
+        if (n1 == 0 || n2 == 0) {
+            return new double[]{Double.NaN, Double.NaN};
+        }
+        double total = n1 + n2;
+        double seen = 0;
+        double candidateRankSum = 0;
+        double tieTerm = 0;
+        int buckets = Math.min(baseline.getBucketCount(), candidate.getBucketCount());
+        for (int i = 0; i < buckets; i++) {
+            double a = baseline.getCountAtIndex(i);
+            double b = candidate.getCountAtIndex(i);
+            double tied = a + b;
+            if (tied == 0) {
+                continue;
+            }
+            // Every value in the bucket gets the average of the ranks the bucket spans
+            candidateRankSum += b * (seen + (tied + 1) / 2);
+            tieTerm += tied * tied * tied - tied;
+            seen += tied;
+        }
+        double u = candidateRankSum - n2 * (n2 + 1) / 2;
+        double mean = n1 * n2 / 2;
+        double variance = n1 * n2 / 12 * ((total + 1) - tieTerm / (total * (total - 1)));
+        double superiority = u / (n1 * n2);
+        if (variance <= 0) {
+            return new double[]{1.0, superiority};
+        }
+        double z = (u - mean - 0.5) / Math.sqrt(variance);
+        return new double[]{1 - normalCdf(z), superiority};
+    }
+
+    /**
+     * Welch's t-test for a lower candidate mean.
+     * Returns the p-value, or NaN with fewer than two values on either side.
+     */
+    static double welchLess(double[] baseline, double[] candidate) {
+        if (baseline.length < 2 || candidate.length < 2) {
+            return Double.NaN;
+        }
+        double m1 = mean(baseline);
+        double m2 = mean(candidate);
+        double v1 = variance(baseline, m1) / baseline.length;
+        double v2 = variance(candidate, m2) / candidate.length;
+        if (v1 + v2 == 0) {
+            return m2 < m1 ? 0 : 1;
+        }
+        double t = (m2 - m1) / Math.sqrt(v1 + v2);
+        double df = (v1 + v2) * (v1 + v2)
+                / (v1 * v1 / (baseline.length - 1) + v2 * v2 / (candidate.length - 1));
+        return studentTCdf(t, df);
+    }
+
+    // Two-proportion z-test for a higher candidate proportion; returns the p-value
+    static double proportionGreater(double baselineHits, double baselineTotal,
+                                    double candidateHits, double candidateTotal) {
+        if (baselineTotal <= 0 || candidateTotal <= 0) {
+            return Double.NaN;
+        }
+        double p1 = baselineHits / baselineTotal;
+        double p2 = candidateHits / candidateTotal;
+        double pooled = (baselineHits + candidateHits) / (baselineTotal + candidateTotal);
+        double se = Math.sqrt(pooled * (1 - pooled) * (1 / baselineTotal + 1 / candidateTotal));
+        if (se == 0) {
+            return p2 > p1 ? 0 : 1;
+        }
+        return 1 - normalCdf((p2 - p1) / se);
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return values.length == 0 ? Double.NaN : sum / values.length;
+    }
+
+    private static double variance(double[] values, double mean) {
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.length - 1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.loadtest;
+
+import java.util.List;
+
+/**
+ * A run loaded back from the {@link ResultsStore}: its summary, threshold results,
+ * whole-run totals and histograms, and per-second series. Series arrays are indexed by
+ * second and share one length; latencies are in milliseconds.
+ */
+public class StoredRun {
+    private final RunSummary summary;
+    private final List<ThresholdEvaluator.Result> thresholds;
+    private final LatencyHistogram durations;
+    private final LatencyHistogram responseTimes;
+    private final long elapsedSeconds;
+    private final long failedSamples;
+    private final long successes;
+    private final long successSamples;
+    private final long totalErrors;
+    private final long[] seconds;
+    private final long[] requests;
+    private final long[] failed;
+    private final long[] errors;
+    private final long[] droppedIterations;
+    private final double[] p50Millis;
+    private final double[] p95Millis;
+    private final double[] p99Millis;
+
+    StoredRun(RunSummary summary, List<ThresholdEvaluator.Result> thresholds, LatencyHistogram durations,
+              LatencyHistogram responseTimes, long elapsedSeconds, long failedSamples, long successes,
+              long successSamples, long totalErrors, long[] seconds, long[] requests, long[] failed, long[] errors,
+              long[] droppedIterations, double[] p50Millis, double[] p95Millis, double[] p99Millis) {
+        this.summary = summary;
+        this.thresholds = thresholds;
+        this.durations = durations;
+        this.responseTimes = responseTimes;
+        this.elapsedSeconds = elapsedSeconds;
+        this.failedSamples = failedSamples;
+        this.successes = successes;
+        this.successSamples = successSamples;
+        this.totalErrors = totalErrors;
+        this.seconds = seconds;
+        this.requests = requests;
+        this.failed = failed;
+        this.errors = errors;
+        this.droppedIterations = droppedIterations;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    public RunSummary getSummary() { return summary; }
+    public List<ThresholdEvaluator.Result> getThresholds() { return thresholds; }
+
+    // http_req_duration over the whole run, in microseconds
+    public LatencyHistogram getDurations() { return durations; }
+
+    // The script's response_times Trend; empty for lean scripts
+    public LatencyHistogram getResponseTimes() { return responseTimes; }
+
+    public long getElapsedSeconds() { return elapsedSeconds; }
+
+    // http_req_failed samples, of which getSummary().getFailedRequests() were failures
+    public long getFailedSamples() { return failedSamples; }
+
+    // success_rate samples and how many of them were successes
+    public long getSuccesses() { return successes; }
+    public long getSuccessSamples() { return successSamples; }
+
+    // error_counter total
+    public long getTotalErrors() { return totalErrors; }
+
+    public int getSecondCount() { return seconds.length; }
+
+    // Epoch seconds; gaps mean k6 reported nothing in that second
+    public long[] getSeconds() { return seconds; }
+    public long[] getRequests() { return requests; }
+    public long[] getFailed() { return failed; }
+    public long[] getErrors() { return errors; }
+    public long[] getDroppedIterations() { return droppedIterations; }
+    public double[] getP50Millis() { return p50Millis; }
+    public double[] getP95Millis() { return p95Millis; }
+    public double[] getP99Millis() { return p99Millis; }
+}
@@ -0,0 +1,118 @@
+package com.loadtest;
+
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * Handle for one run submitted to a {@link RunManager}. Tracks its state and lets the
+ * caller cancel it, whether it is still queued or already running.
+ */
+public class TestRun {
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+    private final String name;
+    private final Instant queuedAt = Instant.now();
+    private final RunManager manager;
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Throwable error;
+    private volatile boolean cancelRequested;
+    private Runnable cancelHook;
+    private Future<?> future;
+
+    TestRun(long id, String name, RunManager manager) {
+        this.id = id;
+        this.name = name;
+        this.manager = manager;
+    }
+
+    public long getId() { return id; }
+    public String getName() { return name; }
+    public State getState() { return state; }
+    public Instant getQueuedAt() { return queuedAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+
+    // Set when the run failed with an exception rather than a failed test
+    public Throwable getError() { return error; }
+
+    public boolean isCancelRequested() { return cancelRequested; }
+
+    // Registers what stops the running work, e.g. killing the k6 processes.
+    // Runs straight away if the run was cancelled before the hook was attached.
+    public void onCancel(Runnable hook) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelHook = hook;
+            cancelled = cancelRequested;
+        }
+        if (cancelled) {
+            hook.run();
+        }
+    }
+
+    // Removes a queued run from the queue, or stops a running one; returns false if already finished
+    public boolean cancel() {
+        Runnable hook;
+        boolean queued;
+        synchronized (this) {
+            if (state.isFinished() || cancelRequested) {
+                return false;
+            }
+            cancelRequested = true;
+            hook = cancelHook;
+            queued = state == State.QUEUED;
+            if (queued && future != null) {
+                future.cancel(false);
+            }
+        }
+        if (queued) {
+            finish(State.CANCELLED, null);
+        } else if (hook != null) {
+            hook.run();
+        }
+        return true;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    // Returns false if the run was cancelled while it waited in the queue
+    boolean start() {
+        synchronized (this) {
+            if (state != State.QUEUED || cancelRequested) {
+                return false;
+            }
+            startedAt = Instant.now();
+            state = State.RUNNING;
+        }
+        manager.fireStateChanged(this);
+        return true;
+    }
+
+    void finish(State finalState, Throwable failure) {
+        synchronized (this) {
+            if (state.isFinished()) {
+                return;
+            }
+            error = failure;
+            finishedAt = Instant.now();
+            state = cancelRequested ? State.CANCELLED : finalState;
+        }
+        manager.fireStateChanged(this);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + name + " (" + state.name().toLowerCase() + ")";
+    }
+}
@@ -0,0 +1,193 @@
+package com.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates k6 threshold expressions ("p(95)<500", "rate>0.95", "count<10") against
+ * an aggregator. Sharded runs use this instead of k6's own thresholds, because each
+ * k6 process only sees its own slice of the traffic.
+ *
+ * Tagged sub-metrics such as "http_req_duration{name:login}" and metrics the
+ * aggregator does not track are reported as not evaluated; runs that rely on this class
+ * refuse to start with them (see {@link ShardedRun#checkThresholds(List)}).
+ */
+public class ThresholdEvaluator {
+    static final Pattern EXPRESSION = Pattern.compile(
+            "\\s*(avg|min|max|med|count|rate|p\\((\\d+(?:\\.\\d+)?)\\))\\s*(<=|>=|===|==|!=|<|>)\\s*(-?\\d+(?:\\.\\d+)?)\\s*");
+    private static final Pattern SCRIPT_THRESHOLD = Pattern.compile("^\\s*['\"]([^'\"]+)['\"]\\s*:\\s*\\[(.*)\\],?\\s*$");
+    private static final Pattern QUOTED = Pattern.compile("'([^']*)'|\"([^\"]*)\"");
+
+    public static class Result {
+        private final String metric;
+        private final String expression;
+        private final double actual;
+        private final boolean evaluated;
+        private final boolean passed;
+        private final String note;
+
+        Result(String metric, String expression, double actual, boolean evaluated, boolean passed, String note) {
+            this.metric = metric;
+            this.expression = expression;
+            this.actual = actual;
+            this.evaluated = evaluated;
+            this.passed = passed;
+            this.note = note;
+        }
+
+        public String getMetric() { return metric; }
+        public String getExpression() { return expression; }
+        public double getActual() { return actual; }
+        public boolean isEvaluated() { return evaluated; }
+        public boolean isPassed() { return passed; }
+
+        // Why the threshold was not evaluated, otherwise null
+        public String getNote() { return note; }
+
+        @Override
+        public String toString() {
+            if (!evaluated) {
+                return "SKIP " + metric + " " + expression + " (" + note + ")";
+            }
+            return (passed ? "PASS " : "FAIL ") + metric + " " + expression
+                    + String.format(Locale.ROOT, " (actual %.4g)", actual);
+        }
+    }
+
+    // Thresholds in the "metric: expression" form used by the UI list
+    public List<Result> evaluate(List<String> thresholds, MetricsAggregator aggregator) {
+        List<Result> results = new ArrayList<>();
+        for (String threshold : thresholds) {
+            int separator = threshold.indexOf(": ");
+            if (separator < 0) {
+                continue;
+            }
+            results.add(evaluate(threshold.substring(0, separator).trim(), threshold.substring(separator + 2).trim(), aggregator));
+        }
+        return results;
+    }
+
+    public Result evaluate(String metricName, String expression, MetricsAggregator aggregator) {
+        K6Metric metric = K6Metric.fromName(metricName);
+        if (metric == null) {
+            return new Result(metricName, expression, Double.NaN, false, false, "metric not collected");
+        }
+        Matcher matcher = EXPRESSION.matcher(expression);
+        if (!matcher.matches()) {
+            return new Result(metricName, expression, Double.NaN, false, false, "unsupported expression");
+        }
+        double actual = aggregate(metric, matcher.group(1), matcher.group(2), aggregator);
+        if (Double.isNaN(actual)) {
+            return new Result(metricName, expression, actual, false, false, "no samples for " + matcher.group(1));
+        }
+        boolean passed = compare(actual, matcher.group(3), Double.parseDouble(matcher.group(4)));
+        return new Result(metricName, expression, actual, true, passed, null);
+    }
+
+    private double aggregate(K6Metric metric, String aggregation, String percentile, MetricsAggregator aggregator) {
+        LatencyHistogram histogram = aggregator.getTotalHistogram(metric);
+        if (histogram != null) {
+            if (histogram.getTotalCount() == 0) {
+                return Double.NaN;
+            }
+            // Trend values are recorded in microseconds; thresholds are written in milliseconds
+            switch (aggregation) {
+                case "avg":
+                    return histogram.getMean() / 1000.0;
+                case "min":
+                    return MetricsAggregator.toMillis(histogram.getMin());
+                case "max":
+                    return MetricsAggregator.toMillis(histogram.getMax());
+                case "med":
+                    return MetricsAggregator.toMillis(histogram.valueAtPercentile(50));
+                case "count":
+                    return histogram.getTotalCount();
+                default:
+                    return percentile != null
+                            ? MetricsAggregator.toMillis(histogram.valueAtPercentile(Double.parseDouble(percentile)))
+                            : Double.NaN;
+            }
+        }
+        double count = aggregator.getTotalCount(metric);
+        if (!Double.isNaN(count)) {
+            // Counters: "count" is the total, "rate" is per second of the run
+            long seconds = aggregator.getElapsedSeconds();
+            if ("count".equals(aggregation)) {
+                return count;
+            }
+            return "rate".equals(aggregation) && seconds > 0 ? count / seconds : Double.NaN;
+        }
+        return "rate".equals(aggregation) ? aggregator.getTotalRate(metric) : Double.NaN;
+    }
+
+    static boolean compare(double actual, String operator, double limit) {
+        switch (operator) {
+            case "<":
+                return actual < limit;
+            case "<=":
+                return actual <= limit;
+            case ">":
+                return actual > limit;
+            case ">=":
+                return actual >= limit;
+            case "!=":
+                return actual != limit;
+            default:
+                return actual == limit;
+        }
+    }
+
+    // Why a "metric: expression" threshold can never be evaluated here, whatever the run
+    // records, or null if it can; e.g. tagged sub-metrics and metrics that are not tracked
+    public static String unsupportedReason(String threshold) {
+        int separator = threshold.indexOf(": ");
+        if (separator < 0) {
+            return "not in \"metric: expression\" form";
+        }
+        if (K6Metric.fromName(threshold.substring(0, separator).trim()) == null) {
+            return "metric not collected";
+        }
+        if (!EXPRESSION.matcher(threshold.substring(separator + 2).trim()).matches()) {
+            return "unsupported expression";
+        }
+        return null;
+    }
+
+    public static boolean allPassed(List<Result> results) {
+        for (Result result : results) {
+            if (result.isEvaluated() && !result.isPassed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads the "export let thresholds = { ... };" block of a script, so edits made to the
+    // generated script are honoured. Returns thresholds in "metric: expression" form.
+    public static List<String> fromScript(String script) {
+        List<String> thresholds = new ArrayList<>();
+        boolean inBlock = false;
+        for (String line : script.split("\n")) {
+            if (!inBlock) {
+                inBlock = line.contains("thresholds = {");
+                continue;
+            }
+            if (line.trim().startsWith("}")) {
+                break;
+            }
+            Matcher matcher = SCRIPT_THRESHOLD.matcher(line);
+            if (!matcher.matches()) {
+                continue;
+            }
+            Matcher quoted = QUOTED.matcher(matcher.group(2));
+            while (quoted.find()) {
+                String expression = quoted.group(1) != null ? quoted.group(1) : quoted.group(2);
+                thresholds.add(matcher.group(1) + ": " + expression);
+            }
+        }
+        return thresholds;
+    }
+}
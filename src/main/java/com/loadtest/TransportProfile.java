@@ -0,0 +1,59 @@
+package com.loadtest;
+
+import java.util.Locale;
+
+/**
+ * How k6 opens and reuses connections, resolves names and negotiates TLS, so a test can
+ * match the clients it stands in for. Each profile becomes a few lines of the script's
+ * options; see ScriptService for the exact settings.
+ */
+public enum TransportProfile {
+    DEFAULT("k6 defaults", "default"),
+    // Connections kept alive across iterations, at most 6 per host like a browser
+    BROWSER("Keep-alive, browser-like", "browser"),
+    // A new TCP (and TLS) connection for every request
+    NO_REUSE("No connection reuse", "no-reuse"),
+    // Connections are reused within an iteration only, like a new client per iteration
+    NEW_CLIENT_PER_ITERATION("New connection per iteration", "per-iteration"),
+    // Batched requests share one connection instead of opening one each
+    HTTP2("HTTP/2 multiplexed", "http2"),
+    // Names are resolved once every 5 minutes and spread over all returned addresses
+    DNS_CACHE("DNS cache (5 min TTL, round robin)", "dns-cache"),
+    // Every new connection resolves the name again
+    NO_DNS_CACHE("No DNS cache", "no-dns-cache"),
+    // Reconnects every iteration, so each handshake can resume the VU's TLS session
+    TLS_RESUMPTION("TLS session resumption", "tls-resumption");
+
+    private final String label;
+    private final String cliName;
+
+    TransportProfile(String label, String cliName) {
+        this.label = label;
+        this.cliName = cliName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getCliName() {
+        return cliName;
+    }
+
+    public static TransportProfile fromName(String name) throws Exception {
+        String wanted = name.trim().toLowerCase(Locale.ROOT);
+        StringBuilder names = new StringBuilder();
+        for (TransportProfile profile : values()) {
+            if (profile.cliName.equals(wanted)) {
+                return profile;
+            }
+            names.append(names.length() == 0 ? "" : ", ").append(profile.cliName);
+        }
+        throw new Exception("Unknown transport profile '" + name + "'. Use " + names + ".");
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
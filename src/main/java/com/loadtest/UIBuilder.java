@@ -1,16 +1,31 @@
 package com.loadtest;
 
 import javafx.geometry.Insets;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 
 public class UIBuilder {
     private TextArea curlCommandArea, generatedScriptArea;
     private TextField durationField, virtualUsersField, testNameField;
+    private TextField rateField, preAllocatedVusField, maxVusField, stagesField, thinkTimeField, shardsField, toleranceField;
+    private TextField calibrationTargetField, capacitySearchField, dataFeedField, abortField;
+    private ComboBox<LoadProfile.Executor> executorComboBox;
+    private CheckBox leanModeCheckBox;
+    private ComboBox<TransportProfile> transportComboBox;
     private ProgressBar progressBar;
     private Label statusLabel;
     private ListView<String> thresholdListView;
-    private Button generateButton, saveButton, runButton;
+    private Button generateButton, importButton, saveButton, historyButton, runButton, cancelButton, scheduleButton;
+    private Button calibrateButton, capacityButton;
+    private TextField scheduleTimeField;
+    private CheckBox repeatDailyCheckBox;
+    private Label rpsLabel, p50Label, p95Label, p99Label, requestsLabel, failedLabel, errorsLabel, droppedLabel;
+    // Built on first use to keep startup short: see ensureAdvancedOptions and ensureLiveMetricsPanel
+    private TitledPane advancedPane;
+    private GridPane advancedGrid;
+    private VBox bottomPanel;
+    private HBox liveMetricsPanel;
 
     public BorderPane createMainLayout() {
         BorderPane mainLayout = new BorderPane();
@@ -22,8 +37,8 @@ public class UIBuilder {
         // Create right panel (output)
         VBox rightPanel = createOutputPanel();
 
-        // Create bottom panel (execution)
-        HBox bottomPanel = createExecutionPanel();
+        // Create bottom panel (execution; live metrics are added when the first run starts)
+        bottomPanel = new VBox(5, createExecutionPanel());
 
         // Add panels to main layout
         mainLayout.setLeft(leftPanel);
@@ -42,7 +57,9 @@ public class UIBuilder {
         curlCommandArea = new TextArea();
         curlCommandArea.setPrefHeight(200);
         curlCommandArea.setWrapText(true);
-        curlCommandArea.setPromptText("Paste your cURL command here...");
+        curlCommandArea.setPromptText("Paste your cURL command here...\n"
+                + "Several commands become one scenario: commands in the same block run in parallel,\n"
+                + "a blank line starts the next step.");
 
         // Test configuration
         GridPane configGrid = new GridPane();
@@ -58,12 +75,61 @@ public class UIBuilder {
         Label vusLabel = new Label("Virtual Users:");
         virtualUsersField = new TextField("50");
 
+        // Load model: closed-loop VUs or an open arrival-rate model
+        Label executorLabel = new Label("Load Model:");
+        executorComboBox = new ComboBox<>();
+        executorComboBox.getItems().addAll(LoadProfile.Executor.values());
+        executorComboBox.setValue(LoadProfile.Executor.CLOSED_LOOP);
+
+        Label rateLabel = new Label("Target RPS:");
+        rateField = new TextField("100");
+        rateField.setPromptText("Iterations per second (start rate when ramping)");
+
+        Label preAllocatedLabel = new Label("Pre-allocated VUs:");
+        preAllocatedVusField = new TextField("50");
+
+        Label maxVusLabel = new Label("Max VUs:");
+        maxVusField = new TextField("200");
+
+        Label stagesLabel = new Label("Stages (duration:RPS):");
+        stagesField = new TextField("30s:100, 1m:500, 30s:0");
+
+        Label thinkTimeLabel = new Label("Think Time (s):");
+        thinkTimeField = new TextField();
+        thinkTimeField.setPromptText("Default: 1 for VUs, 0 for arrival rate");
+
         configGrid.add(testNameLabel, 0, 0);
         configGrid.add(testNameField, 1, 0);
-        configGrid.add(durationLabel, 0, 1);
-        configGrid.add(durationField, 1, 1);
-        configGrid.add(vusLabel, 0, 2);
-        configGrid.add(virtualUsersField, 1, 2);
+        configGrid.add(executorLabel, 0, 1);
+        configGrid.add(executorComboBox, 1, 1);
+        configGrid.add(durationLabel, 0, 2);
+        configGrid.add(durationField, 1, 2);
+        configGrid.add(vusLabel, 0, 3);
+        configGrid.add(virtualUsersField, 1, 3);
+        configGrid.add(rateLabel, 0, 4);
+        configGrid.add(rateField, 1, 4);
+        configGrid.add(preAllocatedLabel, 0, 5);
+        configGrid.add(preAllocatedVusField, 1, 5);
+        configGrid.add(maxVusLabel, 0, 6);
+        configGrid.add(maxVusField, 1, 6);
+        configGrid.add(stagesLabel, 0, 7);
+        configGrid.add(stagesField, 1, 7);
+        configGrid.add(thinkTimeLabel, 0, 8);
+        configGrid.add(thinkTimeField, 1, 8);
+
+        // Only show the fields that apply to the selected model
+        Runnable updateExecutorFields = () -> {
+            LoadProfile.Executor executor = executorComboBox.getValue();
+            boolean closed = executor == LoadProfile.Executor.CLOSED_LOOP;
+            boolean ramping = executor == LoadProfile.Executor.RAMPING_ARRIVAL_RATE;
+            setRowVisible(!ramping, durationLabel, durationField);
+            setRowVisible(closed, vusLabel, virtualUsersField);
+            setRowVisible(!closed, rateLabel, rateField, preAllocatedLabel, preAllocatedVusField, maxVusLabel, maxVusField);
+            setRowVisible(ramping, stagesLabel, stagesField);
+            rateLabel.setText(ramping ? "Start RPS:" : "Target RPS:");
+        };
+        executorComboBox.setOnAction(e -> updateExecutorFields.run());
+        updateExecutorFields.run();
 
         // Thresholds section
         Label thresholdsLabel = new Label("Performance Thresholds:");
@@ -104,23 +170,109 @@ public class UIBuilder {
         generateButton = new Button("Generate k6 Script");
         generateButton.setPrefWidth(200);
 
+        // Button to build one scenario from a HAR capture or a file of cURL commands
+        importButton = new Button("Import HAR / cURL List...");
+        importButton.setPrefWidth(200);
+        HBox generateBox = new HBox(10, generateButton, importButton);
+
+        // Lean mode, sharding and regression tolerance; collapsed at startup
+        advancedPane = new TitledPane("Advanced Options", null);
+        advancedPane.setExpanded(false);
+        advancedPane.expandedProperty().addListener((obs, wasExpanded, expanded) -> {
+            if (expanded) {
+                ensureAdvancedOptions();
+            }
+        });
+
         panel.getChildren().addAll(
                 curlLabel, curlCommandArea,
                 new Separator(),
                 new Label("Test Configuration:"),
                 configGrid,
+                advancedPane,
                 new Separator(),
                 thresholdsLabel,
                 thresholdInputBox,
                 thresholdListView,
                 removeThresholdButton,
                 new Separator(),
-                generateButton
+                generateBox
         );
 
         return panel;
     }
 
+    private void ensureAdvancedOptions() {
+        if (advancedGrid != null) {
+            return;
+        }
+        advancedGrid = new GridPane();
+        advancedGrid.setHgap(10);
+        advancedGrid.setVgap(10);
+
+        leanModeCheckBox = new CheckBox("Lean mode (high RPS: discard bodies, one check, sampled error logs)");
+        advancedGrid.add(leanModeCheckBox, 0, 0, 2, 1);
+
+        // More than one shard splits the run over several k6 processes
+        Label shardsLabel = new Label("Shards (k6 processes):");
+        shardsField = new TextField("1");
+        shardsField.setPromptText("e.g. 4, or weights like 2,1,1");
+        advancedGrid.add(shardsLabel, 0, 1);
+        advancedGrid.add(shardsField, 1, 1);
+
+        // Only used when the test has a baseline run, set from the run history
+        Label toleranceLabel = new Label("Regression tolerance (%):");
+        toleranceField = new TextField(String.valueOf((int) RegressionTolerance.DEFAULT_LATENCY_PERCENT));
+        toleranceField.setPromptText("e.g. 10, or latency=10, throughput=5, errors=1, alpha=0.01");
+        advancedGrid.add(toleranceLabel, 0, 2);
+        advancedGrid.add(toleranceField, 1, 2);
+
+        // What the built-in target server does during a calibration run
+        Label calibrationLabel = new Label("Calibration target:");
+        calibrationTargetField = new TextField(CalibrationTarget.DEFAULT);
+        calibrationTargetField.setPromptText("e.g. latency=lognormal:20:0.5, errors=1, payload=1024, pause=500ms/10s");
+        advancedGrid.add(calibrationLabel, 0, 3);
+        advancedGrid.add(calibrationTargetField, 1, 3);
+
+        // Probes of the capacity search start at the target RPS and use the VU pool above
+        Label capacityLabel = new Label("Capacity search:");
+        capacitySearchField = new TextField(CapacityFinder.Settings.DEFAULT);
+        capacitySearchField.setPromptText("max RPS, probe length, warm-up, precision (%), probe budget");
+        advancedGrid.add(capacityLabel, 0, 4);
+        advancedGrid.add(capacitySearchField, 1, 4);
+
+        // CSV or JSON rows for {{column}} placeholders in the URL, headers and body
+        Label dataFeedLabel = new Label("Data feed:");
+        dataFeedField = new TextField();
+        dataFeedField.setPromptText("e.g. " + DataFeed.EXAMPLE);
+        advancedGrid.add(dataFeedLabel, 0, 5);
+        advancedGrid.add(dataFeedField, 1, 5);
+
+        // Connection reuse, HTTP/2, DNS and TLS settings of the generated script
+        Label transportLabel = new Label("Transport:");
+        transportComboBox = new ComboBox<>();
+        transportComboBox.getItems().addAll(TransportProfile.values());
+        transportComboBox.setValue(TransportProfile.DEFAULT);
+        advancedGrid.add(transportLabel, 0, 6);
+        advancedGrid.add(transportComboBox, 1, 6);
+
+        // Sliding windows over which the rate and latency thresholds may stop a run early
+        Label abortLabel = new Label("Early abort:");
+        abortField = new TextField(AbortController.Settings.DEFAULT);
+        abortField.setPromptText("error and latency windows, how long a breach lasts, grace period; or off");
+        advancedGrid.add(abortLabel, 0, 7);
+        advancedGrid.add(abortField, 1, 7);
+
+        advancedPane.setContent(advancedGrid);
+    }
+
+    private static void setRowVisible(boolean visible, Node... nodes) {
+        for (Node node : nodes) {
+            node.setVisible(visible);
+            node.setManaged(visible);
+        }
+    }
+
     private VBox createOutputPanel() {
         VBox panel = new VBox(10);
         panel.setPadding(new Insets(10));
@@ -135,7 +287,15 @@ public class UIBuilder {
         saveButton = new Button("Save Script");
         saveButton.setPrefWidth(150);
 
-        panel.getChildren().addAll(scriptLabel, generatedScriptArea, saveButton);
+        historyButton = new Button("Run History");
+        historyButton.setPrefWidth(150);
+
+        // Runs the load profile against the built-in target to measure the generator itself
+        calibrateButton = new Button("Calibrate");
+        calibrateButton.setPrefWidth(150);
+
+        panel.getChildren().addAll(scriptLabel, generatedScriptArea,
+                new HBox(10, saveButton, historyButton, calibrateButton));
         return panel;
     }
 
@@ -146,23 +306,105 @@ public class UIBuilder {
         runButton = new Button("Run Test");
         runButton.setPrefWidth(150);
 
+        cancelButton = new Button("Cancel");
+
+        // Searches for the highest arrival rate that still meets the thresholds
+        capacityButton = new Button("Find Capacity");
+
+        // Scheduled runs start at the next occurrence of the given time
+        scheduleTimeField = new TextField();
+        scheduleTimeField.setPromptText("HH:mm");
+        scheduleTimeField.setPrefWidth(70);
+        repeatDailyCheckBox = new CheckBox("Daily");
+        scheduleButton = new Button("Schedule");
+
         progressBar = new ProgressBar(0);
         progressBar.setPrefWidth(300);
 
         statusLabel = new Label("Ready");
 
-        panel.getChildren().addAll(runButton, progressBar, statusLabel);
+        panel.getChildren().addAll(runButton, cancelButton, capacityButton, scheduleTimeField, repeatDailyCheckBox, scheduleButton,
+                progressBar, statusLabel);
         return panel;
     }
 
+    private void ensureLiveMetricsPanel() {
+        if (liveMetricsPanel != null) {
+            return;
+        }
+        HBox panel = new HBox(20);
+        panel.setPadding(new Insets(0, 10, 10, 10));
+
+        rpsLabel = new Label();
+        p50Label = new Label();
+        p95Label = new Label();
+        p99Label = new Label();
+        requestsLabel = new Label();
+        failedLabel = new Label();
+        errorsLabel = new Label();
+        droppedLabel = new Label();
+
+        panel.getChildren().addAll(new Label("Live:"), rpsLabel, p50Label, p95Label, p99Label,
+                requestsLabel, failedLabel, errorsLabel, droppedLabel);
+        liveMetricsPanel = panel;
+        bottomPanel.getChildren().add(panel);
+    }
+
+    // Must be called on the FX thread; null clears the panel
+    public void showLiveMetrics(LiveMetrics metrics) {
+        ensureLiveMetricsPanel();
+        if (metrics == null) {
+            rpsLabel.setText("RPS: -");
+            p50Label.setText("p50: -");
+            p95Label.setText("p95: -");
+            p99Label.setText("p99: -");
+            requestsLabel.setText("Requests: -");
+            failedLabel.setText("Failed: -");
+            errorsLabel.setText("Errors: -");
+            droppedLabel.setText("Dropped: -");
+            return;
+        }
+        rpsLabel.setText(String.format("RPS: %.1f", metrics.getRequestsPerSecond()));
+        p50Label.setText(String.format("p50: %.1f ms", metrics.getP50Millis()));
+        p95Label.setText(String.format("p95: %.1f ms", metrics.getP95Millis()));
+        p99Label.setText(String.format("p99: %.1f ms", metrics.getP99Millis()));
+        requestsLabel.setText("Requests: " + metrics.getTotalRequests());
+        failedLabel.setText(String.format("Failed: %.2f%%", metrics.getFailureRate() * 100));
+        errorsLabel.setText("Errors: " + metrics.getErrorCount());
+        droppedLabel.setText("Dropped: " + metrics.getDroppedIterations());
+    }
+
     // Getters for UI components
     public TextArea getCurlCommandArea() { return curlCommandArea; }
     public TextArea getGeneratedScriptArea() { return generatedScriptArea; }
     public TextField getTestNameField() { return testNameField; }
     public TextField getDurationField() { return durationField; }
     public TextField getVirtualUsersField() { return virtualUsersField; }
+    public ComboBox<LoadProfile.Executor> getExecutorComboBox() { return executorComboBox; }
+    public TextField getRateField() { return rateField; }
+    public TextField getPreAllocatedVusField() { return preAllocatedVusField; }
+    public TextField getMaxVusField() { return maxVusField; }
+    public TextField getStagesField() { return stagesField; }
+    public TextField getThinkTimeField() { return thinkTimeField; }
+    // The advanced options are built the first time they are shown or read
+    public CheckBox getLeanModeCheckBox() { ensureAdvancedOptions(); return leanModeCheckBox; }
+    public TextField getShardsField() { ensureAdvancedOptions(); return shardsField; }
+    public TextField getToleranceField() { ensureAdvancedOptions(); return toleranceField; }
+    public TextField getCalibrationTargetField() { ensureAdvancedOptions(); return calibrationTargetField; }
+    public TextField getCapacitySearchField() { ensureAdvancedOptions(); return capacitySearchField; }
+    public TextField getDataFeedField() { ensureAdvancedOptions(); return dataFeedField; }
+    public TextField getAbortField() { ensureAdvancedOptions(); return abortField; }
+    public ComboBox<TransportProfile> getTransportComboBox() { ensureAdvancedOptions(); return transportComboBox; }
+    public Button getHistoryButton() { return historyButton; }
+    public Button getCalibrateButton() { return calibrateButton; }
+    public Button getCapacityButton() { return capacityButton; }
+    public Button getCancelButton() { return cancelButton; }
+    public Button getScheduleButton() { return scheduleButton; }
+    public TextField getScheduleTimeField() { return scheduleTimeField; }
+    public CheckBox getRepeatDailyCheckBox() { return repeatDailyCheckBox; }
     public ListView<String> getThresholdListView() { return thresholdListView; }
     public Button getGenerateButton() { return generateButton; }
+    public Button getImportButton() { return importButton; }
     public Button getSaveButton() { return saveButton; }
     public Button getRunButton() { return runButton; }
     public ProgressBar getProgressBar() { return progressBar; }
@@ -1,9 +1,7 @@
 module com.loadtest {
+    // javafx.controls requires javafx.graphics and javafx.base transitively; nothing else is needed,
+    // so javafx:jlink builds an image with just these and the JDK modules they depend on
     requires javafx.controls;
-    requires javafx.fxml;
-    requires javafx.graphics;
-    requires javafx.base;
 
-    opens com.loadtest to javafx.fxml, javafx.graphics;
     exports com.loadtest;
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds a real aggregator second by second and runs the controller's check after each one;
+ * the check looks at the last complete second, so second n is judged once n + 1 has started.
+ */
+class AbortControllerTest {
+    private static final long START = 1_700_000_000L;
+    private static final List<String> ERROR_THRESHOLD = List.of("http_req_failed: rate<0.1");
+
+    private final MetricsAggregator aggregator = new MetricsAggregator();
+    private final AtomicReference<String> aborted = new AtomicReference<>();
+    private long second = START;
+
+    private AbortController controller(String settings) throws Exception {
+        return new AbortController(ERROR_THRESHOLD, AbortController.Settings.parse(settings),
+                aggregator::fillWindows, aborted::set);
+    }
+
+    // Records one second of requests, all failing or all passing, then checks
+    private void second(AbortController controller, int requests, boolean failing) {
+        for (int i = 0; i < requests; i++) {
+            aggregator.record(K6Metric.HTTP_REQS, 1, second);
+            aggregator.record(K6Metric.HTTP_REQ_FAILED, failing ? 1 : 0, second);
+        }
+        second++;
+        controller.check();
+    }
+
+    @Test
+    void breachShorterThanSustainDoesNotAbort() throws Exception {
+        try (AbortController controller = controller("errors=1s, sustain=3s, grace=0s, requests=1")) {
+            assertTrue(controller.isWatching());
+            boolean[] pattern = {true, true, false, true, true, false, true, true, false};
+            for (boolean failing : pattern) {
+                second(controller, 10, failing);
+            }
+            second(controller, 10, false);
+            assertNull(controller.getReason());
+            assertNull(aborted.get());
+
+            // Three failing seconds in a row
+            second(controller, 10, true);
+            second(controller, 10, true);
+            second(controller, 10, true);
+            assertNull(controller.getReason());
+            second(controller, 10, true);
+            assertNotNull(controller.getReason());
+            assertEquals(controller.getReason(), aborted.get());
+            assertTrue(aborted.get().startsWith("http_req_failed rate<0.1 over the last 1s failed for 3s"), aborted.get());
+        }
+    }
+
+    @Test
+    void gracePeriodSuppressesAborts() throws Exception {
+        try (AbortController controller = controller("errors=1s, sustain=1s, grace=5s, requests=1")) {
+            // The first five judged seconds fall into the grace period
+            for (int i = 0; i < 6; i++) {
+                second(controller, 10, true);
+            }
+            assertNull(controller.getReason());
+            second(controller, 10, true);
+            assertNotNull(controller.getReason());
+        }
+    }
+
+    @Test
+    void windowsWithTooFewRequestsAreIgnored() throws Exception {
+        try (AbortController controller = controller("errors=1s, sustain=2s, grace=0s, requests=20")) {
+            for (int i = 0; i < 10; i++) {
+                second(controller, 10, true);
+            }
+            assertNull(controller.getReason());
+        }
+        // The same traffic over a two second window reaches the minimum
+        try (AbortController controller = controller("errors=2s, sustain=2s, grace=0s, requests=20")) {
+            for (int i = 0; i < 10 && controller.getReason() == null; i++) {
+                second(controller, 10, true);
+            }
+            assertNotNull(controller.getReason());
+        }
+    }
+
+    @Test
+    void settingsAreParsedAndRangeChecked() throws Exception {
+        AbortController.Settings settings = AbortController.Settings.parse("errors=5s, latency=63, sustain=2s, grace=0, requests=50");
+        assertTrue(settings.isEnabled());
+        assertEquals(5, settings.getErrorWindow());
+        assertEquals(63, settings.getLatencyWindow());
+        assertEquals(2, settings.getSustain());
+        assertEquals(0, settings.getGrace());
+        assertEquals(50, settings.getMinRequests());
+
+        AbortController.Settings defaults = AbortController.Settings.parse("");
+        assertEquals(AbortController.Settings.DEFAULT_ERROR_WINDOW, defaults.getErrorWindow());
+        assertEquals(AbortController.Settings.DEFAULT_SUSTAIN, defaults.getSustain());
+        assertFalse(AbortController.Settings.parse("off").isEnabled());
+        assertFalse(AbortController.Settings.parse(" None ").isEnabled());
+
+        for (String invalid : new String[]{"errors=0s", "errors=64s", "latency=120s", "sustain=-1s",
+                "requests=many", "grace=1m", "errors", "window=10s"}) {
+            assertThrows(Exception.class, () -> AbortController.Settings.parse(invalid), invalid);
+        }
+    }
+
+    @Test
+    void offNeverSchedulesACheck() throws Exception {
+        AtomicInteger fills = new AtomicInteger();
+        AbortController.WindowSource source = windows -> fills.incrementAndGet();
+        List<String> thresholds = List.of("http_req_failed: rate<0.1", "http_req_duration: p(95)<500");
+        try (AbortController off = new AbortController(thresholds, AbortController.Settings.off(), source, aborted::set);
+             AbortController unwatchable = new AbortController(List.of("http_reqs: count>100", "vus: max<10"),
+                     AbortController.Settings.defaults(), source, aborted::set)) {
+            assertFalse(off.isWatching());
+            assertFalse(unwatchable.isWatching());
+            // Longer than the check interval
+            Thread.sleep(700);
+        }
+        assertEquals(0, fills.get());
+        assertNull(aborted.get());
+    }
+}
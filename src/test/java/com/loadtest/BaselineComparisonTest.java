@@ -0,0 +1,138 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BaselineComparisonTest {
+    private static final long START_SECOND = 1_700_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void normalAndStudentTDistributions() {
+        assertEquals(0.5, Statistics.normalCdf(0), 1e-7);
+        assertEquals(0.975, Statistics.normalCdf(1.959964), 1e-6);
+        assertEquals(0.05, Statistics.normalCdf(-1.644854), 1e-6);
+        assertEquals(0.5, Statistics.studentTCdf(0, 5), 1e-9);
+        // Two-sided 95% critical values
+        assertEquals(0.975, Statistics.studentTCdf(12.7062, 1), 1e-5);
+        assertEquals(0.975, Statistics.studentTCdf(2.2281, 10), 1e-5);
+        assertEquals(0.025, Statistics.studentTCdf(-2.0423, 30), 1e-5);
+    }
+
+    @Test
+    void welchTestOnKnownSamples() {
+        // Equal variances of 2.5, means 12 and 10: t = -2 with 8 degrees of freedom
+        double p = Statistics.welchLess(new double[]{10, 11, 12, 13, 14}, new double[]{8, 9, 10, 11, 12});
+        assertEquals(0.04025, p, 1e-4);
+        assertEquals(0.5, Statistics.welchLess(new double[]{1, 2, 3}, new double[]{1, 2, 3}), 1e-9);
+        assertEquals(Double.NaN, Statistics.welchLess(new double[]{1}, new double[]{1, 2}));
+    }
+
+    @Test
+    void proportionTestOnKnownCounts() {
+        // 10% against 20% of 100: z = 1.980
+        assertEquals(0.02384, Statistics.proportionGreater(10, 100, 20, 100), 1e-4);
+        assertTrue(Statistics.proportionGreater(20, 100, 10, 100) > 0.95);
+        assertEquals(1.0, Statistics.proportionGreater(0, 100, 0, 100));
+    }
+
+    @Test
+    void mannWhitneyOnHistograms() {
+        // {1, 2, 3} against {4, 5, 6}: U = 9, mean 4.5, variance 5.25
+        double[] separated = Statistics.mannWhitneyGreater(histogram(1, 2, 3), histogram(4, 5, 6));
+        assertEquals(0.04043, separated[0], 1e-4);
+        assertEquals(1.0, separated[1], 1e-9);
+
+        double[] reversed = Statistics.mannWhitneyGreater(histogram(4, 5, 6), histogram(1, 2, 3));
+        assertEquals(0.0, reversed[1], 1e-9);
+        assertTrue(reversed[0] > 0.95);
+
+        // One tie group: no evidence either way
+        double[] tied = Statistics.mannWhitneyGreater(histogram(7, 7, 7), histogram(7, 7));
+        assertEquals(1.0, tied[0]);
+        assertEquals(0.5, tied[1], 1e-9);
+    }
+
+    @Test
+    void sameDistributionIsNoRegression() throws IOException {
+        BaselineComparison comparison = compare(run(1, 100, 100, 0), run(2, 100, 100, 0));
+        assertFalse(comparison.isRegression(), comparison.report());
+    }
+
+    @Test
+    void slowerLatencyIsARegression() throws IOException {
+        BaselineComparison comparison = compare(run(1, 100, 100, 0), run(2, 130, 100, 0));
+        assertTrue(comparison.isRegression());
+        assertTrue(regressed(comparison, "http_req_duration", "p(95)"));
+        assertFalse(regressed(comparison, "http_reqs", "RPS"));
+    }
+
+    @Test
+    void smallSignificantChangeWithinToleranceIsNoRegression() throws IOException {
+        // 3% slower is significant over 3000 requests but inside the 10% tolerance
+        BaselineComparison comparison = compare(run(1, 100, 100, 0), run(2, 103, 100, 0));
+        assertFalse(comparison.isRegression(), comparison.report());
+    }
+
+    @Test
+    void lowerThroughputAndMoreFailuresAreRegressions() throws IOException {
+        BaselineComparison comparison = compare(run(1, 100, 100, 0), run(2, 100, 80, 5));
+        assertTrue(regressed(comparison, "http_reqs", "RPS"));
+        assertTrue(regressed(comparison, "http_req_failed", "rate"));
+    }
+
+    private static boolean regressed(BaselineComparison comparison, String metric, String statistic) {
+        for (BaselineComparison.Finding finding : comparison.getFindings()) {
+            if (finding.getMetric().equals(metric) && finding.getStatistic().startsWith(statistic)) {
+                return finding.isRegression();
+            }
+        }
+        throw new AssertionError("No finding for " + metric + " " + statistic + " in\n" + comparison.report());
+    }
+
+    private static BaselineComparison compare(StoredRun baseline, StoredRun candidate) {
+        return BaselineComparison.compare(baseline, candidate, RegressionTolerance.defaults());
+    }
+
+    // 30 seconds of normally distributed latency (mean meanMillis, 10% deviation) at the given rate
+    private StoredRun run(long seed, double meanMillis, int requestsPerSecond, int failedPercent) throws IOException {
+        Random random = new Random(seed);
+        MetricsAggregator aggregator = new MetricsAggregator();
+        RunRecorder recorder = new RunRecorder("test");
+        recorder.attach(aggregator);
+        for (int second = 0; second < 30; second++) {
+            // A little noise in the rate, so the throughput test has a variance to work with
+            int requests = requestsPerSecond + random.nextInt(5) - 2;
+            for (int i = 0; i < requests; i++) {
+                double millis = meanMillis * (1 + 0.1 * random.nextGaussian());
+                aggregator.record(K6Metric.HTTP_REQS, 1, START_SECOND + second);
+                aggregator.record(K6Metric.HTTP_REQ_DURATION, millis, START_SECOND + second);
+                aggregator.record(K6Metric.HTTP_REQ_FAILED, random.nextInt(100) < failedPercent ? 1 : 0,
+                        START_SECOND + second);
+            }
+        }
+        aggregator.flushSeconds();
+        try (ResultsStore store = new ResultsStore(directory.resolve("store-" + seed))) {
+            return store.preview(recorder, aggregator, List.of(), TestRun.State.SUCCEEDED, 0, 1);
+        }
+    }
+
+    private static LatencyHistogram histogram(long... values) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : values) {
+            histogram.record(value);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,99 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CurlParserTest {
+
+    private static String header(CurlRequest request, String name) {
+        for (CurlRequest.Header header : request.getHeaders()) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void escapedQuotesInsideDoubleQuotes() {
+        CurlRequest request = CurlParser.parseCommand(
+                "curl -X POST https://api.example.com/items -d \"{\\\"name\\\": \\\"a \\\\\\\"b\\\\\\\"\\\"}\"");
+        assertEquals("POST", request.getMethod());
+        assertEquals("{\"name\": \"a \\\"b\\\"\"}", request.getBody());
+    }
+
+    @Test
+    void singleQuotesKeepBackslashesAndDoubleQuotes() {
+        CurlRequest request = CurlParser.parseCommand(
+                "curl 'https://api.example.com/search?q=a\\b' -H 'X-Quote: say \"hi\"'");
+        assertEquals("https://api.example.com/search?q=a\\b", request.getUrl());
+        assertEquals("say \"hi\"", header(request, "X-Quote"));
+    }
+
+    @Test
+    void dollarQuotesUnderstandEscapes() {
+        CurlRequest request = CurlParser.parseCommand(
+                "curl https://api.example.com/ --data-raw $'line1\\nline2\\t\\'quoted\\''");
+        assertEquals("line1\nline2\t'quoted'", request.getBody());
+    }
+
+    @Test
+    void dollarQuoteByteEscapesAreDecodedAsUtf8() {
+        // Chrome writes non-ASCII as UTF-8 bytes: an accented e, a euro sign and an emoji
+        CurlRequest request = CurlParser.parseCommand("curl https://api.example.com/ --data-raw "
+                + "$'caf\\xc3\\xa9 \\342\\202\\254\\x35 \\xF0\\x9F\\x98\\x80\\n\\x41'");
+        assertEquals("caf\u00e9 \u20ac5 \uD83D\uDE00\nA", request.getBody());
+
+        // A lone invalid byte is replaced rather than read as Latin-1
+        assertEquals("x\uFFFDy", CurlParser.parseCommand(
+                "curl https://api.example.com/ --data-raw $'x\\xe9y'").getBody());
+        assertEquals("\u00e9", CurlParser.parseCommand(
+                "curl https://api.example.com/ --data-raw $'\\u00e9'").getBody());
+    }
+
+    @Test
+    void lineContinuationsJoinTheCommand() {
+        CurlRequest request = CurlParser.parseCommand("curl 'https://api.example.com/users' \\\n"
+                + "  -H 'Accept: application/json' \\\r\n"
+                + "  -H 'Authorization: Bearer token' \\\n"
+                + "  --compressed");
+        assertEquals("https://api.example.com/users", request.getUrl());
+        assertEquals("GET", request.getMethod());
+        assertEquals("application/json", header(request, "Accept"));
+        assertEquals("Bearer token", header(request, "Authorization"));
+        assertTrue(request.isCompressed());
+    }
+
+    @Test
+    void repeatedDataOptionsAreJoinedWithAmpersand() {
+        CurlRequest request = CurlParser.parseCommand(
+                "curl https://api.example.com/form -d a=1 --data b=2 --data-urlencode 'c=x y'");
+        assertEquals("POST", request.getMethod());
+        assertEquals("a=1&b=2&c=x+y", request.getBody());
+    }
+
+    @Test
+    void getMovesDataIntoTheQueryString() {
+        CurlRequest request = CurlParser.parseCommand("curl -G https://api.example.com/search?x=0 -d q=1 -d r=2");
+        assertEquals("GET", request.getMethod());
+        assertEquals("https://api.example.com/search?x=0&q=1&r=2", request.getUrl());
+        assertNull(request.getBody());
+    }
+
+    @Test
+    void blankLinesSeparateScenarioSteps() {
+        List<List<ScenarioRequest>> steps = new CurlParser().parseScenario(
+                "curl https://api.example.com/a\n"
+                        + "curl https://api.example.com/b\n"
+                        + "\n"
+                        + "curl https://api.example.com/c\n");
+        assertEquals(2, steps.size());
+        assertEquals(2, steps.get(0).size());
+        assertEquals(1, steps.get(1).size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DataFeedTest {
+
+    @TempDir
+    Path directory;
+
+    // Converts the text and returns the rows file, a JSON array of string arrays
+    private DataFeed feed(String fileName, String content) throws Exception {
+        Path file = directory.resolve(fileName);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return DataFeed.prepare("file=" + file, directory.resolve("k6-data"));
+    }
+
+    private static String rows(DataFeed feed) throws IOException {
+        return Files.readString(feed.getDataFile(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void quotedFieldsHoldNewlinesDelimitersAndQuotes() throws Exception {
+        DataFeed feed = feed("users.csv", "id,comment\n"
+                + "1,\"line one\nline two\"\n"
+                + "2,\"a, b and \"\"c\"\"\"\n");
+        assertEquals(List.of("id", "comment"), feed.getColumns());
+        assertEquals(2, feed.getRowCount());
+        assertEquals("[\n[\"1\",\"line one\\nline two\"],\n[\"2\",\"a, b and \\\"c\\\"\"]\n]\n", rows(feed));
+    }
+
+    @Test
+    void carriageReturnOnlyLineEndings() throws Exception {
+        DataFeed feed = feed("old-mac.csv", "id,name\r1,a\r2,b\r");
+        assertEquals(List.of("id", "name"), feed.getColumns());
+        assertEquals("[\n[\"1\",\"a\"],\n[\"2\",\"b\"]\n]\n", rows(feed));
+    }
+
+    @Test
+    void byteOrderMarkCrlfAndBlankLines() throws Exception {
+        DataFeed feed = feed("excel.csv", "\uFEFFid,name\r\n\r\n1,a\r\n\r\n2,b");
+        assertEquals(List.of("id", "name"), feed.getColumns());
+        assertEquals(2, feed.getRowCount());
+    }
+
+    @Test
+    void shortRowsArePaddedWithEmptyValues() throws Exception {
+        DataFeed feed = feed("short.csv", "a,b,c\n1\n2,3\n4,5,\n");
+        assertEquals("[\n[\"1\",\"\",\"\"],\n[\"2\",\"3\",\"\"],\n[\"4\",\"5\",\"\"]\n]\n", rows(feed));
+    }
+
+    @Test
+    void longRowsAndUnterminatedQuotesAreRejected() {
+        Exception tooLong = assertThrows(Exception.class, () -> feed("long.csv", "a,b\n1,2\n1,2,3\n"));
+        assertTrue(tooLong.getMessage().startsWith("Line 3 "), tooLong.getMessage());
+        Exception open = assertThrows(Exception.class, () -> feed("open.csv", "a,b\n1,\"never closed\n2,3\n"));
+        assertTrue(open.getMessage().contains("line 2"), open.getMessage());
+    }
+
+    @Test
+    void delimiterFromTheSpec() throws Exception {
+        Path file = directory.resolve("semi.txt");
+        Files.writeString(file, "id;name\n1;a,b\n", StandardCharsets.UTF_8);
+        DataFeed feed = DataFeed.prepare("file=" + file + ", delimiter=semicolon, partition=vu",
+                directory.resolve("k6-data"));
+        assertEquals(DataFeed.Partition.VU, feed.getPartition());
+        assertEquals("[\n[\"1\",\"a,b\"]\n]\n", rows(feed));
+    }
+
+    @Test
+    void jsonArraysAndLinesUseTheFirstObjectsKeys() throws Exception {
+        DataFeed array = feed("users.json", "[{\"id\": 1, \"name\": \"a\"}, {\"name\": \"b\", \"id\": 2}]");
+        assertEquals(List.of("id", "name"), array.getColumns());
+        assertEquals("[\n[\"1\",\"a\"],\n[\"2\",\"b\"]\n]\n", rows(array));
+
+        DataFeed lines = feed("users.ndjson", "{\"id\": \"x\"}\n{\"id\": \"y\"}\n");
+        assertEquals(2, lines.getRowCount());
+    }
+
+    @Test
+    void placeholdersBecomeRowLookups() throws Exception {
+        DataFeed feed = feed("users.csv", "id,name\n1,a\n");
+        assertEquals("'https://api.example.com/users/' + row[0] + '?q=' + row[1]",
+                feed.expression("https://api.example.com/users/{{id}}?q={{ name }}", "row"));
+        assertEquals("'plain'", feed.expression("plain", "row"));
+        assertThrows(Exception.class, () -> feed.expression("{{email}}", "row"));
+    }
+}
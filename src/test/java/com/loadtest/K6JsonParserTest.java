@@ -0,0 +1,92 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+class K6JsonParserTest {
+    private static final String POINT = "{\"type\":\"Point\",\"metric\":\"http_req_duration\",\"data\":"
+            + "{\"time\":\"2024-05-01T10:00:00.123456789+02:00\",\"value\":123.45,"
+            + "\"tags\":{\"name\":\"login\",\"url\":\"https://example.com/?q={x}\"}}}";
+
+    private final K6JsonParser parser = new K6JsonParser();
+    private final K6Sample sample = new K6Sample();
+
+    private boolean parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 0, bytes.length, sample);
+    }
+
+    @Test
+    void pointLinesAreParsed() {
+        assertTrue(parse(POINT));
+        assertEquals(K6Metric.HTTP_REQ_DURATION, sample.getMetric());
+        assertEquals(123.45, sample.getValue(), 1e-9);
+        assertEquals(Instant.parse("2024-05-01T08:00:00Z").getEpochSecond(), sample.getEpochSecond());
+
+        // Keys in any order, whitespace, UTC and exponents
+        assertTrue(parse(" { \"data\" : { \"value\" : 1.5e3 , \"time\" : \"2024-05-01T08:00:59Z\" } ,"
+                + " \"metric\" : \"http_reqs\" , \"type\" : \"Point\" } "));
+        assertEquals(K6Metric.HTTP_REQS, sample.getMetric());
+        assertEquals(1500, sample.getValue(), 1e-9);
+        assertEquals(Instant.parse("2024-05-01T08:00:59Z").getEpochSecond(), sample.getEpochSecond());
+
+        assertTrue(parse("{\"type\":\"Point\",\"metric\":\"http_req_failed\",\"data\":"
+                + "{\"time\":\"2023-12-31T23:59:59-05:30\",\"value\":-0.25}}"));
+        assertEquals(-0.25, sample.getValue(), 1e-12);
+        assertEquals(Instant.parse("2024-01-01T05:29:59Z").getEpochSecond(), sample.getEpochSecond());
+    }
+
+    @Test
+    void lineIsReadWithinTheGivenRange() {
+        byte[] bytes = ("garbage\n" + POINT + "\nmore").getBytes(StandardCharsets.UTF_8);
+        int start = "garbage\n".length();
+        assertTrue(parser.parse(bytes, start, start + POINT.length(), sample));
+        assertEquals(123.45, sample.getValue(), 1e-9);
+    }
+
+    @Test
+    void metricDefinitionsAndUntrackedMetricsAreSkipped() {
+        assertFalse(parse("{\"type\":\"Metric\",\"data\":{\"name\":\"http_req_duration\",\"type\":\"trend\","
+                + "\"contains\":\"time\",\"thresholds\":[\"p(95)<500\"],\"submetrics\":null},"
+                + "\"metric\":\"http_req_duration\"}"));
+        assertFalse(parse("{\"type\":\"Point\",\"metric\":\"vus\",\"data\":"
+                + "{\"time\":\"2024-05-01T08:00:00Z\",\"value\":10}}"));
+        // A tracked name inside a longer one is another metric
+        assertFalse(parse("{\"type\":\"Point\",\"metric\":\"http_reqs_total\",\"data\":"
+                + "{\"time\":\"2024-05-01T08:00:00Z\",\"value\":1}}"));
+    }
+
+    @Test
+    void escapedStringsDoNotEndTheirValue() {
+        assertTrue(parse("{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"time\":\"2024-05-01T08:00:00Z\","
+                + "\"tags\":{\"name\":\"say \\\"hi\\\" }, \\\\\",\"url\":\"a\\\\\"},\"value\":2}}"));
+        assertEquals(2, sample.getValue(), 1e-9);
+        assertTrue(parse("{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"tags\":{\"error\":"
+                + "\"\\u0022]}\\n\"},\"time\":\"2024-05-01T08:00:00Z\",\"value\":3}}"));
+        assertEquals(3, sample.getValue(), 1e-9);
+    }
+
+    @Test
+    void malformedAndTruncatedLinesAreRejected() {
+        for (String line : new String[]{"", "   ", "{}", "[]", "not json", "{\"type\":\"Point\"",
+                "{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"time\":\"2024-05-01T08:00:00Z\"}}",
+                "{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"value\":1}}",
+                "{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"time\":\"2024-05-01\",\"value\":1}}",
+                "{\"type\":\"Point\",\"metric\":\"http_reqs\",\"data\":{\"time\":\"2024-05-01T08:00:00Z\",\"value\":x}}",
+                "{\"type\":\"Point\" \"metric\":\"http_reqs\"}"}) {
+            assertFalse(parse(line), line);
+        }
+        // Cut anywhere, e.g. by a k6 process that was killed mid-write
+        for (int length = 0; length < POINT.length(); length++) {
+            assertFalse(parse(POINT.substring(0, length)), POINT.substring(0, length));
+        }
+        // The parser recovers for the next line
+        assertTrue(parse(POINT));
+    }
+}
@@ -0,0 +1,103 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void valuesBelow256AreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 256; value++) {
+            histogram.record(value);
+            assertEquals(value, LatencyHistogram.indexFor(value));
+            assertEquals(value, LatencyHistogram.valueAt((int) value));
+        }
+        assertEquals(256, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(255, histogram.getMax());
+        assertEquals(127.5, histogram.getMean(), 1e-9);
+        // The p-th percentile of 0..255 is the ceil(p * 256 / 100)-th value
+        assertEquals(127, histogram.valueAtPercentile(50));
+        assertEquals(243, histogram.valueAtPercentile(95));
+        assertEquals(0, histogram.valueAtPercentile(0));
+        assertEquals(255, histogram.valueAtPercentile(100));
+        assertEquals(0.5, histogram.fractionAtOrBelow(127), 1e-9);
+    }
+
+    @Test
+    void bucketsStayWithinOnePercentAcrossPowersOfTwo() {
+        for (int exponent = 8; exponent < 32; exponent++) {
+            long boundary = 1L << exponent;
+            for (long value : new long[]{boundary - 1, boundary, boundary + 1, boundary + boundary / 2}) {
+                int index = LatencyHistogram.indexFor(value);
+                long lowest = LatencyHistogram.lowestValueAt(index);
+                long width = LatencyHistogram.bucketWidthAt(index);
+                assertTrue(lowest <= value && value < lowest + width, "bucket of " + value);
+                assertTrue(width - 1 <= lowest / 100.0, "width " + width + " at " + lowest);
+            }
+        }
+    }
+
+    @Test
+    void percentilesAreWithinOnePercentOfTheExactValues() {
+        Random random = new Random(42);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            // Spread over six decades, so many bucket boundaries are crossed
+            values[i] = (long) Math.pow(10, 1 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{1, 10, 50, 90, 95, 99, 99.9, 99.99}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.valueAtPercentile(percentile);
+            assertTrue(Math.abs(estimate - exact) <= Math.max(1, exact / 100.0),
+                    "p" + percentile + ": " + estimate + " vs " + exact);
+        }
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    void addMatchesOneHistogramFedAllSamples() {
+        Random random = new Random(7);
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 20_000; i++) {
+            long value = (long) (random.nextGaussian() * 20_000 + 50_000);
+            all.record(value);
+            (i % 3 == 0 ? first : second).record(value);
+        }
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(first);
+        merged.add(second);
+        merged.add(new LatencyHistogram());
+
+        assertEquals(all.getTotalCount(), merged.getTotalCount());
+        for (int i = 0; i < all.getBucketCount(); i++) {
+            assertEquals(all.getCountAtIndex(i), merged.getCountAtIndex(i), "bucket " + i);
+        }
+        assertEquals(all.getMin(), merged.getMin());
+        assertEquals(all.getMax(), merged.getMax());
+        assertEquals(all.getMean(), merged.getMean(), 1e-6);
+        assertEquals(all.valueAtPercentile(99), merged.valueAtPercentile(99));
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(10_000);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(histogram.getBucketCount() - 1, LatencyHistogram.indexFor(10_000));
+        assertEquals(1, histogram.getCountAtIndex(histogram.getBucketCount() - 1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsAggregatorTest {
+    private static final long START = 1_700_000_000L;
+
+    // One request per call, taking millis, failed or not
+    private static void request(MetricsAggregator aggregator, long second, double millis, boolean failed) {
+        aggregator.record(K6Metric.HTTP_REQS, 1, second);
+        aggregator.record(K6Metric.HTTP_REQ_DURATION, millis, second);
+        aggregator.record(K6Metric.HTTP_REQ_FAILED, failed ? 1 : 0, second);
+    }
+
+    @Test
+    void ringRollsOverWhileTotalsKeepEverySecond() {
+        MetricsAggregator aggregator = new MetricsAggregator();
+        List<Long> completed = new ArrayList<>();
+        List<Double> completedRequests = new ArrayList<>();
+        aggregator.setSecondListener(bucket -> {
+            completed.add(bucket.second);
+            completedRequests.add(bucket.requests);
+        });
+        int seconds = MetricsAggregator.WINDOW_SECONDS * 2 + 10;
+        for (int i = 0; i < seconds; i++) {
+            // Second i has i + 1 requests of i + 1 ms
+            for (int r = 0; r <= i; r++) {
+                request(aggregator, START + i, i + 1, r == 0);
+            }
+        }
+
+        assertEquals(seconds, aggregator.getElapsedSeconds());
+        assertEquals(seconds * (seconds + 1) / 2.0, aggregator.getTotalCount(K6Metric.HTTP_REQS), 1e-9);
+        assertEquals(seconds * (seconds + 1) / 2, aggregator.getTotalDurations().getTotalCount());
+        assertEquals(0, aggregator.getLateSamples());
+
+        // Seconds that left the ring were handed on in order and cleared for reuse
+        assertEquals(seconds - MetricsAggregator.WINDOW_SECONDS, completed.size());
+        for (int i = 0; i < completed.size(); i++) {
+            assertEquals(START + i, (long) completed.get(i));
+            assertEquals(i + 1, completedRequests.get(i), 1e-9);
+        }
+
+        // The window ends before the newest second, which may still be filling up
+        MetricsAggregator.Window window = new MetricsAggregator.Window(10);
+        aggregator.fillWindows(window);
+        long last = seconds - 2;
+        assertEquals(START + last, window.getEndSecond());
+        assertEquals(10, window.getCoveredSeconds());
+        long expected = 0;
+        for (long i = last - 9; i <= last; i++) {
+            expected += i + 1;
+        }
+        assertEquals(expected, window.getRequests());
+        assertEquals(10.0 / expected, window.getFailureRate(), 1e-12);
+
+        // Older than the ring: counted in the totals only
+        request(aggregator, START + 5, 1, false);
+        assertEquals(3, aggregator.getLateSamples());
+        assertEquals(seconds * (seconds + 1) / 2.0 + 1, aggregator.getTotalCount(K6Metric.HTTP_REQS), 1e-9);
+
+        aggregator.flushSeconds();
+        assertEquals(seconds, completed.size());
+        assertEquals(START + seconds - 1, (long) completed.get(completed.size() - 1));
+    }
+
+    @Test
+    void rollingSnapshotCoversTheLastCompleteSeconds() {
+        MetricsAggregator aggregator = new MetricsAggregator();
+        for (int i = 0; i < 30; i++) {
+            // Slow at first, then 10 requests per second at 5 ms
+            for (int r = 0; r < 10; r++) {
+                request(aggregator, START + i, i < 15 ? 500 : 5, false);
+            }
+        }
+        LiveMetrics live = aggregator.snapshot();
+        assertEquals(30, live.getElapsedSeconds());
+        assertEquals(10, live.getRequestsPerSecond(), 1e-9);
+        assertEquals(5, live.getP95Millis(), 0.05);
+        assertEquals(300, live.getTotalRequests());
+        assertEquals(0, live.getFailedRequests());
+    }
+
+    @Test
+    void warmupSecondsAreLeftOut() {
+        MetricsAggregator aggregator = new MetricsAggregator();
+        aggregator.setWarmupSeconds(5);
+        for (int i = 0; i < 10; i++) {
+            // The warm-up is slow and failing
+            request(aggregator, START + i, i < 5 ? 1000 : 10, i < 5);
+        }
+
+        assertEquals(15, aggregator.getWarmupSamples());
+        assertEquals(5, aggregator.getElapsedSeconds());
+        assertEquals(5, aggregator.getTotalCount(K6Metric.HTTP_REQS), 1e-9);
+        assertEquals(0, aggregator.getTotalRate(K6Metric.HTTP_REQ_FAILED), 1e-9);
+        LatencyHistogram durations = aggregator.getTotalDurations();
+        assertEquals(5, durations.getTotalCount());
+        assertEquals(MetricsAggregator.toMicros(10), durations.getMax());
+
+        MetricsAggregator.Window window = new MetricsAggregator.Window(30);
+        aggregator.fillWindows(window);
+        assertEquals(4, window.getCoveredSeconds());
+        assertEquals(START + 8, window.getEndSecond());
+        assertTrue(window.getDurations().getMax() <= MetricsAggregator.toMicros(10));
+    }
+}
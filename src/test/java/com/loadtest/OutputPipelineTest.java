@@ -0,0 +1,36 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputPipelineTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void floodKeepsTheNewestLinesForTheSink() throws Exception {
+        List<List<String>> batches = new ArrayList<>();
+        // The dispatcher does not run before close, so every line goes through the full queue
+        OutputPipeline pipeline = new OutputPipeline(new LineRingBuffer(50, 1000),
+                new RollingLogWriter(directory.resolve("run.log"), 1 << 20, 2), batches::add, 60_000, 20);
+        for (int i = 0; i < 1000; i++) {
+            pipeline.accept("line " + i);
+        }
+        pipeline.close();
+
+        assertEquals(1, batches.size());
+        List<String> batch = batches.get(0);
+        assertEquals(20, batch.size());
+        assertEquals("line 980", batch.get(0));
+        assertEquals("line 999", batch.get(batch.size() - 1));
+        assertEquals(980, pipeline.getDroppedLines());
+        assertEquals(1000, pipeline.getRecentLines().getTotalLines());
+        assertEquals(List.of(directory.resolve("run.log")), pipeline.getLogSegments());
+    }
+}
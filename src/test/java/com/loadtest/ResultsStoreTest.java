@@ -0,0 +1,192 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultsStoreTest {
+    private static final long START_SECOND = 1_700_000_000L;
+
+    @TempDir
+    Path directory;
+
+    // A finished run of the given length, with 10 requests per second and one failure in the last second
+    private static RunRecorder recordRun(String testName, int seconds, MetricsAggregator aggregator) {
+        RunRecorder recorder = new RunRecorder(testName);
+        recorder.attach(aggregator);
+        for (int second = 0; second < seconds; second++) {
+            for (int i = 0; i < 10; i++) {
+                aggregator.record(K6Metric.HTTP_REQS, 1, START_SECOND + second);
+                aggregator.record(K6Metric.HTTP_REQ_DURATION, 10 + second + i, START_SECOND + second);
+                aggregator.record(K6Metric.HTTP_REQ_FAILED, second == seconds - 1 && i == 0 ? 1 : 0,
+                        START_SECOND + second);
+            }
+        }
+        aggregator.flushSeconds();
+        return recorder;
+    }
+
+    private static RunSummary append(ResultsStore store, String testName, int seconds) throws IOException {
+        MetricsAggregator aggregator = new MetricsAggregator();
+        RunRecorder recorder = recordRun(testName, seconds, aggregator);
+        List<ThresholdEvaluator.Result> thresholds = new ThresholdEvaluator().evaluate(
+                List.of("http_req_duration: p(95)<500", "http_req_failed: rate<0.01"), aggregator);
+        return store.append(recorder, aggregator, thresholds, TestRun.State.FAILED, 99, 1);
+    }
+
+    @Test
+    void codecRoundTrip() {
+        ResultsCodec.Output out = new ResultsCodec.Output(4);
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        for (long value : values) {
+            out.writeVarLong(value);
+        }
+        out.writeSignedVarLong(-1);
+        out.writeSignedVarLong(Long.MIN_VALUE);
+        out.writeDouble(Double.NaN);
+        out.writeDouble(-0.125);
+        out.writeString("");
+        out.writeString("p(99) über € 🚀");
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros : new long[]{1, 255, 256, 10_000, 10_000, 2_000_000_000L}) {
+            histogram.record(micros);
+        }
+        out.writeHistogram(histogram);
+        out.writeHistogram(new LatencyHistogram());
+        out.writeByte(42);
+
+        ByteBuffer in = ByteBuffer.wrap(out.bytes(), 0, out.length());
+        for (long value : values) {
+            assertEquals(value, ResultsCodec.readVarLong(in));
+        }
+        assertEquals(-1, ResultsCodec.readSignedVarLong(in));
+        assertEquals(Long.MIN_VALUE, ResultsCodec.readSignedVarLong(in));
+        assertEquals(Double.NaN, ResultsCodec.readDouble(in));
+        assertEquals(-0.125, ResultsCodec.readDouble(in));
+        assertEquals("", ResultsCodec.readString(in));
+        assertEquals("p(99) über € 🚀", ResultsCodec.readString(in));
+        LatencyHistogram decoded = new LatencyHistogram();
+        ResultsCodec.readHistogram(in, decoded);
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            assertEquals(histogram.getCountAtIndex(i), decoded.getCountAtIndex(i), "bucket " + i);
+        }
+        ResultsCodec.skipHistogram(in);
+        assertEquals(42, in.get());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void storedRunsSurviveReopening() throws IOException {
+        RunSummary first;
+        try (ResultsStore store = new ResultsStore(directory)) {
+            first = append(store, "checkout", 5);
+            append(store, "search", 3);
+            store.setBaseline(first);
+        }
+        try (ResultsStore store = new ResultsStore(directory)) {
+            assertEquals(2, store.list().size());
+            assertEquals(List.of("checkout", "search"), store.getTestNames());
+            RunSummary summary = store.find("checkout").get(0);
+            assertEquals(first.getId(), summary.getId());
+            assertEquals(first.getId(), store.getBaseline("checkout").getId());
+            assertNull(store.getBaseline("search"));
+            assertEquals(TestRun.State.FAILED, summary.getState());
+            assertEquals(99, summary.getExitCode());
+            assertEquals(50, summary.getTotalRequests());
+            assertEquals(1, summary.getFailedRequests());
+
+            StoredRun run = store.load(summary);
+            assertArrayEquals(new long[]{START_SECOND, START_SECOND + 1, START_SECOND + 2, START_SECOND + 3,
+                    START_SECOND + 4}, run.getSeconds());
+            assertArrayEquals(new long[]{10, 10, 10, 10, 10}, run.getRequests());
+            assertArrayEquals(new long[]{0, 0, 0, 0, 1}, run.getFailed());
+            assertEquals(50, run.getDurations().getTotalCount());
+            assertEquals(5, run.getElapsedSeconds());
+            assertEquals(2, run.getThresholds().size());
+            assertEquals("http_req_failed", run.getThresholds().get(1).getMetric());
+            assertEquals(false, run.getThresholds().get(1).isPassed());
+        }
+    }
+
+    @Test
+    void truncatedRecordIsDroppedOnOpen() throws IOException {
+        long firstRecordEnd;
+        long firstIndexEnd;
+        try (ResultsStore store = new ResultsStore(directory)) {
+            append(store, "checkout", 5);
+            firstRecordEnd = Files.size(directory.resolve("runs.dat"));
+            firstIndexEnd = Files.size(directory.resolve("runs.idx"));
+            append(store, "checkout", 5);
+        }
+        // A crash half way through writing the second record, before its index entry
+        truncate(directory.resolve("runs.idx"), firstIndexEnd);
+        truncate(directory.resolve("runs.dat"), Files.size(directory.resolve("runs.dat")) - 7);
+
+        try (ResultsStore store = new ResultsStore(directory)) {
+            assertEquals(1, store.list().size());
+            assertEquals(firstRecordEnd, Files.size(directory.resolve("runs.dat")));
+            assertEquals(2, append(store, "checkout", 2).getId());
+        }
+    }
+
+    @Test
+    void recordWithBadChecksumIsDroppedAndTheRestReindexed() throws IOException {
+        long firstRecordEnd;
+        try (ResultsStore store = new ResultsStore(directory)) {
+            append(store, "checkout", 5);
+            firstRecordEnd = Files.size(directory.resolve("runs.dat"));
+            append(store, "checkout", 5);
+        }
+        // Without an index every record is re-indexed from runs.dat, up to the one that fails its CRC
+        Files.delete(directory.resolve("runs.idx"));
+        try (FileChannel data = FileChannel.open(directory.resolve("runs.dat"), StandardOpenOption.WRITE)) {
+            data.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), data.size() - 3);
+        }
+
+        try (ResultsStore store = new ResultsStore(directory)) {
+            assertEquals(1, store.list().size());
+            assertEquals(1, store.list().get(0).getId());
+            assertEquals(firstRecordEnd, Files.size(directory.resolve("runs.dat")));
+        }
+        try (ResultsStore store = new ResultsStore(directory)) {
+            assertEquals(1, store.list().size());
+        }
+    }
+
+    @Test
+    void storesOpenedTwiceNeverReuseARunId() throws IOException {
+        try (ResultsStore application = new ResultsStore(directory);
+             ResultsStore cli = new ResultsStore(directory)) {
+            RunSummary first = append(application, "checkout", 3);
+            RunSummary second = append(cli, "checkout", 3);
+            RunSummary third = append(application, "checkout", 3);
+            assertNotEquals(first.getId(), second.getId());
+            assertEquals(3, third.getId());
+            assertEquals(3, application.list().size());
+        }
+        try (ResultsStore store = new ResultsStore(directory)) {
+            assertEquals(3, store.list().size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i + 1, store.list().get(i).getId());
+            }
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs sharded tests with a launcher that writes each shard's NDJSON stream itself and
+ * starts a short local process in place of k6.
+ */
+class ShardedRunTest {
+    private static final long START_SECOND = 1_700_000_000L;
+
+    @TempDir
+    Path directory;
+
+    // Writes the samples of one shard and remembers them in a histogram of its own
+    private static class FakeLauncher implements ShardLauncher {
+        final LatencyHistogram expected = new LatencyHistogram();
+        final int[] failuresPerShard;
+        final int requestsPerShard;
+        long requests;
+        long failures;
+
+        FakeLauncher(int requestsPerShard, int... failuresPerShard) {
+            this.requestsPerShard = requestsPerShard;
+            this.failuresPerShard = failuresPerShard;
+        }
+
+        @Override
+        public synchronized Process launch(Shard shard) throws IOException {
+            Random random = new Random(shard.getIndex());
+            try (Writer out = Files.newBufferedWriter(shard.getMetricsFile(), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < requestsPerShard; i++) {
+                    String time = Instant.ofEpochSecond(START_SECOND + i % 5).toString();
+                    // Shards see different latencies, so their percentiles differ from the merged ones
+                    double millis = (shard.getIndex() + 1) * 10 + random.nextInt(1000) / 10.0;
+                    int failed = i < failuresPerShard[shard.getIndex()] ? 1 : 0;
+                    point(out, "http_reqs", 1, time);
+                    point(out, "http_req_duration", millis, time);
+                    point(out, "http_req_failed", failed, time);
+                    expected.record(MetricsAggregator.toMicros(millis));
+                    requests++;
+                    failures += failed;
+                }
+            }
+            Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+            return new ProcessBuilder(java.toString(), "-version").redirectErrorStream(true).start();
+        }
+
+        private static void point(Writer out, String metric, double value, String time) throws IOException {
+            out.write(String.format(Locale.ROOT,
+                    "{\"type\":\"Point\",\"metric\":\"%s\",\"data\":{\"time\":\"%s\",\"value\":%s,\"tags\":{}}}%n",
+                    metric, time, value));
+        }
+    }
+
+    private MetricsAggregator run(ShardPlan plan, FakeLauncher launcher) throws Exception {
+        return start(plan, launcher).getMergedMetrics();
+    }
+
+    private ShardedRun start(ShardPlan plan, FakeLauncher launcher) throws Exception {
+        ShardedRun run = new ShardedRun(plan, launcher, directory.resolve("test.js"), directory, "test", 1000);
+        OutputPipeline pipeline = new OutputPipeline(new LineRingBuffer(100, 1000),
+                new RollingLogWriter(directory.resolve("test.log"), 1 << 20, 2), batch -> { }, 50, 100);
+        try {
+            run.start(pipeline);
+            assertEquals(0, run.waitFor());
+        } finally {
+            pipeline.close();
+        }
+        assertEquals(plan.getShardCount(), run.getShardCount());
+        return run;
+    }
+
+    @Test
+    void mergedHistogramIsTheUnionOfShardSamples() throws Exception {
+        FakeLauncher launcher = new FakeLauncher(2000, 0, 0, 0);
+        MetricsAggregator merged = run(ShardPlan.evenly(3), launcher);
+
+        LatencyHistogram durations = merged.getTotalDurations();
+        assertEquals(launcher.expected.getTotalCount(), durations.getTotalCount());
+        for (int i = 0; i < durations.getBucketCount(); i++) {
+            assertEquals(launcher.expected.getCountAtIndex(i), durations.getCountAtIndex(i), "bucket " + i);
+        }
+        for (double percentile : new double[]{50, 95, 99, 99.9}) {
+            assertEquals(launcher.expected.valueAtPercentile(percentile), durations.valueAtPercentile(percentile));
+        }
+        assertEquals((double) launcher.requests, merged.getTotalCount(K6Metric.HTTP_REQS));
+        assertEquals(5, merged.getElapsedSeconds());
+    }
+
+    @Test
+    void thresholdsAreEvaluatedOnTheMergedResult() throws Exception {
+        // 15% of the second shard's requests fail, 7.5% of the merged run's
+        FakeLauncher launcher = new FakeLauncher(200, 0, 30);
+        MetricsAggregator merged = run(ShardPlan.evenly(2), launcher);
+
+        assertEquals(0.075, merged.getTotalRate(K6Metric.HTTP_REQ_FAILED), 1e-9);
+        List<ThresholdEvaluator.Result> results = new ThresholdEvaluator().evaluate(
+                List.of("http_req_failed: rate<0.1", "http_req_failed: rate<0.05", "http_reqs: count==400"), merged);
+        assertTrue(results.get(0).isPassed());
+        assertFalse(results.get(1).isPassed());
+        assertTrue(results.get(2).isPassed());
+        assertFalse(ThresholdEvaluator.allPassed(results));
+    }
+
+    @Test
+    void windowsAreFilledFromAllShards() throws Exception {
+        // 40 requests per shard and second; the second shard fails its first 30 requests
+        ShardedRun run = start(ShardPlan.evenly(2), new FakeLauncher(200, 0, 30));
+        MetricsAggregator.Window recent = new MetricsAggregator.Window(2);
+        MetricsAggregator.Window all = new MetricsAggregator.Window(10);
+        run.fillWindows(recent, all);
+
+        // The newest of the five seconds is still open, so both windows end one second earlier
+        assertEquals(START_SECOND + 3, recent.getEndSecond());
+        assertEquals(2, recent.getCoveredSeconds());
+        assertEquals(160, recent.getRequests());
+        assertEquals(12 / 160.0, recent.getFailureRate(), 1e-9);
+        assertEquals(4, all.getCoveredSeconds());
+        assertEquals(320, all.getRequests());
+        assertEquals(24 / 320.0, all.getFailureRate(), 1e-9);
+        assertEquals(320, all.getDurations().getTotalCount());
+    }
+
+    @Test
+    void thresholdsOnlyK6CouldCheckAreRefused() throws Exception {
+        List<String> unsupported = List.of("http_req_duration{name:login}: p(95)<500", "checkout_time: avg<200",
+                "http_req_duration: p95 < 500");
+        List<String> supported = List.of("http_req_duration: p(95)<500", "http_req_failed: rate<0.01",
+                "http_reqs: count>100");
+
+        ShardedRun sharded = new ShardedRun(ShardPlan.evenly(2), new FakeLauncher(1, 0, 0),
+                directory.resolve("test.js"), directory, "test", 1000);
+        assertTrue(sharded.isThresholdsOnResult());
+        sharded.checkThresholds(supported);
+        for (String threshold : unsupported) {
+            Exception e = assertThrows(Exception.class, () -> sharded.checkThresholds(List.of(threshold)), threshold);
+            assertTrue(e.getMessage().contains(threshold), e.getMessage());
+        }
+
+        ShardedRun warmedUp = new ShardedRun(ShardPlan.single(), new FakeLauncher(1, 0),
+                directory.resolve("test.js"), directory, "test", 1000);
+        warmedUp.setWarmupSeconds(10);
+        assertThrows(Exception.class, () -> warmedUp.checkThresholds(unsupported.subList(0, 1)));
+
+        // k6 checks these itself on a plain run
+        ShardedRun plain = new ShardedRun(ShardPlan.single(), new FakeLauncher(1, 0),
+                directory.resolve("test.js"), directory, "test", 1000);
+        assertFalse(plain.isThresholdsOnResult());
+        plain.checkThresholds(unsupported);
+    }
+
+    @Test
+    void singleShardRunsWithoutSegments() throws Exception {
+        FakeLauncher launcher = new FakeLauncher(100, 0);
+        MetricsAggregator merged = run(ShardPlan.single(), launcher);
+        assertEquals(100, merged.getTotalDurations().getTotalCount());
+    }
+
+    @Test
+    void shardArgumentsSplitTheExecutionAndSkipK6Thresholds() {
+        ShardLauncher.Shard shard = new ShardLauncher.Shard(1, plan("2,1,1"), directory.resolve("test.js"),
+                directory.resolve("m.json"), directory.resolve("s.json"), null);
+        List<String> args = shard.k6Arguments("m.json", "s.json");
+        assertEquals("1/2:3/4", args.get(args.indexOf("--execution-segment") + 1));
+        assertEquals("0,1/2,3/4,1", args.get(args.indexOf("--execution-segment-sequence") + 1));
+        assertTrue(args.contains("EXECUTION_SEGMENT=1/2:3/4"));
+        assertTrue(args.contains("--no-thresholds"));
+        assertEquals("json=m.json", args.get(args.indexOf("--out") + 1));
+
+        ShardLauncher.Shard single = new ShardLauncher.Shard(0, ShardPlan.single(), directory.resolve("test.js"),
+                directory.resolve("m.json"), directory.resolve("s.json"), null);
+        List<String> singleArgs = single.k6Arguments("m.json", "s.json");
+        assertFalse(singleArgs.contains("--execution-segment"));
+        assertFalse(singleArgs.contains("--no-thresholds"));
+    }
+
+    @Test
+    void planSegmentsCoverTheWholeTest() throws Exception {
+        ShardPlan even = ShardPlan.parse("4");
+        assertEquals(4, even.getShardCount());
+        assertEquals("0:1/4", even.getSegment(0));
+        assertEquals("3/4:1", even.getSegment(3));
+        assertEquals("0,1/4,1/2,3/4,1", even.getSequence());
+
+        ShardPlan weighted = ShardPlan.parse("2, 1, 1");
+        assertEquals("0:1/2", weighted.getSegment(0));
+        assertEquals("1/2:3/4", weighted.getSegment(1));
+
+        assertFalse(ShardPlan.parse("").isSharded());
+        assertFalse(ShardPlan.parse("1").isSharded());
+        for (String invalid : new String[]{"0", "-2", "2,0", "two"}) {
+            assertThrows(Exception.class, () -> ShardPlan.parse(invalid), invalid);
+        }
+    }
+
+    private static ShardPlan plan(String text) {
+        try {
+            return ShardPlan.parse(text);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}